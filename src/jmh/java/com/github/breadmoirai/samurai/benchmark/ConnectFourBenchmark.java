@@ -0,0 +1,69 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.breadmoirai.samurai.benchmark;
+
+import com.github.breadmoirai.samurai.plugins.games.connect4.ConnectFourGame;
+import com.github.breadmoirai.samurai.plugins.games.connect4.strategy.MiniMaxStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConnectFourBenchmark {
+
+    private MiniMaxStrategy miniMax;
+    private char[][] opening;
+    private char[][] midgame;
+
+    @Setup
+    public void setup() {
+        miniMax = new MiniMaxStrategy(ConnectFourGame.X_BOUND, ConnectFourGame.Y_BOUND, 4);
+        opening = new char[ConnectFourGame.X_BOUND][ConnectFourGame.Y_BOUND];
+        opening[3][0] = 'a';
+        midgame = new char[ConnectFourGame.X_BOUND][ConnectFourGame.Y_BOUND];
+        final int[] moves = {3, 3, 2, 4, 4, 2, 3, 5, 1, 5, 5, 3};
+        for (int i = 0; i < moves.length; i++) {
+            final char[] column = midgame[moves[i]];
+            int y = 0;
+            while (column[y] != '\u0000') y++;
+            column[y] = i % 2 == 0 ? 'a' : 'b';
+        }
+    }
+
+    @Benchmark
+    public int miniMaxOpening() {
+        return miniMax.makeMove(opening);
+    }
+
+    @Benchmark
+    public int miniMaxMidgame() {
+        return miniMax.makeMove(midgame);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.breadmoirai.samurai.benchmark;
+
+import com.github.breadmoirai.samurai.util.GifGenerator;
+import com.github.breadmoirai.samurai.util.ImageUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImageBenchmark {
+
+    private static final int FRAMES = 20;
+
+    /**
+     * Discord avatars are served at 128 by default.
+     */
+    @Param({"128", "256"})
+    private int size;
+
+    private BufferedImage base;
+    private BufferedImage overlay;
+
+    @Setup
+    public void setup() {
+        base = randomImage(size, BufferedImage.TYPE_INT_RGB, 1);
+        overlay = randomImage(size / 2, BufferedImage.TYPE_INT_ARGB, 2);
+    }
+
+    private static BufferedImage randomImage(int size, int type, long seed) {
+        final Random random = new Random(seed);
+        final BufferedImage image = new BufferedImage(size, size, type);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage hueShift() {
+        return ImageUtils.hueShift(base, 120);
+    }
+
+    @Benchmark
+    public GifGenerator generateRave() {
+        final GifGenerator generator = new GifGenerator(base, overlay, "bench");
+        generator.generate(FRAMES, true, true, false);
+        return generator;
+    }
+
+    @Benchmark
+    public ByteArrayInputStream generateAndEncode() {
+        final GifGenerator generator = new GifGenerator(base, overlay, "bench");
+        generator.generate(FRAMES, true, false, false);
+        return generator.getInputStream();
+    }
+
+    @Benchmark
+    public long streamToNull() throws IOException {
+        final CountingOutputStream out = new CountingOutputStream();
+        new GifGenerator(base, overlay, "bench").writeTo(out, FRAMES, true, false, false);
+        return out.count;
+    }
+
+    @Benchmark
+    public long streamSharedPalette() throws IOException {
+        final CountingOutputStream out = new CountingOutputStream();
+        new GifGenerator(base, overlay, "bench").setSharedPalette(true).writeTo(out, FRAMES, true, false, false);
+        return out.count;
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
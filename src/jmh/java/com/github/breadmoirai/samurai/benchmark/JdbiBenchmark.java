@@ -0,0 +1,133 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.breadmoirai.samurai.benchmark;
+
+import com.github.breadmoirai.samurai.plugins.derby.DerbyConnectionPool;
+import com.github.breadmoirai.samurai.plugins.derby.DerbyDatabase;
+import com.github.breadmoirai.samurai.plugins.derby.prefix.DerbyPrefixExtension;
+import com.github.breadmoirai.samurai.plugins.points.PointExtension;
+import gnu.trove.map.TLongDoubleMap;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongDoubleHashMap;
+import org.jdbi.v3.core.Jdbi;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trips through {@link com.github.breadmoirai.samurai.plugins.derby.JdbiExtension JdbiExtensions} against an
+ * in-memory Derby database, with and without the connection pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JdbiBenchmark {
+
+    private static final int USERS = 1000;
+
+    @Param({"true", "false"})
+    private boolean pooled;
+
+    private DerbyConnectionPool pool;
+    private DerbyPrefixExtension prefixes;
+    private TLongObjectMap<String> prefixCache;
+    private PointExtension points;
+    private long[] userIds;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final String url = "jdbc:derby:memory:jdbiBenchmark" + System.nanoTime() + ";create=true";
+        final Jdbi jdbi;
+        if (pooled) {
+            pool = new DerbyConnectionPool(url, DerbyDatabase.DEFAULT_POOL_SIZE, DerbyDatabase.STATEMENT_CACHE_SIZE);
+            jdbi = Jdbi.create(pool);
+        } else {
+            jdbi = Jdbi.create(url);
+        }
+        prefixes = new DerbyPrefixExtension(jdbi);
+        points = new PointExtension(jdbi);
+        userIds = new long[USERS];
+        final TLongDoubleMap initial = new TLongDoubleHashMap(USERS);
+        for (int i = 0; i < USERS; i++) {
+            userIds[i] = i;
+            prefixes.setPrefix(i, "!");
+            initial.put(i, 0);
+        }
+        points.offsetPoints(initial);
+        prefixCache = prefixes.getPrefixes();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    private long randomId() {
+        return userIds[ThreadLocalRandom.current().nextInt(USERS)];
+    }
+
+    @Benchmark
+    public TLongObjectMap<String> loadPrefixes() {
+        return prefixes.getPrefixes();
+    }
+
+    @Benchmark
+    public String cachedPrefix() {
+        return prefixCache.get(randomId());
+    }
+
+    @Benchmark
+    public void updatePrefix() {
+        prefixes.setPrefix(randomId(), "?");
+    }
+
+    @Benchmark
+    public double selectPoints() {
+        return points.getPoints(randomId());
+    }
+
+    @Benchmark
+    public void offsetPointsBatch() {
+        final TLongDoubleMap deltas = new TLongDoubleHashMap(64);
+        for (int i = 0; i < 64; i++) {
+            deltas.put(randomId(), 0.01);
+        }
+        points.offsetPoints(deltas);
+    }
+
+    @Benchmark
+    public TLongDoubleMap bulkLoadPoints() {
+        return points.getPoints(userIds);
+    }
+}
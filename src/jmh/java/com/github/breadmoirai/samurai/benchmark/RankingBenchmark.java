@@ -0,0 +1,117 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.breadmoirai.samurai.benchmark;
+
+import com.github.breadmoirai.samurai.util.ArrayUtil;
+import com.github.breadmoirai.samurai.util.RankTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the old ranking approach of sorting every member and binary searching against the {@link RankTree}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RankingBenchmark {
+
+    @Param({"1000", "30000"})
+    private int members;
+
+    private Entry[] entries;
+    private Entry[] sorted;
+    private Entry target;
+    private RankTree tree;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(members);
+        entries = new Entry[members];
+        tree = new RankTree(members);
+        for (int i = 0; i < members; i++) {
+            entries[i] = new Entry(random.nextLong(), random.nextInt(100_000) / 100.0);
+            tree.put(entries[i].id, entries[i].points);
+        }
+        target = entries[members / 2];
+        sorted = sortByPoints(entries);
+    }
+
+    private static Entry[] sortByPoints(Entry[] entries) {
+        return Arrays.stream(entries)
+                     .sorted(Comparator.comparingDouble(Entry::getPoints).reversed())
+                     .toArray(Entry[]::new);
+    }
+
+    @Benchmark
+    public int binarySearch() {
+        return ArrayUtil.binarySearch(sorted, target.points, Entry::getPoints, Comparator.naturalOrder(), e -> e.id == target.id);
+    }
+
+    @Benchmark
+    public int sortAndSearch() {
+        final Entry[] array = sortByPoints(entries);
+        return ArrayUtil.binarySearch(array, target.points, Entry::getPoints, Comparator.naturalOrder(), e -> e.id == target.id);
+    }
+
+    @Benchmark
+    public int rankTreeRank() {
+        return tree.rank(target.id);
+    }
+
+    @Benchmark
+    public List<RankTree.Entry> rankTreeRange() {
+        final int rank = tree.rank(target.id);
+        return tree.range(rank - 5, rank + 5);
+    }
+
+    @Benchmark
+    public int rankTreeUpdateAndRank() {
+        tree.offset(target.id, 0.01);
+        return tree.rank(target.id);
+    }
+
+    private static class Entry {
+        private final long id;
+        private final double points;
+
+        private Entry(long id, double points) {
+            this.id = id;
+            this.points = points;
+        }
+
+        private Double getPoints() {
+            return points;
+        }
+    }
+}
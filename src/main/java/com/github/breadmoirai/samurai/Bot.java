@@ -23,7 +23,9 @@ import com.github.breadmoirai.samurai.plugins.derby.prefix.DerbyPrefixPlugin;
 import com.github.breadmoirai.samurai.plugins.games.GamePlugin;
 import com.github.breadmoirai.samurai.plugins.google.GooglePlugin;
 import com.github.breadmoirai.samurai.plugins.groovyval.GroovyvalPlugin;
+import com.github.breadmoirai.samurai.plugins.metrics.MetricsPlugin;
 import com.github.breadmoirai.samurai.plugins.music.DispatchableDispatcher;
+import com.github.breadmoirai.samurai.plugins.music.MusicConfig;
 import com.github.breadmoirai.samurai.plugins.music.MusicPlugin;
 import com.github.breadmoirai.samurai.plugins.personal.BreadMoiraiSamuraiPlugin;
 import com.github.breadmoirai.samurai.plugins.points.DerbyPointPlugin;
@@ -43,8 +45,7 @@ import java.io.UnsupportedEncodingException;
 import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.stream.Collectors;
 
 /**
@@ -71,22 +72,38 @@ public class Bot {
 
         final Config config = ConfigFactory.load();
 
-        final ScheduledExecutorService service = Executors.newSingleThreadScheduledExecutor();
+        final ScheduledThreadPoolExecutor service = new ScheduledThreadPoolExecutor(1);
+        MetricsPlugin.monitorExecutor("shared", service);
+
+        // music gets its own scheduler so that autoplay lookups and event waiter timeouts cannot hold each other up
+        final MusicConfig musicConfig = MusicConfig.load(config);
+        final ScheduledThreadPoolExecutor musicService = new ScheduledThreadPoolExecutor(musicConfig.getSchedulerThreads(), r -> {
+            final Thread thread = new Thread(r, "music-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        MetricsPlugin.monitorExecutor("music", musicService);
+
+        final int metricsPort = config.hasPath("metrics.port") ? config.getInt("metrics.port") : 0;
+        final int poolSize = config.hasPath("database.pool_size") ? config.getInt("database.pool_size") : DerbyDatabase.DEFAULT_POOL_SIZE;
+
+        final DerbyDatabase database = new DerbyDatabase("botdata", poolSize);
 
         BreadBot bread = new BreadBotBuilder()
                 .addPlugin(new ApplicationOwnerPlugin())
+                .addPlugin(new MetricsPlugin(metricsPort))
                 .addPlugin(new EventWaiterPlugin(service))
                 .addPlugin(new GroovyvalPlugin())
-                .addPlugin(new DerbyDatabase("botdata"))
+                .addPlugin(database)
                 .addPlugin(new DerbyPointPlugin())
                 .addPlugin(new DerbyPrefixPlugin("!"))
-                .addPlugin(new MusicPlugin(config.getString("google.key"), service))
+                .addPlugin(new MusicPlugin(config.getString("google.key"), musicConfig, musicService))
                 .addPlugin(new RollPollPlugin(service))
                 .addPlugin(new BreadMoiraiSamuraiPlugin())
                 .addPlugin(new GooglePlugin(config.getString("google.key"), config.getString("google.engine")))
                 .addPlugin(new GamePlugin())
                 .addPlugin(new TriviaPlugin())
-                .addCommand(new ShutdownCommand(service))
+                .addCommand(new ShutdownCommand(service, musicService))
                 .bindResultHandler(Dispatchable.class, new DispatchableDispatcher())
                 .setEvaluateCommandOnMessageUpdate(true)
                 .build();
@@ -25,9 +25,11 @@ import java.util.concurrent.ScheduledExecutorService;
 public class ShutdownCommand {
 
     private final ScheduledExecutorService service;
+    private final ScheduledExecutorService musicService;
 
-    public ShutdownCommand(ScheduledExecutorService service) {
+    public ShutdownCommand(ScheduledExecutorService service, ScheduledExecutorService musicService) {
         this.service = service;
+        this.musicService = musicService;
     }
 
     @Owner
@@ -37,5 +39,7 @@ public class ShutdownCommand {
         event.getJDA().shutdownNow();
 
         ExecutorTools.shutdownExecutor(service, "shared bread executor");
+        ExecutorTools.shutdownExecutor(musicService, "music executor");
+        // the database closes itself on the ShutdownEvent once the plugins holding it open have flushed
     }
 }
@@ -0,0 +1,417 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.breadmoirai.samurai.plugins.derby;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * A bounded pool of embedded Derby connections.
+ * <p>
+ * Connections handed out by {@link #getConnection()} return to the pool when closed instead of closing the underlying
+ * connection. Each pooled connection keeps an LRU cache of {@link PreparedStatement PreparedStatements} keyed by sql so
+ * that repeated queries through {@link org.jdbi.v3.core.Jdbi} are not re-prepared.
+ */
+public class DerbyConnectionPool implements DataSource {
+
+    private static final long DEFAULT_TIMEOUT_MILLIS = 30_000;
+
+    private final String url;
+    private final int maxSize;
+    private final int statementCacheSize;
+    private final long timeoutMillis;
+
+    private final BlockingDeque<PooledConnection> idle;
+    private final Semaphore permits;
+    private final AtomicInteger active;
+    private final AtomicInteger open;
+
+    private final LongAdder acquisitions;
+    private final LongAdder waitNanos;
+    private final LongAdder timeouts;
+    private final LongAdder statementHits;
+    private final LongAdder statementMisses;
+
+    private volatile boolean closed;
+
+    public DerbyConnectionPool(String url, int maxSize, int statementCacheSize) {
+        this(url, maxSize, statementCacheSize, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    public DerbyConnectionPool(String url, int maxSize, int statementCacheSize, long timeoutMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be positive: " + maxSize);
+        }
+        this.url = url;
+        this.maxSize = maxSize;
+        this.statementCacheSize = statementCacheSize;
+        this.timeoutMillis = timeoutMillis;
+        this.idle = new LinkedBlockingDeque<>(maxSize);
+        this.permits = new Semaphore(maxSize, true);
+        this.active = new AtomicInteger();
+        this.open = new AtomicInteger();
+        this.acquisitions = new LongAdder();
+        this.waitNanos = new LongAdder();
+        this.timeouts = new LongAdder();
+        this.statementHits = new LongAdder();
+        this.statementMisses = new LongAdder();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("DerbyConnectionPool has been closed");
+        }
+        final long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw new SQLException("Timed out after " + timeoutMillis + "ms waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        waitNanos.add(System.nanoTime() - start);
+        acquisitions.increment();
+        try {
+            PooledConnection connection = idle.pollFirst();
+            if (connection == null || connection.physical.isClosed()) {
+                if (connection != null) {
+                    open.decrementAndGet();
+                }
+                connection = new PooledConnection(DriverManager.getConnection(url));
+                open.incrementAndGet();
+            }
+            active.incrementAndGet();
+            return connection.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return getConnection();
+    }
+
+    private void release(PooledConnection connection) {
+        active.decrementAndGet();
+        boolean reusable = !closed;
+        try {
+            if (reusable && !connection.physical.isClosed()) {
+                if (!connection.physical.getAutoCommit()) {
+                    connection.physical.rollback();
+                    connection.physical.setAutoCommit(true);
+                }
+                connection.physical.clearWarnings();
+            } else {
+                reusable = false;
+            }
+        } catch (SQLException e) {
+            SQLUtil.printSQLException(e);
+            reusable = false;
+        }
+        if (!reusable || !idle.offerFirst(connection)) {
+            open.decrementAndGet();
+            connection.closePhysical();
+        }
+        permits.release();
+    }
+
+    /**
+     * Closes every idle connection. Connections that are currently leased are closed when they are returned.
+     */
+    public void close() {
+        closed = true;
+        PooledConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            open.decrementAndGet();
+            connection.closePhysical();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getActiveConnections() {
+        return active.get();
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    public int getOpenConnections() {
+        return open.get();
+    }
+
+    /**
+     * @return the number of threads currently blocked waiting for a connection
+     */
+    public int getPendingThreads() {
+        return permits.getQueueLength();
+    }
+
+    public long getAcquisitions() {
+        return acquisitions.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * @return the total time spent waiting on {@link #getConnection()} in nanoseconds
+     */
+    public long getTotalWaitNanos() {
+        return waitNanos.sum();
+    }
+
+    public double getAverageWaitMillis() {
+        final long count = acquisitions.sum();
+        return count == 0 ? 0 : waitNanos.sum() / (count * 1_000_000.0);
+    }
+
+    public long getStatementCacheHits() {
+        return statementHits.sum();
+    }
+
+    public long getStatementCacheMisses() {
+        return statementMisses.sum();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("DerbyConnectionPool does not wrap " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return DriverManager.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        DriverManager.setLogWriter(out);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * A physical connection and its statement cache.
+     */
+    private class PooledConnection {
+
+        private final Connection physical;
+        private final Map<String, CachedStatement> statements;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                    if (size() > statementCacheSize) {
+                        eldest.getValue().evict();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        private Connection lease() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                                                       new Class<?>[]{Connection.class},
+                                                       new LeasedConnection(this));
+        }
+
+        private PreparedStatement prepare(String sql) throws SQLException {
+            if (statementCacheSize <= 0) {
+                return physical.prepareStatement(sql);
+            }
+            CachedStatement cached = statements.get(sql);
+            if (cached == null) {
+                statementMisses.increment();
+                cached = new CachedStatement(physical.prepareStatement(sql));
+                statements.put(sql, cached);
+            } else if (cached.leased) {
+                // the same sql is already open on this connection, such as in a nested query
+                statementMisses.increment();
+                return physical.prepareStatement(sql);
+            } else {
+                statementHits.increment();
+            }
+            return cached.lease();
+        }
+
+        private void closePhysical() {
+            try {
+                for (CachedStatement statement : statements.values()) {
+                    statement.evict();
+                }
+                statements.clear();
+                physical.close();
+            } catch (SQLException e) {
+                SQLUtil.printSQLException(e);
+            }
+        }
+    }
+
+    private class LeasedConnection implements InvocationHandler {
+
+        private PooledConnection connection;
+
+        private LeasedConnection(PooledConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (connection != null) {
+                        final PooledConnection c = connection;
+                        connection = null;
+                        release(c);
+                    }
+                    return null;
+                case "isClosed":
+                    return connection == null || connection.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + connection + "]";
+            }
+            if (connection == null) {
+                throw new SQLException("Connection has been returned to the pool");
+            }
+            if (method.getName().equals("prepareStatement") && args.length == 1) {
+                return connection.prepare((String) args[0]);
+            }
+            return DerbyConnectionPool.invoke(connection.physical, method, args);
+        }
+    }
+
+    private static class CachedStatement implements InvocationHandler {
+
+        private final PreparedStatement statement;
+        private boolean leased;
+        private boolean evicted;
+
+        private CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        private PreparedStatement lease() {
+            leased = true;
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                                                              new Class<?>[]{PreparedStatement.class},
+                                                              this);
+        }
+
+        private void evict() {
+            evicted = true;
+            if (!leased) {
+                closeQuietly();
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                SQLUtil.printSQLException(e);
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (leased) {
+                        leased = false;
+                        if (evicted) {
+                            closeQuietly();
+                        } else {
+                            statement.clearParameters();
+                            statement.clearBatch();
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return !leased || statement.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+            }
+            return DerbyConnectionPool.invoke(statement, method, args);
+        }
+    }
+}
@@ -16,30 +16,75 @@ package com.github.breadmoirai.samurai.plugins.derby;
 
 import com.github.breadmoirai.breadbot.framework.CommandPlugin;
 import com.github.breadmoirai.breadbot.framework.builder.BreadBotBuilder;
+import com.github.breadmoirai.samurai.plugins.metrics.LatencyHistogram;
+import com.github.breadmoirai.samurai.plugins.metrics.MetricRegistry;
+import net.dv8tion.jda.core.events.Event;
+import net.dv8tion.jda.core.events.ShutdownEvent;
+import net.dv8tion.jda.core.hooks.EventListener;
 import org.jdbi.v3.core.Jdbi;
 import org.jdbi.v3.sqlobject.SqlObjectPlugin;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
-public class DerbyDatabase implements CommandPlugin {
+public class DerbyDatabase implements CommandPlugin, EventListener {
+
+    public static final int DEFAULT_POOL_SIZE = 8;
+    public static final int STATEMENT_CACHE_SIZE = 64;
+    /**
+     * How long {@link #close()} waits for the plugins holding the database open before closing it anyway.
+     */
+    public static final long CLOSE_TIMEOUT_SECONDS = 30;
 
     private final String protocol = "jdbc:derby:";
     private final String dbName;
 
+    private final DerbyConnectionPool pool;
     private final Jdbi jdbi;
+    /**
+     * The database itself is one party, every {@link #holdOpen()} adds another.
+     */
+    private final Phaser holds = new Phaser(1);
 
     public DerbyDatabase(String dbName) throws SQLException {
+        this(dbName, DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * @param dbName   the name of the embedded database
+     * @param poolSize the maximum number of connections that may be open at once
+     */
+    public DerbyDatabase(String dbName, int poolSize) throws SQLException {
         this.dbName = dbName;
         boolean databaseExists = connectElseCreate();
-        jdbi = Jdbi.create(protocol + dbName + ";");
+        pool = new DerbyConnectionPool(protocol + dbName + ";", poolSize, STATEMENT_CACHE_SIZE);
+        jdbi = Jdbi.create(pool);
         jdbi.installPlugin(new SqlObjectPlugin());
+        registerMetrics(MetricRegistry.getDefault());
         getExtension(DummyExtension::new).run();
     }
 
+    private void registerMetrics(MetricRegistry registry) {
+        final ConcurrentHashMap<String, LatencyHistogram> statements = new ConcurrentHashMap<>();
+        jdbi.setTimingCollector((elapsed, context) -> statements.computeIfAbsent(SQLUtil.statementName(context.getRawSql()),
+                statement -> registry.histogram("db_statement_seconds", "Execution time of each sql statement", "statement", statement))
+                .record(elapsed));
+        registry.gauge("db_pool_active_connections", "Connections leased from the pool", pool::getActiveConnections);
+        registry.gauge("db_pool_idle_connections", "Connections waiting in the pool", pool::getIdleConnections);
+        registry.gauge("db_pool_pending_threads", "Threads waiting for a connection", pool::getPendingThreads);
+        registry.counter("db_pool_wait_seconds_total", "Total time spent waiting for a connection", () -> pool.getTotalWaitNanos() / 1e9);
+        registry.counter("db_pool_timeouts_total", "Connection requests that timed out", pool::getTimeouts);
+        registry.counter("db_statement_cache_hits_total", "Prepared statements reused from the cache", pool::getStatementCacheHits);
+        registry.counter("db_statement_cache_misses_total", "Prepared statements that had to be prepared", pool::getStatementCacheMisses);
+    }
+
     public <T, R> R openDao(Class<T> tClass, Function<T, R> function) {
         return jdbi.withExtension(tClass, function::apply);
     }
@@ -52,6 +97,59 @@ public class DerbyDatabase implements CommandPlugin {
         return function.apply(jdbi);
     }
 
+    public DerbyConnectionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Keeps the database open through shutdown until {@link #release()} is called. Plugins that flush on the
+     * {@link ShutdownEvent} take a hold when they are initialized, because JDA fires that event asynchronously and
+     * in no particular order relative to this plugin.
+     */
+    public void holdOpen() {
+        holds.register();
+    }
+
+    /**
+     * Releases a hold taken with {@link #holdOpen()}. Must be called exactly once per hold, after the last write.
+     */
+    public void release() {
+        holds.arriveAndDeregister();
+    }
+
+    @Override
+    public void onEvent(Event event) {
+        if (event instanceof ShutdownEvent) {
+            // the event thread may be the one that still has to deliver the shutdown to the plugins holding us open
+            final Thread thread = new Thread(this::close, "database-shutdown");
+            thread.setDaemon(false);
+            thread.start();
+        }
+    }
+
+    /**
+     * Waits for every hold to be released, then closes every pooled connection and its cached statements and shuts
+     * the database down.
+     */
+    public void close() {
+        try {
+            holds.awaitAdvanceInterruptibly(holds.arrive(), CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            System.err.println("Closing the database with " + (holds.getRegisteredParties() - 1) + " plugins still holding it open");
+        }
+        pool.close();
+        try {
+            DriverManager.getConnection(protocol + dbName + ";shutdown=true");
+        } catch (SQLException e) {
+            // derby reports a successful shutdown as an exception
+            if (!"08006".equals(e.getSQLState())) {
+                SQLUtil.printSQLException(e);
+            }
+        }
+    }
+
     /**
      * @return true if database exists, false if database was created
      */
@@ -1,5 +1,7 @@
 package com.github.breadmoirai.samurai.plugins.derby;
 
+import com.github.breadmoirai.samurai.plugins.metrics.LatencyHistogram;
+import com.github.breadmoirai.samurai.plugins.metrics.MetricRegistry;
 import org.jdbi.v3.core.HandleCallback;
 import org.jdbi.v3.core.HandleConsumer;
 import org.jdbi.v3.core.Jdbi;
@@ -17,9 +19,12 @@ import java.util.OptionalLong;
 public abstract class JdbiExtension {
 
     protected final Jdbi jdbi;
+    private final LatencyHistogram handleTime;
 
     public JdbiExtension(Jdbi jdbi) {
         this.jdbi = jdbi;
+        this.handleTime = MetricRegistry.getDefault().histogram("db_handle_seconds", "Time a database handle is held by an extension",
+                                                                "extension", getClass().getSimpleName());
     }
 
     protected final Jdbi getJdbi() {
@@ -27,11 +32,21 @@ public abstract class JdbiExtension {
     }
 
     protected final <R, X extends Exception> R withHandle(HandleCallback<R, X> callback) throws X {
-        return jdbi.withHandle(callback);
+        final long start = System.nanoTime();
+        try {
+            return jdbi.withHandle(callback);
+        } finally {
+            handleTime.stop(start);
+        }
     }
 
     protected final <X extends Exception> void useHandle(HandleConsumer<X> callback) throws X {
-        jdbi.useHandle(callback);
+        final long start = System.nanoTime();
+        try {
+            jdbi.useHandle(callback);
+        } finally {
+            handleTime.stop(start);
+        }
     }
 
     protected final <R, E, X extends Exception> R withExtension(Class<E> extensionType, ExtensionCallback<R, E, X> callback) throws NoSuchExtensionException, X {
@@ -96,4 +111,13 @@ public abstract class JdbiExtension {
             return false;
         }
     }
+
+    protected final boolean columnAbsent(String tableName, String columnName) {
+        try {
+            return !jdbi.withHandle(handle -> handle.getConnection().getMetaData().getColumns(null, "APP", tableName.toUpperCase(), columnName.toUpperCase()).next());
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
 }
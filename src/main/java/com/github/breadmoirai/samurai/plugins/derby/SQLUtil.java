@@ -16,6 +16,9 @@ package com.github.breadmoirai.samurai.plugins.derby;
 
 import java.sql.SQLException;
 import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * @author TonTL
@@ -23,6 +26,28 @@ import java.util.Arrays;
  */
 public class SQLUtil {
 
+    private static final Pattern STATEMENT = Pattern.compile(
+            "^\\s*(?:(SELECT)\\b.*?\\bFROM|(INSERT)\\s+INTO|(UPDATE)|(DELETE)\\s+FROM|(MERGE)\\s+INTO)\\s+(\\w+)",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern KEYWORD = Pattern.compile("^\\s*(\\w+)");
+
+    /**
+     * Names a statement by its verb and first table, such as {@code select_points}, so that statements that only differ
+     * in their parameters or the length of an IN list share a name.
+     */
+    public static String statementName(String sql) {
+        final Matcher matcher = STATEMENT.matcher(sql);
+        if (matcher.find()) {
+            for (int group = 1; group < 6; group++) {
+                if (matcher.group(group) != null) {
+                    return (matcher.group(group) + '_' + matcher.group(6)).toLowerCase(Locale.ROOT);
+                }
+            }
+        }
+        final Matcher keyword = KEYWORD.matcher(sql);
+        return keyword.find() ? keyword.group(1).toLowerCase(Locale.ROOT) : "other";
+    }
+
     public static void printSQLException(SQLException e) {
 
         while (e != null) {
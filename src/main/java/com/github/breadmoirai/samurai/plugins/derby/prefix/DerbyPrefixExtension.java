@@ -1,17 +1,16 @@
 package com.github.breadmoirai.samurai.plugins.derby.prefix;
 
 import com.github.breadmoirai.samurai.plugins.derby.JdbiExtension;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
 import org.jdbi.v3.core.Jdbi;
 
-import java.util.Optional;
+import java.util.stream.Collector;
 
 public class DerbyPrefixExtension extends JdbiExtension {
 
-    private final String defaultPrefix;
-
-    public DerbyPrefixExtension(Jdbi jdbi, String defaultPrefix) {
+    public DerbyPrefixExtension(Jdbi jdbi) {
         super(jdbi);
-        this.defaultPrefix = defaultPrefix;
         if (tableAbsent("Prefix")) {
             execute("CREATE TABLE Prefix (\n" +
                     "  Id       BIGINT      NOT NULL PRIMARY KEY,\n" +
@@ -20,17 +19,29 @@ public class DerbyPrefixExtension extends JdbiExtension {
         }
     }
 
-    public String getPrefix(long guildId) {
-        final Optional<String> prefix = selectFirst(String.class, "SELECT Value FROM Prefix WHERE Id = ?", guildId);
-        if (prefix.isPresent()) {
-            return prefix.get();
-        } else {
-            execute("INSERT INTO Prefix VALUES (?, ?)", guildId, defaultPrefix);
-            return defaultPrefix;
-        }
+    /**
+     * @return every stored prefix keyed by guild id
+     */
+    public TLongObjectMap<String> getPrefixes() {
+        return withHandle(handle -> {
+            return handle.createQuery("SELECT Id, Value FROM Prefix")
+                         .map((r, ctx) -> new Object[]{r.getLong(1), r.getString(2)})
+                         .collect(Collector.<Object[], TLongObjectMap<String>>of(TLongObjectHashMap::new,
+                                                                                 (map, row) -> map.put((long) row[0], (String) row[1]),
+                                                                                 (map1, map2) -> {
+                                                                                     map1.putAll(map2);
+                                                                                     return map1;
+                                                                                 }));
+        });
     }
 
     public void setPrefix(long guildId, String prefix) {
-        execute("UPDATE Prefix SET Value = ? WHERE Id = ?", prefix, guildId);
+        final int updated = withHandle(handle -> handle.createUpdate("UPDATE Prefix SET Value = ? WHERE Id = ?")
+                                                       .bind(0, prefix)
+                                                       .bind(1, guildId)
+                                                       .execute());
+        if (updated == 0) {
+            execute("INSERT INTO Prefix VALUES (?, ?)", guildId, prefix);
+        }
     }
 }
@@ -4,15 +4,28 @@ import com.github.breadmoirai.breadbot.framework.builder.BreadBotBuilder;
 import com.github.breadmoirai.breadbot.plugins.prefix.PrefixPlugin;
 import com.github.breadmoirai.samurai.plugins.derby.DerbyDatabase;
 import com.github.breadmoirai.samurai.plugins.derby.MissingDerbyPluginException;
+import com.github.breadmoirai.samurai.plugins.metrics.MetricRegistry;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
 import net.dv8tion.jda.core.entities.Guild;
 
+import java.util.concurrent.atomic.LongAdder;
+
 public class DerbyPrefixPlugin implements PrefixPlugin {
 
     private final String defaultPrefix;
+    private final LongAdder hits;
+    private final LongAdder misses;
     private DerbyPrefixExtension extension;
+    /**
+     * Copy-on-write so that lookups on the message thread never lock. Writes only happen through the prefix command.
+     */
+    private volatile TLongObjectMap<String> cache;
 
     public DerbyPrefixPlugin(String defaultPrefix) {
         this.defaultPrefix = defaultPrefix;
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
     }
 
     @Override
@@ -21,7 +34,12 @@ public class DerbyPrefixPlugin implements PrefixPlugin {
             throw new MissingDerbyPluginException();
         }
         final DerbyDatabase database = builder.getPlugin(DerbyDatabase.class);
-        this.extension = database.getExtension(jdbi -> new DerbyPrefixExtension(jdbi, defaultPrefix));
+        this.extension = database.getExtension(DerbyPrefixExtension::new);
+        this.cache = extension.getPrefixes();
+        final MetricRegistry registry = MetricRegistry.getDefault();
+        registry.counter("prefix_cache_hits_total", "Prefix lookups answered from the cache", this::getCacheHits);
+        registry.counter("prefix_cache_misses_total", "Prefix lookups for guilds using the default", this::getCacheMisses);
+        registry.gauge("prefix_cache_size", "Guilds with a stored prefix", this::getCacheSize);
 
         builder.addCommand(DerbyPrefixCommand::new);
     }
@@ -33,10 +51,31 @@ public class DerbyPrefixPlugin implements PrefixPlugin {
 
     @Override
     public String getPrefix(Guild guild) {
-        return extension.getPrefix(guild.getIdLong());
+        final String prefix = cache.get(guild.getIdLong());
+        if (prefix != null) {
+            hits.increment();
+            return prefix;
+        }
+        misses.increment();
+        return defaultPrefix;
     }
 
-    public void setPrefix(long guildId, String prefix) {
+    public synchronized void setPrefix(long guildId, String prefix) {
         extension.setPrefix(guildId, prefix);
+        final TLongObjectMap<String> copy = new TLongObjectHashMap<>(cache);
+        copy.put(guildId, prefix);
+        cache = copy;
+    }
+
+    public long getCacheHits() {
+        return hits.sum();
+    }
+
+    public long getCacheMisses() {
+        return misses.sum();
+    }
+
+    public int getCacheSize() {
+        return cache.size();
     }
 }
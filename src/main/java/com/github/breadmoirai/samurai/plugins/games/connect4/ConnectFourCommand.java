@@ -20,7 +20,7 @@ import com.github.breadmoirai.breadbot.framework.annotation.parameter.Author;
 import com.github.breadmoirai.breadbot.framework.event.CommandEvent;
 import com.github.breadmoirai.breadbot.plugins.waiter.EventWaiter;
 import com.github.breadmoirai.breadbot.util.Emoji;
-import com.github.breadmoirai.samurai.plugins.games.connect4.strategy.MiniMaxStrategy;
+import com.github.breadmoirai.samurai.plugins.games.connect4.strategy.BitboardStrategy;
 import com.github.breadmoirai.samurai.plugins.points.DerbyPointPlugin;
 import javafx.util.Pair;
 import net.dv8tion.jda.core.EmbedBuilder;
@@ -38,6 +38,7 @@ public class ConnectFourCommand {
     private static final Permission[] PERMISSIONS = {Permission.MESSAGE_ADD_REACTION, Permission.MESSAGE_MANAGE};
     private static final String CROSSED_SWORDS = Emoji.CROSSED_SWORDS.getUtf8();
     private static final String SHIELD = Emoji.SHIELD.getUtf8();
+    private static final long BOT_MOVE_MILLIS = 500;
 
     @MainCommand
     public ConnectFourGame connect4(CommandEvent event,
@@ -56,7 +57,7 @@ public class ConnectFourCommand {
                     .onSuccess(openChallenge(event, player, waiter, pointWager, plugin));
 
         } else if (opponent.getUser().equals(event.getJDA().getSelfUser())) {
-            return new ConnectFourGame(player, new MiniMaxStrategy(ConnectFourGame.X_BOUND, ConnectFourGame.Y_BOUND, 4), 0L, waiter, onWin(pointWager, plugin));
+            return new ConnectFourGame(player, new BitboardStrategy(ConnectFourGame.X_BOUND, ConnectFourGame.Y_BOUND, BOT_MOVE_MILLIS), 0L, waiter, onWin(pointWager, plugin));
         } else {
             event.reply()
                     .append(opponent)
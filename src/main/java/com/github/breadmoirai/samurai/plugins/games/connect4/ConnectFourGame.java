@@ -19,6 +19,7 @@ import com.github.breadmoirai.breadbot.plugins.waiter.EventActionFuture;
 import com.github.breadmoirai.breadbot.plugins.waiter.EventWaiter;
 import com.github.breadmoirai.samurai.Dispatchable;
 import com.github.breadmoirai.samurai.plugins.games.connect4.strategy.ConnectFourStrategy;
+import com.github.breadmoirai.samurai.util.MessageEditCoalescer;
 import javafx.util.Pair;
 import net.dv8tion.jda.core.EmbedBuilder;
 import net.dv8tion.jda.core.MessageBuilder;
@@ -28,7 +29,10 @@ import net.dv8tion.jda.core.entities.TextChannel;
 import net.dv8tion.jda.core.events.message.react.GenericMessageReactionEvent;
 
 import java.awt.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
 
 public class ConnectFourGame implements Dispatchable {
@@ -39,6 +43,16 @@ public class ConnectFourGame implements Dispatchable {
     private static final String EMOTE_A = "\uD83D\uDD34";
     private static final String EMOTE_B = "\uD83D\uDD35";
 
+    /**
+     * The bot spends its whole time budget on every move, so moves are searched here instead of on the event thread.
+     * Shared by every game so that concurrent games cannot use more threads than there are cores.
+     */
+    private static final ExecutorService BOT_MOVES = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+        final Thread thread = new Thread(r, "connect4-bot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private final char[][] board;
     private final Member playerA;
     private final ConnectFourStrategy strategy;
@@ -48,8 +62,11 @@ public class ConnectFourGame implements Dispatchable {
     private final BiConsumer<Pair<Member, Member>, EmbedBuilder> onWin;
     private final String selfAvatar;
 
-    private Member next;
-    private Member winner;
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private volatile Message message;
+    private volatile EventActionFuture<Void> reactions;
+    private volatile Member next;
+    private volatile Member winner;
 
 
     public ConnectFourGame(Member playerA, Member challenged, long messageId, EventWaiter waiter, BiConsumer<Pair<Member, Member>, EmbedBuilder> onWin) {
@@ -99,7 +116,10 @@ public class ConnectFourGame implements Dispatchable {
                         .editMessage(buildTitle()
                                 .setEmbed(buildBoard().build())
                                 .build())
-                        .queue(editMessage -> waitForReactions(message)));
+                        .queue(editMessage -> {
+                            this.message = message;
+                            reactions = waitForReactions(message);
+                        }));
             }
         }
     }
@@ -117,13 +137,13 @@ public class ConnectFourGame implements Dispatchable {
     }
 
     private void onFinish(Message message) {
+        if (!finished.compareAndSet(false, true)) return;
         next = null;
         final EmbedBuilder embedBuilder = buildBoard();
         onWin.accept(new Pair<>(winner, winner.equals(playerA) ? playerB : playerA), embedBuilder);
-        message.editMessage(buildTitle()
+        MessageEditCoalescer.getDefault().finish(message.getChannel(), message.getIdLong(), () -> buildTitle()
                 .setEmbed(embedBuilder.build())
-                .build())
-                .queue();
+                .build());
         message.clearReactions().queue();
     }
 
@@ -131,12 +151,27 @@ public class ConnectFourGame implements Dispatchable {
         final Member member = reactionEvent.getMember();
         int move = getReactionIdx(reactionEvent.getReactionEmote().getName());
         makeMove(member, move);
-        if (strategy != null) {
-            final int i = strategy.makeMove(board);
-            makeMove(playerB, i);
-            next = playerA;
+        final TextChannel channel = reactionEvent.getTextChannel();
+        if (strategy != null && !hasEnded()) {
+            // reactions are ignored until the bot has moved, since it is not the player's turn
+            BOT_MOVES.execute(() -> onBotMove(channel));
+        }
+        editBoard(channel);
+    }
+
+    private void onBotMove(TextChannel channel) {
+        makeMove(playerB, strategy.makeMove(board));
+        editBoard(channel);
+        if (hasEnded()) {
+            // the waiter only checks for the end of the game after a reaction
+            reactions.cancel();
+            onFinish(message);
         }
-        reactionEvent.getTextChannel().editMessageById(messageId, buildTitle().setEmbed(buildBoard().build()).build()).queue();
+    }
+
+    private void editBoard(TextChannel channel) {
+        // quick players can outpace the edit rate limit
+        MessageEditCoalescer.getDefault().edit(channel, messageId, () -> buildTitle().setEmbed(buildBoard().build()).build());
     }
 
     private void makeMove(Member member, int move) {
@@ -158,7 +193,8 @@ public class ConnectFourGame implements Dispatchable {
 
     private boolean isValid(GenericMessageReactionEvent event) {
         int i;
-        return next != null & next.equals(event.getMember())
+        final Member next = this.next;
+        return next != null && next.equals(event.getMember())
                 && (i = getReactionIdx(event.getReactionEmote().getName())) != -1
                 && board[i][Y_BOUND - 1] == '\u0000';
     }
@@ -0,0 +1,354 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.breadmoirai.samurai.plugins.games.connect4.strategy;
+
+import java.util.Random;
+
+/**
+ * Negamax search with alpha-beta pruning over 64-bit bitboards.
+ * <p>
+ * Each column uses {@code yBound + 1} bits with the extra bit acting as a sentinel, so a board of up to 7x8 fits in a
+ * single long. The search deepens iteratively until the time budget runs out and plays the best move of the deepest
+ * completed iteration. Positions are cached in a Zobrist-hashed transposition table that is kept between moves of the
+ * same game.
+ * <p>
+ * An instance should only be used for one game at a time.
+ */
+public class BitboardStrategy implements ConnectFourStrategy {
+
+    private static final int WIN = 1_000_000;
+    private static final int WIN_THRESHOLD = WIN - 1000;
+    private static final int TABLE_BITS = 18;
+    private static final int EXACT = 0, LOWER = 1, UPPER = 2;
+    private static final int NODE_CHECK_INTERVAL = 0xFFF;
+
+    private final int xBound;
+    private final int yBound;
+    private final int cells;
+    private final long budgetNanos;
+
+    private final long bottomMask;
+    private final long boardMask;
+    private final long[] columnMasks;
+    private final int[] order;
+    private final int[] columnWeights;
+
+    private final long[][] zobrist;
+    private final long[] tableKeys;
+    private final long[] tableEntries;
+    private final int tableMask;
+
+    private long deadline;
+    private boolean abortable;
+    private boolean aborted;
+    private long nodes;
+    private int lastDepth;
+    private long lastNodes;
+
+    public BitboardStrategy(int xBound, int yBound, long budgetMillis) {
+        if (xBound * (yBound + 1) > 64) {
+            throw new IllegalArgumentException("A " + xBound + "x" + yBound + " board does not fit in a bitboard");
+        }
+        this.xBound = xBound;
+        this.yBound = yBound;
+        this.cells = xBound * yBound;
+        this.budgetNanos = budgetMillis * 1_000_000L;
+
+        long bottom = 0, board = 0;
+        this.columnMasks = new long[xBound];
+        for (int x = 0; x < xBound; x++) {
+            bottom |= 1L << x * (yBound + 1);
+            columnMasks[x] = ((1L << yBound) - 1) << x * (yBound + 1);
+            board |= columnMasks[x];
+        }
+        this.bottomMask = bottom;
+        this.boardMask = board;
+
+        // center columns first
+        this.order = new int[xBound];
+        this.columnWeights = new int[xBound];
+        for (int i = 0; i < xBound; i++) {
+            order[i] = xBound / 2 + (1 - 2 * (i % 2)) * (i + 1) / 2;
+        }
+        for (int x = 0; x < xBound; x++) {
+            columnWeights[x] = xBound / 2 + 1 - Math.abs(xBound / 2 - x);
+        }
+
+        final Random random = new Random();
+        this.zobrist = new long[2][xBound * (yBound + 1)];
+        for (long[] player : zobrist) {
+            for (int i = 0; i < player.length; i++) {
+                player[i] = random.nextLong();
+            }
+        }
+        this.tableKeys = new long[1 << TABLE_BITS];
+        this.tableEntries = new long[1 << TABLE_BITS];
+        this.tableMask = (1 << TABLE_BITS) - 1;
+    }
+
+    @Override
+    public int makeMove(char[][] board) {
+        long current = 0, mask = 0, hash = 0;
+        int moves = 0;
+        for (int x = 0; x < xBound; x++) {
+            for (int y = 0; y < yBound; y++) {
+                final int bit = x * (yBound + 1) + y;
+                if (board[x][y] == 'b') {
+                    current |= 1L << bit;
+                    hash ^= zobrist[0][bit];
+                } else if (board[x][y] == 'a') {
+                    hash ^= zobrist[1][bit];
+                } else {
+                    continue;
+                }
+                mask |= 1L << bit;
+                moves++;
+            }
+        }
+
+        final long possible = possible(mask);
+        if (possible == 0) {
+            return -1;
+        }
+        final long wins = winningPositions(current, mask) & possible;
+        if (wins != 0) {
+            return column(Long.numberOfTrailingZeros(wins));
+        }
+
+        deadline = System.nanoTime() + budgetNanos;
+        aborted = false;
+        abortable = false;
+        nodes = 0;
+        int bestMove = column(Long.numberOfTrailingZeros(possible));
+        int depth = 1;
+        for (; depth <= cells - moves; depth++) {
+            final int move = searchRoot(current, mask, hash, moves, depth);
+            if (aborted) {
+                depth--;
+                break;
+            }
+            bestMove = move;
+            abortable = true;
+            final int score = probeScore(hash);
+            if (Math.abs(score) >= WIN_THRESHOLD) {
+                break;
+            }
+        }
+        lastDepth = Math.min(depth, cells - moves);
+        lastNodes = nodes;
+        return bestMove;
+    }
+
+    /**
+     * @return the depth of the last completed search
+     */
+    public int getLastDepth() {
+        return lastDepth;
+    }
+
+    /**
+     * @return the number of positions visited during the last move
+     */
+    public long getLastNodes() {
+        return lastNodes;
+    }
+
+    private int searchRoot(long current, long mask, long hash, int moves, int depth) {
+        final int ttMove = probeMove(hash);
+        int alpha = -WIN, bestMove = -1;
+        for (int i = -1; i < xBound; i++) {
+            final int x = i == -1 ? ttMove : order[i];
+            if (x < 0 || (i >= 0 && x == ttMove) || !canPlay(mask, x)) continue;
+            final long move = (mask + (bottomMask & columnMasks[x])) & columnMasks[x];
+            final int bit = Long.numberOfTrailingZeros(move);
+            final int score = -negamax(current ^ mask, mask | move, hash ^ zobrist[0][bit], moves + 1, depth - 1, -WIN, -alpha, 1);
+            if (aborted) return bestMove;
+            if (bestMove == -1 || score > alpha) {
+                alpha = score;
+                bestMove = x;
+            }
+        }
+        store(hash, alpha, depth, EXACT, bestMove, 0);
+        return bestMove;
+    }
+
+    private int negamax(long current, long mask, long hash, int moves, int depth, int alpha, int beta, int ply) {
+        if ((++nodes & NODE_CHECK_INTERVAL) == 0 && abortable && System.nanoTime() > deadline) {
+            aborted = true;
+            return 0;
+        }
+        if (moves == cells) {
+            return 0;
+        }
+        long possible = possible(mask);
+        if ((winningPositions(current, mask) & possible) != 0) {
+            return WIN - ply - 1;
+        }
+        // moves the opponent would win with next turn must be blocked, and we must not play directly below them
+        final long opponentWins = winningPositions(current ^ mask, mask);
+        final long forced = possible & opponentWins;
+        if (forced != 0) {
+            if ((forced & (forced - 1)) != 0) {
+                return -(WIN - ply - 2);
+            }
+            possible = forced;
+        }
+        possible &= ~(opponentWins >>> 1);
+        if (possible == 0) {
+            return -(WIN - ply - 2);
+        }
+        if (depth <= 0) {
+            return evaluate(current, mask);
+        }
+
+        final int player = ply & 1;
+        final int index = (int) hash & tableMask;
+        int ttMove = -1;
+        if (tableKeys[index] == hash) {
+            final long entry = tableEntries[index];
+            ttMove = entryMove(entry);
+            if (entryDepth(entry) >= depth) {
+                final int score = fromTable(entryScore(entry), ply);
+                final int flag = entryFlag(entry);
+                if (flag == EXACT
+                        || flag == LOWER && score >= beta
+                        || flag == UPPER && score <= alpha) {
+                    return score;
+                }
+            }
+        }
+
+        final int originalAlpha = alpha;
+        int best = -WIN, bestMove = -1;
+        for (int i = -1; i < xBound; i++) {
+            final int x = i == -1 ? ttMove : order[i];
+            if (x < 0 || (i >= 0 && x == ttMove)) continue;
+            final long move = possible & columnMasks[x];
+            if (move == 0) continue;
+            final int bit = Long.numberOfTrailingZeros(move);
+            final int score = -negamax(current ^ mask, mask | move, hash ^ zobrist[player][bit], moves + 1, depth - 1, -beta, -alpha, ply + 1);
+            if (aborted) return 0;
+            if (score > best) {
+                best = score;
+                bestMove = x;
+            }
+            if (score > alpha) {
+                alpha = score;
+                if (alpha >= beta) break;
+            }
+        }
+        final int flag = best <= originalAlpha ? UPPER : best >= beta ? LOWER : EXACT;
+        store(hash, best, depth, flag, bestMove, ply);
+        return best;
+    }
+
+    /**
+     * Counts the cells that would complete four for each side, weighted towards the center columns.
+     */
+    private int evaluate(long current, long mask) {
+        final long opponent = current ^ mask;
+        final long empty = boardMask & ~mask;
+        int score = 0;
+        score += 16 * Long.bitCount(winningPositions(current, mask) & empty);
+        score -= 16 * Long.bitCount(winningPositions(opponent, mask) & empty);
+        for (int x = 0; x < xBound; x++) {
+            score += columnWeights[x] * (Long.bitCount(current & columnMasks[x]) - Long.bitCount(opponent & columnMasks[x]));
+        }
+        return score;
+    }
+
+    private boolean canPlay(long mask, int x) {
+        return (mask & columnMasks[x]) != columnMasks[x];
+    }
+
+    private long possible(long mask) {
+        return (mask + bottomMask) & boardMask;
+    }
+
+    private int column(int bit) {
+        return bit / (yBound + 1);
+    }
+
+    /**
+     * @return every cell, empty or not, that would give this player four in a row
+     */
+    private long winningPositions(long position, long mask) {
+        final int h = yBound;
+        // vertical
+        long r = (position << 1) & (position << 2) & (position << 3);
+
+        // horizontal and both diagonals
+        for (int shift = h; shift <= h + 2; shift++) {
+            long p = (position << shift) & (position << 2 * shift);
+            r |= p & (position << 3 * shift);
+            r |= p & (position >>> shift);
+            p = (position >>> shift) & (position >>> 2 * shift);
+            r |= p & (position << shift);
+            r |= p & (position >>> 3 * shift);
+        }
+        return r & (boardMask ^ mask);
+    }
+
+    private void store(long hash, int score, int depth, int flag, int move, int ply) {
+        final int index = (int) hash & tableMask;
+        tableKeys[index] = hash;
+        tableEntries[index] = ((long) toTable(score, ply) << 32)
+                | (depth & 0xFFL) << 8
+                | (flag & 0x3L) << 4
+                | (move + 1 & 0xFL);
+    }
+
+    private int probeScore(long hash) {
+        final int index = (int) hash & tableMask;
+        return tableKeys[index] == hash ? entryScore(tableEntries[index]) : 0;
+    }
+
+    private int probeMove(long hash) {
+        final int index = (int) hash & tableMask;
+        return tableKeys[index] == hash ? entryMove(tableEntries[index]) : -1;
+    }
+
+    /**
+     * Win scores are stored relative to the node so that they stay correct when reached through a different path.
+     */
+    private static int toTable(int score, int ply) {
+        if (score >= WIN_THRESHOLD) return score + ply;
+        if (score <= -WIN_THRESHOLD) return score - ply;
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= WIN_THRESHOLD) return score - ply;
+        if (score <= -WIN_THRESHOLD) return score + ply;
+        return score;
+    }
+
+    private static int entryScore(long entry) {
+        return (int) (entry >> 32);
+    }
+
+    private static int entryDepth(long entry) {
+        return (int) (entry >>> 8 & 0xFF);
+    }
+
+    private static int entryFlag(long entry) {
+        return (int) (entry >>> 4 & 0x3);
+    }
+
+    private static int entryMove(long entry) {
+        return (int) (entry & 0xF) - 1;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.breadmoirai.samurai.plugins.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class Counter implements Metric {
+
+    private final LongAdder count = new LongAdder();
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long n) {
+        count.add(n);
+    }
+
+    public long get() {
+        return count.sum();
+    }
+
+    @Override
+    public String getType() {
+        return "counter";
+    }
+
+    @Override
+    public void writePrometheus(String name, String labels, StringBuilder sb) {
+        sb.append(name).append(MetricRegistry.braces(labels)).append(' ').append(get()).append('\n');
+    }
+
+    @Override
+    public String summarize() {
+        return String.valueOf(get());
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.breadmoirai.samurai.plugins.metrics;
+
+/**
+ * Times the events handled by a listener, with one histogram per event type.
+ */
+public class EventMetrics {
+
+    private final ClassValue<LatencyHistogram> histograms;
+
+    public EventMetrics(String listener) {
+        this(MetricRegistry.getDefault(), listener);
+    }
+
+    public EventMetrics(MetricRegistry registry, String listener) {
+        this.histograms = new ClassValue<LatencyHistogram>() {
+            @Override
+            protected LatencyHistogram computeValue(Class<?> type) {
+                return registry.histogram("event_handler_seconds", "Time spent handling JDA events",
+                                          "listener", listener, "event", type.getSimpleName());
+            }
+        };
+    }
+
+    /**
+     * Records the time since {@code start} for this type of event.
+     */
+    public void record(Object event, long start) {
+        histograms.get(event.getClass()).stop(start);
+    }
+}
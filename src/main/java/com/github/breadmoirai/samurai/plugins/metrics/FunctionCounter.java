@@ -0,0 +1,34 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.breadmoirai.samurai.plugins.metrics;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * A counter whose total is kept by another object and read when metrics are collected. The supplier must never
+ * decrease.
+ */
+public class FunctionCounter extends Gauge {
+
+    public FunctionCounter(DoubleSupplier supplier) {
+        super(supplier);
+    }
+
+    @Override
+    public String getType() {
+        return "counter";
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.breadmoirai.samurai.plugins.metrics;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * A value that is read when metrics are collected.
+ */
+public class Gauge implements Metric {
+
+    private final DoubleSupplier supplier;
+
+    public Gauge(DoubleSupplier supplier) {
+        this.supplier = supplier;
+    }
+
+    public double get() {
+        try {
+            return supplier.getAsDouble();
+        } catch (RuntimeException e) {
+            return Double.NaN;
+        }
+    }
+
+    @Override
+    public String getType() {
+        return "gauge";
+    }
+
+    @Override
+    public void writePrometheus(String name, String labels, StringBuilder sb) {
+        sb.append(name).append(MetricRegistry.braces(labels)).append(' ').append(get()).append('\n');
+    }
+
+    @Override
+    public String summarize() {
+        final double value = get();
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.format("%.3f", value);
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.breadmoirai.samurai.plugins.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations in nanoseconds with log-linear buckets, in the style of HdrHistogram.
+ * <p>
+ * Every power of two is split into {@value SUB_BUCKETS} linear buckets, so any recorded value is reported within about
+ * 3% of its real value while the whole range of a long fits in under two thousand buckets. Recording is lock-free.
+ */
+public class LatencyHistogram implements Metric {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @return a start time to pass to {@link #stop(long)}
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    public void stop(long start) {
+        record(System.nanoTime() - start);
+    }
+
+    public void time(Runnable runnable) {
+        final long start = System.nanoTime();
+        try {
+            runnable.run();
+        } finally {
+            stop(start);
+        }
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(index(nanos));
+        count.increment();
+        sum.add(nanos);
+        long m;
+        while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos)) ;
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * @return the middle of the range of values that fall into this bucket
+     */
+    static long valueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKETS - 1;
+        final long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + ((1L << shift) >>> 1);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSumNanos() {
+        return sum.sum();
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    public double getMeanNanos() {
+        final long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return the approximate value at this quantile in nanoseconds
+     */
+    public long getQuantileNanos(double quantile) {
+        return getQuantilesNanos(quantile)[0];
+    }
+
+    /**
+     * Computes several quantiles in a single pass over the buckets.
+     *
+     * @param quantiles in ascending order
+     */
+    public long[] getQuantilesNanos(double... quantiles) {
+        final long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        final long[] values = new long[quantiles.length];
+        if (total == 0) return values;
+        int q = 0;
+        long seen = 0;
+        for (int i = 0; i < BUCKETS && q < quantiles.length; i++) {
+            seen += snapshot[i];
+            while (q < quantiles.length && seen >= Math.max(1, (long) Math.ceil(quantiles[q] * total))) {
+                values[q++] = Math.min(valueOf(i), max.get());
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public String getType() {
+        return "summary";
+    }
+
+    @Override
+    public void writePrometheus(String name, String labels, StringBuilder sb) {
+        final long[] values = getQuantilesNanos(QUANTILES);
+        final String prefix = labels.isEmpty() ? "" : labels + ",";
+        for (int i = 0; i < QUANTILES.length; i++) {
+            sb.append(name).append('{').append(prefix).append("quantile=\"").append(QUANTILES[i]).append("\"} ")
+              .append(values[i] / 1e9).append('\n');
+        }
+        sb.append(name).append("_sum").append(MetricRegistry.braces(labels)).append(' ').append(getSumNanos() / 1e9).append('\n');
+        sb.append(name).append("_count").append(MetricRegistry.braces(labels)).append(' ').append(getCount()).append('\n');
+    }
+
+    @Override
+    public String summarize() {
+        final long[] values = getQuantilesNanos(0.5, 0.99);
+        return String.format("n=%d p50=%s p99=%s max=%s", getCount(), format(values[0]), format(values[1]), format(getMaxNanos()));
+    }
+
+    private static String format(long nanos) {
+        if (nanos < 1_000_000) return String.format("%.1fus", nanos / 1e3);
+        if (nanos < 1_000_000_000) return String.format("%.1fms", nanos / 1e6);
+        return String.format("%.2fs", nanos / 1e9);
+    }
+}
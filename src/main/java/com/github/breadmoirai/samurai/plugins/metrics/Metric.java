@@ -0,0 +1,37 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.breadmoirai.samurai.plugins.metrics;
+
+public interface Metric {
+
+    /**
+     * @return the Prometheus type of this metric
+     */
+    String getType();
+
+    /**
+     * Appends this metric in the Prometheus text format.
+     *
+     * @param name   the name of the metric
+     * @param labels the rendered labels without braces, may be empty
+     */
+    void writePrometheus(String name, String labels, StringBuilder sb);
+
+    /**
+     * @return a short human readable value
+     */
+    String summarize();
+}
@@ -0,0 +1,179 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.breadmoirai.samurai.plugins.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Holds every metric of the bot, grouped into families by name and distinguished by labels.
+ * <p>
+ * Labels are passed as alternating keys and values, for example
+ * {@code registry.counter("commands_total", "Commands handled", "type", "Dispatchable")}.
+ * Looking up a metric builds a key string, so callers on hot paths should keep the returned metric instead of looking
+ * it up again.
+ */
+public class MetricRegistry {
+
+    private static final MetricRegistry DEFAULT = new MetricRegistry();
+
+    private final ConcurrentMap<String, Family> families = new ConcurrentSkipListMap<>();
+
+    /**
+     * @return the registry shared by the whole bot
+     */
+    public static MetricRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    public Counter counter(String name, String help, String... labels) {
+        return get(name, help, labels, "counter", Counter.class, Counter::new);
+    }
+
+    /**
+     * Registers a counter whose total is read from the supplier, for totals that are already kept elsewhere. If a
+     * counter with the same name and labels already exists it is replaced.
+     */
+    public FunctionCounter counter(String name, String help, DoubleSupplier supplier, String... labels) {
+        final FunctionCounter counter = new FunctionCounter(supplier);
+        family(name, help, counter.getType()).metrics.put(renderLabels(labels), counter);
+        return counter;
+    }
+
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return get(name, help, labels, "summary", LatencyHistogram.class, LatencyHistogram::new);
+    }
+
+    /**
+     * Registers a gauge. If a gauge with the same name and labels already exists it is replaced.
+     */
+    public Gauge gauge(String name, String help, DoubleSupplier supplier, String... labels) {
+        final Gauge gauge = new Gauge(supplier);
+        family(name, help, gauge.getType()).metrics.put(renderLabels(labels), gauge);
+        return gauge;
+    }
+
+    public void remove(String name, String... labels) {
+        final Family family = families.get(name);
+        if (family != null) {
+            family.metrics.remove(renderLabels(labels));
+        }
+    }
+
+    private <M extends Metric> M get(String name, String help, String[] labels, String typeName, Class<M> type, Supplier<M> constructor) {
+        final Family family = family(name, help, typeName);
+        final Metric metric = family.metrics.computeIfAbsent(renderLabels(labels), key -> constructor.get());
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("Metric " + name + " is a " + metric.getClass().getSimpleName());
+        }
+        return type.cast(metric);
+    }
+
+    private Family family(String name, String help, String type) {
+        final Family family = families.computeIfAbsent(name, n -> new Family(help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is a " + family.type + " not a " + type);
+        }
+        return family;
+    }
+
+    static String renderLabels(String[] labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be key value pairs");
+        }
+        if (labels.length == 0) return "";
+        final Map<String, String> sorted = new TreeMap<>();
+        for (int i = 0; i < labels.length; i += 2) {
+            sorted.put(labels[i], labels[i + 1]);
+        }
+        final StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> entry : sorted.entrySet()) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(entry.getKey()).append("=\"");
+            final String value = entry.getValue();
+            for (int i = 0; i < value.length(); i++) {
+                final char c = value.charAt(i);
+                switch (c) {
+                    case '\\':
+                        sb.append("\\\\");
+                        break;
+                    case '"':
+                        sb.append("\\\"");
+                        break;
+                    case '\n':
+                        sb.append("\\n");
+                        break;
+                    default:
+                        sb.append(c);
+                }
+            }
+            sb.append('"');
+        }
+        return sb.toString();
+    }
+
+    static String braces(String labels) {
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+
+    /**
+     * @return every metric in the Prometheus text exposition format
+     */
+    public String toPrometheus() {
+        final StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            final String name = entry.getKey();
+            final Family family = entry.getValue();
+            sb.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            sb.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Metric> metric : family.metrics.entrySet()) {
+                metric.getValue().writePrometheus(name, metric.getKey(), sb);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param filter only metrics whose name contains this are included, may be empty
+     * @return one line per metric
+     */
+    public String summarize(String filter) {
+        final StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            final String name = entry.getKey();
+            if (!name.contains(filter)) continue;
+            for (Map.Entry<String, Metric> metric : entry.getValue().metrics.entrySet()) {
+                sb.append(name).append(braces(metric.getKey())).append(' ').append(metric.getValue().summarize()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static class Family {
+        private final String help;
+        private final String type;
+        private final ConcurrentMap<String, Metric> metrics = new ConcurrentSkipListMap<>();
+
+        private Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
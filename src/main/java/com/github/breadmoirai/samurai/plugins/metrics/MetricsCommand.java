@@ -0,0 +1,48 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.breadmoirai.samurai.plugins.metrics;
+
+import com.github.breadmoirai.breadbot.framework.annotation.Name;
+import com.github.breadmoirai.breadbot.framework.annotation.command.MainCommand;
+import com.github.breadmoirai.breadbot.framework.event.CommandEvent;
+import com.github.breadmoirai.breadbot.plugins.owner.Owner;
+
+public class MetricsCommand {
+
+    private static final int MAX_LENGTH = 1990;
+
+    private final MetricRegistry registry;
+
+    public MetricsCommand(MetricRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Owner
+    @MainCommand("metrics")
+    @Name("metrics")
+    public String onCommand(CommandEvent event) {
+        final String content = event.getContent();
+        final String filter = content == null ? "" : content.trim();
+        String summary = registry.summarize(filter);
+        if (summary.isEmpty()) {
+            return "No metrics match `" + filter + "`";
+        }
+        if (summary.length() > MAX_LENGTH) {
+            summary = summary.substring(0, summary.lastIndexOf('\n', MAX_LENGTH)) + "\n...";
+        }
+        return "```\n" + summary + "```";
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.breadmoirai.samurai.plugins.metrics;
+
+import com.github.breadmoirai.breadbot.framework.BreadBot;
+import com.github.breadmoirai.breadbot.framework.CommandPlugin;
+import com.github.breadmoirai.breadbot.framework.builder.BreadBotBuilder;
+import net.dv8tion.jda.core.events.Event;
+import net.dv8tion.jda.core.events.ShutdownEvent;
+import net.dv8tion.jda.core.hooks.EventListener;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Adds the owner-only {@code metrics} command and, if a port is given, serves the metrics on localhost for Prometheus.
+ */
+public class MetricsPlugin implements CommandPlugin, EventListener {
+
+    private final MetricRegistry registry;
+    private final int port;
+    private MetricsServer server;
+
+    /**
+     * @param port the local port to serve metrics on, or 0 to disable the endpoint
+     */
+    public MetricsPlugin(int port) {
+        this.registry = MetricRegistry.getDefault();
+        this.port = port;
+    }
+
+    public MetricRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Registers gauges for the queue and threads of an executor, and a counter of the tasks it completed.
+     */
+    public static void monitorExecutor(String name, ThreadPoolExecutor executor) {
+        final MetricRegistry registry = MetricRegistry.getDefault();
+        registry.gauge("executor_queue_depth", "Tasks waiting in the queue of an executor", () -> executor.getQueue().size(), "executor", name);
+        registry.gauge("executor_active_threads", "Threads running a task", executor::getActiveCount, "executor", name);
+        registry.counter("executor_completed_tasks_total", "Tasks completed by an executor", executor::getCompletedTaskCount, "executor", name);
+    }
+
+    @Override
+    public void initialize(BreadBotBuilder builder) {
+        final Runtime runtime = Runtime.getRuntime();
+        registry.gauge("jvm_memory_used_bytes", "Heap currently in use", () -> runtime.totalMemory() - runtime.freeMemory());
+        registry.gauge("jvm_memory_max_bytes", "Maximum heap size", runtime::maxMemory);
+        registry.gauge("jvm_threads", "Live threads", Thread::activeCount);
+        builder.addCommand(new MetricsCommand(registry));
+    }
+
+    @Override
+    public void onBreadReady(BreadBot client) {
+        if (port <= 0 || server != null) return;
+        try {
+            server = new MetricsServer(registry, "127.0.0.1", port);
+            server.start();
+        } catch (IOException e) {
+            System.err.println("Could not start the metrics server on port " + port);
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void onEvent(Event event) {
+        if (event instanceof ShutdownEvent && server != null) {
+            server.stop();
+        }
+    }
+}
@@ -1,6 +1,12 @@
 package com.github.breadmoirai.samurai.plugins.music;
 
+import com.github.breadmoirai.samurai.plugins.metrics.Counter;
+import com.github.breadmoirai.samurai.plugins.metrics.LatencyHistogram;
+import com.github.breadmoirai.samurai.plugins.metrics.MetricRegistry;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.player.event.AudioEventAdapter;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackEndReason;
 import com.sedmelluq.discord.lavaplayer.track.playback.AudioFrame;
 import net.dv8tion.jda.core.audio.AudioSendHandler;
 
@@ -15,41 +21,146 @@ import net.dv8tion.jda.core.audio.AudioSendHandler;
  * before every call to provide20MsAudio(), we pull the frame in canProvide() and use the frame we already pulled in
  * <p>
  * provide20MsAudio().
+ * <p>
+ * Every call tops up a ring of frames pulled ahead from the player, so that a short stall in frame production is
+ * absorbed instead of heard. The ring holds the frames themselves rather than copies, since opus frames differ in
+ * length and JDA sends exactly the array it is given. Frames left over from a track that was stopped or replaced are
+ * dropped, and nothing is sent while the player is paused.
  */
-public class AudioPlayerSendHandler implements AudioSendHandler {
+public class AudioPlayerSendHandler extends AudioEventAdapter implements AudioSendHandler {
+
+    public static final int DEFAULT_LOOKAHEAD_FRAMES = 10;
+    private static final long FRAME_NANOS = 20_000_000L;
+    /**
+     * Longer intervals are pauses between tracks rather than jitter.
+     */
+    private static final long MAX_JITTER_NANOS = 1_000_000_000L;
 
     private final AudioPlayer audioPlayer;
-    private AudioFrame lastFrame;
+    private final AudioFrame[] ring;
+    private int head;
+    private int size;
+    private long lastProvided;
 
+    private final String guild;
+    private final Counter underruns;
+    private final LatencyHistogram jitter;
 
     /**
      * @param audioPlayer Audio player to wrap.
      */
 
     public AudioPlayerSendHandler(AudioPlayer audioPlayer) {
+        this(audioPlayer, 0, DEFAULT_LOOKAHEAD_FRAMES);
+    }
+
+    /**
+     * @param audioPlayer     Audio player to wrap.
+     * @param guildId         the guild, used to label the metrics
+     * @param lookaheadFrames the most frames of 20ms pulled ahead of time
+     */
+    public AudioPlayerSendHandler(AudioPlayer audioPlayer, long guildId, int lookaheadFrames) {
         this.audioPlayer = audioPlayer;
+        this.ring = new AudioFrame[Math.max(1, lookaheadFrames)];
+        this.guild = Long.toString(guildId);
+        final MetricRegistry registry = MetricRegistry.getDefault();
+        underruns = registry.counter("music_send_underruns_total", "Times a frame was due while a track played but none was ready", "guild", guild);
+        // one histogram for every guild, since each one is a couple thousand buckets
+        jitter = registry.histogram("music_send_jitter_seconds", "How far the interval between sent frames strayed from 20ms");
+        registry.gauge("music_send_buffer_depth", "Frames pulled ahead of the send loop", this::getBufferedFrames, "guild", guild);
+    }
+
+    @Override
+    public synchronized boolean canProvide() {
+        if (audioPlayer.isPaused()) {
+            return false;
+        }
+        fill();
+        if (size == 0) {
+            if (audioPlayer.getPlayingTrack() != null) {
+                underruns.increment();
+            }
+            return false;
+        }
+        return true;
     }
 
 
     @Override
-    public boolean canProvide() {
-        if (lastFrame == null) {
-            lastFrame = audioPlayer.provide();
+    public synchronized byte[] provide20MsAudio() {
+        fill();
+        if (size == 0) {
+            return null;
+        }
+        final AudioFrame frame = ring[head];
+        ring[head] = null;
+        head = (head + 1) % ring.length;
+        size--;
+
+        final long now = System.nanoTime();
+        if (lastProvided != 0 && now - lastProvided < MAX_JITTER_NANOS) {
+            jitter.record(Math.abs(now - lastProvided - FRAME_NANOS));
         }
-        return lastFrame != null;
+        lastProvided = now;
+        return frame.data;
     }
 
+    /**
+     * Pulls frames until the ring is full or the player has none ready. Never blocks.
+     */
+    private void fill() {
+        while (size < ring.length) {
+            final AudioFrame frame = audioPlayer.provide();
+            if (frame == null) {
+                return;
+            }
+            ring[(head + size) % ring.length] = frame;
+            size++;
+        }
+    }
+
+    private synchronized void clear() {
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = null;
+        }
+        head = 0;
+        size = 0;
+    }
 
     @Override
-    public byte[] provide20MsAudio() {
-        if (lastFrame == null) {
-            lastFrame = audioPlayer.provide();
+    public void onTrackEnd(AudioPlayer player, AudioTrack track, AudioTrackEndReason endReason) {
+        // the tail of a finished track is still meant to be heard
+        if (endReason == AudioTrackEndReason.STOPPED || endReason == AudioTrackEndReason.REPLACED
+                || endReason == AudioTrackEndReason.CLEANUP) {
+            clear();
+        }
+    }
+
+    public synchronized int getBufferedFrames() {
+        return size;
+    }
+
+    public synchronized long getBufferedBytes() {
+        long bytes = 0;
+        for (int i = 0; i < size; i++) {
+            bytes += ring[(head + i) % ring.length].data.length;
         }
-        byte[] data = lastFrame != null ? lastFrame.data : null;
-        lastFrame = null;
-        return data;
+        return bytes;
+    }
+
+    public long getUnderruns() {
+        return underruns.get();
     }
 
+    /**
+     * Drops the buffered frames and the metrics of this guild. The shared jitter histogram is kept.
+     */
+    public void close() {
+        clear();
+        final MetricRegistry registry = MetricRegistry.getDefault();
+        registry.remove("music_send_underruns_total", "guild", guild);
+        registry.remove("music_send_buffer_depth", "guild", guild);
+    }
 
     @Override
     public boolean isOpus() {
@@ -21,14 +21,30 @@ import com.github.breadmoirai.breadbot.framework.command.CommandResultHandler;
 import com.github.breadmoirai.breadbot.framework.event.CommandEvent;
 import com.github.breadmoirai.breadbot.plugins.waiter.EventWaiter;
 import com.github.breadmoirai.samurai.Dispatchable;
+import com.github.breadmoirai.samurai.plugins.metrics.LatencyHistogram;
+import com.github.breadmoirai.samurai.plugins.metrics.MetricRegistry;
 
 public class DispatchableDispatcher implements CommandResultHandler<Dispatchable> {
 
+    private final ClassValue<LatencyHistogram> dispatchTime;
+
     public DispatchableDispatcher() {
+        final MetricRegistry registry = MetricRegistry.getDefault();
+        dispatchTime = new ClassValue<LatencyHistogram>() {
+            @Override
+            protected LatencyHistogram computeValue(Class<?> type) {
+                return registry.histogram("command_dispatch_seconds", "Time spent dispatching command results", "result", type.getSimpleName());
+            }
+        };
     }
 
     @Override
     public void handleResult(Command command, CommandEvent event, Dispatchable result) {
-        result.dispatch(event.getTextChannel());
+        final long start = System.nanoTime();
+        try {
+            result.dispatch(event.getTextChannel());
+        } finally {
+            dispatchTime.get(result.getClass()).stop(start);
+        }
     }
 }
@@ -14,6 +14,7 @@
 */
 package com.github.breadmoirai.samurai.plugins.music;
 
+import com.github.breadmoirai.samurai.plugins.metrics.MetricRegistry;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
 import net.dv8tion.jda.core.entities.VoiceChannel;
@@ -27,7 +28,20 @@ import net.dv8tion.jda.core.managers.AudioManager;
 
 public class GuildAudioManager {
 
+    /**
+     * Rough size of an AudioTrack with its info, used to estimate memory.
+     */
+    private static final long TRACK_BYTES = 1024;
+    /**
+     * Rough size of an opus frame with its object, at the default bitrate.
+     */
+    private static final long FRAME_BYTES = 256;
+
     private AudioManager audioManager;
+    private final AudioPlayerSendHandler sendHandler;
+    private final String guild;
+    private final int playerBufferFrames;
+    private volatile long lastActive;
 
     /**
      * Audio player for the guild.
@@ -41,15 +55,23 @@ public class GuildAudioManager {
 
     GuildAudioManager(AudioPlayerManager manager, AudioManager audiomanager, MusicPlugin plugin) {
         player = manager.createPlayer();
-        scheduler = new TrackScheduler(plugin, player);
+        final long guildId = audiomanager.getGuild().getIdLong();
+        guild = Long.toString(guildId);
+        playerBufferFrames = manager.getFrameBufferDuration() / 20;
+        scheduler = new TrackScheduler(plugin, player, guildId);
         player.addListener(scheduler);
+        sendHandler = new AudioPlayerSendHandler(player, guildId, plugin.getSendLookahead());
+        player.addListener(sendHandler);
         this.audioManager = audiomanager;
-        audiomanager.setSendingHandler(new AudioPlayerSendHandler(player));
+        audiomanager.setSendingHandler(sendHandler);
+        lastActive = System.nanoTime();
+        MetricRegistry.getDefault().gauge("music_player_memory_bytes", "Estimated memory held by the player of each guild", this::estimateMemory, "guild", guild);
     }
 
     boolean openAudioConnection(VoiceChannel channel) {
         try {
             audioManager.openAudioConnection(channel);
+            touch();
             return true;
         }
         catch(IllegalArgumentException | PermissionException e) {
@@ -61,6 +83,50 @@ public class GuildAudioManager {
         player.destroy();
         scheduler.clear();
         audioManager.closeAudioConnection();
+        sendHandler.close();
+        MetricRegistry.getDefault().remove("music_player_memory_bytes", "guild", guild);
+    }
+
+    /**
+     * A player is active while a track is playing or paused and someone other than a bot is there to hear it, or while
+     * it is still connecting.
+     */
+    public boolean isActive() {
+        if (audioManager.isAttemptingToConnect()) {
+            return true;
+        }
+        final VoiceChannel channel = audioManager.getConnectedChannel();
+        if (channel == null || player.getPlayingTrack() == null) {
+            return false;
+        }
+        return channel.getMembers().stream().anyMatch(member -> !member.getUser().isBot());
+    }
+
+    public void touch() {
+        lastActive = System.nanoTime();
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} at which this player was last active
+     */
+    public long getLastActive() {
+        return lastActive;
+    }
+
+    /**
+     * An estimate of the memory held by this player: its tracks, the frames lavaplayer buffers while a track plays,
+     * and the frames buffered for sending.
+     */
+    public long estimateMemory() {
+        long bytes = (scheduler.getQueueSize() + scheduler.getHistory().size() + 1) * TRACK_BYTES;
+        if (player.getPlayingTrack() != null) {
+            bytes += playerBufferFrames * FRAME_BYTES;
+        }
+        return bytes + sendHandler.getBufferedBytes();
+    }
+
+    public AudioPlayerSendHandler getSendHandler() {
+        return sendHandler;
     }
 
     public AudioManager getManager() {
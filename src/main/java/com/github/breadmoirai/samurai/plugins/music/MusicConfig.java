@@ -0,0 +1,269 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.breadmoirai.samurai.plugins.music;
+
+import com.github.breadmoirai.samurai.util.MessageEditCoalescer;
+import com.sedmelluq.discord.lavaplayer.player.AudioConfiguration;
+import com.sedmelluq.discord.lavaplayer.player.DefaultAudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.source.bandcamp.BandcampAudioSourceManager;
+import com.sedmelluq.discord.lavaplayer.source.beam.BeamAudioSourceManager;
+import com.sedmelluq.discord.lavaplayer.source.http.HttpAudioSourceManager;
+import com.sedmelluq.discord.lavaplayer.source.soundcloud.SoundCloudAudioSourceManager;
+import com.sedmelluq.discord.lavaplayer.source.twitch.TwitchStreamAudioSourceManager;
+import com.sedmelluq.discord.lavaplayer.source.vimeo.VimeoAudioSourceManager;
+import com.sedmelluq.discord.lavaplayer.source.youtube.YoutubeAudioSourceManager;
+import com.typesafe.config.Config;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings for the music runtime, read from the {@code music} section of the application config. Every setting is
+ * optional and falls back to the default lavaplayer or this plugin would otherwise use.
+ */
+public class MusicConfig {
+
+    public static final String YOUTUBE = "youtube";
+    public static final String SOUNDCLOUD = "soundcloud";
+    public static final String BANDCAMP = "bandcamp";
+    public static final String VIMEO = "vimeo";
+    public static final String TWITCH = "twitch";
+    public static final String BEAM = "beam";
+    public static final String HTTP = "http";
+
+    public static final int DEFAULT_FRAME_BUFFER_MILLIS = 5000;
+    public static final int DEFAULT_ITEM_LOADER_THREADS = 10;
+    public static final int DEFAULT_SCHEDULER_THREADS = 2;
+
+    private int frameBufferMillis = DEFAULT_FRAME_BUFFER_MILLIS;
+    private int opusQuality = AudioConfiguration.OPUS_QUALITY_MAX;
+    private int itemLoaderThreads = DEFAULT_ITEM_LOADER_THREADS;
+    private int schedulerThreads = DEFAULT_SCHEDULER_THREADS;
+    private Set<String> sources = new HashSet<>(Arrays.asList(YOUTUBE, SOUNDCLOUD, BANDCAMP, VIMEO, TWITCH, BEAM, HTTP));
+    private long youtubeDailyQuota = QuotaTracker.DEFAULT_DAILY_UNITS;
+    private double autoPlayPrefetch = MusicPlugin.DEFAULT_AUTOPLAY_PREFETCH;
+    private int sendLookahead = AudioPlayerSendHandler.DEFAULT_LOOKAHEAD_FRAMES;
+    private long idleMinutes = MusicPlugin.DEFAULT_IDLE_MINUTES;
+    private long editIntervalMillis = MessageEditCoalescer.DEFAULT_INTERVAL_MILLIS;
+
+    /**
+     * @param config the application config
+     * @return the settings under {@code music}, or the defaults if there are none
+     */
+    public static MusicConfig load(Config config) {
+        final MusicConfig music = new MusicConfig();
+        if (!config.hasPath("music")) {
+            return music;
+        }
+        final Config c = config.getConfig("music");
+        if (c.hasPath("frame_buffer_ms")) music.setFrameBufferMillis(c.getInt("frame_buffer_ms"));
+        if (c.hasPath("opus_quality")) music.setOpusQuality(c.getInt("opus_quality"));
+        if (c.hasPath("item_loader_threads")) music.setItemLoaderThreads(c.getInt("item_loader_threads"));
+        if (c.hasPath("scheduler_threads")) music.setSchedulerThreads(c.getInt("scheduler_threads"));
+        if (c.hasPath("youtube_daily_quota")) music.setYoutubeDailyQuota(c.getLong("youtube_daily_quota"));
+        if (c.hasPath("autoplay_prefetch")) music.setAutoPlayPrefetch(c.getDouble("autoplay_prefetch"));
+        if (c.hasPath("send_lookahead")) music.setSendLookahead(c.getInt("send_lookahead"));
+        if (c.hasPath("idle_minutes")) music.setIdleMinutes(c.getLong("idle_minutes"));
+        if (c.hasPath("edit_interval_ms")) music.setEditIntervalMillis(c.getLong("edit_interval_ms"));
+        if (c.hasPath("sources")) {
+            final Config sources = c.getConfig("sources");
+            for (String source : sources.root().keySet()) {
+                music.setSourceEnabled(source, sources.getBoolean(source));
+            }
+        }
+        return music;
+    }
+
+    /**
+     * Creates a player manager with these settings, with only the enabled sources registered.
+     */
+    DefaultAudioPlayerManager createPlayerManager() {
+        final DefaultAudioPlayerManager manager = new DefaultAudioPlayerManager();
+        manager.setFrameBufferDuration(frameBufferMillis);
+        manager.setItemLoaderThreadPoolSize(itemLoaderThreads);
+        manager.getConfiguration().setOpusEncodingQuality(opusQuality);
+        // registered in the same order as AudioSourceManagers#registerRemoteSources
+        if (isSourceEnabled(YOUTUBE)) manager.registerSourceManager(new YoutubeAudioSourceManager(true));
+        if (isSourceEnabled(SOUNDCLOUD)) manager.registerSourceManager(new SoundCloudAudioSourceManager(true));
+        if (isSourceEnabled(BANDCAMP)) manager.registerSourceManager(new BandcampAudioSourceManager());
+        if (isSourceEnabled(VIMEO)) manager.registerSourceManager(new VimeoAudioSourceManager());
+        if (isSourceEnabled(TWITCH)) manager.registerSourceManager(new TwitchStreamAudioSourceManager());
+        if (isSourceEnabled(BEAM)) manager.registerSourceManager(new BeamAudioSourceManager());
+        if (isSourceEnabled(HTTP)) manager.registerSourceManager(new HttpAudioSourceManager());
+        return manager;
+    }
+
+    public int getFrameBufferMillis() {
+        return frameBufferMillis;
+    }
+
+    /**
+     * @param frameBufferMillis how much audio lavaplayer decodes ahead of playback for each player
+     */
+    public MusicConfig setFrameBufferMillis(int frameBufferMillis) {
+        if (frameBufferMillis < 200) {
+            throw new IllegalArgumentException("The frame buffer must hold at least 200ms");
+        }
+        this.frameBufferMillis = frameBufferMillis;
+        return this;
+    }
+
+    public int getOpusQuality() {
+        return opusQuality;
+    }
+
+    /**
+     * @param opusQuality 0-10, lower spends less cpu on encoding sources that are not already opus
+     */
+    public MusicConfig setOpusQuality(int opusQuality) {
+        if (opusQuality < 0 || opusQuality > AudioConfiguration.OPUS_QUALITY_MAX) {
+            throw new IllegalArgumentException("The opus quality must be between 0 and " + AudioConfiguration.OPUS_QUALITY_MAX);
+        }
+        this.opusQuality = opusQuality;
+        return this;
+    }
+
+    public int getItemLoaderThreads() {
+        return itemLoaderThreads;
+    }
+
+    public MusicConfig setItemLoaderThreads(int itemLoaderThreads) {
+        if (itemLoaderThreads < 1) {
+            throw new IllegalArgumentException("At least one item loader thread is needed");
+        }
+        this.itemLoaderThreads = itemLoaderThreads;
+        return this;
+    }
+
+    public int getSchedulerThreads() {
+        return schedulerThreads;
+    }
+
+    /**
+     * @param schedulerThreads threads of the scheduler used for autoplay and other music timers
+     */
+    public MusicConfig setSchedulerThreads(int schedulerThreads) {
+        if (schedulerThreads < 1) {
+            throw new IllegalArgumentException("At least one scheduler thread is needed");
+        }
+        this.schedulerThreads = schedulerThreads;
+        return this;
+    }
+
+    public boolean isSourceEnabled(String source) {
+        return sources.contains(source);
+    }
+
+    public Set<String> getSources() {
+        return Collections.unmodifiableSet(sources);
+    }
+
+    public MusicConfig setSourceEnabled(String source, boolean enabled) {
+        switch (source) {
+            case YOUTUBE:
+            case SOUNDCLOUD:
+            case BANDCAMP:
+            case VIMEO:
+            case TWITCH:
+            case BEAM:
+            case HTTP:
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown source: " + source);
+        }
+        if (enabled) {
+            sources.add(source);
+        } else {
+            sources.remove(source);
+        }
+        return this;
+    }
+
+    public long getYoutubeDailyQuota() {
+        return youtubeDailyQuota;
+    }
+
+    public MusicConfig setYoutubeDailyQuota(long youtubeDailyQuota) {
+        if (youtubeDailyQuota < 0) {
+            throw new IllegalArgumentException("The quota cannot be negative");
+        }
+        this.youtubeDailyQuota = youtubeDailyQuota;
+        return this;
+    }
+
+    public double getAutoPlayPrefetch() {
+        return autoPlayPrefetch;
+    }
+
+    /**
+     * @see MusicPlugin#setAutoPlayPrefetch(double)
+     */
+    public MusicConfig setAutoPlayPrefetch(double autoPlayPrefetch) {
+        if (autoPlayPrefetch < 0 || autoPlayPrefetch > 1) {
+            throw new IllegalArgumentException("The prefetch point must be between 0 and 1");
+        }
+        this.autoPlayPrefetch = autoPlayPrefetch;
+        return this;
+    }
+
+    public int getSendLookahead() {
+        return sendLookahead;
+    }
+
+    /**
+     * @see MusicPlugin#setSendLookahead(int)
+     */
+    public MusicConfig setSendLookahead(int sendLookahead) {
+        if (sendLookahead < 1) {
+            throw new IllegalArgumentException("At least one frame must be buffered");
+        }
+        this.sendLookahead = sendLookahead;
+        return this;
+    }
+
+    public long getIdleMinutes() {
+        return idleMinutes;
+    }
+
+    /**
+     * @see MusicPlugin#setIdleTimeout(long, TimeUnit)
+     */
+    public MusicConfig setIdleMinutes(long idleMinutes) {
+        if (idleMinutes <= 0) {
+            throw new IllegalArgumentException("The idle timeout must be positive");
+        }
+        this.idleMinutes = idleMinutes;
+        return this;
+    }
+
+    public long getEditIntervalMillis() {
+        return editIntervalMillis;
+    }
+
+    /**
+     * @param editIntervalMillis the least time between two edits of a track loading message
+     */
+    public MusicConfig setEditIntervalMillis(long editIntervalMillis) {
+        if (editIntervalMillis < 0) {
+            throw new IllegalArgumentException("The edit interval cannot be negative");
+        }
+        this.editIntervalMillis = editIntervalMillis;
+        return this;
+    }
+}
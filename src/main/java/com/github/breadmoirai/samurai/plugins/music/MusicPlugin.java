@@ -20,6 +20,10 @@ import com.github.breadmoirai.breadbot.framework.builder.BreadBotBuilder;
 import com.github.breadmoirai.breadbot.framework.error.BreadBotException;
 import com.github.breadmoirai.breadbot.plugins.waiter.EventWaiterPlugin;
 import com.github.breadmoirai.samurai.Dispatchable;
+import com.github.breadmoirai.samurai.plugins.derby.DerbyDatabase;
+import com.github.breadmoirai.samurai.plugins.metrics.Counter;
+import com.github.breadmoirai.samurai.plugins.metrics.EventMetrics;
+import com.github.breadmoirai.samurai.plugins.metrics.MetricRegistry;
 import com.github.breadmoirai.samurai.plugins.music.commands.AutoPlay;
 import com.github.breadmoirai.samurai.plugins.music.commands.CanPlay;
 import com.github.breadmoirai.samurai.plugins.music.commands.History;
@@ -33,20 +37,28 @@ import com.github.breadmoirai.samurai.plugins.music.commands.Related;
 import com.github.breadmoirai.samurai.plugins.music.commands.Repeat;
 import com.github.breadmoirai.samurai.plugins.music.commands.Shuffle;
 import com.github.breadmoirai.samurai.plugins.music.commands.Skip;
+import com.github.breadmoirai.samurai.util.MessageEditCoalescer;
 import com.sedmelluq.discord.lavaplayer.player.AudioLoadResultHandler;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
-import com.sedmelluq.discord.lavaplayer.player.DefaultAudioPlayerManager;
-import com.sedmelluq.discord.lavaplayer.source.AudioSourceManagers;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageInput;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageOutput;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.DecodedTrackHolder;
 import net.dv8tion.jda.core.entities.VoiceChannel;
 import net.dv8tion.jda.core.events.Event;
 import net.dv8tion.jda.core.events.ShutdownEvent;
 import net.dv8tion.jda.core.hooks.EventListener;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author TonTL
@@ -54,22 +66,53 @@ import java.util.concurrent.ScheduledFuture;
  */
 public class MusicPlugin implements CommandPlugin, EventListener {
 
+    private static final long JOURNAL_FLUSH_SECONDS = 1;
+    private static final long REAP_INTERVAL_SECONDS = 30;
+    public static final double DEFAULT_AUTOPLAY_PREFETCH = 0.8;
+    public static final long DEFAULT_IDLE_MINUTES = 5;
+
     private final YoutubeAPI youtube;
 
     private final AudioPlayerManager playerManager;
+    private final TrackCache trackCache;
     private final ConcurrentHashMap<Long, GuildAudioManager> audioManagers;
-    private final ConcurrentHashMap<Long, ScheduledFuture> terminationTask;
     private final ScheduledExecutorService executor;
+    private final MessageEditCoalescer editCoalescer;
+    private final EventMetrics eventMetrics = new EventMetrics("music");
 
     private DispatchableDispatcher handler;
+    private QueueJournal journal;
+    private DerbyDatabase database;
+    private volatile double autoPlayPrefetch = DEFAULT_AUTOPLAY_PREFETCH;
+    private volatile int sendLookahead = AudioPlayerSendHandler.DEFAULT_LOOKAHEAD_FRAMES;
+    private volatile long idleTimeoutNanos = TimeUnit.MINUTES.toNanos(DEFAULT_IDLE_MINUTES);
+    private volatile int activePlayers;
+    private final Counter reapedPlayers;
 
     public MusicPlugin(String youtubeKey, ScheduledExecutorService executor) {
-        youtube = new YoutubeAPI(youtubeKey);
+        this(youtubeKey, new MusicConfig(), executor);
+    }
+
+    /**
+     * @param executor runs autoplay, prefetching, journal flushes, cached track results and the idle sweep. Autoplay
+     *                 blocks on the youtube api, so this should not be an executor that other plugins rely on for
+     *                 timely timeouts.
+     */
+    public MusicPlugin(String youtubeKey, MusicConfig config, ScheduledExecutorService executor) {
+        youtube = new YoutubeAPI(youtubeKey, config.getYoutubeDailyQuota());
         this.executor = executor;
-        playerManager = new DefaultAudioPlayerManager();
-        AudioSourceManagers.registerRemoteSources(playerManager);
+        playerManager = config.createPlayerManager();
+        trackCache = new TrackCache(playerManager, executor);
+        autoPlayPrefetch = config.getAutoPlayPrefetch();
+        sendLookahead = config.getSendLookahead();
+        idleTimeoutNanos = TimeUnit.MINUTES.toNanos(config.getIdleMinutes());
+        editCoalescer = new MessageEditCoalescer(executor, config.getEditIntervalMillis(), TimeUnit.MILLISECONDS);
         audioManagers = new ConcurrentHashMap<>();
-        terminationTask = new ConcurrentHashMap<>();
+        final MetricRegistry registry = MetricRegistry.getDefault();
+        reapedPlayers = registry.counter("music_players_reaped_total", "Players torn down after being idle");
+        registry.gauge("music_players_live", "Guilds with a player", audioManagers::size);
+        registry.gauge("music_players_active", "Players that were active at the last sweep", () -> activePlayers);
+        registry.gauge("music_players_memory_bytes", "Estimated memory held by all players", this::estimateMemory);
     }
 
     @Override
@@ -88,6 +131,15 @@ public class MusicPlugin implements CommandPlugin, EventListener {
                 .addCommand(new Skip())
                 .addCommand(event -> event.reply("Sorry, but I'm too poor for this. My free amazon AWS trial is over and changing volume is the single most computationally expensive part of this bot."), command -> command.setKeys("volume", "vol"))
                 .addCommand(new MusicHelp());
+        executor.scheduleWithFixedDelay(this::reapIdle, REAP_INTERVAL_SECONDS, REAP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        // queues are only kept across restarts when there is a database to keep them in
+        if (builder.hasPlugin(DerbyDatabase.class)) {
+            database = builder.getPlugin(DerbyDatabase.class);
+            database.holdOpen();
+            journal = new QueueJournal(database.getExtension(QueueExtension::new));
+            executor.scheduleWithFixedDelay(journal::flush, JOURNAL_FLUSH_SECONDS, JOURNAL_FLUSH_SECONDS, TimeUnit.SECONDS);
+            MetricRegistry.getDefault().gauge("music_queue_journal_depth", "Queue changes that have not been written", journal::getQueueDepth);
+        }
     }
 
     @Override
@@ -103,7 +155,15 @@ public class MusicPlugin implements CommandPlugin, EventListener {
     @Override
     public void onEvent(Event event) {
         if (event instanceof ShutdownEvent) {
-            close();
+            final long start = System.nanoTime();
+            try {
+                close();
+            } finally {
+                if (database != null) {
+                    database.release();
+                }
+            }
+            eventMetrics.record(event, start);
         }
     }
 
@@ -113,54 +173,160 @@ public class MusicPlugin implements CommandPlugin, EventListener {
 
     public boolean openConnection(VoiceChannel channel) {
         final long idLong = channel.getGuild().getIdLong();
-        if (!audioManagers.containsKey(idLong)) {
-            audioManagers.put(idLong, new GuildAudioManager(playerManager, channel.getGuild().getAudioManager(), this));
+        final GuildAudioManager[] created = new GuildAudioManager[1];
+        final GuildAudioManager manager = audioManagers.computeIfAbsent(idLong, guildId ->
+                created[0] = new GuildAudioManager(playerManager, channel.getGuild().getAudioManager(), this));
+        if (created[0] != null && journal != null) {
+            // restoring the queue reads the database and starts a track, so it is kept out of the map's lock
+            created[0].scheduler.attach(journal);
+        }
+        return manager.openAudioConnection(channel);
+    }
+
+    /**
+     * @return the track serialized by lavaplayer in base64, or null if it could not be encoded
+     */
+    public String encodeTrack(AudioTrack track) {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(256);
+        try {
+            playerManager.encodeTrack(new MessageOutput(output), track);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return Base64.getEncoder().encodeToString(output.toByteArray());
+    }
+
+    /**
+     * @return the track encoded by {@link #encodeTrack(AudioTrack)}, or null if it could not be decoded
+     */
+    public AudioTrack decodeTrack(String encoded) {
+        if (encoded == null) {
+            return null;
+        }
+        try {
+            final DecodedTrackHolder holder = playerManager.decodeTrack(new MessageInput(new ByteArrayInputStream(Base64.getDecoder().decode(encoded))));
+            return holder == null ? null : holder.decodedTrack;
+        } catch (IOException | IllegalArgumentException e) {
+            e.printStackTrace();
+            return null;
         }
-        return audioManagers.get(idLong).openAudioConnection(channel);
     }
 
     public void loadItem(Object orderingKey, String request, AudioLoadResultHandler resultHandler) {
         if (orderingKey instanceof GuildAudioManager)
             orderingKey = ((GuildAudioManager) orderingKey).scheduler;
-        playerManager.loadItemOrdered(orderingKey, request, resultHandler);
+        trackCache.loadItem(orderingKey, request, resultHandler);
+    }
+
+    public TrackCache getTrackCache() {
+        return trackCache;
     }
 
+    /**
+     * Retrieving a manager counts as activity, so that it is not reaped while a command is using it.
+     */
     public Optional<GuildAudioManager> retrieveManager(long guildId) {
-        return Optional.ofNullable(audioManagers.get(guildId));
+        final GuildAudioManager manager = audioManagers.get(guildId);
+        if (manager != null) {
+            manager.touch();
+        }
+        return Optional.ofNullable(manager);
     }
 
     public Optional<GuildAudioManager> removeManager(long guildId) {
         return Optional.ofNullable(audioManagers.remove(guildId));
     }
-//
-//    public void scheduleLeave(long idLong) {
-//        final Optional<GuildAudioManager> managerOptional = retrieveManager(idLong);
-//        if (managerOptional.isPresent()) {
-//            if (managerOptional.get().player.isPaused()) {
-//                return;
-//            }
-//            final ScheduledFuture<?> scheduledFuture = executor.schedule(() -> {
-//                removeManager(idLong).ifPresent(GuildAudioManager::destroy);
-//                terminationTask.remove(idLong);
-//            }, 5, TimeUnit.MINUTES);
-//            terminationTask.put(idLong, scheduledFuture);
-//        }
-//    }
-//
-//    public void cancelLeave(long idLong) {
-//        final ScheduledFuture leaveFuture = terminationTask.get(idLong);
-//        if (leaveFuture != null) {
-//            terminationTask.remove(idLong);
-//            leaveFuture.cancel(false);
-//        }
-//    }
+
+    /**
+     * Tears down every player that has not been active for longer than the idle timeout. When there is a journal their
+     * queues are kept, so they are restored when the bot rejoins.
+     */
+    void reapIdle() {
+        final long now = System.nanoTime();
+        final long timeout = idleTimeoutNanos;
+        int active = 0;
+        for (Map.Entry<Long, GuildAudioManager> entry : audioManagers.entrySet()) {
+            final GuildAudioManager manager = entry.getValue();
+            try {
+                if (manager.isActive()) {
+                    manager.touch();
+                    active++;
+                } else if (now - manager.getLastActive() >= timeout && audioManagers.remove(entry.getKey(), manager)) {
+                    manager.scheduler.detach();
+                    manager.destroy();
+                    reapedPlayers.increment();
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        activePlayers = active;
+    }
+
+    public long estimateMemory() {
+        return audioManagers.reduceValuesToLong(1000L, GuildAudioManager::estimateMemory, 0L, Long::sum);
+    }
+
+    public long getIdleTimeout(TimeUnit unit) {
+        return unit.convert(idleTimeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public MusicPlugin setIdleTimeout(long timeout, TimeUnit unit) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("The idle timeout must be positive");
+        }
+        this.idleTimeoutNanos = unit.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * @return the fraction of a track that plays before the next autoplay track is resolved, or 0 if autoplay only
+     * resolves once the track has ended
+     */
+    public double getAutoPlayPrefetch() {
+        return autoPlayPrefetch;
+    }
+
+    public MusicPlugin setAutoPlayPrefetch(double fraction) {
+        if (fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("The prefetch point must be between 0 and 1");
+        }
+        this.autoPlayPrefetch = fraction;
+        return this;
+    }
+
+    /**
+     * @return the number of 20ms frames each guild pulls ahead of the send loop
+     */
+    public int getSendLookahead() {
+        return sendLookahead;
+    }
+
+    /**
+     * Only applies to guilds that connect after this is called.
+     */
+    public MusicPlugin setSendLookahead(int frames) {
+        if (frames < 1) {
+            throw new IllegalArgumentException("At least one frame must be buffered");
+        }
+        this.sendLookahead = frames;
+        return this;
+    }
 
     public ScheduledExecutorService getExecutor() {
         return executor;
     }
 
+    public MessageEditCoalescer getEditCoalescer() {
+        return editCoalescer;
+    }
+
     public void close() {
-        terminationTask.clear();
+        if (journal != null) {
+            audioManagers.forEachValue(1000L, manager -> manager.scheduler.detach());
+            journal.flush();
+        }
         audioManagers.forEachValue(1000L, GuildAudioManager::destroy);
         audioManagers.clear();
         playerManager.shutdown();
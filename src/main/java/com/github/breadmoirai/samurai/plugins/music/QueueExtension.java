@@ -0,0 +1,90 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.breadmoirai.samurai.plugins.music;
+
+import com.github.breadmoirai.samurai.plugins.derby.JdbiExtension;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.PreparedBatch;
+
+import java.sql.Types;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class QueueExtension extends JdbiExtension {
+
+    public QueueExtension(Jdbi jdbi) {
+        super(jdbi);
+        if (tableAbsent("MusicQueue")) {
+            execute("CREATE TABLE MusicQueue (\n" +
+                    "  GuildId  BIGINT NOT NULL,\n" +
+                    "  Seq      BIGINT NOT NULL,\n" +
+                    "  Op       SMALLINT NOT NULL,\n" +
+                    "  Idx      INT DEFAULT 0,\n" +
+                    "  Position BIGINT DEFAULT 0,\n" +
+                    "  Track    LONG VARCHAR,\n" +
+                    "  PRIMARY KEY (GuildId, Seq)\n" +
+                    ")");
+        }
+    }
+
+    /**
+     * @return the highest sequence number written, or 0 if the journal is empty
+     */
+    public long getLastSequence() {
+        return selectLong("SELECT MAX(Seq) FROM MusicQueue").orElse(0);
+    }
+
+    /**
+     * @return every entry of this guild in the order it was written
+     */
+    public List<QueueJournal.Entry> getEntries(long guildId) {
+        return withHandle(handle -> handle.createQuery("SELECT Seq, Op, Idx, Position, Track FROM MusicQueue WHERE GuildId = ? ORDER BY Seq")
+                                          .bind(0, guildId)
+                                          .map((r, ctx) -> new QueueJournal.Entry(guildId, r.getLong(1), r.getInt(2), r.getInt(3), r.getLong(4), r.getString(5)))
+                                          .collect(Collectors.toList()));
+    }
+
+    /**
+     * Inserts the entries in a single batch. Each {@link QueueJournal#CLEAR} entry also deletes the rows of its guild
+     * that precede it, since replay starts from the last clear anyway.
+     */
+    public void append(List<QueueJournal.Entry> entries) {
+        useHandle(handle -> handle.useTransaction(h -> {
+            final PreparedBatch insert = h.prepareBatch("INSERT INTO MusicQueue (GuildId, Seq, Op, Idx, Position, Track) VALUES (?, ?, ?, ?, ?, ?)");
+            final PreparedBatch truncate = h.prepareBatch("DELETE FROM MusicQueue WHERE GuildId = ? AND Seq < ?");
+            for (QueueJournal.Entry entry : entries) {
+                insert.bind(0, entry.getGuildId())
+                      .bind(1, entry.getSequence())
+                      .bind(2, entry.getOp())
+                      .bind(3, entry.getIndex())
+                      .bind(4, entry.getPosition());
+                if (entry.getTrack() == null) {
+                    insert.bindNull(5, Types.LONGVARCHAR);
+                } else {
+                    insert.bind(5, entry.getTrack());
+                }
+                insert.add();
+                if (entry.getOp() == QueueJournal.CLEAR) {
+                    truncate.add(entry.getGuildId(), entry.getSequence());
+                }
+            }
+            insert.execute();
+            if (truncate.size() > 0) {
+                truncate.execute();
+            }
+        }));
+    }
+}
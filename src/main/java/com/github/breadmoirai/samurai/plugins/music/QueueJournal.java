@@ -0,0 +1,398 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.breadmoirai.samurai.plugins.music;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only, write-behind journal of every change made to the music queues.
+ * <p>
+ * Tracks are stored in their encoded form so that they can be restored without searching again. Recording a change
+ * only appends to an in-memory list, so it is safe to call from the audio event thread; the list is written in one
+ * batch by {@link #flush()}, which the owner calls on an interval.
+ * <p>
+ * The state of a guild is rebuilt by replaying its entries from the last {@link #CLEAR}. A snapshot is simply a clear
+ * followed by the current track and the queue, which lets {@link QueueExtension} drop every older row.
+ * <p>
+ * Changes to a queue are recorded with the version the queue gave them, and are only appended once every earlier
+ * version has been, so threads changing the same queue never have to hold a lock between making a change and
+ * recording it. A guild is {@link #open opened} before its changes are recorded and its first change must be a
+ * snapshot.
+ */
+public class QueueJournal {
+
+    /**
+     * A track was inserted into the queue at {@code index}.
+     */
+    public static final int ADD = 0;
+    /**
+     * The track at {@code index} was removed from the queue.
+     */
+    public static final int REMOVE = 1;
+    /**
+     * The current track changed, or its position was saved.
+     */
+    public static final int CURRENT = 2;
+    /**
+     * Both the queue and the current track were cleared.
+     */
+    public static final int CLEAR = 3;
+
+    private static final int COMPACTION_SLACK = 64;
+
+    private final QueueExtension database;
+    private final AtomicLong sequence;
+
+    private final Object lock = new Object();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private List<Entry> pending = new ArrayList<>();
+    private final TLongObjectMap<GuildLog> guilds = new TLongObjectHashMap<>();
+
+    public QueueJournal(QueueExtension database) {
+        this.database = database;
+        this.sequence = new AtomicLong(database.getLastSequence());
+    }
+
+    /**
+     * Starts accepting changes to the queue of this guild. Changes are held back until the first {@link #snapshot}.
+     */
+    public void open(long guildId) {
+        synchronized (lock) {
+            guilds.put(guildId, new GuildLog(guildId));
+        }
+    }
+
+    /**
+     * Stops accepting changes to the queue of this guild. Changes still held back are dropped.
+     */
+    public void close(long guildId) {
+        synchronized (lock) {
+            guilds.remove(guildId);
+        }
+    }
+
+    /**
+     * @param index  where the first track was inserted
+     * @param tracks the encoded tracks, in order
+     */
+    public void add(long guildId, long version, int index, List<String> tracks) {
+        final List<Entry> entries = new ArrayList<>(tracks.size());
+        for (int i = 0; i < tracks.size(); i++) {
+            entries.add(new Entry(guildId, 0, ADD, index + i, 0, tracks.get(i)));
+        }
+        offer(guildId, version, new Change(false, entries));
+    }
+
+    /**
+     * @param indexes the indexes removed, in an order in which each is still valid once the ones before it are gone
+     */
+    public void remove(long guildId, long version, int... indexes) {
+        final List<Entry> entries = new ArrayList<>(indexes.length);
+        for (int index : indexes) {
+            entries.add(new Entry(guildId, 0, REMOVE, index, 0, null));
+        }
+        offer(guildId, version, new Change(false, entries));
+    }
+
+    /**
+     * Replaces everything recorded for the queue of this guild with the queue as it was at this version. Changes of
+     * this version or older that have not been recorded yet are dropped. The current track is kept.
+     *
+     * @param queue the encoded tracks, in order
+     */
+    public void snapshot(long guildId, long version, List<String> queue) {
+        final List<Entry> entries = new ArrayList<>(queue.size());
+        for (int i = 0; i < queue.size(); i++) {
+            entries.add(new Entry(guildId, 0, ADD, i, 0, queue.get(i)));
+        }
+        offer(guildId, version, new Change(true, entries));
+    }
+
+    /**
+     * Recorded straight away, since the current track is not part of the queue's versions.
+     *
+     * @param track    the encoded track, or null if nothing is playing
+     * @param position the position of the track in milliseconds
+     */
+    public void current(long guildId, String track, long position) {
+        final Entry entry = new Entry(guildId, 0, CURRENT, 0, position, track);
+        synchronized (lock) {
+            final GuildLog log = guilds.get(guildId);
+            if (log != null) {
+                log.current = entry;
+            }
+            record(log, entry);
+        }
+    }
+
+    /**
+     * @return true if enough entries have piled up since the last clear that a {@link #snapshot} would be smaller
+     */
+    public boolean shouldCompact(long guildId, int queueSize) {
+        synchronized (lock) {
+            final GuildLog log = guilds.get(guildId);
+            return log != null && log.next > 0 && log.length > queueSize * 2 + COMPACTION_SLACK;
+        }
+    }
+
+    private void offer(long guildId, long version, Change change) {
+        synchronized (lock) {
+            final GuildLog log = guilds.get(guildId);
+            // a snapshot of the last version recorded is still current, anything older is not
+            if (log == null || log.next > (change.snapshot ? version + 1 : version)) {
+                return;
+            }
+            if (change.snapshot) {
+                log.waiting.headMap(version, true).clear();
+            } else if (log.next == 0 || log.next < version) {
+                log.waiting.put(version, change);
+                return;
+            }
+            apply(log, change);
+            log.next = version + 1;
+            Change waiting;
+            while ((waiting = log.waiting.remove(log.next)) != null) {
+                apply(log, waiting);
+                log.next++;
+            }
+        }
+    }
+
+    private void apply(GuildLog log, Change change) {
+        if (change.snapshot) {
+            record(log, new Entry(log.guildId, 0, CLEAR, 0, 0, null));
+            final Entry current = log.current;
+            if (current != null && current.track != null) {
+                record(log, new Entry(log.guildId, 0, CURRENT, 0, current.position, current.track));
+            }
+        }
+        for (Entry entry : change.entries) {
+            record(log, entry);
+        }
+    }
+
+    private void record(GuildLog log, Entry entry) {
+        entry.sequence = sequence.incrementAndGet();
+        pending.add(entry);
+        if (log != null) {
+            log.length = entry.op == CLEAR ? 1 : log.length + 1;
+        }
+    }
+
+    /**
+     * Rebuilds the queue of a guild from the database and any entries that have not been written yet.
+     */
+    public State load(long guildId) {
+        flushLock.lock();
+        try {
+            final List<Entry> entries = database.getEntries(guildId);
+            synchronized (lock) {
+                for (Entry entry : pending) {
+                    if (entry.guildId == guildId) {
+                        entries.add(entry);
+                    }
+                }
+            }
+            return replay(entries);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    static State replay(List<Entry> entries) {
+        final List<String> queue = new ArrayList<>();
+        String current = null;
+        long position = 0;
+        for (Entry entry : entries) {
+            switch (entry.op) {
+                case ADD:
+                    if (entry.index < 0 || entry.index > queue.size()) {
+                        queue.add(entry.track);
+                    } else {
+                        queue.add(entry.index, entry.track);
+                    }
+                    break;
+                case REMOVE:
+                    if (entry.index >= 0 && entry.index < queue.size()) {
+                        queue.remove(entry.index);
+                    }
+                    break;
+                case CURRENT:
+                    current = entry.track;
+                    position = entry.position;
+                    break;
+                case CLEAR:
+                    queue.clear();
+                    current = null;
+                    position = 0;
+                    break;
+            }
+        }
+        return new State(current, position, queue);
+    }
+
+    /**
+     * Writes every pending entry in one transaction. If the write fails, the entries are kept for the next flush.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            final List<Entry> batch;
+            synchronized (lock) {
+                if (pending.isEmpty()) return;
+                batch = pending;
+                pending = new ArrayList<>();
+            }
+            try {
+                database.append(batch);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                synchronized (lock) {
+                    batch.addAll(pending);
+                    pending = batch;
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of entries that have not been written yet
+     */
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * What the journal knows about a guild whose queue is open.
+     */
+    private static class GuildLog {
+        private final long guildId;
+        /**
+         * The version of the next change to append, or 0 until the first snapshot.
+         */
+        private long next;
+        private final TreeMap<Long, Change> waiting = new TreeMap<>();
+        /**
+         * The last current track recorded, written again after each snapshot.
+         */
+        private Entry current;
+        /**
+         * The number of entries written since the last clear.
+         */
+        private int length;
+
+        private GuildLog(long guildId) {
+            this.guildId = guildId;
+        }
+    }
+
+    private static class Change {
+        private final boolean snapshot;
+        private final List<Entry> entries;
+
+        private Change(boolean snapshot, List<Entry> entries) {
+            this.snapshot = snapshot;
+            this.entries = entries;
+        }
+    }
+
+    public static class Entry {
+        private final long guildId;
+        private long sequence;
+        private final int op;
+        private final int index;
+        private final long position;
+        private final String track;
+
+        Entry(long guildId, long sequence, int op, int index, long position, String track) {
+            this.guildId = guildId;
+            this.sequence = sequence;
+            this.op = op;
+            this.index = index;
+            this.position = position;
+            this.track = track;
+        }
+
+        public long getGuildId() {
+            return guildId;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public int getOp() {
+            return op;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public long getPosition() {
+            return position;
+        }
+
+        public String getTrack() {
+            return track;
+        }
+    }
+
+    public static class State {
+        private final String current;
+        private final long position;
+        private final List<String> queue;
+
+        State(String current, long position, List<String> queue) {
+            this.current = current;
+            this.position = position;
+            this.queue = queue;
+        }
+
+        /**
+         * @return the encoded track that was playing, or null
+         */
+        public String getCurrent() {
+            return current;
+        }
+
+        /**
+         * @return the position of the current track in milliseconds
+         */
+        public long getPosition() {
+            return position;
+        }
+
+        /**
+         * @return the encoded tracks of the queue in order
+         */
+        public List<String> getQueue() {
+            return Collections.unmodifiableList(queue);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.breadmoirai.samurai.plugins.music;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Counts the YouTube Data API units spent today. The quota resets at midnight Pacific time.
+ */
+public class QuotaTracker {
+
+    public static final long DEFAULT_DAILY_UNITS = 10_000;
+    private static final ZoneId RESET_ZONE = ZoneId.of("America/Los_Angeles");
+
+    private final Clock clock;
+    private final long dailyUnits;
+    private final long reserveUnits;
+    private LocalDate day;
+    private long used;
+
+    /**
+     * @param dailyUnits   the quota of the api key
+     * @param reserveUnits units that are never spent, leaving room for other uses of the key
+     */
+    public QuotaTracker(Clock clock, long dailyUnits, long reserveUnits) {
+        this.clock = clock;
+        this.dailyUnits = dailyUnits;
+        this.reserveUnits = reserveUnits;
+    }
+
+    /**
+     * Spends the units if they are within today's budget.
+     *
+     * @return false if the call should not be made
+     */
+    public synchronized boolean tryAcquire(long units) {
+        roll();
+        if (used + units > dailyUnits - reserveUnits) {
+            return false;
+        }
+        used += units;
+        return true;
+    }
+
+    /**
+     * Marks the quota as spent for the rest of the day, for when the api reports that it has been exceeded.
+     */
+    public synchronized void exhaust() {
+        roll();
+        used = dailyUnits;
+    }
+
+    public synchronized long getUsed() {
+        roll();
+        return used;
+    }
+
+    public long getDailyUnits() {
+        return dailyUnits;
+    }
+
+    private void roll() {
+        final LocalDate today = LocalDate.now(clock.withZone(RESET_ZONE));
+        if (!today.equals(day)) {
+            day = today;
+            used = 0;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.breadmoirai.samurai.plugins.music;
+
+import com.github.breadmoirai.samurai.plugins.metrics.Counter;
+import com.github.breadmoirai.samurai.plugins.metrics.MetricRegistry;
+import com.sedmelluq.discord.lavaplayer.player.AudioLoadResultHandler;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
+import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.BasicAudioPlaylist;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers what each query or url resolved to so that popular requests do not go through lavaplayer again.
+ * <p>
+ * Tracks are kept as unplayed prototypes and every hit hands out {@link AudioTrack#makeClone() clones}, so the cached
+ * tracks are never played nor given user data. Requests that found nothing are cached for a shorter time. Failed
+ * loads are never cached.
+ * <p>
+ * Results for the same ordering key are delivered in the order they were requested, as with
+ * {@link AudioPlayerManager#loadItemOrdered(Object, String, AudioLoadResultHandler)}. A hit that is requested while
+ * an earlier load for the same key is still running waits for it.
+ * <p>
+ * Like lavaplayer, results are never delivered on the thread that called {@link #loadItem}, so a caller may finish
+ * setting itself up after starting a load. Hits are delivered on the executor given to the constructor.
+ */
+public class TrackCache {
+
+    public static final int DEFAULT_SIZE = 1000;
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    public static final long DEFAULT_NEGATIVE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final Loader loader;
+    private final Executor executor;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final LinkedHashMap<String, Entry> entries;
+    private final ConcurrentHashMap<Object, CompletableFuture<Void>> orderingChains = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter negativeHits;
+    private final Counter misses;
+
+    /**
+     * @param executor delivers the results that are found in the cache
+     */
+    public TrackCache(AudioPlayerManager playerManager, Executor executor) {
+        this(playerManager::loadItemOrdered, executor, DEFAULT_SIZE, DEFAULT_TTL_MILLIS, DEFAULT_NEGATIVE_TTL_MILLIS);
+    }
+
+    /**
+     * @param loader           resolves the requests that are not in the cache
+     * @param executor         delivers the results that are found in the cache
+     * @param size             the most requests remembered at once, least recently used are evicted first
+     * @param ttlMillis        how long a result is remembered
+     * @param negativeTtlMillis how long a request that found nothing is remembered
+     */
+    public TrackCache(Loader loader, Executor executor, int size, long ttlMillis, long negativeTtlMillis) {
+        this.loader = loader;
+        this.executor = executor;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtlMillis);
+        this.entries = new LinkedHashMap<String, Entry>(Math.min(size, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > size;
+            }
+        };
+        final MetricRegistry registry = MetricRegistry.getDefault();
+        hits = registry.counter("music_track_cache_requests_total", "Track loads by cache outcome", "result", "hit");
+        negativeHits = registry.counter("music_track_cache_requests_total", "Track loads by cache outcome", "result", "negative_hit");
+        misses = registry.counter("music_track_cache_requests_total", "Track loads by cache outcome", "result", "miss");
+        registry.gauge("music_track_cache_size", "Requests remembered by the track cache", this::size);
+    }
+
+    /**
+     * Resolves the request from the cache if possible, otherwise through lavaplayer, remembering the result.
+     */
+    public void loadItem(Object orderingKey, String request, AudioLoadResultHandler resultHandler) {
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        final CompletableFuture<Void> previous = orderingChains.put(orderingKey, done);
+        done.whenComplete((v, t) -> orderingChains.remove(orderingKey, done));
+        if (previous == null || previous.isDone()) {
+            load(orderingKey, request, resultHandler, done);
+        } else {
+            // the previous load may well have been for the same request, so the cache is checked once it is done
+            previous.whenComplete((v, t) -> load(orderingKey, request, resultHandler, done));
+        }
+    }
+
+    private void load(Object orderingKey, String request, AudioLoadResultHandler resultHandler, CompletableFuture<Void> done) {
+        final String key = normalize(request);
+        final Entry entry = get(key);
+        if (entry == null) {
+            misses.increment();
+            try {
+                loader.loadItemOrdered(orderingKey, request, new CachingHandler(key, resultHandler, done));
+            } catch (RuntimeException e) {
+                // the handler will never be called, so later loads for this key must not wait on it
+                done.complete(null);
+                throw e;
+            }
+            return;
+        }
+        if (entry.tracks == null) {
+            negativeHits.increment();
+        } else {
+            hits.increment();
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    entry.deliver(resultHandler);
+                } finally {
+                    done.complete(null);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            done.complete(null);
+            throw e;
+        }
+    }
+
+    private static String normalize(String request) {
+        final String trimmed = request.trim();
+        // search terms are not case sensitive but the ids in urls are
+        if (trimmed.startsWith("ytsearch:") || trimmed.startsWith("scsearch:")) {
+            return trimmed.toLowerCase();
+        }
+        return trimmed;
+    }
+
+    private synchronized Entry get(String key) {
+        final Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.expiresAt > 0) {
+            entries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        entries.put(key, entry);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public long getHits() {
+        return hits.get() + negativeHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the fraction of loads answered from the cache
+     */
+    public double getHitRate() {
+        final long hit = getHits();
+        final long total = hit + getMisses();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    private static List<AudioTrack> cloneAll(List<AudioTrack> tracks) {
+        final List<AudioTrack> clones = new ArrayList<>(tracks.size());
+        for (AudioTrack track : tracks) {
+            clones.add(track.makeClone());
+        }
+        return clones;
+    }
+
+    private static class Entry {
+        /**
+         * null if nothing was found
+         */
+        private final List<AudioTrack> tracks;
+        /**
+         * null for a single track
+         */
+        private final String playlistName;
+        private final int selectedTrack;
+        private final boolean searchResult;
+        private final long expiresAt;
+
+        private Entry(List<AudioTrack> tracks, String playlistName, int selectedTrack, boolean searchResult, long expiresAt) {
+            this.tracks = tracks;
+            this.playlistName = playlistName;
+            this.selectedTrack = selectedTrack;
+            this.searchResult = searchResult;
+            this.expiresAt = expiresAt;
+        }
+
+        private void deliver(AudioLoadResultHandler resultHandler) {
+            if (tracks == null) {
+                resultHandler.noMatches();
+            } else if (playlistName == null) {
+                resultHandler.trackLoaded(tracks.get(0).makeClone());
+            } else {
+                final List<AudioTrack> clones = cloneAll(tracks);
+                resultHandler.playlistLoaded(new BasicAudioPlaylist(playlistName, clones, selectedTrack < 0 ? null : clones.get(selectedTrack), searchResult));
+            }
+        }
+    }
+
+    /**
+     * Resolves a request that is not in the cache, normally {@link AudioPlayerManager#loadItemOrdered}.
+     */
+    public interface Loader {
+        void loadItemOrdered(Object orderingKey, String request, AudioLoadResultHandler resultHandler);
+    }
+
+    private class CachingHandler implements AudioLoadResultHandler {
+
+        private final String key;
+        private final AudioLoadResultHandler resultHandler;
+        private final CompletableFuture<Void> done;
+
+        private CachingHandler(String key, AudioLoadResultHandler resultHandler, CompletableFuture<Void> done) {
+            this.key = key;
+            this.resultHandler = resultHandler;
+            this.done = done;
+        }
+
+        @Override
+        public void trackLoaded(AudioTrack track) {
+            // cloned before the handler can play it or set its user data
+            final List<AudioTrack> prototype = new ArrayList<>(1);
+            prototype.add(track.makeClone());
+            put(key, new Entry(prototype, null, -1, false, System.nanoTime() + ttlNanos));
+            try {
+                resultHandler.trackLoaded(track);
+            } finally {
+                done.complete(null);
+            }
+        }
+
+        @Override
+        public void playlistLoaded(AudioPlaylist playlist) {
+            final List<AudioTrack> tracks = playlist.getTracks();
+            final int selected = playlist.getSelectedTrack() == null ? -1 : tracks.indexOf(playlist.getSelectedTrack());
+            put(key, new Entry(cloneAll(tracks), playlist.getName(), selected, playlist.isSearchResult(), System.nanoTime() + ttlNanos));
+            try {
+                resultHandler.playlistLoaded(playlist);
+            } finally {
+                done.complete(null);
+            }
+        }
+
+        @Override
+        public void noMatches() {
+            put(key, new Entry(null, null, -1, false, System.nanoTime() + negativeTtlNanos));
+            try {
+                resultHandler.noMatches();
+            } finally {
+                done.complete(null);
+            }
+        }
+
+        @Override
+        public void loadFailed(FriendlyException exception) {
+            try {
+                resultHandler.loadFailed(exception);
+            } finally {
+                done.complete(null);
+            }
+        }
+    }
+}
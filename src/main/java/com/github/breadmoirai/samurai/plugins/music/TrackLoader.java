@@ -20,6 +20,7 @@ import com.github.breadmoirai.breadbot.plugins.waiter.EventWaiter;
 import com.github.breadmoirai.breadbot.plugins.waiter.EventWaiterPlugin;
 import com.github.breadmoirai.samurai.Dispatchable;
 import com.github.breadmoirai.samurai.plugins.music.commands.Play;
+import com.github.breadmoirai.samurai.util.MessageEditCoalescer;
 import com.sedmelluq.discord.lavaplayer.player.AudioLoadResultHandler;
 import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
 import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
@@ -64,6 +65,7 @@ public class TrackLoader implements AudioLoadResultHandler, Dispatchable {
 
     private final EventActionFuture[] futures = new EventActionFuture[6];
     private EventWaiter waiter;
+    private final MessageEditCoalescer edits;
 
     public TrackLoader(CommandEvent event, MusicPlugin plugin, GuildAudioManager audioManager, List<String> content, String playlistName) {
         this.plugin = plugin;
@@ -73,8 +75,10 @@ public class TrackLoader implements AudioLoadResultHandler, Dispatchable {
         this.page = 0;
         this.loadAsPlaylist = true;
         this.playlist = new BasicAudioPlaylist(playlistName, new ArrayList<>(20), null, true);
-        this.tracklist = playlist.getTracks();
+        // tracks are added by the loader threads while the display may be rendered from the edit scheduler
+        this.tracklist = Collections.synchronizedList(playlist.getTracks());
         this.closed = false;
+        this.edits = plugin.getEditCoalescer();
 
         requester = event.getMember().getEffectiveName();
         authorId = event.getAuthorId();
@@ -91,6 +95,7 @@ public class TrackLoader implements AudioLoadResultHandler, Dispatchable {
         this.page = 0;
         this.loadAsPlaylist = loadAsPlaylist;
         this.closed = false;
+        this.edits = plugin.getEditCoalescer();
 
         requester = event.getMember().getEffectiveName();
         authorId = event.getAuthorId();
@@ -105,8 +110,9 @@ public class TrackLoader implements AudioLoadResultHandler, Dispatchable {
                 .queue(message -> {
                     this.messageId = message.getIdLong();
                     this.channel = message.getChannel();
-                    request.forEach(s -> plugin.loadItem(audioManager, s, this));
+                    // registered first so that a result which finishes the loader can unregister them
                     waitForEvents(waiter);
+                    request.forEach(s -> plugin.loadItem(audioManager, s, this));
                 });
 
     }
@@ -186,19 +192,24 @@ public class TrackLoader implements AudioLoadResultHandler, Dispatchable {
 
     private void onFilter(CommandEvent event, boolean select) {
         page = 0;
-        final int size = tracklist.size();
         final boolean isInts = event.getArguments().stream().allMatch(arg -> arg.isInteger() || arg.isRange());
         if (isInts) {
             final TIntHashSet argInts = event.getArguments().ints().collect(TIntHashSet::new, TIntHashSet::add, TIntHashSet::addAll);
             final IntPredicate contains = argInts::contains;
-            final List<AudioTrack> collect = IntStream.rangeClosed(1, size)
-                    .map(i -> size - i + 1)
-                    .filter(select ? contains.negate() : contains)
-                    .map(i -> i - 1)
-                    .mapToObj(tracklist::get)
-                    .collect(Collectors.toList());
-            if (!collect.isEmpty()) {
-                tracklist.removeAll(collect);
+            final List<AudioTrack> tracks = tracklist;
+            final boolean removed;
+            // the positions are only valid while no track can be added by the loader in between
+            synchronized (tracks) {
+                final int size = tracks.size();
+                final List<AudioTrack> collect = IntStream.rangeClosed(1, size)
+                        .map(i -> size - i + 1)
+                        .filter(select ? contains.negate() : contains)
+                        .map(i -> i - 1)
+                        .mapToObj(tracks::get)
+                        .collect(Collectors.toList());
+                removed = !collect.isEmpty() && tracks.removeAll(collect);
+            }
+            if (removed) {
                 resetMessage(true);
             }
         }
@@ -215,7 +226,7 @@ public class TrackLoader implements AudioLoadResultHandler, Dispatchable {
 
     private void resetMessage(boolean listChanged) {
         page = 0;
-        channel.editMessageById(getMessageId(), buildPlaylistDisplay()).queue();
+        edits.edit(channel, getMessageId(), this::buildPlaylistDisplay);
         if (listChanged && tracklist.size() <= 10) {
             channel.getMessageById(getMessageId()).queue(
                     message -> message.getReactions().stream().filter(
@@ -241,9 +252,9 @@ public class TrackLoader implements AudioLoadResultHandler, Dispatchable {
             final int i = audioManager.scheduler.getQueue().indexOf(track);
 
             if (i != -1) {
-                channel.editMessageById(getMessageId(), new EmbedBuilder().setDescription(String.format("Queued track: %s at position `%d`", Play.trackInfoDisplay(track, true), i + 1)).build()).queue();
+                edits.finish(channel, getMessageId(), () -> embed(new EmbedBuilder().setDescription(String.format("Queued track: %s at position `%d`", Play.trackInfoDisplay(track, true), i + 1))));
             } else {
-                channel.editMessageById(getMessageId(), new EmbedBuilder().setDescription("Now Playing: ").appendDescription(Play.trackInfoDisplay(track, true)).build()).queue();
+                edits.finish(channel, getMessageId(), () -> embed(new EmbedBuilder().setDescription("Now Playing: ").appendDescription(Play.trackInfoDisplay(track, true))));
             }
             unregister();
         } else {
@@ -255,9 +266,9 @@ public class TrackLoader implements AudioLoadResultHandler, Dispatchable {
                 if (request.size() > 10) {
                     channel.addReactionById(getMessageId(), PAGE_REACTION).queue();
                 }
-            } else if (tracklist.size() % 5 == 2 || tracklist.size() == request.size()) {
-                channel.editMessageById(getMessageId(), buildPlaylistDisplay()).queue();
             }
+            // every track is shown, but the coalescer holds the message to one edit per interval
+            edits.edit(channel, getMessageId(), this::buildPlaylistDisplay);
         }
     }
 
@@ -271,7 +282,7 @@ public class TrackLoader implements AudioLoadResultHandler, Dispatchable {
             trackLoaded(tracklist.get(0));
             return;
         }
-        channel.editMessageById(getMessageId(), buildPlaylistDisplay()).queue();
+        edits.edit(channel, getMessageId(), this::buildPlaylistDisplay);
         channel.addReactionById(getMessageId(), SHUFFLE_REACTION).queue();
         channel.addReactionById(getMessageId(), CANCEL_REACTION).queue();
         channel.addReactionById(getMessageId(), CONFIRM_REACTION).queue();
@@ -284,13 +295,22 @@ public class TrackLoader implements AudioLoadResultHandler, Dispatchable {
         EmbedBuilder eb = new EmbedBuilder();
         final StringBuilder sb = eb.getDescriptionBuilder();
         sb.append("**").append(playlist.getName()).append("**");
-        final int tSize = tracklist.size();
         final int start = page * 10;
+        final int end = start + 10;
+        // only the page shown is copied, while the loader may still be adding tracks
+        final List<AudioTrack> tracks = tracklist;
+        final int tSize;
+        final List<AudioTrack> shown;
+        synchronized (tracks) {
+            tSize = tracks.size();
+            shown = start < tSize ? new ArrayList<>(tracks.subList(start, Math.min(end, tSize))) : Collections.emptyList();
+        }
         if (page != 0) {
             sb.append("\n... `").append(start).append("` more tracks");
         }
-        final int end = start + 10;
-        IntStream.range(start, end).filter(value -> value < tSize).mapToObj(i -> String.format("%n`%d.` %s", i + 1, Play.trackInfoDisplay(tracklist.get(i), false))).forEachOrdered(sb::append);
+        for (int i = 0; i < shown.size(); i++) {
+            sb.append(String.format("%n`%d.` %s", start + i + 1, Play.trackInfoDisplay(shown.get(i), false)));
+        }
         if (end < tSize)
             sb.append("\n... `").append(tSize - end).append("` more tracks");
         return new MessageBuilder().setContent("").setEmbed(eb.build()).build();
@@ -304,58 +324,68 @@ public class TrackLoader implements AudioLoadResultHandler, Dispatchable {
         return new MessageBuilder().setEmbed(eb.build()).build();
     }
 
+    private Message buildCanceledDisplay() {
+        return embed(new EmbedBuilder()
+                .appendDescription("**")
+                .appendDescription(playlist.getName())
+                .appendDescription("**\n")
+                .appendDescription("Track Loading Canceled"));
+    }
+
+    private static Message embed(EmbedBuilder embed) {
+        return new MessageBuilder().setEmbed(embed.build()).build();
+    }
+
     @Override
     public void noMatches() {
-        channel.editMessageById(getMessageId(), "No tracks found").queue();
+        edits.finish(channel, getMessageId(), () -> new MessageBuilder().append("No tracks found").build());
         unregister();
     }
 
     @Override
     public void loadFailed(FriendlyException exception) {
-        channel.editMessageById(getMessageId(), exception.toString()).queue();
+        edits.finish(channel, getMessageId(), () -> new MessageBuilder().append(exception.toString()).build());
         unregister();
     }
 
     private void confirmReaction(GenericMessageReactionEvent event) {
-        channel.editMessageById(getMessageId(), buildFinishedDisplay()).queue();
+        edits.finish(channel, getMessageId(), this::buildFinishedDisplay);
         channel.getMessageById(getMessageId()).queue(message -> message.clearReactions().queue());
         unregister();
-        audioManager.scheduler.queue(tracklist);
+        final List<AudioTrack> tracks = tracklist;
+        final List<AudioTrack> copy;
+        synchronized (tracks) {
+            copy = new ArrayList<>(tracks);
+        }
+        audioManager.scheduler.queue(copy);
     }
 
     private void pageReaction(GenericMessageReactionEvent event) {
         int tSize = tracklist.size();
         if (tSize > 10) {
             page = (page + 1) % ((tSize / 10) + 1);
-            channel.editMessageById(getMessageId(), buildPlaylistDisplay()).queue();
+            edits.edit(channel, getMessageId(), this::buildPlaylistDisplay);
             event.getReaction().removeReaction(event.getUser()).queue();
         }
     }
 
     private void shuffleReaction(GenericMessageReactionEvent event) {
-        Collections.shuffle(tracklist);
+        final List<AudioTrack> tracks = tracklist;
+        synchronized (tracks) {
+            Collections.shuffle(tracks);
+        }
         resetMessage(false);
     }
 
     private void cancelReaction(GenericMessageReactionEvent event) {
-        channel.editMessageById(getMessageId(), new EmbedBuilder()
-                .appendDescription("**")
-                .appendDescription(playlist.getName())
-                .appendDescription("**\n")
-                .appendDescription("Track Loading Canceled").build())
-                .queue(message -> message.clearReactions().queue());
+        edits.finish(channel, getMessageId(), this::buildCanceledDisplay, message -> message.clearReactions().queue());
         unregister();
     }
 
 
     public void close(TextChannel channel) {
         closed = true;
-        channel.editMessageById(getMessageId(), new EmbedBuilder()
-                .appendDescription("**")
-                .appendDescription(playlist.getName())
-                .appendDescription("**\n")
-                .appendDescription("Track Loading Canceled").build())
-                .queue(message -> message.clearReactions().queue());
+        edits.finish(channel, getMessageId(), this::buildCanceledDisplay, message -> message.clearReactions().queue());
         unregister();
     }
 
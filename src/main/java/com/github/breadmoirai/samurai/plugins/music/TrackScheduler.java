@@ -14,6 +14,7 @@
 */
 package com.github.breadmoirai.samurai.plugins.music;
 
+import com.github.breadmoirai.samurai.util.AtomicQueue;
 import com.sedmelluq.discord.lavaplayer.player.AudioLoadResultHandler;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
 import com.sedmelluq.discord.lavaplayer.player.event.AudioEventAdapter;
@@ -22,34 +23,47 @@ import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrackEndReason;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Stream;
+import java.util.function.Function;
 
 public class TrackScheduler extends AudioEventAdapter {
     private final MusicPlugin plugin;
     private final AudioPlayer player;
-    private final List<AudioTrack> queue;
+    private final long guildId;
+    private final AtomicQueue<AudioTrack> queue;
+    private final Function<AudioTrack, String> encoder;
     private final Deque<AudioTrack> history;
-    private AudioTrack current;
+    private volatile AudioTrack current;
     private boolean autoPlay;
     private boolean repeat;
     private Future<?> autoFuture;
+    private volatile Prefetch prefetch;
+    private volatile QueueJournal journal;
 
-    TrackScheduler(MusicPlugin plugin, AudioPlayer player) {
+    TrackScheduler(MusicPlugin plugin, AudioPlayer player, long guildId) {
+        this(plugin, player, guildId, plugin::encodeTrack);
+    }
+
+    /**
+     * @param encoder encodes the tracks written to the journal
+     */
+    TrackScheduler(MusicPlugin plugin, AudioPlayer player, long guildId, Function<AudioTrack, String> encoder) {
         this.plugin = plugin;
+        this.encoder = encoder;
         this.player = player;
-        this.queue = new ArrayList<>(20);
-        history = new ArrayDeque<AudioTrack>(10) {
+        this.guildId = guildId;
+        this.queue = new AtomicQueue<>(new QueueListener());
+        history = new ConcurrentLinkedDeque<AudioTrack>() {
             @Override
             public void addFirst(AudioTrack audioTrack) {
                 if (this.size() > 15)
-                    super.removeLast();
+                    super.pollLast();
                 super.addFirst(audioTrack);
             }
         };
@@ -61,7 +75,12 @@ public class TrackScheduler extends AudioEventAdapter {
             if (autoFuture != null)
                 autoFuture.cancel(false);
             current = audioTrack;
-        } else queue.add(audioTrack);
+            journalCurrent(audioTrack);
+        } else {
+            cancelPrefetch();
+            queue.add(audioTrack);
+        }
+        compactIfNeeded();
         return audioTrack;
     }
 
@@ -72,37 +91,115 @@ public class TrackScheduler extends AudioEventAdapter {
             player.startTrack(current, false);
             return;
         }
-        if (queue.isEmpty()) {
-            history.addFirst(current);
+        final AudioTrack polled = queue.poll();
+        if (polled == null) {
+            if (current != null) {
+                history.addFirst(current);
+            }
             if (autoPlay) {
                 AudioTrack track = current;
                 if (track == null) {
                     return;
                 }
 
-                if (track.getSourceManager().getSourceName().equalsIgnoreCase("youtube")) {
-                    scheduleAutoPlay(track.getIdentifier());
+                final Prefetch prefetch = this.prefetch;
+                if (prefetch != null && prefetch.started) {
+                    final AudioTrack next = prefetch.take();
+                    if (next != null) {
+                        this.prefetch = null;
+                        player.startTrack(next, false);
+                        current = next;
+                        journalCurrent(next);
+                        return;
+                    }
+                    // otherwise it is still loading and will be queued once it arrives, so it is kept where
+                    // cancelPrefetch can still reach it
+                } else {
+                    this.prefetch = null;
+                    if (prefetch != null) {
+                        prefetch.cancel();
+                    }
+                    if (isYoutube(track)) {
+                        scheduleAutoPlay(track.getIdentifier());
+                    }
                 }
                 current = null;
             } else {
                 current = null;
                 player.stopTrack();
             }
+            journalCurrent(null);
         } else {
-            AudioTrack track = queue.remove(0);
-            player.startTrack(track, false);
+            player.startTrack(polled, false);
             if (current != null) {
                 history.addFirst(current);
             }
-            current = track;
+            current = polled;
+            journalCurrent(polled);
         }
     }
 
+    private static boolean isYoutube(AudioTrack track) {
+        return track.getSourceManager() != null && track.getSourceManager().getSourceName().equalsIgnoreCase("youtube");
+    }
+
     private void scheduleAutoPlay(String identifier) {
-        autoFuture = plugin.getExecutor().schedule(() -> {
-            final List<String> related = plugin.getRelated(identifier, 15L);
-            plugin.loadItem(this, related.get((int) (Math.random() * related.size())), new AutoPlayHandler());
-        }, 2, TimeUnit.SECONDS);
+        final List<AudioTrack> played = playedExcept(identifier);
+        autoFuture = plugin.getExecutor().schedule(() -> resolveAutoPlay(identifier, played, new AutoPlayHandler()), 2, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Taken on the player's thread since that is the only thread that touches the history.
+     */
+    private List<AudioTrack> playedExcept(String identifier) {
+        final List<AudioTrack> played = new ArrayList<>(history.size());
+        for (AudioTrack track : history) {
+            if (track != null && !track.getIdentifier().equals(identifier)) {
+                played.add(track);
+            }
+        }
+        return played;
+    }
+
+    private void resolveAutoPlay(String identifier, List<AudioTrack> played, AudioLoadResultHandler handler) {
+        final List<String> related = plugin.getRelated(identifier, 15L);
+        if (!related.isEmpty()) {
+            plugin.loadItem(this, related.get((int) (Math.random() * related.size())), handler);
+        } else if (!played.isEmpty()) {
+            // youtube is unavailable or out of quota, so something played earlier is picked instead
+            handler.trackLoaded(played.get((int) (Math.random() * played.size())).makeClone());
+        }
+    }
+
+    /**
+     * Starts resolving the track autoplay will pick once the configured fraction of this track has played, so that
+     * it can start the moment this one ends.
+     */
+    @Override
+    public void onTrackStart(AudioPlayer player, AudioTrack track) {
+        cancelPrefetch();
+        final double fraction = plugin.getAutoPlayPrefetch();
+        if (fraction <= 0 || !autoPlay || repeat || track.getInfo().isStream || !isYoutube(track)) {
+            return;
+        }
+        final long delay = Math.max(0, (long) (track.getDuration() * fraction) - track.getPosition());
+        final String identifier = track.getIdentifier();
+        final List<AudioTrack> played = playedExcept(identifier);
+        final Prefetch prefetch = new Prefetch(played);
+        this.prefetch = prefetch;
+        prefetch.future = plugin.getExecutor().schedule(() -> {
+            if (this.prefetch != prefetch || !queue.isEmpty()) return;
+            prefetch.started = true;
+            resolveAutoPlay(identifier, played, prefetch);
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelPrefetch() {
+        final Prefetch prefetch = this.prefetch;
+        if (prefetch != null) {
+            this.prefetch = null;
+            prefetch.cancel();
+        }
     }
 
     public void prevTrack() {
@@ -110,6 +207,7 @@ public class TrackScheduler extends AudioEventAdapter {
         AudioTrack previous = history.pollFirst();
         current = previous.makeClone();
         player.startTrack(current, false);
+        journalCurrent(current);
     }
 
 
@@ -134,8 +232,10 @@ public class TrackScheduler extends AudioEventAdapter {
     }
 
     public void clear() {
+        cancelPrefetch();
         current = null;
         player.stopTrack();
+        journalCurrent(null);
         queue.clear();
     }
 
@@ -143,23 +243,42 @@ public class TrackScheduler extends AudioEventAdapter {
         return current;
     }
 
+    /**
+     * @return the queue as it is now, which does not change as tracks are added or removed
+     */
     public List<AudioTrack> getQueue() {
-        return Collections.unmodifiableList(queue);
+        return queue.snapshot();
     }
 
-    public int shuffleQueue() {
-        Collections.shuffle(queue);
+    public int getQueueSize() {
         return queue.size();
     }
 
-    public Stream<AudioTrack> skip(Stream<Integer> indexes) {
-        final int size = queue.size();
-        return indexes.distinct().sorted((o1, o2) -> o2 - o1).mapToInt(Integer::intValue).map(operand -> operand - 1).filter(integer -> integer >= 0 && integer < size).mapToObj(queue::remove);
+    public int shuffleQueue() {
+        return queue.shuffle(ThreadLocalRandom.current());
+    }
+
+    /**
+     * Removes the tracks at each position in one step.
+     *
+     * @param positions positions in the queue, starting at 1
+     * @return the tracks removed in queue order, with the index each had starting at 0
+     */
+    public List<AtomicQueue.Removed<AudioTrack>> skip(int[] positions) {
+        final int[] indexes = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            indexes[i] = positions[i] - 1;
+        }
+        final List<AtomicQueue.Removed<AudioTrack>> removed = queue.removeAll(indexes);
+        compactIfNeeded();
+        return removed;
     }
 
     public void queueFirst(AudioTrack track) {
         if (!player.startTrack(track, true)) {
+            cancelPrefetch();
             queue.add(0, track);
+            compactIfNeeded();
         }
     }
 
@@ -170,7 +289,9 @@ public class TrackScheduler extends AudioEventAdapter {
     }
 
     public void queueFirst(List<AudioTrack> playlist) {
+        cancelPrefetch();
         queue.addAll(0, playlist);
+        compactIfNeeded();
         if (player.getPlayingTrack() == null) {
             nextTrack();
         }
@@ -178,6 +299,9 @@ public class TrackScheduler extends AudioEventAdapter {
 
     public void setAutoPlay(boolean autoPlay) {
         this.autoPlay = autoPlay;
+        if (!autoPlay) {
+            cancelPrefetch();
+        }
     }
 
     public boolean isAutoPlay() {
@@ -193,6 +317,195 @@ public class TrackScheduler extends AudioEventAdapter {
         return repeat;
     }
 
+    /**
+     * Starts recording every change to the queue in the journal. The queue and current track are first restored from
+     * what the journal already holds for this guild.
+     */
+    void attach(QueueJournal journal) {
+        final QueueJournal.State state = journal.load(guildId);
+        final List<AudioTrack> restored = new ArrayList<>(state.getQueue().size());
+        for (String encoded : state.getQueue()) {
+            final AudioTrack track = plugin.decodeTrack(encoded);
+            if (track != null) {
+                restored.add(track);
+            }
+        }
+        final AudioTrack track = state.getCurrent() == null ? null : plugin.decodeTrack(state.getCurrent());
+        if (track != null) {
+            track.setPosition(state.getPosition());
+            if (player.startTrack(track, true)) {
+                current = track;
+            }
+        }
+        queue.addAll(0, restored);
+        journal.open(guildId);
+        journal.current(guildId, current == null ? null : encoder.apply(current), current == null ? 0 : current.getPosition());
+        this.journal = journal;
+        // the journal takes changes once it has a snapshot, which also drops the entries of tracks that could not be
+        // decoded and would otherwise leave its indexes out of step with the queue
+        snapshot(journal);
+        if (current == null && !queue.isEmpty()) {
+            nextTrack();
+        }
+    }
+
+    /**
+     * Saves the position of the current track and stops recording changes, so that the queue survives the player
+     * being destroyed.
+     */
+    void detach() {
+        final QueueJournal journal = this.journal;
+        if (journal != null) {
+            final AudioTrack track = player.getPlayingTrack();
+            if (track != null && track == current) {
+                journal.current(guildId, encoder.apply(track), track.getPosition());
+            }
+            this.journal = null;
+            journal.close(guildId);
+        }
+    }
+
+    private void snapshot(QueueJournal journal) {
+        final AtomicQueue.Version<AudioTrack> version = queue.version();
+        journal.snapshot(guildId, version.getVersion(), encode(version.getElements()));
+    }
+
+    private List<String> encode(List<AudioTrack> tracks) {
+        final List<String> encoded = new ArrayList<>(tracks.size());
+        for (AudioTrack track : tracks) {
+            encoded.add(encoder.apply(track));
+        }
+        return encoded;
+    }
+
+    private void journalCurrent(AudioTrack track) {
+        final QueueJournal journal = this.journal;
+        if (journal != null) {
+            journal.current(guildId, track == null ? null : encoder.apply(track), 0);
+        }
+    }
+
+    /**
+     * Replaces the journal of this queue with a snapshot once it has grown long enough. Never called from
+     * {@link #nextTrack()}, since encoding the queue has no place on the audio event thread.
+     */
+    private void compactIfNeeded() {
+        final QueueJournal journal = this.journal;
+        if (journal != null && journal.shouldCompact(guildId, queue.size())) {
+            snapshot(journal);
+        }
+    }
+
+    /**
+     * Journals each change to the queue on the thread that made it. Tracks are encoded here without holding any lock,
+     * and the journal puts the changes of different threads back in order by their version.
+     */
+    private class QueueListener implements AtomicQueue.Listener<AudioTrack> {
+        @Override
+        public void added(long version, int index, List<AudioTrack> tracks) {
+            final QueueJournal journal = TrackScheduler.this.journal;
+            if (journal != null) {
+                journal.add(guildId, version, index, encode(tracks));
+            }
+        }
+
+        @Override
+        public void removed(long version, List<AtomicQueue.Removed<AudioTrack>> removed) {
+            final QueueJournal journal = TrackScheduler.this.journal;
+            if (journal != null) {
+                // removed from the back so that each index is still valid when replayed
+                final int[] indexes = new int[removed.size()];
+                for (int i = 0; i < indexes.length; i++) {
+                    indexes[i] = removed.get(indexes.length - 1 - i).getIndex();
+                }
+                journal.remove(guildId, version, indexes);
+            }
+        }
+
+        @Override
+        public void replaced(long version, List<AudioTrack> tracks) {
+            final QueueJournal journal = TrackScheduler.this.journal;
+            if (journal != null) {
+                journal.snapshot(guildId, version, encode(tracks));
+            }
+        }
+    }
+
+    /**
+     * Holds the track resolved ahead of time for autoplay until the current track ends. If it cannot be loaded,
+     * something played earlier is picked instead.
+     */
+    private class Prefetch implements AudioLoadResultHandler {
+        private final List<AudioTrack> played;
+        private volatile Future<?> future;
+        private volatile boolean started;
+        private AudioTrack track;
+        private boolean playOnLoad;
+        private boolean cancelled;
+
+        Prefetch(List<AudioTrack> played) {
+            this.played = played;
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+
+        /**
+         * @return the track if it has been resolved, otherwise null and the track is queued as soon as it is
+         */
+        synchronized AudioTrack take() {
+            if (track != null) {
+                cancelled = true;
+                return track;
+            }
+            playOnLoad = true;
+            return null;
+        }
+
+        @Override
+        public void trackLoaded(AudioTrack track) {
+            track.setUserData("Samurai");
+            synchronized (this) {
+                if (cancelled) return;
+                if (!playOnLoad) {
+                    this.track = track;
+                    return;
+                }
+                cancelled = true;
+            }
+            queue(track);
+        }
+
+        @Override
+        public void playlistLoaded(AudioPlaylist playlist) {
+            fallBack("a playlist was loaded");
+        }
+
+        @Override
+        public void noMatches() {
+            fallBack("no matches");
+        }
+
+        @Override
+        public void loadFailed(FriendlyException exception) {
+            fallBack(exception.getMessage());
+        }
+
+        private void fallBack(String reason) {
+            synchronized (this) {
+                if (cancelled) return;
+            }
+            System.err.println("Autoplay prefetch failed in guild " + guildId + ": " + reason);
+            if (!played.isEmpty()) {
+                trackLoaded(played.get((int) (Math.random() * played.size())).makeClone());
+            }
+        }
+    }
+
     private class AutoPlayHandler implements AudioLoadResultHandler {
         @Override
         public void trackLoaded(AudioTrack track) {
@@ -54,6 +54,9 @@
  */
 package com.github.breadmoirai.samurai.plugins.music;
 
+import com.github.breadmoirai.samurai.plugins.metrics.Counter;
+import com.github.breadmoirai.samurai.plugins.metrics.MetricRegistry;
+import com.google.api.client.googleapis.json.GoogleJsonError;
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.client.http.HttpTransport;
 import com.google.api.client.http.javanet.NetHttpTransport;
@@ -65,26 +68,119 @@ import com.google.api.services.youtube.model.SearchListResponse;
 import com.google.api.services.youtube.model.SearchResult;
 
 import java.io.IOException;
+import java.time.Clock;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+/**
+ * Looks up related videos through the YouTube Data API.
+ * <p>
+ * Results are cached per video, and concurrent lookups for the same video share one call. Each search costs
+ * {@value SEARCH_COST} units of the daily quota. Once the budget is spent, or a search fails, lookups are answered from
+ * the cache even if the entry has expired, or with an empty list so that the caller can fall back to something else.
+ */
 public class YoutubeAPI {
+
+    static final long SEARCH_COST = 100;
+    private static final long FETCH_SIZE = 25;
+    private static final int CACHE_SIZE = 500;
+    private static final long CACHE_TTL_MILLIS = TimeUnit.HOURS.toMillis(6);
+
     private final String KEY;
-    private final HttpTransport HTTP_TRANSPORT = new NetHttpTransport();
     private final JsonFactory JSON_FACTORY = new JacksonFactory();
-    private int calls;
-    private YouTube youtube;
+    private final YouTube youtube;
+    private final Clock clock;
+    private final QuotaTracker quota;
+
+    private final LinkedHashMap<String, CachedResult> cache;
+    private final ConcurrentHashMap<String, Call> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter coalesced;
+    private final Counter calls;
+    private final Counter degraded;
 
     public YoutubeAPI(String KEY) {
+        this(KEY, QuotaTracker.DEFAULT_DAILY_UNITS);
+    }
+
+    public YoutubeAPI(String KEY, long dailyQuota) {
+        this(KEY, new NetHttpTransport(), Clock.systemUTC(), dailyQuota);
+    }
+
+    YoutubeAPI(String KEY, HttpTransport transport, Clock clock, long dailyQuota) {
         this.KEY = KEY;
-        calls = 0;
-        youtube = new YouTube.Builder(HTTP_TRANSPORT, JSON_FACTORY, request -> {
+        this.clock = clock;
+        // a tenth of the quota is left for anything else that uses the key
+        this.quota = new QuotaTracker(clock, dailyQuota, dailyQuota / 10);
+        youtube = new YouTube.Builder(transport, JSON_FACTORY, request -> {
         }).setApplicationName("DiscordSamuraiBot").build();
+        cache = new LinkedHashMap<String, CachedResult>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+        final MetricRegistry registry = MetricRegistry.getDefault();
+        hits = registry.counter("youtube_related_requests_total", "Related video lookups by outcome", "result", "hit");
+        coalesced = registry.counter("youtube_related_requests_total", "Related video lookups by outcome", "result", "coalesced");
+        calls = registry.counter("youtube_related_requests_total", "Related video lookups by outcome", "result", "call");
+        degraded = registry.counter("youtube_related_requests_total", "Related video lookups by outcome", "result", "degraded");
+        registry.gauge("youtube_quota_used_units", "YouTube Data API units spent today", quota::getUsed);
     }
 
+    /**
+     * @return the urls of up to {@code size} videos related to this one, or an empty list if none could be found
+     */
     public List<String> getRelated(String videoID, long size) {
         if (KEY == null) return Collections.emptyList();
+        final CachedResult cached = getCached(videoID);
+        if (cached != null && cached.expiresAt > clock.millis() && cached.fetched >= size) {
+            hits.increment();
+            return cached.first(size);
+        }
+        final long fetch = Math.max(size, FETCH_SIZE);
+        final Call call = new Call(fetch);
+        final Call existing = inFlight.putIfAbsent(videoID, call);
+        if (existing != null) {
+            final List<String> result = existing.future.join();
+            if (existing.fetch >= size || result.size() < existing.fetch) {
+                coalesced.increment();
+                return result.subList(0, (int) Math.min(size, result.size()));
+            }
+            // the shared call asked for fewer than this caller wants and there may be more, so it is looked up again
+            return getRelated(videoID, size);
+        }
+        List<String> result = Collections.emptyList();
+        try {
+            if (quota.tryAcquire(SEARCH_COST)) {
+                calls.increment();
+                result = Collections.unmodifiableList(search(videoID, fetch));
+                if (!result.isEmpty()) {
+                    putCached(videoID, new CachedResult(result, fetch, clock.millis() + CACHE_TTL_MILLIS));
+                }
+            }
+            if (result.isEmpty()) {
+                // out of quota or the search failed, so an expired entry is better than nothing
+                degraded.increment();
+                if (cached != null) {
+                    result = cached.urls;
+                }
+            }
+        } finally {
+            call.future.complete(result);
+            inFlight.remove(videoID, call);
+        }
+        return result.subList(0, (int) Math.min(size, result.size()));
+    }
+
+    private List<String> search(String videoID, long size) {
         try {
             YouTube.Search.List search = youtube.search().list("id");
 
@@ -103,12 +199,20 @@ public class YoutubeAPI {
             // Call the API.
             SearchListResponse searchResponse = search.execute();
             //System.out.println(searchResponse.toPrettyString());
-            calls++;
             List<SearchResult> searchResultList = searchResponse.getItems();
             return searchResultList.stream().map(SearchResult::getId).map(ResourceId::getVideoId).map(s -> "https://www.youtube.com/watch?v=" + s).collect(Collectors.toList());
         } catch (GoogleJsonResponseException e) {
-            System.err.println("There was a service error: " + e.getDetails().getCode() + " : "
-                    + e.getDetails().getMessage());
+            final GoogleJsonError details = e.getDetails();
+            if (details == null) {
+                System.err.println("There was a service error: " + e.getStatusCode() + " : " + e.getStatusMessage());
+                return Collections.emptyList();
+            }
+            System.err.println("There was a service error: " + details.getCode() + " : "
+                    + details.getMessage());
+            if (details.getErrors() != null && details.getErrors().stream()
+                    .anyMatch(error -> "quotaExceeded".equals(error.getReason()) || "dailyLimitExceeded".equals(error.getReason()))) {
+                quota.exhaust();
+            }
         } catch (IOException e) {
             System.err.println("There was an IO error: " + e.getCause() + " : " + e.getMessage());
         } catch (Throwable t) {
@@ -117,5 +221,40 @@ public class YoutubeAPI {
         return Collections.emptyList();
     }
 
+    private synchronized CachedResult getCached(String videoID) {
+        return cache.get(videoID);
+    }
+
+    private synchronized void putCached(String videoID, CachedResult result) {
+        cache.put(videoID, result);
+    }
+
+    public QuotaTracker getQuota() {
+        return quota;
+    }
+
+    private static class Call {
+        private final CompletableFuture<List<String>> future = new CompletableFuture<>();
+        private final long fetch;
+
+        private Call(long fetch) {
+            this.fetch = fetch;
+        }
+    }
 
+    private static class CachedResult {
+        private final List<String> urls;
+        private final long fetched;
+        private final long expiresAt;
+
+        private CachedResult(List<String> urls, long fetched, long expiresAt) {
+            this.urls = urls;
+            this.fetched = fetched;
+            this.expiresAt = expiresAt;
+        }
+
+        private List<String> first(long size) {
+            return urls.subList(0, (int) Math.min(size, urls.size()));
+        }
+    }
 }
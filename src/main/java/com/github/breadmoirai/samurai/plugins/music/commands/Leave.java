@@ -22,6 +22,6 @@ public class Leave extends AbstractMusicCommand {
 
     @Override
     public void onCommand(CommandEvent event) {
-        getPlugin(event).retrieveManager(event.getGuildId()).ifPresent(GuildAudioManager::destroy);
+        getPlugin(event).removeManager(event.getGuildId()).ifPresent(GuildAudioManager::destroy);
     }
 }
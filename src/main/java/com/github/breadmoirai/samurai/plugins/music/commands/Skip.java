@@ -17,16 +17,14 @@ package com.github.breadmoirai.samurai.plugins.music.commands;
 import com.github.breadmoirai.breadbot.framework.event.CommandEvent;
 import com.github.breadmoirai.samurai.plugins.music.AbstractMusicCommand;
 import com.github.breadmoirai.samurai.plugins.music.GuildAudioManager;
+import com.github.breadmoirai.samurai.util.AtomicQueue;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import net.dv8tion.jda.core.EmbedBuilder;
 import net.dv8tion.jda.core.Permission;
 
-import java.util.ArrayDeque;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 /**
  * @author TonTL
@@ -45,27 +43,26 @@ public class Skip extends AbstractMusicCommand {
         if (managerOptional.isPresent()) {
             final GuildAudioManager audioManager = managerOptional.get();
             final EmbedBuilder eb = new EmbedBuilder().appendDescription("Skipped: ");
-            final List<AudioTrack> queue = audioManager.scheduler.getQueue();
             if (event.hasContent()) {
                 if (event.getContent().equalsIgnoreCase("all")) {
-                    int size = queue.size();
+                    int size = audioManager.scheduler.getQueue().size();
                     audioManager.scheduler.clear();
                     final StringBuilder db = eb.getDescriptionBuilder();
                     db.append('`').append(size).append(" songs`");
                     event.reply().setEmbed(eb.build());
                     return;
                 } else {
-                    final List<Integer> argList = event.getArguments().ints().boxed().collect(Collectors.toList());
-                    final int size = queue.size();
-                    final ArrayDeque<AudioTrack> skip = audioManager.scheduler.skip(argList.stream()).collect(Collectors.toCollection(ArrayDeque::new));
-                    final IntStream intStream = argList.stream().distinct().mapToInt(Integer::intValue).sorted().map(operand -> operand - 1).filter(integer -> integer >= 0 && integer < size);
-                    intStream.forEachOrdered(value -> eb.appendDescription(String.format("\n`%d.` %s", value + 1, Play.trackInfoDisplay(skip.removeLast(), true))));
+                    final List<AtomicQueue.Removed<AudioTrack>> skipped = audioManager.scheduler.skip(event.getArguments().ints().toArray());
+                    for (AtomicQueue.Removed<AudioTrack> removed : skipped) {
+                        eb.appendDescription(String.format("\n`%d.` %s", removed.getIndex() + 1, Play.trackInfoDisplay(removed.getElement(), true)));
+                    }
                 }
             } else {
                 AudioTrack current = audioManager.scheduler.getCurrent();
+                final boolean queued = !audioManager.scheduler.getQueue().isEmpty();
                 eb.appendDescription(Play.trackInfoDisplay(current, true));
                 audioManager.scheduler.nextTrack();
-                if (queue.size() > 0) {
+                if (queued) {
                     eb.appendDescription("\nNow Playing: ").appendDescription(Play.trackInfoDisplay(audioManager.scheduler.getCurrent(), true));
                 } else {
                     event.reply().setEmbed(eb.build()).after(2, TimeUnit.SECONDS).onSuccess(message -> {
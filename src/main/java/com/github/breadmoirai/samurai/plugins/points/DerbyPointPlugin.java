@@ -18,7 +18,10 @@ import com.github.breadmoirai.breadbot.framework.CommandPlugin;
 import com.github.breadmoirai.breadbot.framework.builder.BreadBotBuilder;
 import com.github.breadmoirai.samurai.plugins.derby.DerbyDatabase;
 import com.github.breadmoirai.samurai.plugins.derby.MissingDerbyPluginException;
-import gnu.trove.TCollections;
+import com.github.breadmoirai.samurai.plugins.metrics.EventMetrics;
+import com.github.breadmoirai.samurai.plugins.metrics.MetricRegistry;
+import com.github.breadmoirai.samurai.plugins.metrics.MetricsPlugin;
+import gnu.trove.map.TLongDoubleMap;
 import gnu.trove.map.TLongObjectMap;
 import gnu.trove.map.hash.TLongObjectHashMap;
 import net.dv8tion.jda.core.OnlineStatus;
@@ -29,6 +32,8 @@ import net.dv8tion.jda.core.entities.VoiceChannel;
 import net.dv8tion.jda.core.events.Event;
 import net.dv8tion.jda.core.events.ReadyEvent;
 import net.dv8tion.jda.core.events.ShutdownEvent;
+import net.dv8tion.jda.core.events.guild.member.GuildMemberJoinEvent;
+import net.dv8tion.jda.core.events.guild.member.GuildMemberLeaveEvent;
 import net.dv8tion.jda.core.events.guild.voice.GuildVoiceJoinEvent;
 import net.dv8tion.jda.core.events.guild.voice.GuildVoiceLeaveEvent;
 import net.dv8tion.jda.core.events.guild.voice.GuildVoiceMuteEvent;
@@ -38,10 +43,10 @@ import net.dv8tion.jda.core.hooks.SubscribeEvent;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
@@ -50,12 +55,19 @@ public class DerbyPointPlugin implements net.dv8tion.jda.core.hooks.EventListene
     //    private static final double MESSAGE_POINT = .018;
     private static final double MINUTE_POINT = .0001;
     private static final double VOICE_POINT = .0003;
+    private static final int FLUSH_THRESHOLD = 512;
+    private static final long FLUSH_INTERVAL_SECONDS = 30;
 
-    private final ScheduledExecutorService pool = Executors.newSingleThreadScheduledExecutor();
-    private TLongObjectMap<PointSession> pointMap;
+    private final ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(1);
+    private final EventMetrics eventMetrics = new EventMetrics("point");
+    private final Leaderboards leaderboards = new Leaderboards();
+    private PointLedger ledger;
     private HashSet<VoiceChannel> voiceChannels;
+    private DerbyDatabase databasePlugin;
     private PointExtension database;
+    private PointJournal journal;
     private long selfId;
+    private volatile long warmupMillis;
 
     @Override
     public String getName() {
@@ -68,22 +80,86 @@ public class DerbyPointPlugin implements net.dv8tion.jda.core.hooks.EventListene
             throw new MissingDerbyPluginException();
         }
         final DerbyDatabase database = builder.getPlugin(DerbyDatabase.class);
+        this.databasePlugin = database;
+        database.holdOpen();
         this.database = database.getExtension(PointExtension::new);
+        this.journal = new PointJournal(this.database, pool, FLUSH_THRESHOLD);
+        final MetricRegistry registry = MetricRegistry.getDefault();
+        registry.gauge("points_journal_depth", "Users with point changes that have not been written", journal::getQueueDepth);
+        registry.counter("points_journal_flushes_total", "Batches written by the point journal", journal::getFlushCount);
+        registry.gauge("points_journal_last_flush_seconds", "Duration of the last point journal flush", () -> journal.getLastFlushMillis() / 1000);
+        registry.gauge("points_online_sessions", "Users with a live point session", () -> ledger == null ? 0 : ledger.size());
+        registry.gauge("points_warmup_seconds", "Time taken to load points when the bot became ready", () -> warmupMillis / 1000.0);
+        MetricsPlugin.monitorExecutor("points", pool);
         builder.addCommand(PointsCommand::new)
                 .addCommand(Ranking::new);
     }
 
 
     public PointSession getPoints(long userId) {
-        if (pointMap.containsKey(userId)) {
-            return pointMap.get(userId);
+        final PointSession session = ledger.get(userId);
+        if (session != null) {
+            return session;
         } else {
-            return database.getPointSession(userId, OnlineStatus.UNKNOWN);
+            return loadSession(userId, OnlineStatus.UNKNOWN);
         }
     }
 
+    private PointSession loadSession(long userId, OnlineStatus status) {
+        return new PointSession(userId, journal.getPoints(userId), status, journal);
+    }
+
+    public PointLedger getLedger() {
+        return ledger;
+    }
+
+    /**
+     * Returns the leaderboard of this guild, building it from the stored points of its members the first time it is
+     * requested.
+     */
+    public Leaderboard getLeaderboard(Guild guild) {
+        final List<Member> members = guild.getMembers();
+        final long[] userIds = new long[members.size()];
+        for (int i = 0; i < userIds.length; i++) {
+            userIds[i] = members.get(i).getUser().getIdLong();
+        }
+        return leaderboards.getOrBuild(guild.getIdLong(), userIds, () -> buildLeaderboard(userIds));
+    }
+
+    private Leaderboard buildLeaderboard(long[] userIds) {
+        final TLongDoubleMap stored = journal.getPoints(userIds);
+        final Leaderboard leaderboard = new Leaderboard(ledger, userIds.length);
+        for (long userId : userIds) {
+            final PointSession session = ledger.get(userId);
+            if (session != null) {
+                leaderboard.put(userId, session.getPoints());
+            } else {
+                leaderboard.put(userId, stored.get(userId));
+            }
+        }
+        return leaderboard;
+    }
+
+    /**
+     * @return how long it took to load the points of online users when the bot became ready
+     */
+    public long getWarmupMillis() {
+        return warmupMillis;
+    }
+
+    public PointJournal getJournal() {
+        return journal;
+    }
+
     @Override
     public void onEvent(Event event) {
+        final long start = System.nanoTime();
+        if (handleEvent(event)) {
+            eventMetrics.record(event, start);
+        }
+    }
+
+    private boolean handleEvent(Event event) {
         if (event instanceof ReadyEvent) {
             onReady(((ReadyEvent) event));
         } else if (event instanceof GuildMessageReceivedEvent) {
@@ -96,9 +172,16 @@ public class DerbyPointPlugin implements net.dv8tion.jda.core.hooks.EventListene
             onGuildVoiceMute(((GuildVoiceMuteEvent) event));
         } else if (event instanceof UserOnlineStatusUpdateEvent) {
             onUserOnlineStatusUpdate(((UserOnlineStatusUpdateEvent) event));
+        } else if (event instanceof GuildMemberJoinEvent) {
+            onGuildMemberJoin(((GuildMemberJoinEvent) event));
+        } else if (event instanceof GuildMemberLeaveEvent) {
+            onGuildMemberLeave(((GuildMemberLeaveEvent) event));
         } else if (event instanceof ShutdownEvent) {
             onShutdown(((ShutdownEvent) event));
+        } else {
+            return false;
         }
+        return true;
     }
 
 
@@ -106,8 +189,9 @@ public class DerbyPointPlugin implements net.dv8tion.jda.core.hooks.EventListene
     public void onReady(ReadyEvent event) {
         selfId = event.getJDA().getSelfUser().getIdLong();
         voiceChannels = new HashSet<>(20);
+        final long start = System.nanoTime();
         final List<User> users = event.getJDA().getUsers();
-        pointMap = TCollections.synchronizedMap(new TLongObjectHashMap<>(users.size() * 2));
+        final TLongObjectMap<OnlineStatus> online = new TLongObjectHashMap<>(users.size());
         for (User user : users) {
             if (!checkUser(user)) continue;
             final List<Guild> mutualGuilds = event.getJDA().getMutualGuilds(user);
@@ -115,14 +199,19 @@ public class DerbyPointPlugin implements net.dv8tion.jda.core.hooks.EventListene
             final Guild guild = mutualGuilds.get(0);
             final OnlineStatus onlineStatus = guild.getMember(user).getOnlineStatus();
             if (onlineStatus == OnlineStatus.ONLINE || onlineStatus == OnlineStatus.IDLE) {
-                final long idLong = user.getIdLong();
-                if (!pointMap.containsKey(idLong)) {
-                    pointMap.put(idLong, database.getPointSession(idLong, onlineStatus));
-                }
+                online.put(user.getIdLong(), onlineStatus);
             }
         }
+        final long[] userIds = online.keys();
+        final TLongDoubleMap stored = journal.getPoints(userIds);
+        ledger = new PointLedger(userIds.length);
+        Arrays.stream(userIds).parallel().forEach(userId -> {
+            ledger.putIfAbsent(userId, new PointSession(userId, stored.get(userId), online.get(userId), journal));
+        });
+        warmupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
         pool.scheduleAtFixedRate(this::addMinutePoints, 2, 1, TimeUnit.MINUTES);
         pool.scheduleAtFixedRate(this::addVoicePoints, 2, 1, TimeUnit.MINUTES);
+        pool.scheduleWithFixedDelay(this::flushPoints, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
     }
 
     @SubscribeEvent
@@ -137,24 +226,17 @@ public class DerbyPointPlugin implements net.dv8tion.jda.core.hooks.EventListene
             case OFFLINE:
             case DO_NOT_DISTURB:
             case UNKNOWN: {
-                PointSession points = pointMap.get(userId);
+                final PointSession points = ledger.remove(userId);
                 if (points != null) {
-                    pointMap.remove(userId);
-                    points.commit();
+                    points.close();
+                    leaderboards.forUser(userId, leaderboard -> leaderboard.put(userId, points.getPoints()));
                 }
             }
             break;
 
             case IDLE:
             case ONLINE: {
-                PointSession pointSession = pointMap.get(userId);
-                if (pointSession != null) {
-                    pointSession.setStatus(onlineStatus);
-                } else {
-                    final PointSession sesh = database.getPointSession(userId, onlineStatus);
-                    sesh.setStatus(onlineStatus);
-                    pointMap.put(userId, sesh);
-                }
+                ledger.getOrLoad(userId, id -> loadSession(id, onlineStatus)).setStatus(onlineStatus);
             }
         }
     }
@@ -190,17 +272,21 @@ public class DerbyPointPlugin implements net.dv8tion.jda.core.hooks.EventListene
     }
 
     private void addMinutePoints() {
-        pointMap.valueCollection().parallelStream().forEach(pointSession -> pointSession.offsetPoints(MINUTE_POINT));
+        ledger.parallelForEach(pointSession -> pointSession.offsetPoints(MINUTE_POINT));
+        ledger.forEach(session -> {
+            final long userId = session.getId();
+            leaderboards.forUser(userId, leaderboard -> leaderboard.markDirty(userId));
+        });
     }
 
     public void offsetPoints(long userId, double pointValue) {
-        PointSession pointSession = pointMap.get(userId);
+        final PointSession pointSession = ledger.get(userId);
         if (pointSession != null) {
             pointSession.offsetPoints(pointValue);
+            leaderboards.forUser(userId, leaderboard -> leaderboard.markDirty(userId));
         } else {
-            final PointSession session = database.getPointSession(userId, null);
-            session.offsetPoints(pointValue);
-            session.commit();
+            journal.offset(userId, pointValue);
+            leaderboards.forUser(userId, leaderboard -> leaderboard.offset(userId, pointValue));
         }
     }
 
@@ -213,10 +299,33 @@ public class DerbyPointPlugin implements net.dv8tion.jda.core.hooks.EventListene
         offsetPoints(to, amount);
     }
 
+    private void flushPoints() {
+        ledger.forEach(PointSession::commit);
+        journal.flush();
+    }
+
     @SubscribeEvent
     public void onShutdown(ShutdownEvent event) {
-        pointMap.valueCollection().parallelStream().forEach(PointSession::commit);
-        pool.shutdownNow();
+        try {
+            flushPoints();
+        } finally {
+            databasePlugin.release();
+            pool.shutdownNow();
+        }
+    }
+
+    @SubscribeEvent
+    public void onGuildMemberJoin(GuildMemberJoinEvent event) {
+        final long guildId = event.getGuild().getIdLong();
+        if (leaderboards.get(guildId) != null) {
+            final long userId = event.getUser().getIdLong();
+            leaderboards.addMember(guildId, userId, getPoints(userId).getPoints());
+        }
+    }
+
+    @SubscribeEvent
+    public void onGuildMemberLeave(GuildMemberLeaveEvent event) {
+        leaderboards.removeMember(event.getGuild().getIdLong(), event.getUser().getIdLong());
     }
 
     @SubscribeEvent
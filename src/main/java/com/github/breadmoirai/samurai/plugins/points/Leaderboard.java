@@ -0,0 +1,123 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.breadmoirai.samurai.plugins.points;
+
+import com.github.breadmoirai.samurai.util.RankTree;
+import gnu.trove.iterator.TLongDoubleIterator;
+import gnu.trove.iterator.TLongIterator;
+import gnu.trove.map.TLongDoubleMap;
+import gnu.trove.map.hash.TLongDoubleHashMap;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.util.List;
+
+/**
+ * The point ranking of the members of a single guild.
+ * <p>
+ * Changes are not applied to the tree as they happen. Online users are marked dirty and their live value is read from
+ * the {@link PointLedger} when the leaderboard is next queried, while changes to offline users are accumulated as
+ * deltas. Either way, a query only costs O(k log n) for the k users that changed.
+ */
+public class Leaderboard {
+
+    private final PointLedger ledger;
+    private final RankTree tree;
+    private final TLongSet dirty;
+    private final TLongDoubleMap deltas;
+
+    public Leaderboard(PointLedger ledger, int capacity) {
+        this.ledger = ledger;
+        this.tree = new RankTree(capacity);
+        this.dirty = new TLongHashSet();
+        this.deltas = new TLongDoubleHashMap();
+    }
+
+    public synchronized boolean contains(long userId) {
+        return tree.contains(userId);
+    }
+
+    public synchronized void put(long userId, double points) {
+        dirty.remove(userId);
+        deltas.remove(userId);
+        tree.put(userId, points);
+    }
+
+    public synchronized void remove(long userId) {
+        dirty.remove(userId);
+        deltas.remove(userId);
+        tree.remove(userId);
+    }
+
+    /**
+     * Marks that the session of this user has changed.
+     */
+    public synchronized void markDirty(long userId) {
+        if (tree.contains(userId)) {
+            dirty.add(userId);
+        }
+    }
+
+    /**
+     * Records a change to a user that does not have a session.
+     */
+    public synchronized void offset(long userId, double delta) {
+        if (tree.contains(userId)) {
+            deltas.adjustOrPutValue(userId, delta, delta);
+        }
+    }
+
+    private void drain() {
+        if (!dirty.isEmpty()) {
+            for (TLongIterator iterator = dirty.iterator(); iterator.hasNext(); ) {
+                final long userId = iterator.next();
+                final PointSession session = ledger.get(userId);
+                if (session != null) {
+                    tree.put(userId, session.getPoints());
+                }
+            }
+            dirty.clear();
+        }
+        if (!deltas.isEmpty()) {
+            for (TLongDoubleIterator iterator = deltas.iterator(); iterator.hasNext(); ) {
+                iterator.advance();
+                tree.offset(iterator.key(), iterator.value());
+            }
+            deltas.clear();
+        }
+    }
+
+    public synchronized int size() {
+        return tree.size();
+    }
+
+    /**
+     * @return the zero-based rank of this user, or -1 if the user is not a member
+     */
+    public synchronized int rank(long userId) {
+        drain();
+        return tree.rank(userId);
+    }
+
+    /**
+     * @param from inclusive zero-based rank
+     * @param to   exclusive zero-based rank
+     */
+    public synchronized List<RankTree.Entry> range(int from, int to) {
+        drain();
+        return tree.range(from, to);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.breadmoirai.samurai.plugins.points;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * The leaderboards of every guild, indexed by member so that a change to one user only touches the leaderboards of
+ * the guilds that user is in.
+ */
+public class Leaderboards {
+
+    private static final Leaderboard[] NONE = new Leaderboard[0];
+
+    private final ConcurrentHashMap<Long, Leaderboard> byGuild = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Leaderboard[]> byUser = new ConcurrentHashMap<>();
+
+    public Leaderboard get(long guildId) {
+        return byGuild.get(guildId);
+    }
+
+    /**
+     * Returns the leaderboard of this guild, building it if it does not exist. The builder runs outside of any lock so
+     * two threads may both build the same leaderboard, in which case only the first to finish is kept.
+     *
+     * @param members the ids of the users the builder puts in the leaderboard
+     */
+    public Leaderboard getOrBuild(long guildId, long[] members, Supplier<Leaderboard> builder) {
+        final Leaderboard existing = byGuild.get(guildId);
+        if (existing != null) {
+            return existing;
+        }
+        final Leaderboard built = builder.get();
+        final Leaderboard previous = byGuild.putIfAbsent(guildId, built);
+        if (previous != null) {
+            return previous;
+        }
+        for (long userId : members) {
+            index(userId, built);
+        }
+        return built;
+    }
+
+    public void addMember(long guildId, long userId, double points) {
+        final Leaderboard leaderboard = byGuild.get(guildId);
+        if (leaderboard != null) {
+            leaderboard.put(userId, points);
+            index(userId, leaderboard);
+        }
+    }
+
+    public void removeMember(long guildId, long userId) {
+        final Leaderboard leaderboard = byGuild.get(guildId);
+        if (leaderboard != null) {
+            leaderboard.remove(userId);
+            byUser.computeIfPresent(userId, (id, boards) -> {
+                for (int i = 0; i < boards.length; i++) {
+                    if (boards[i] == leaderboard) {
+                        if (boards.length == 1) {
+                            return null;
+                        }
+                        final Leaderboard[] copy = new Leaderboard[boards.length - 1];
+                        System.arraycopy(boards, 0, copy, 0, i);
+                        System.arraycopy(boards, i + 1, copy, i, copy.length - i);
+                        return copy;
+                    }
+                }
+                return boards;
+            });
+        }
+    }
+
+    /**
+     * Applies the action to every built leaderboard this user is a member of.
+     */
+    public void forUser(long userId, Consumer<Leaderboard> action) {
+        for (Leaderboard leaderboard : byUser.getOrDefault(userId, NONE)) {
+            action.accept(leaderboard);
+        }
+    }
+
+    private void index(long userId, Leaderboard leaderboard) {
+        byUser.merge(userId, new Leaderboard[]{leaderboard}, (boards, added) -> {
+            for (Leaderboard board : boards) {
+                if (board == leaderboard) {
+                    return boards;
+                }
+            }
+            final Leaderboard[] copy = Arrays.copyOf(boards, boards.length + 1);
+            copy[boards.length] = leaderboard;
+            return copy;
+        });
+    }
+}
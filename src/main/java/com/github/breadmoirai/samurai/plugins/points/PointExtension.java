@@ -1,11 +1,17 @@
 package com.github.breadmoirai.samurai.plugins.points;
 
 import com.github.breadmoirai.samurai.plugins.derby.JdbiExtension;
-import net.dv8tion.jda.core.OnlineStatus;
+import gnu.trove.iterator.TLongDoubleIterator;
+import gnu.trove.map.TLongDoubleMap;
+import gnu.trove.map.hash.TLongDoubleHashMap;
 import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.PreparedBatch;
+import org.jdbi.v3.core.statement.Query;
 
 public class PointExtension extends JdbiExtension {
 
+    private static final int CHUNK_SIZE = 500;
+
     public PointExtension(Jdbi jdbi) {
         super(jdbi);
         if (tableAbsent("Points")) {
@@ -16,20 +22,75 @@ public class PointExtension extends JdbiExtension {
         }
     }
 
+    /**
+     * @return the stored points of this user, or 0 if the user does not have a row yet
+     */
     public double getPoints(long userId) {
-        return selectDouble("SELECT Value FROM Points WHERE Id = ?", userId)
-                .orElseGet(() -> {
-                    execute("INSERT INTO Points (Id) VALUES (?)", userId);
-                    return 0.0;
-                });
+        return selectDouble("SELECT Value FROM Points WHERE Id = ?", userId).orElse(0.0);
     }
 
-    public PointSession getPointSession(long userId, OnlineStatus status) {
-        return new PointSession(userId, getPoints(userId), status, this);
+    /**
+     * Loads the points of many users with one query per {@value CHUNK_SIZE} ids. Nothing is written; users without a
+     * row read as 0 until the journal first flushes points for them.
+     *
+     * @return a map of userId to points containing every id requested
+     */
+    public TLongDoubleMap getPoints(long[] userIds) {
+        final TLongDoubleMap points = new TLongDoubleHashMap(userIds.length);
+        useHandle(handle -> {
+            for (int from = 0; from < userIds.length; from += CHUNK_SIZE) {
+                final int to = Math.min(userIds.length, from + CHUNK_SIZE);
+                final StringBuilder sql = new StringBuilder("SELECT Id, Value FROM Points WHERE Id IN (?");
+                for (int i = from + 1; i < to; i++) {
+                    sql.append(", ?");
+                }
+                final Query query = handle.createQuery(sql.append(')').toString());
+                for (int i = from; i < to; i++) {
+                    query.bind(i - from, userIds[i]);
+                }
+                query.map((r, ctx) -> new Object[]{r.getLong(1), r.getDouble(2)})
+                     .forEach(row -> points.put((long) row[0], (double) row[1]));
+            }
+        });
+        for (long userId : userIds) {
+            if (!points.containsKey(userId)) {
+                points.put(userId, 0);
+            }
+        }
+        return points;
     }
 
-    public void setPoints(long userId, double value) {
-        execute("UPDATE Points SET Value = ? WHERE Id = ?", value, userId);
+    /**
+     * Adds each delta to the stored value in a single batch. Users that do not have a row yet are inserted with the
+     * delta as their value.
+     *
+     * @param deltas a map of userId to the change in points
+     */
+    public void offsetPoints(TLongDoubleMap deltas) {
+        final long[] ids = new long[deltas.size()];
+        final double[] values = new double[deltas.size()];
+        final TLongDoubleIterator iterator = deltas.iterator();
+        for (int i = 0; iterator.hasNext(); i++) {
+            iterator.advance();
+            ids[i] = iterator.key();
+            values[i] = iterator.value();
+        }
+        useHandle(handle -> handle.useTransaction(h -> {
+            final PreparedBatch update = h.prepareBatch("UPDATE Points SET Value = Value + ? WHERE Id = ?");
+            for (int i = 0; i < ids.length; i++) {
+                update.add(values[i], ids[i]);
+            }
+            final int[] updated = update.execute();
+            final PreparedBatch insert = h.prepareBatch("INSERT INTO Points (Id, Value) VALUES (?, ?)");
+            for (int i = 0; i < ids.length; i++) {
+                if (updated[i] == 0) {
+                    insert.add(ids[i], values[i]);
+                }
+            }
+            if (insert.size() > 0) {
+                insert.execute();
+            }
+        }));
     }
 
 }
@@ -0,0 +1,185 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.breadmoirai.samurai.plugins.points;
+
+import gnu.trove.map.TLongDoubleMap;
+import gnu.trove.map.hash.TLongDoubleHashMap;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer for point changes.
+ * <p>
+ * Deltas are merged per user in memory and written to the database as a single batch when {@link #flush()} is called,
+ * either by the owner on an interval or automatically once {@code flushThreshold} users have pending changes.
+ */
+public class PointJournal {
+
+    private final PointExtension database;
+    private final Executor executor;
+    private final int flushThreshold;
+
+    private final Object lock = new Object();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private TLongDoubleMap pending;
+
+    private final LongAdder flushCount = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private volatile long lastFlushNanos;
+    private volatile int lastFlushSize;
+
+    public PointJournal(PointExtension database, Executor executor, int flushThreshold) {
+        this.database = database;
+        this.executor = executor;
+        this.flushThreshold = flushThreshold;
+        this.pending = new TLongDoubleHashMap();
+    }
+
+    /**
+     * Records a change in points for a user. If the journal has reached its threshold a flush is queued on the
+     * executor, or run on this thread if the executor has been shut down.
+     */
+    public void offset(long userId, double delta) {
+        if (delta == 0) return;
+        final boolean full;
+        synchronized (lock) {
+            pending.adjustOrPutValue(userId, delta, delta);
+            full = pending.size() >= flushThreshold;
+        }
+        if (full && flushQueued.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> {
+                    flushQueued.set(false);
+                    flush();
+                });
+            } catch (RejectedExecutionException e) {
+                flushQueued.set(false);
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Reads the stored points of the user plus the changes that have not been written yet. Waits for a flush in
+     * progress, since its batch is neither pending nor stored until it commits.
+     */
+    public double getPoints(long userId) {
+        flushLock.lock();
+        try {
+            final double stored = database.getPoints(userId);
+            synchronized (lock) {
+                return stored + pending.get(userId);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the points of many users the same way as {@link #getPoints(long)}.
+     *
+     * @return a map of userId to points containing every id requested
+     */
+    public TLongDoubleMap getPoints(long[] userIds) {
+        flushLock.lock();
+        try {
+            final TLongDoubleMap points = database.getPoints(userIds);
+            synchronized (lock) {
+                pending.forEachEntry((userId, delta) -> {
+                    if (points.containsKey(userId)) {
+                        points.adjustValue(userId, delta);
+                    }
+                    return true;
+                });
+            }
+            return points;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Writes every pending delta in one batch. If the write fails, the deltas are merged back into the journal.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            final TLongDoubleMap batch;
+            synchronized (lock) {
+                if (pending.isEmpty()) return;
+                batch = pending;
+                pending = new TLongDoubleHashMap(batch.size());
+            }
+            final long start = System.nanoTime();
+            try {
+                database.offsetPoints(batch);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                synchronized (lock) {
+                    batch.forEachEntry((userId, delta) -> {
+                        pending.adjustOrPutValue(userId, delta, delta);
+                        return true;
+                    });
+                }
+                return;
+            }
+            final long elapsed = System.nanoTime() - start;
+            lastFlushNanos = elapsed;
+            lastFlushSize = batch.size();
+            flushNanos.add(elapsed);
+            flushCount.increment();
+            flushedRows.add(batch.size());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of users with unwritten changes
+     */
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    public long getFlushCount() {
+        return flushCount.sum();
+    }
+
+    public long getFlushedRows() {
+        return flushedRows.sum();
+    }
+
+    public int getLastFlushSize() {
+        return lastFlushSize;
+    }
+
+    public double getLastFlushMillis() {
+        return lastFlushNanos / 1_000_000.0;
+    }
+
+    public double getAverageFlushMillis() {
+        final long count = flushCount.sum();
+        return count == 0 ? 0 : flushNanos.sum() / (count * 1_000_000.0);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.breadmoirai.samurai.plugins.points;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * Holds the {@link PointSession PointSessions} of online users.
+ * <p>
+ * Users are spread over a fixed number of stripes, each a primitive map with its own lock, so lookups for different
+ * users rarely contend. Point values themselves are updated atomically by the session and never require a stripe lock.
+ */
+public class PointLedger {
+
+    private static final int DEFAULT_STRIPES = 32;
+
+    private final Stripe[] stripes;
+    private final int mask;
+
+    public PointLedger(int expectedSize) {
+        this(expectedSize, DEFAULT_STRIPES);
+    }
+
+    public PointLedger(int expectedSize, int stripeCount) {
+        int n = 1;
+        while (n < stripeCount) n <<= 1;
+        this.stripes = new Stripe[n];
+        this.mask = n - 1;
+        final int perStripe = Math.max(8, expectedSize / n);
+        for (int i = 0; i < n; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+    }
+
+    private Stripe stripe(long userId) {
+        int h = (int) (userId ^ (userId >>> 32));
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return stripes[h & mask];
+    }
+
+    public PointSession get(long userId) {
+        final Stripe stripe = stripe(userId);
+        synchronized (stripe) {
+            return stripe.map.get(userId);
+        }
+    }
+
+    public boolean containsKey(long userId) {
+        final Stripe stripe = stripe(userId);
+        synchronized (stripe) {
+            return stripe.map.containsKey(userId);
+        }
+    }
+
+    /**
+     * Returns the session for this user, creating it with {@code loader} if absent.
+     * The loader is called without holding a lock, so it may be called more than once under contention; only one
+     * result is kept.
+     */
+    public PointSession getOrLoad(long userId, LongFunction<PointSession> loader) {
+        final PointSession existing = get(userId);
+        if (existing != null) return existing;
+        final PointSession loaded = loader.apply(userId);
+        final PointSession previous = putIfAbsent(userId, loaded);
+        return previous != null ? previous : loaded;
+    }
+
+    /**
+     * @return the session already present for this user, or {@code null} if {@code session} was added
+     */
+    public PointSession putIfAbsent(long userId, PointSession session) {
+        final Stripe stripe = stripe(userId);
+        synchronized (stripe) {
+            return stripe.map.putIfAbsent(userId, session);
+        }
+    }
+
+    public PointSession remove(long userId) {
+        final Stripe stripe = stripe(userId);
+        synchronized (stripe) {
+            return stripe.map.remove(userId);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.map.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Applies the action to every session. Each stripe is copied under its lock and the action runs outside of it.
+     */
+    public void forEach(Consumer<PointSession> action) {
+        for (Stripe stripe : stripes) {
+            for (PointSession session : stripe.snapshot()) {
+                action.accept(session);
+            }
+        }
+    }
+
+    /**
+     * Like {@link #forEach(Consumer)} but stripes are processed in parallel.
+     */
+    public void parallelForEach(Consumer<PointSession> action) {
+        Arrays.stream(stripes).parallel().forEach(stripe -> {
+            for (PointSession session : stripe.snapshot()) {
+                action.accept(session);
+            }
+        });
+    }
+
+    private static class Stripe {
+
+        private final TLongObjectMap<PointSession> map;
+
+        private Stripe(int capacity) {
+            this.map = new TLongObjectHashMap<>(capacity);
+        }
+
+        private synchronized PointSession[] snapshot() {
+            return map.values(new PointSession[map.size()]);
+        }
+    }
+}
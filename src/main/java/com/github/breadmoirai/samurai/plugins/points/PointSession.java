@@ -17,21 +17,29 @@ package com.github.breadmoirai.samurai.plugins.points;
 import net.dv8tion.jda.core.OnlineStatus;
 
 import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * The live point balance of a user. Values are stored as the raw bits of a double so that offsets from any thread can
+ * be applied with a compare-and-set instead of a lock.
+ */
 public class PointSession {
-    private final PointExtension database;
+    private final PointJournal journal;
     private final long id;
 
-    private OnlineStatus status;
-    private double points;
+    private final AtomicLong points;
+    private final AtomicLong committed;
+    private volatile boolean closed;
 
-    private Instant lastMessageSent;
+    private volatile OnlineStatus status;
+    private volatile Instant lastMessageSent;
 
-    public PointSession(long id, double points, OnlineStatus status, PointExtension database) {
+    public PointSession(long id, double points, OnlineStatus status, PointJournal journal) {
         this.id = id;
-        this.points = points;
+        this.points = new AtomicLong(Double.doubleToRawLongBits(points));
+        this.committed = new AtomicLong(Double.doubleToRawLongBits(points));
         this.status = status;
-        this.database = database;
+        this.journal = journal;
     }
 
     public long getId() {
@@ -39,7 +47,7 @@ public class PointSession {
     }
 
     public double getPoints() {
-        return points;
+        return Double.longBitsToDouble(points.get());
     }
 
     public Instant getLastMessageSent() {
@@ -50,12 +58,39 @@ public class PointSession {
         this.lastMessageSent = lastMessageSent;
     }
 
+    /**
+     * Records the points gained since the last commit in the journal.
+     * Concurrent commits each move the baseline forward by exactly the amount they record, so no offset is counted
+     * twice or dropped.
+     */
     public void commit() {
-        database.setPoints(id, points);
+        final long current = points.get();
+        final long previous = committed.getAndSet(current);
+        journal.offset(id, Double.longBitsToDouble(current) - Double.longBitsToDouble(previous));
+    }
+
+    /**
+     * Commits this session for the last time. Offsets that race with closing are committed by the thread that
+     * applied them.
+     */
+    public void close() {
+        closed = true;
+        commit();
+    }
+
+    public boolean isClosed() {
+        return closed;
     }
 
     public void offsetPoints(double offset) {
-        points += offset;
+        long prev, next;
+        do {
+            prev = points.get();
+            next = Double.doubleToRawLongBits(Double.longBitsToDouble(prev) + offset);
+        } while (!points.compareAndSet(prev, next));
+        if (closed) {
+            commit();
+        }
     }
 
     public OnlineStatus getStatus() {
@@ -18,12 +18,11 @@ package com.github.breadmoirai.samurai.plugins.points;
 import com.github.breadmoirai.breadbot.framework.annotation.command.MainCommand;
 import com.github.breadmoirai.breadbot.framework.annotation.parameter.Author;
 import com.github.breadmoirai.breadbot.framework.event.CommandEvent;
-import com.github.breadmoirai.samurai.util.ArrayUtil;
+import com.github.breadmoirai.samurai.util.RankTree;
 import net.dv8tion.jda.core.entities.Member;
-import net.dv8tion.jda.core.entities.User;
 
-import java.util.Comparator;
 import java.util.IntSummaryStatistics;
+import java.util.List;
 import java.util.StringJoiner;
 
 public class Ranking {
@@ -32,38 +31,43 @@ public class Ranking {
 
     @MainCommand
     public String ranking(CommandEvent context, @Author(unlessMention = true) Member member, DerbyPointPlugin points) {
-        final PointSession[] pointSessions = context.getGuild().getMembers().stream().map(Member::getUser).mapToLong(User::getIdLong)
-                .mapToObj(points::getPoints).sorted(Comparator.comparingDouble(PointSession::getPoints).reversed()).toArray(PointSession[]::new);
-        int target = ArrayUtil.binarySearch(pointSessions, points.getPoints(member.getUser().getIdLong()).getPoints(), PointSession::getPoints, Comparator.naturalOrder(), p -> p.getId() == member.getUser().getIdLong());
-        final IntSummaryStatistics intStat = context.getArguments().ints().filter(value -> value > 0 && value <= pointSessions.length).summaryStatistics();
+        final Leaderboard leaderboard = points.getLeaderboard(context.getGuild());
+        final int size = leaderboard.size();
+        int target = leaderboard.rank(member.getUser().getIdLong());
+        final IntSummaryStatistics intStat = context.getArguments().ints().filter(value -> value > 0 && value <= size).summaryStatistics();
         int idx, end;
         if (intStat.getCount() == 1) {
-            end = Math.min(pointSessions.length, intStat.getMax());
+            end = Math.min(size, intStat.getMax());
             idx = Math.max(0, end - MAX_RESULTS);
         } else if (intStat.getCount() > 1) {
             idx = Math.max(0, intStat.getMin() - 1);
-            end = Math.min(pointSessions.length, intStat.getMax());
+            end = Math.min(size, intStat.getMax());
         } else if (target < MAX_RESULTS) {
             idx = 0;
-            end = Math.min(pointSessions.length, MAX_RESULTS);
+            end = Math.min(size, MAX_RESULTS);
         } else {
             idx = Math.max(0, target - MAX_RESULTS / 2);
-            end = Math.min(pointSessions.length, target + MAX_RESULTS / 2);
+            end = Math.min(size, target + MAX_RESULTS / 2);
         }
-        final int length = String.format("%.2f", pointSessions[idx].getPoints()).length();
+        final List<RankTree.Entry> entries = leaderboard.range(idx, end);
+        if (entries.isEmpty()) {
+            return "There are no rankings for this guild.";
+        }
+        final int length = String.format("%.2f", entries.get(0).getScore()).length();
         final StringJoiner sj = new StringJoiner("\n");
         int ranklen = Math.max(String.valueOf(idx).length(), String.valueOf(end).length());
         final String formatA = String.format("__#`%%-%dd\u00AD`|`\u00AD%%%d.2f` - **%%s**__", ranklen, length);
         final String formatB = String.format("#`%%-%dd\u00AD`|`\u00AD%%%d.2f` - %%s", ranklen, length);
-        System.out.println("formatB = " + formatB);
-        for (; idx < end; idx++) {
+        for (RankTree.Entry entry : entries) {
             String s;
-            final Member memberById = context.getGuild().getMemberById(pointSessions[idx].getId());
-            s = String.format(idx == target ? formatA : formatB, idx + 1, pointSessions[idx].getPoints(), memberById.getEffectiveName());
+            final Member memberById = context.getGuild().getMemberById(entry.getId());
+            final String name = memberById == null ? String.valueOf(entry.getId()) : memberById.getEffectiveName();
+            s = String.format(idx == target ? formatA : formatB, idx + 1, entry.getScore(), name);
             if (sj.length() + s.length() >= 2000) {
                 break;
             }
             sj.add(s.replace(" ", "\u00AD "));
+            idx++;
         }
         return sj.toString();
     }
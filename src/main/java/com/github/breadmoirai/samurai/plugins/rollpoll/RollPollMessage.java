@@ -20,6 +20,7 @@ import com.github.breadmoirai.breadbot.plugins.waiter.EventActionFuture;
 import com.github.breadmoirai.breadbot.plugins.waiter.EventWaiter;
 import com.github.breadmoirai.samurai.Dispatchable;
 import com.github.breadmoirai.samurai.util.IntObjectFunction;
+import com.github.breadmoirai.samurai.util.MessageEditCoalescer;
 import net.dv8tion.jda.core.EmbedBuilder;
 import net.dv8tion.jda.core.MessageBuilder;
 import net.dv8tion.jda.core.entities.Guild;
@@ -129,15 +130,26 @@ public class RollPollMessage implements Dispatchable {
               .action(event -> {
                   final Member member = event.getMember();
                   final Roll roll = new Roll(member.getUser().getIdLong());
-                  if (!rolls.contains(roll)) {
-                      rolls.add(roll);
+                  synchronized (rolls) {
+                      if (!rolls.contains(roll)) {
+                          rolls.add(roll);
+                      }
                   }
-                  event.getTextChannel().editMessageById(messageId, buildScoreBoard(event.getGuild())).queue();
+                  // the scoreboard may be rendered later on the coalescer's thread
+                  MessageEditCoalescer.getDefault().edit(event.getTextChannel(), messageId, () -> {
+                      synchronized (rolls) {
+                          return new MessageBuilder().setEmbed(buildScoreBoard(event.getGuild())).build();
+                      }
+                  });
               })
               .stopIf((e, i) -> false)
               .waitFor(Instant.now().until(endTime, ChronoUnit.MILLIS), TimeUnit.MILLISECONDS)
               .timeout(() -> {
-                  channel.editMessageById(messageId, distDispPoints(channel.getGuild())).queue();
+                  MessageEditCoalescer.getDefault().finish(channel, messageId, () -> {
+                      synchronized (rolls) {
+                          return new MessageBuilder().setEmbed(distDispPoints(channel.getGuild())).build();
+                      }
+                  });
                   channel.clearReactionsById(messageId).queue();
                   shutdownFuture.cancel();
               })
@@ -24,6 +24,7 @@ import com.github.breadmoirai.breadbot.plugins.waiter.EventWaiter;
 import com.github.breadmoirai.breadbot.plugins.waiter.EventWaiterPlugin;
 import com.github.breadmoirai.samurai.plugins.derby.DerbyDatabase;
 import com.github.breadmoirai.samurai.plugins.derby.MissingDerbyPluginException;
+import com.github.breadmoirai.samurai.plugins.metrics.EventMetrics;
 import com.github.breadmoirai.samurai.plugins.points.DerbyPointPlugin;
 import com.github.breadmoirai.samurai.util.IntObjectFunction;
 import net.dv8tion.jda.core.JDA;
@@ -43,6 +44,7 @@ import java.util.concurrent.TimeUnit;
 public class RollPollPlugin implements CommandPlugin, net.dv8tion.jda.core.hooks.EventListener {
 
     private final ScheduledExecutorService service;
+    private final EventMetrics eventMetrics = new EventMetrics("rollpoll");
     private RollPollExtension database;
     private JDA jda;
     private EventWaiter waiter;
@@ -74,8 +76,10 @@ public class RollPollPlugin implements CommandPlugin, net.dv8tion.jda.core.hooks
     @Override
     public void onEvent(Event event) {
         if (event instanceof ReadyEvent) {
+            final long start = System.nanoTime();
             onReadyEvent(((ReadyEvent) event));
             event.getJDA().removeEventListener(this);
+            eventMetrics.record(event, start);
         }
     }
 
@@ -0,0 +1,245 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.breadmoirai.samurai.plugins.trivia;
+
+import com.github.breadmoirai.samurai.util.WagnerFischer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Checks guesses against the answer of one question, allowing a few typos.
+ * <p>
+ * Everything that depends only on the answer is done once: the answer is normalized and expanded into variants
+ * (alternatives written as {@code a/b}, with and without a parenthesized part, numbers as digits and as words), and
+ * each variant is compiled into the bit masks of Myers' bit-parallel edit distance. A guess is then normalized into a
+ * buffer owned by the thread and compared in a single pass per variant that gives up as soon as the guess is too far
+ * off, without allocating.
+ */
+public class AnswerMatcher {
+
+    private static final Pattern PARENTHESES = Pattern.compile("\\(([^)]*)\\)");
+    private static final ThreadLocal<StringBuilder> GUESS = ThreadLocal.withInitial(() -> new StringBuilder(64));
+    private static final Map<String, String> NUMBER_WORDS = new HashMap<>();
+    private static final Map<String, String> NUMBER_DIGITS = new HashMap<>();
+
+    static {
+        final String[] words = {"zero", "one", "two", "three", "four", "five", "six", "seven", "eight", "nine", "ten",
+                "eleven", "twelve", "thirteen", "fourteen", "fifteen", "sixteen", "seventeen", "eighteen", "nineteen",
+                "twenty"};
+        for (int i = 0; i < words.length; i++) {
+            NUMBER_WORDS.put(words[i], Integer.toString(i));
+        }
+        final String[] tens = {"thirty", "forty", "fifty", "sixty", "seventy", "eighty", "ninety", "hundred"};
+        for (int i = 0; i < tens.length; i++) {
+            NUMBER_WORDS.put(tens[i], Integer.toString((i + 3) * 10));
+        }
+        NUMBER_WORDS.put("thousand", "1000");
+        NUMBER_WORDS.forEach((word, digits) -> NUMBER_DIGITS.put(digits, word));
+    }
+
+    private final Variant[] variants;
+
+    /**
+     * @param answer  the answer as it is shown
+     * @param aliases other answers that are also accepted
+     */
+    public AnswerMatcher(String answer, String... aliases) {
+        final Set<String> forms = new LinkedHashSet<>();
+        addForms(answer, forms);
+        for (String alias : aliases) {
+            addForms(alias, forms);
+        }
+        final List<Variant> variants = new ArrayList<>(forms.size());
+        for (String form : forms) {
+            if (!form.isEmpty()) {
+                variants.add(new Variant(form));
+            }
+        }
+        this.variants = variants.toArray(new Variant[0]);
+    }
+
+    private static void addForms(String answer, Set<String> forms) {
+        for (String alternative : answer.split("/")) {
+            final Matcher matcher = PARENTHESES.matcher(alternative);
+            final List<String> parts = new ArrayList<>(3);
+            parts.add(alternative);
+            if (matcher.find()) {
+                final String inside = matcher.group(1);
+                parts.add(matcher.replaceAll(" "));
+                parts.add(inside);
+            }
+            for (String part : parts) {
+                final String normalized = AnswerNormalizer.normalize(part);
+                forms.add(normalized);
+                forms.add(replaceTokens(normalized, NUMBER_WORDS));
+                forms.add(replaceTokens(normalized, NUMBER_DIGITS));
+            }
+        }
+    }
+
+    private static String replaceTokens(String normalized, Map<String, String> replacements) {
+        final String[] tokens = normalized.split(" ");
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = replacements.getOrDefault(tokens[i], tokens[i]);
+        }
+        return String.join(" ", tokens);
+    }
+
+    /**
+     * How many typos are forgiven in an answer of this length. Very short answers must be exact, otherwise any guess of
+     * the same length would be close enough.
+     */
+    static int tolerance(int length) {
+        if (length <= 3) {
+            return 0;
+        }
+        return length <= 8 ? 1 : 2;
+    }
+
+    public boolean matches(CharSequence guess) {
+        final StringBuilder normalized = AnswerNormalizer.normalize(guess, GUESS.get());
+        for (Variant variant : variants) {
+            if (variant.matches(normalized)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static int distance(String text, CharSequence guess, int max) {
+        return new Variant(text).distance(guess, max);
+    }
+
+    /**
+     * @return the normalized forms that are accepted
+     */
+    public List<String> getVariants() {
+        final List<String> forms = new ArrayList<>(variants.length);
+        for (Variant variant : variants) {
+            forms.add(variant.text);
+        }
+        return Collections.unmodifiableList(forms);
+    }
+
+    private static final class Variant {
+        private final String text;
+        private final int max;
+        /**
+         * Bit i of the mask of a character is set where the character occurs at index i of the text. Only used for
+         * texts that fit in a long.
+         */
+        private final long[] ascii;
+        private final char[] otherChars;
+        private final long[] otherMasks;
+
+        private Variant(String text) {
+            this.text = text;
+            this.max = tolerance(text.length());
+            if (text.length() > Long.SIZE) {
+                ascii = null;
+                otherChars = null;
+                otherMasks = null;
+                return;
+            }
+            ascii = new long[128];
+            final StringBuilder others = new StringBuilder();
+            for (int i = 0; i < text.length(); i++) {
+                final char c = text.charAt(i);
+                if (c < 128) {
+                    ascii[c] |= 1L << i;
+                } else if (others.indexOf(String.valueOf(c)) < 0) {
+                    others.append(c);
+                }
+            }
+            otherChars = others.toString().toCharArray();
+            otherMasks = new long[otherChars.length];
+            for (int k = 0; k < otherChars.length; k++) {
+                for (int i = 0; i < text.length(); i++) {
+                    if (text.charAt(i) == otherChars[k]) {
+                        otherMasks[k] |= 1L << i;
+                    }
+                }
+            }
+        }
+
+        private long mask(char c) {
+            if (c < 128) {
+                return ascii[c];
+            }
+            for (int k = 0; k < otherChars.length; k++) {
+                if (otherChars[k] == c) {
+                    return otherMasks[k];
+                }
+            }
+            return 0;
+        }
+
+        private boolean matches(CharSequence guess) {
+            return distance(guess, max) <= max;
+        }
+
+        /**
+         * @return the edit distance to the guess, or {@code max + 1} if it is greater than max
+         */
+        private int distance(CharSequence guess, int max) {
+            final int m = text.length();
+            final int n = guess.length();
+            if (Math.abs(m - n) > max) {
+                return max + 1;
+            }
+            if (ascii == null) {
+                return WagnerFischer.getLevenshteinDistance(text, guess, max);
+            }
+            // Myers' algorithm as given by Hyyro, computing the last row of the distance matrix one column per
+            // character of the guess. pv and mv are the vertical deltas of the column, score is its last cell.
+            final long high = 1L << (m - 1);
+            long pv = -1L;
+            long mv = 0;
+            int score = m;
+            for (int j = 0; j < n; j++) {
+                final long eq = mask(guess.charAt(j));
+                final long xv = eq | mv;
+                final long xh = (((eq & pv) + pv) ^ pv) | eq;
+                long ph = mv | ~(xh | pv);
+                long mh = pv & xh;
+                if ((ph & high) != 0) {
+                    score++;
+                } else if ((mh & high) != 0) {
+                    score--;
+                }
+                // the first row of the matrix counts up, so every column starts one higher
+                ph = (ph << 1) | 1;
+                mh <<= 1;
+                pv = mh | ~(xv | ph);
+                mv = ph & xv;
+                // each remaining character can lower the distance by at most one
+                if (score - (n - j - 1) > max) {
+                    return max + 1;
+                }
+            }
+            return Math.min(score, max + 1);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.breadmoirai.samurai.plugins.trivia;
+
+/**
+ * Puts answers and guesses in the same form so that they can be compared: lower case letters and digits separated by
+ * single spaces, with {@code &} spelled out, apostrophes dropped, any other punctuation treated as a space and a
+ * leading article removed.
+ * <p>
+ * This is a single pass over the input that writes into a buffer the caller provides, so normalizing a guess does
+ * not allocate.
+ */
+public final class AnswerNormalizer {
+
+    private static final String[] ARTICLES = {"the ", "an ", "a "};
+
+    private AnswerNormalizer() {
+    }
+
+    public static String normalize(CharSequence input) {
+        return normalize(input, new StringBuilder(input.length())).toString();
+    }
+
+    /**
+     * @param out cleared, then filled with the normalized input
+     * @return out
+     */
+    public static StringBuilder normalize(CharSequence input, StringBuilder out) {
+        out.setLength(0);
+        boolean space = false;
+        for (int i = 0; i < input.length(); i++) {
+            final char c = input.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (space && out.length() > 0) {
+                    out.append(' ');
+                }
+                space = false;
+                out.append(Character.toLowerCase(c));
+            } else if (c == '&') {
+                if (out.length() > 0) {
+                    out.append(' ');
+                }
+                out.append("and");
+                space = true;
+            } else if (c != '\'' && c != '\u2019') {
+                space = true;
+            }
+        }
+        for (String article : ARTICLES) {
+            if (out.length() > article.length() && startsWith(out, article)) {
+                out.delete(0, article.length());
+                break;
+            }
+        }
+        return out;
+    }
+
+    private static boolean startsWith(CharSequence s, String prefix) {
+        for (int i = 0; i < prefix.length(); i++) {
+            if (s.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
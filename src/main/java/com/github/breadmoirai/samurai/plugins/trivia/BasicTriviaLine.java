@@ -0,0 +1,76 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.breadmoirai.samurai.plugins.trivia;
+
+public class BasicTriviaLine implements TriviaLine {
+
+    private final String question;
+    private final String answer;
+    private final String category;
+    private final double weight;
+    private final String source;
+    private final String[] aliases;
+    private volatile AnswerMatcher matcher;
+
+    /**
+     * @param weight  the difficulty to start from, 0-1
+     * @param aliases other answers that are also accepted
+     */
+    public BasicTriviaLine(String question, String answer, String category, double weight, String source,
+                           String... aliases) {
+        this.question = question;
+        this.answer = answer;
+        this.category = category;
+        this.weight = weight;
+        this.source = source;
+        this.aliases = aliases;
+    }
+
+    @Override
+    public String getQuestion() {
+        return question;
+    }
+
+    @Override
+    public boolean checkAnswer(String s) {
+        AnswerMatcher matcher = this.matcher;
+        if (matcher == null) {
+            this.matcher = matcher = new AnswerMatcher(answer, aliases);
+        }
+        return matcher.matches(s);
+    }
+
+    @Override
+    public String getAnswer() {
+        return answer;
+    }
+
+    @Override
+    public double getWeight() {
+        return weight;
+    }
+
+    @Override
+    public String getCategory() {
+        return category;
+    }
+
+    @Override
+    public String getSource() {
+        return source;
+    }
+}
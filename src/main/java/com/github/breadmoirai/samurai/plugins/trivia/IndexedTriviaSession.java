@@ -0,0 +1,119 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.breadmoirai.samurai.plugins.trivia;
+
+import net.dv8tion.jda.core.EmbedBuilder;
+import net.dv8tion.jda.core.entities.MessageEmbed;
+
+import java.awt.*;
+
+/**
+ * A session over questions picked from a {@link TriviaIndex}. Whether each question was answered is recorded back into
+ * the index, so that its difficulty follows how guilds actually fare with it.
+ */
+public class IndexedTriviaSession implements TriviaSession {
+
+    private static final String[] DIFFICULTY = {"Easy", "Medium", "Hard"};
+
+    private final String name;
+    private final TriviaIndex index;
+    private final int[] ids;
+    private int i;
+    private TriviaLine current;
+    private boolean recorded;
+    private String selfAvatar;
+
+    public IndexedTriviaSession(String name, TriviaIndex index, int[] ids) {
+        this.name = name;
+        this.index = index;
+        this.ids = ids;
+    }
+
+    private String getAuthor() {
+        return String.format("%s | %s", current.getCategory(), DIFFICULTY[index.getBucket(ids[i - 1])]);
+    }
+
+    private String getFooter() {
+        return String.format("SamuraiGames\u2122 | %s | Question %d/%d", name, i, ids.length);
+    }
+
+    @Override
+    public MessageEmbed getQuestion() {
+        final EmbedBuilder embed = new EmbedBuilder();
+        embed.setColor(new Color(0, 121, 214))
+             .setDescription(String.format("**%s**", current.getQuestion()))
+             .setAuthor(getAuthor())
+             .setFooter(getFooter(), selfAvatar);
+        return embed.build();
+    }
+
+    @Override
+    public boolean checkAnswer(String ans) {
+        final boolean correct = current.checkAnswer(ans);
+        if (correct) {
+            record(true);
+        }
+        return correct;
+    }
+
+    @Override
+    public MessageEmbed getAnswer(boolean success) {
+        if (!success) {
+            record(false);
+        }
+        final EmbedBuilder embed = new EmbedBuilder();
+        embed.setColor(success ? new Color(78, 235, 48) : new Color(203, 66, 0))
+             .setAuthor(getAuthor())
+             .setDescription(String.format("**%s**", current.getQuestion()))
+             .addField("", current.getAnswer(), false)
+             .setFooter(getFooter(), selfAvatar);
+        return embed.build();
+    }
+
+    private void record(boolean answered) {
+        if (!recorded) {
+            recorded = true;
+            index.record(ids[i - 1], answered);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return i < ids.length;
+    }
+
+    @Override
+    public MessageEmbed nextQuestion() {
+        current = index.get(ids[i++]);
+        recorded = false;
+        return getQuestion();
+    }
+
+    @Override
+    public void setIcon(String url) {
+        selfAvatar = url;
+    }
+
+    @Override
+    public String getCategory() {
+        return current.getCategory();
+    }
+
+    public int size() {
+        return ids.length;
+    }
+}
@@ -20,13 +20,16 @@ import com.github.breadmoirai.samurai.plugins.derby.JdbiExtension;
 import gnu.trove.map.TLongLongMap;
 import gnu.trove.map.hash.TLongLongHashMap;
 import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.PreparedBatch;
 
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.List;
 import java.util.OptionalLong;
 import java.util.stream.Collector;
+import java.util.stream.Collectors;
 
 public class TriviaChannelDatabase extends JdbiExtension {
 
@@ -36,8 +39,12 @@ public class TriviaChannelDatabase extends JdbiExtension {
             execute("CREATE TABLE TriviaChannels (\n" +
                             "  GuildId       BIGINT NOT NULL PRIMARY KEY,\n" +
                             "  ChannelId     BIGINT NOT NULL,\n" +
-                            "  NextTime      TIMESTAMP\n" +
+                            "  NextTime      TIMESTAMP,\n" +
+                            "  IntervalMinutes INT NOT NULL DEFAULT " + TriviaScheduler.DEFAULT_INTERVAL_MINUTES + "\n" +
                             ")");
+        } else if (columnAbsent("TriviaChannels", "IntervalMinutes")) {
+            execute("ALTER TABLE TriviaChannels ADD COLUMN IntervalMinutes INT NOT NULL DEFAULT " +
+                            TriviaScheduler.DEFAULT_INTERVAL_MINUTES);
         }
     }
 
@@ -70,15 +77,40 @@ public class TriviaChannelDatabase extends JdbiExtension {
         execute("DELETE FROM TriviaChannels WHERE GuildId = ?", guildId);
     }
 
-    public void setNextTime(long guildId, Instant time) {
-        final Timestamp timestamp = Timestamp.valueOf(LocalDateTime.ofInstant(time, ZoneOffset.UTC));
-        execute("UPDATE TriviaChannels SET NextTime = ? WHERE GuildId = ? ", timestamp, guildId);
+    /**
+     * @return the next time and interval of every guild, with a next time of 0 if it has never been set
+     */
+    public List<TriviaScheduler.Slot> getSchedules() {
+        return withHandle(handle -> handle
+                .createQuery("SELECT GuildId, NextTime, IntervalMinutes FROM TriviaChannels")
+                .map((r, ctx) -> {
+                    final Timestamp next = r.getTimestamp(2);
+                    final long due = next == null ? 0 : next.toLocalDateTime().toInstant(ZoneOffset.UTC).toEpochMilli();
+                    return new TriviaScheduler.Slot(r.getLong(1), due, r.getInt(3));
+                })
+                .collect(Collectors.toList()));
     }
 
-    public Instant getNextTime(long guildId) {
-        return selectTimeStamp("SELECT NextTime FROM TriviaChannels WHERE GuildId = ?", guildId)
-                .map(Timestamp::toInstant)
-                .orElse(Instant.MIN);
+    /**
+     * Updates the next time of every guild in a single batch.
+     *
+     * @param nextTimes a map of guildId to epoch millis
+     */
+    public void setNextTimes(TLongLongMap nextTimes) {
+        useHandle(handle -> {
+            final PreparedBatch update = handle.prepareBatch("UPDATE TriviaChannels SET NextTime = ? WHERE GuildId = ?");
+            nextTimes.forEachEntry((guildId, millis) -> {
+                update.add(Timestamp.valueOf(LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC)), guildId);
+                return true;
+            });
+            if (update.size() > 0) {
+                update.execute();
+            }
+        });
+    }
+
+    public void setInterval(long guildId, int minutes) {
+        execute("UPDATE TriviaChannels SET IntervalMinutes = ? WHERE GuildId = ?", minutes, guildId);
     }
 
 }
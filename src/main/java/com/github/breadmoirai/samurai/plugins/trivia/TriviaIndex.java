@@ -0,0 +1,250 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.breadmoirai.samurai.plugins.trivia;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * The questions of one provider, numbered from 0 so that a guild's seen questions fit in a {@link BitSet}, and indexed
+ * by category and by difficulty so that a session can be assembled without looking anything up.
+ * <p>
+ * The difficulty of a question starts at {@link TriviaLine#getWeight()} and moves towards the share of times it went
+ * unanswered as it is asked.
+ */
+public class TriviaIndex {
+
+    public static final int EASY = 0;
+    public static final int MEDIUM = 1;
+    public static final int HARD = 2;
+    /**
+     * How many answers the initial difficulty of a question counts as.
+     */
+    private static final double PRIOR_STRENGTH = 4;
+    /**
+     * Share of a session drawn from the easy and from the hard questions, the rest is medium.
+     */
+    private static final double EDGE_SHARE = 0.3;
+    /**
+     * Random draws per wanted question before a pool is scanned in order.
+     */
+    private static final int DRAW_ATTEMPTS = 4;
+
+    private final List<TriviaLine> lines = new ArrayList<>();
+    private final TIntArrayList asked = new TIntArrayList();
+    private final TIntArrayList missed = new TIntArrayList();
+    private final TIntArrayList bucketOf = new TIntArrayList();
+    private final TIntArrayList positionOf = new TIntArrayList();
+    private final TIntArrayList[] buckets = {new TIntArrayList(), new TIntArrayList(), new TIntArrayList()};
+    private final Map<String, TIntArrayList> categories = new HashMap<>();
+
+    static int bucket(double difficulty) {
+        if (difficulty < 0.4) {
+            return EASY;
+        }
+        return difficulty < 0.7 ? MEDIUM : HARD;
+    }
+
+    /**
+     * @return the id of the question
+     */
+    public synchronized int add(TriviaLine line) {
+        final int id = lines.size();
+        lines.add(line);
+        asked.add(0);
+        missed.add(0);
+        final int bucket = bucket(line.getWeight());
+        bucketOf.add(bucket);
+        positionOf.add(buckets[bucket].size());
+        buckets[bucket].add(id);
+        categories.computeIfAbsent(line.getCategory(), c -> new TIntArrayList()).add(id);
+        return id;
+    }
+
+    public synchronized TriviaLine get(int id) {
+        return lines.get(id);
+    }
+
+    public synchronized int size() {
+        return lines.size();
+    }
+
+    public synchronized Set<String> getCategories() {
+        return Collections.unmodifiableSet(new HashSet<>(categories.keySet()));
+    }
+
+    public synchronized boolean hasCategory(String category) {
+        return categories.containsKey(category);
+    }
+
+    /**
+     * @return 0-1, the expected share of times the question goes unanswered
+     */
+    public synchronized double getDifficulty(int id) {
+        return (lines.get(id).getWeight() * PRIOR_STRENGTH + missed.get(id)) / (PRIOR_STRENGTH + asked.get(id));
+    }
+
+    public synchronized int getBucket(int id) {
+        return bucketOf.get(id);
+    }
+
+    /**
+     * Records how a question went, moving it to another difficulty if it turned out easier or harder than thought.
+     */
+    public synchronized void record(int id, boolean answered) {
+        asked.set(id, asked.get(id) + 1);
+        if (!answered) {
+            missed.set(id, missed.get(id) + 1);
+        }
+        final int from = bucketOf.get(id);
+        final int to = bucket(getDifficulty(id));
+        if (from != to) {
+            // swap with the last id of the old bucket so both moves are constant time
+            final TIntArrayList old = buckets[from];
+            final int position = positionOf.get(id);
+            final int last = old.removeAt(old.size() - 1);
+            if (last != id) {
+                old.set(position, last);
+                positionOf.set(last, position);
+            }
+            bucketOf.set(id, to);
+            positionOf.set(id, buckets[to].size());
+            buckets[to].add(id);
+        }
+    }
+
+    /**
+     * Picks questions that have not been seen, about a third each easy and hard and the rest medium, with no more than
+     * two from one category where there are enough others. Falls short of {@code count} only if there are not enough
+     * unseen questions.
+     *
+     * @param seen     the ids of the questions to leave out
+     * @param category only pick from this category, or null for any
+     * @return the ids in the order they should be asked, from easy to hard
+     */
+    public synchronized int[] assemble(int count, BitSet seen, String category, Random random) {
+        final int edge = (int) Math.round(count * EDGE_SHARE);
+        final int[] quota = {edge, count - 2 * edge, edge};
+        // a category session draws from that category and checks the bucket of each id instead
+        final TIntArrayList[] pools = new TIntArrayList[buckets.length];
+        final TIntArrayList inCategory = category == null ? null : categories.get(category);
+        for (int b = 0; b < buckets.length; b++) {
+            pools[b] = category == null ? buckets[b] : inCategory == null ? new TIntArrayList() : inCategory;
+        }
+        final Draw draw = new Draw(count, seen, random);
+        final int maxPerCategory = category == null ? 2 : count;
+        for (int b = 0; b < buckets.length; b++) {
+            draw.pick(pools[b], b, quota[b], maxPerCategory);
+            draw.pick(pools[b], b, quota[b] - countIn(draw.picked, b), count);
+        }
+        // any bucket that ran short is made up from the others, the medium ones first
+        for (int b : new int[]{MEDIUM, EASY, HARD}) {
+            draw.pick(pools[b], b, count - draw.picked.size(), maxPerCategory);
+        }
+        for (int b : new int[]{MEDIUM, EASY, HARD}) {
+            draw.pick(pools[b], b, count - draw.picked.size(), count);
+        }
+        final int[] ids = draw.picked.toArray();
+        sortByDifficulty(ids);
+        return ids;
+    }
+
+    private int countIn(TIntArrayList picked, int bucket) {
+        int n = 0;
+        for (int i = 0; i < picked.size(); i++) {
+            if (bucketOf.get(picked.get(i)) == bucket) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private void sortByDifficulty(int[] ids) {
+        // insertion sort, sessions are short
+        for (int i = 1; i < ids.length; i++) {
+            final int id = ids[i];
+            final double difficulty = getDifficulty(id);
+            int j = i - 1;
+            while (j >= 0 && getDifficulty(ids[j]) > difficulty) {
+                ids[j + 1] = ids[j];
+                j--;
+            }
+            ids[j + 1] = id;
+        }
+    }
+
+    /**
+     * The questions picked so far for one session. Ids are drawn at random straight from the pools without copying
+     * them, and a pool is only scanned once random draws keep landing on ids that cannot be used.
+     */
+    private class Draw {
+
+        private final BitSet seen;
+        private final Random random;
+        private final BitSet taken = new BitSet(lines.size());
+        private final TObjectIntHashMap<String> perCategory = new TObjectIntHashMap<>();
+        private final TIntArrayList picked;
+
+        private Draw(int count, BitSet seen, Random random) {
+            this.seen = seen;
+            this.random = random;
+            this.picked = new TIntArrayList(count);
+        }
+
+        private void pick(TIntArrayList pool, int bucket, int wanted, int maxPerCategory) {
+            final int size = pool.size();
+            if (wanted <= 0 || size == 0) {
+                return;
+            }
+            for (int attempts = wanted * DRAW_ATTEMPTS; attempts > 0 && wanted > 0; attempts--) {
+                if (take(pool.get(random.nextInt(size)), bucket, maxPerCategory)) {
+                    wanted--;
+                }
+            }
+            final int start = random.nextInt(size);
+            for (int i = 0; i < size && wanted > 0; i++) {
+                if (take(pool.get((start + i) % size), bucket, maxPerCategory)) {
+                    wanted--;
+                }
+            }
+        }
+
+        private boolean take(int id, int bucket, int maxPerCategory) {
+            if (seen.get(id) || taken.get(id) || bucketOf.get(id) != bucket) {
+                return false;
+            }
+            final String category = lines.get(id).getCategory();
+            if (perCategory.get(category) >= maxPerCategory) {
+                return false;
+            }
+            perCategory.adjustOrPutValue(category, 1, 1);
+            taken.set(id);
+            picked.add(id);
+            return true;
+        }
+    }
+}
@@ -21,6 +21,10 @@ import com.github.breadmoirai.breadbot.plugins.waiter.EventWaiter;
 import com.github.breadmoirai.breadbot.plugins.waiter.ReactionEventActionBuilder;
 import com.github.breadmoirai.samurai.plugins.personal.BreadMoiraiSamuraiPlugin;
 import com.github.breadmoirai.samurai.plugins.points.DerbyPointPlugin;
+import com.github.breadmoirai.samurai.plugins.trivia.stats.TriviaAnswer;
+import com.github.breadmoirai.samurai.plugins.trivia.stats.TriviaStats;
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.hash.TLongIntHashMap;
 import gnu.trove.set.TLongSet;
 import gnu.trove.set.hash.TLongHashSet;
 import net.dv8tion.jda.core.EmbedBuilder;
@@ -31,19 +35,17 @@ import net.dv8tion.jda.core.entities.Message;
 import net.dv8tion.jda.core.entities.MessageEmbed;
 import net.dv8tion.jda.core.entities.TextChannel;
 
-import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
 
 public class TriviaManager {
 
     private static final String SKIP = "\u23ed";
     private static double VALUE = .007;
     private static int SKIP_THRESHOLD = 3;
+    private static final long RETRY_MINUTES = 10;
     //    private static final int WRONG_COOLDOWN = 5;
     private final Emote minusOne;
     private final TextChannel channel;
@@ -52,9 +54,9 @@ public class TriviaManager {
     private final DerbyPointPlugin points;
 
     private TriviaSession session;
-    private Instant nextQuizTime;
-    private ScheduledFuture<?> futureQuiz;
     private TLongSet skips;
+    private long askedAt;
+    private TLongIntMap guesses;
     private Set<EventActionFuture<Void>> reactionFutures;
 //    private TLongObjectMap<Instant> wrongAnswers;
 
@@ -66,26 +68,25 @@ public class TriviaManager {
         this.points = points;
         this.minusOne = BreadMoiraiSamuraiPlugin.minusOne;
         this.reactionFutures = new HashSet<>();
-        setup();
-    }
-
-    private void setup() {
-        nextQuizTime = trivia.getNextTime(getGuildId());
-        if (nextQuizTime.isBefore(Instant.now())) {
-            dispatchTrivia();
-        } else {
-            futureQuiz = trivia.getService()
-                               .schedule(this::dispatchTrivia, Instant.now().until(nextQuizTime, ChronoUnit.MILLIS),
-                                         TimeUnit.MILLISECONDS);
-        }
     }
 
     public long getGuildId() {
         return channel.getGuild().getIdLong();
     }
 
-    private void dispatchTrivia() {
-        session = trivia.getRandomProvider().provide();
+    /**
+     * Starts a session, called by the {@link TriviaScheduler} when this guild is due.
+     */
+    void dispatchTrivia() {
+        if (session != null) {
+            return;
+        }
+        session = trivia.getRegistry().provide(getGuildId());
+        if (session == null) {
+            // no provider has any questions yet
+            trivia.getScheduler().schedule(getGuildId(), Instant.now().plus(RETRY_MINUTES, ChronoUnit.MINUTES));
+            return;
+        }
         session.setIcon(channel.getJDA().getSelfUser().getAvatarUrl());
 
         channel.sendMessage(getNext()).queue(this::waitForSkip);
@@ -105,6 +106,7 @@ public class TriviaManager {
                            .action(event -> skips.add(event.getUser().getIdLong()))
                            .stopIf((e, i) -> i >= SKIP_THRESHOLD)
                            .finish(() -> {
+                               closeQuestion(0);
                                channel.sendMessage(session.getAnswer(false)).queue();
                                if (session.hasNext())
                                    channel.sendMessage(getNext()).queue(this::waitForSkip);
@@ -116,12 +118,34 @@ public class TriviaManager {
 
     private MessageEmbed getNext() {
         skips = new TLongHashSet();
+        guesses = new TLongIntHashMap();
+        askedAt = System.currentTimeMillis();
         if (reactionFutures != null)
             reactionFutures.forEach(EventActionFuture::cancel);
         reactionFutures = new HashSet<>();
         return session.nextQuestion();
     }
 
+    /**
+     * Records how everyone who took part did on the current question.
+     *
+     * @param answeredBy the user that answered correctly, or 0 if nobody did
+     */
+    private void closeQuestion(long answeredBy) {
+        final long now = System.currentTimeMillis();
+        final String category = session.getCategory();
+        final TriviaStats stats = trivia.getStats();
+        if (answeredBy != 0) {
+            stats.record(new TriviaAnswer(getGuildId(), answeredBy, category, true, (int) (now - askedAt), now));
+        }
+        guesses.forEachEntry((userId, latency) -> {
+            if (userId != answeredBy) {
+                stats.record(new TriviaAnswer(getGuildId(), userId, category, false, latency, now));
+            }
+            return true;
+        });
+    }
+
     private void endSession() {
         session = null;
         if (reactionFutures != null) {
@@ -129,8 +153,7 @@ public class TriviaManager {
             reactionFutures = null;
         }
         skips = null;
-        nextQuizTime = Instant.now().plus(Duration.ofHours(3));
-        trivia.getService().schedule(this::dispatchTrivia, 3, TimeUnit.HOURS);
+        trivia.getScheduler().scheduleNext(getGuildId());
         repeatQuestion();
     }
 
@@ -138,7 +161,8 @@ public class TriviaManager {
         if (session != null) {
             channel.sendMessage(session.getQuestion()).queue(this::waitForSkip);
         } else {
-            channel.sendMessage(new EmbedBuilder().setTitle("Next Trivia Session").setTimestamp(nextQuizTime).build())
+            final Instant next = trivia.getScheduler().getNextTime(getGuildId());
+            channel.sendMessage(new EmbedBuilder().setTitle("Next Trivia Session").setTimestamp(next).build())
                    .queue();
         }
     }
@@ -150,21 +174,24 @@ public class TriviaManager {
                                                     .setEmbed(session.getAnswer(true))
                                                     .build()).queue();
             points.offsetPoints(author.getUser().getIdLong(), VALUE);
+            closeQuestion(author.getUser().getIdLong());
             if (session.hasNext())
                 channel.sendMessage(getNext()).queue(this::waitForSkip);
             else
                 endSession();
         } else {
+            guesses.putIfAbsent(author.getUser().getIdLong(), (int) (System.currentTimeMillis() - askedAt));
             m.addReaction(minusOne).queue();
         }
     }
 
+    /**
+     * Stops waiting for skips. The next time is kept by the {@link TriviaScheduler}.
+     */
     public void shutdown() {
-        futureQuiz.cancel(true);
         if (reactionFutures != null) {
             reactionFutures.forEach(EventActionFuture::cancel);
         }
-        trivia.setNextTime(getGuildId(), nextQuizTime);
     }
 
     public boolean isActive() {
@@ -21,16 +21,27 @@ import com.github.breadmoirai.breadbot.framework.CommandPlugin;
 import com.github.breadmoirai.breadbot.framework.annotation.command.Command;
 import com.github.breadmoirai.breadbot.framework.annotation.parameter.Author;
 import com.github.breadmoirai.breadbot.framework.annotation.parameter.Content;
+import com.github.breadmoirai.breadbot.framework.annotation.parameter.Required;
 import com.github.breadmoirai.breadbot.framework.builder.BreadBotBuilder;
 import com.github.breadmoirai.breadbot.plugins.admin.Admin;
+import com.github.breadmoirai.breadbot.plugins.owner.Owner;
 import com.github.breadmoirai.breadbot.plugins.waiter.EventWaiter;
 import com.github.breadmoirai.breadbot.plugins.waiter.EventWaiterPlugin;
 import com.github.breadmoirai.samurai.plugins.derby.DerbyDatabase;
 import com.github.breadmoirai.samurai.plugins.points.DerbyPointPlugin;
+import com.github.breadmoirai.samurai.plugins.trivia.pack.TriviaPackProvider;
+import com.github.breadmoirai.samurai.plugins.trivia.stats.TriviaGuildStats;
+import com.github.breadmoirai.samurai.plugins.trivia.stats.TriviaStats;
+import com.github.breadmoirai.samurai.plugins.trivia.stats.TriviaUserStats;
+import com.github.breadmoirai.samurai.plugins.trivia.submitted.SubmittedTriviaDatabase;
+import com.github.breadmoirai.samurai.plugins.trivia.submitted.SubmittedTriviaProvider;
+import com.github.breadmoirai.samurai.util.RankTree;
 import com.github.breadmoirai.samurai.plugins.trivia.triviaquestionsdotnet.TriviaQuestionsDotNetProvider;
 import com.sedmelluq.discord.lavaplayer.tools.ExecutorTools;
+import gnu.trove.TCollections;
 import gnu.trove.map.TLongObjectMap;
 import gnu.trove.map.hash.TLongObjectHashMap;
+import net.dv8tion.jda.core.EmbedBuilder;
 import net.dv8tion.jda.core.JDA;
 import net.dv8tion.jda.core.entities.Guild;
 import net.dv8tion.jda.core.entities.Member;
@@ -39,26 +50,38 @@ import net.dv8tion.jda.core.entities.TextChannel;
 import net.dv8tion.jda.core.events.ReadyEvent;
 import net.dv8tion.jda.core.events.ShutdownEvent;
 
+import java.awt.*;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.StringJoiner;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class TriviaPlugin implements CommandPlugin {
 
-    private final List<TriviaProvider> providers;
+    private static final int MAX_INTERVAL_HOURS = 24 * 7;
+    private static final long STATS_FLUSH_SECONDS = 60;
+    private static final int LEADERBOARD_SIZE = 5;
+    // a submission can be over 400 characters, so only a few fit in one message
+    private static final int PENDING_PAGE_SIZE = 4;
+
+    private final TriviaRegistry registry;
     private final ScheduledExecutorService service;
     private final TLongObjectMap<TriviaManager> managers;
+    private TriviaScheduler scheduler;
+    private TriviaStats stats;
     private TriviaChannelDatabase database;
     private JDA jda;
     private EventWaiter waiter;
     private DerbyPointPlugin points;
+    private SubmittedTriviaProvider submitted;
 
     public TriviaPlugin() {
-        this.providers = new ArrayList<>();
+        this.registry = new TriviaRegistry();
         this.service = Executors.newSingleThreadScheduledExecutor();
-        managers = new TLongObjectHashMap<>();
+        // shared between command threads and the scheduler
+        managers = TCollections.synchronizedMap(new TLongObjectHashMap<>());
     }
 
     @Override
@@ -73,14 +96,32 @@ public class TriviaPlugin implements CommandPlugin {
         points = client.getPlugin(DerbyPointPlugin.class);
 
         database = databasePlugin.getExtension(TriviaChannelDatabase::new);
-        registerProvider(new TriviaQuestionsDotNetProvider(databasePlugin));
+        scheduler = new TriviaScheduler(service, this::dispatchTrivia, database::setNextTimes);
+        stats = new TriviaStats(databasePlugin, service);
+        service.scheduleWithFixedDelay(stats::flush, STATS_FLUSH_SECONDS, STATS_FLUSH_SECONDS, TimeUnit.SECONDS);
+        registerProvider(new TriviaQuestionsDotNetProvider(databasePlugin), 3);
+        registerProvider(new TriviaPackProvider(), 1);
+        submitted = new SubmittedTriviaProvider(databasePlugin);
+        registerProvider(submitted, 1);
 
         waiter.waitFor(ReadyEvent.class).action(this::onReady);
-        waiter.waitFor(ShutdownEvent.class).action(event -> ExecutorTools.shutdownExecutor(service, "Trivia Service"));
+        databasePlugin.holdOpen();
+        waiter.waitFor(ShutdownEvent.class).action(event -> {
+            try {
+                scheduler.shutdown();
+                stats.flush();
+            } finally {
+                databasePlugin.release();
+                ExecutorTools.shutdownExecutor(service, "Trivia Service");
+            }
+        });
     }
 
-    public void registerProvider(TriviaProvider provider) {
-        providers.add(provider);
+    /**
+     * @param weight how often sessions come from this provider relative to the others
+     */
+    public void registerProvider(TriviaProvider provider, double weight) {
+        registry.register(provider, weight);
     }
 
     private void onReady(ReadyEvent event) {
@@ -94,31 +135,52 @@ public class TriviaPlugin implements CommandPlugin {
             managers.put(a, new TriviaManager(channel, waiter, this, points));
             return true;
         });
+        final List<TriviaScheduler.Slot> schedules = database.getSchedules();
+        schedules.removeIf(slot -> !managers.containsKey(slot.getGuildId()));
+        scheduler.restore(schedules);
+        scheduler.start();
+    }
+
+    private void dispatchTrivia(long guildId) {
+        final TriviaManager manager = managers.get(guildId);
+        if (manager == null) {
+            scheduler.remove(guildId);
+        } else {
+            manager.dispatchTrivia();
+        }
     }
 
     public ScheduledExecutorService getService() {
         return service;
     }
 
-    public TriviaProvider getRandomProvider() {
-        return providers.get(0);
+    public TriviaRegistry getRegistry() {
+        return registry;
     }
 
-    public void setNextTime(long guildId, Instant time) {
-        database.setNextTime(guildId, time);
+    public TriviaScheduler getScheduler() {
+        return scheduler;
     }
 
-    public Instant getNextTime(long guildId) {
-        return database.getNextTime(guildId);
+    public TriviaStats getStats() {
+        return stats;
     }
 
     @Admin
     @Command
     public String enableTrivia(TextChannel channel) {
-        final TriviaManager triviaManager = managers.get(channel.getGuild().getIdLong());
-        if (triviaManager == null || triviaManager.getChannelId() != channel.getIdLong())
-            managers.put(channel.getGuild().getIdLong(), new TriviaManager(channel, waiter, this, points));
-        database.setTriviaChannel(channel.getGuild().getIdLong(), channel.getIdLong());
+        final long guildId = channel.getGuild().getIdLong();
+        final TriviaManager triviaManager = managers.get(guildId);
+        if (triviaManager == null || triviaManager.getChannelId() != channel.getIdLong()) {
+            if (triviaManager != null) {
+                triviaManager.shutdown();
+            }
+            managers.put(guildId, new TriviaManager(channel, waiter, this, points));
+        }
+        database.setTriviaChannel(guildId, channel.getIdLong());
+        if (!scheduler.contains(guildId)) {
+            scheduler.schedule(guildId, Instant.now());
+        }
         return "Trivia has been enabled in this channel";
     }
 
@@ -128,10 +190,25 @@ public class TriviaPlugin implements CommandPlugin {
         if (manager != null) {
             manager.shutdown();
         }
+        scheduler.remove(guild.getIdLong());
         database.removeTriviaChannel(guild.getIdLong());
         return "Trivia has been disabled on this server";
     }
 
+    @Admin
+    @Command
+    public String triviaInterval(Guild guild, @Required int hours) {
+        if (!scheduler.contains(guild.getIdLong())) {
+            return "Trivia is not enabled";
+        }
+        if (hours < 1 || hours > MAX_INTERVAL_HOURS) {
+            return "The interval must be between 1 and " + MAX_INTERVAL_HOURS + " hours";
+        }
+        scheduler.setInterval(guild.getIdLong(), hours * 60);
+        database.setInterval(guild.getIdLong(), hours * 60);
+        return "Trivia sessions will start " + hours + (hours == 1 ? " hour" : " hours") + " after the last one ends";
+    }
+
     @Command
     public void answer(Guild guild, Message m, @Content String ans, @Author Member author) {
         if (ans == null)
@@ -145,14 +222,8 @@ public class TriviaPlugin implements CommandPlugin {
             question(m.getTextChannel(), guild);
             return;
         }
-        String s = ans.toLowerCase()
-                      .replaceAll("\\s+", " ")
-                      .replaceAll(",\\s*", " ")
-                      .replaceAll("&", "and");
-        if (s.startsWith("the")) {
-            s = s.substring(4);
-        }
-        triviaManager.answer(s, m, author);
+        // the session normalizes the guess the same way as its answers
+        triviaManager.answer(ans, m, author);
     }
 
     @Command
@@ -165,4 +236,87 @@ public class TriviaPlugin implements CommandPlugin {
         }
     }
 
+    @Command
+    public String submitTrivia(@Content String content, @Author Member author) {
+        final String[] parts = content == null ? new String[0] : content.split("\\|");
+        if (parts.length != 3) {
+            return "Submit a question as `question | answer | category`, with other accepted answers separated by `/`";
+        }
+        try {
+            submitted.submit(author.getUser().getIdLong(), parts[0].trim(), parts[1].trim(), parts[2].trim());
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        return "Thank you, your question will be asked once it has been reviewed";
+    }
+
+    @Owner
+    @Command
+    public String pendingTrivia() {
+        final List<SubmittedTriviaDatabase.Submission> pending = submitted.getPending(PENDING_PAGE_SIZE);
+        if (pending.isEmpty()) {
+            return "No questions are waiting for review";
+        }
+        final StringJoiner joiner = new StringJoiner("\n");
+        joiner.add(submitted.countPending() + " waiting for review, use `approveTrivia <id>` or `rejectTrivia <id>`");
+        for (SubmittedTriviaDatabase.Submission submission : pending) {
+            joiner.add(String.format("`%d` %s | %s | %s", submission.getId(), submission.getQuestion(),
+                                     submission.getAnswer(), submission.getCategory()));
+        }
+        return joiner.toString();
+    }
+
+    @Owner
+    @Command
+    public String approveTrivia(@Required int id) {
+        return submitted.approve(id)
+                        .map(submission -> "Question `" + id + "` will now be asked")
+                        .orElse("There is no question `" + id + "` waiting for review");
+    }
+
+    @Owner
+    @Command
+    public String rejectTrivia(@Required int id) {
+        return submitted.reject(id) ? "Question `" + id + "` was deleted" : "There is no question `" + id + "` waiting for review";
+    }
+
+    @Command
+    public void triviaStats(TextChannel channel, @Author(unlessMention = true) Member member) {
+        final TriviaGuildStats guildStats = stats.getGuild(channel.getGuild().getIdLong());
+        final TriviaUserStats user = guildStats.getUser(member.getUser().getIdLong());
+        final EmbedBuilder embed = new EmbedBuilder();
+        embed.setColor(new Color(0, 121, 214))
+             .setAuthor(member.getEffectiveName(), null, member.getUser().getEffectiveAvatarUrl());
+        if (user == null) {
+            embed.setDescription("No trivia answers yet");
+        } else {
+            embed.addField("Rank", "#" + (guildStats.rank(user.getUserId()) + 1) + " of " + guildStats.size(), true)
+                 .addField("Correct", String.format("%d/%d (%.0f%%)", user.getCorrect(), user.getAttempts(),
+                                                    user.getAccuracy() * 100), true)
+                 .addField("Streak", user.getStreak() + " (best " + user.getBestStreak() + ")", true);
+            final long median = user.getMedianLatencyMillis();
+            if (median >= 0) {
+                embed.addField("Median answer time", String.format("%.1fs", median / 1000.0), true);
+            }
+            final StringJoiner strengths = new StringJoiner("\n");
+            for (String category : user.getStrongestCategories(3)) {
+                strengths.add(String.format("%s (%.0f%%)", category, user.getCategoryAccuracy(category) * 100));
+            }
+            if (strengths.length() > 0) {
+                embed.addField("Strongest categories", strengths.toString(), true);
+            }
+        }
+        final StringJoiner leaderboard = new StringJoiner("\n");
+        int rank = 1;
+        for (RankTree.Entry entry : guildStats.range(0, LEADERBOARD_SIZE)) {
+            final Member top = channel.getGuild().getMemberById(entry.getId());
+            final String name = top == null ? String.valueOf(entry.getId()) : top.getEffectiveName();
+            leaderboard.add(String.format("#%d %s - %.0f", rank++, name, entry.getScore()));
+        }
+        if (leaderboard.length() > 0) {
+            embed.addField("Leaderboard", leaderboard.toString(), false);
+        }
+        channel.sendMessage(embed.build()).queue();
+    }
+
 }
@@ -16,7 +16,18 @@
 
 package com.github.breadmoirai.samurai.plugins.trivia;
 
+/**
+ * A source of questions. Sessions are assembled from its index by the {@link TriviaRegistry}.
+ */
 public interface TriviaProvider {
 
-    TriviaSession provide();
+    /**
+     * @return the name shown with each question
+     */
+    String getName();
+
+    /**
+     * @return the questions available so far, which may grow as the provider finds more
+     */
+    TriviaIndex getIndex();
 }
@@ -0,0 +1,157 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.breadmoirai.samurai.plugins.trivia;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Holds every {@link TriviaProvider} and picks one for each session in proportion to its weight.
+ * <p>
+ * Each guild has a {@link BitSet} per provider of the question ids it has already been asked, so a guild does not see
+ * a question again until it has gone through every other question of that provider.
+ */
+public class TriviaRegistry {
+
+    public static final int SESSION_SIZE = 10;
+
+    private final List<Entry> entries = new CopyOnWriteArrayList<>();
+    private final TLongObjectMap<Map<TriviaProvider, BitSet>> seen = new TLongObjectHashMap<>();
+
+    /**
+     * @param weight how often this provider is picked relative to the others
+     */
+    public void register(TriviaProvider provider, double weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("weight must be positive");
+        }
+        entries.add(new Entry(provider, weight));
+    }
+
+    public List<TriviaProvider> getProviders() {
+        final List<TriviaProvider> providers = new ArrayList<>(entries.size());
+        entries.forEach(entry -> providers.add(entry.provider));
+        return providers;
+    }
+
+    /**
+     * @return a session of up to {@value SESSION_SIZE} questions, or null if no provider has any questions
+     */
+    public TriviaSession provide(long guildId) {
+        return provide(guildId, null, ThreadLocalRandom.current());
+    }
+
+    /**
+     * @param category only ask questions of this category, or null for any
+     * @return a session of up to {@value SESSION_SIZE} questions, or null if no provider has any questions
+     */
+    public TriviaSession provide(long guildId, String category, Random random) {
+        // providers too small to fill a session are only used when there is nothing else
+        List<Entry> candidates = new ArrayList<>(entries.size());
+        final List<Entry> small = new ArrayList<>();
+        for (Entry entry : entries) {
+            final TriviaIndex index = entry.provider.getIndex();
+            if (index.size() > 0 && (category == null || index.hasCategory(category))) {
+                (index.size() < SESSION_SIZE ? small : candidates).add(entry);
+            }
+        }
+        if (candidates.isEmpty()) {
+            candidates = small;
+        }
+        while (!candidates.isEmpty()) {
+            final Entry entry = pick(candidates, random);
+            final int[] ids = assemble(guildId, entry.provider, category, random);
+            if (ids.length > 0) {
+                return new IndexedTriviaSession(entry.provider.getName(), entry.provider.getIndex(), ids);
+            }
+            candidates.remove(entry);
+        }
+        return null;
+    }
+
+    private Entry pick(List<Entry> candidates, Random random) {
+        double total = 0;
+        for (Entry entry : candidates) {
+            total += entry.weight;
+        }
+        double r = random.nextDouble() * total;
+        for (Entry entry : candidates) {
+            r -= entry.weight;
+            if (r < 0) {
+                return entry;
+            }
+        }
+        return candidates.get(candidates.size() - 1);
+    }
+
+    private int[] assemble(long guildId, TriviaProvider provider, String category, Random random) {
+        final TriviaIndex index = provider.getIndex();
+        final BitSet guildSeen = getSeen(guildId, provider);
+        synchronized (guildSeen) {
+            int[] ids = index.assemble(SESSION_SIZE, guildSeen, category, random);
+            if (ids.length < SESSION_SIZE && !guildSeen.isEmpty()) {
+                // the guild has been through nearly everything, so it starts over
+                guildSeen.clear();
+                ids = index.assemble(SESSION_SIZE, guildSeen, category, random);
+            }
+            for (int id : ids) {
+                guildSeen.set(id);
+            }
+            return ids;
+        }
+    }
+
+    private BitSet getSeen(long guildId, TriviaProvider provider) {
+        synchronized (seen) {
+            Map<TriviaProvider, BitSet> providers = seen.get(guildId);
+            if (providers == null) {
+                providers = new IdentityHashMap<>();
+                seen.put(guildId, providers);
+            }
+            return providers.computeIfAbsent(provider, p -> new BitSet());
+        }
+    }
+
+    /**
+     * Forgets which questions a guild has seen.
+     */
+    public void forget(long guildId) {
+        synchronized (seen) {
+            seen.remove(guildId);
+        }
+    }
+
+    private static class Entry {
+
+        private final TriviaProvider provider;
+        private final double weight;
+
+        private Entry(TriviaProvider provider, double weight) {
+            this.provider = provider;
+            this.weight = weight;
+        }
+    }
+}
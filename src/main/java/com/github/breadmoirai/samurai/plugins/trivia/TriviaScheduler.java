@@ -0,0 +1,326 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.breadmoirai.samurai.plugins.trivia;
+
+import gnu.trove.list.TLongList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.TLongLongMap;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongLongHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Owns the next trivia time of every guild. The times are kept in a single priority queue and only one task is ever
+ * scheduled on the executor, for whichever guild is due first, so the cost does not grow with the number of guilds.
+ * <p>
+ * Changed times are written back in a single batch every {@value FLUSH_INTERVAL_SECONDS} seconds and on shutdown.
+ * Guilds whose time passed while the bot was offline are run once each on startup, spread
+ * {@value CATCH_UP_STAGGER_MILLIS}ms apart so they do not all start at the same moment. When there are too many for
+ * that to fit in {@value CATCH_UP_WINDOW_MILLIS}ms they are spread evenly over that window instead.
+ */
+public class TriviaScheduler {
+
+    public static final int DEFAULT_INTERVAL_MINUTES = 180;
+    static final long CATCH_UP_STAGGER_MILLIS = 5000;
+    static final long CATCH_UP_WINDOW_MILLIS = 10 * 60 * 1000;
+    private static final long FLUSH_INTERVAL_SECONDS = 60;
+
+    private final ScheduledExecutorService service;
+    private final LongConsumer dispatcher;
+    private final Consumer<TLongLongMap> persister;
+    private final Clock clock;
+
+    private final TLongObjectMap<Slot> slots = new TLongObjectHashMap<>();
+    private final PriorityQueue<Pending> queue = new PriorityQueue<>(Comparator.comparingLong(p -> p.due));
+    private final TLongLongMap dirty = new TLongLongHashMap();
+    private ScheduledFuture<?> wakeup;
+    private long wakeupAt = Long.MAX_VALUE;
+    private ScheduledFuture<?> flushTask;
+
+    /**
+     * @param dispatcher called on the executor with the id of each guild that is due
+     * @param persister  given the next time in epoch millis of every guild that changed since the last flush
+     */
+    public TriviaScheduler(ScheduledExecutorService service, LongConsumer dispatcher, Consumer<TLongLongMap> persister) {
+        this(service, dispatcher, persister, Clock.systemUTC());
+    }
+
+    TriviaScheduler(ScheduledExecutorService service, LongConsumer dispatcher, Consumer<TLongLongMap> persister,
+                    Clock clock) {
+        this.service = service;
+        this.dispatcher = dispatcher;
+        this.persister = persister;
+        this.clock = clock;
+    }
+
+    public synchronized void start() {
+        if (flushTask == null) {
+            flushTask = service.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS,
+                                                       TimeUnit.SECONDS);
+        }
+        rearm();
+    }
+
+    /**
+     * Adds the guilds as they were stored. Any that are overdue are queued from now on in the order they were due.
+     */
+    public synchronized void restore(Collection<Slot> stored) {
+        final long now = clock.millis();
+        final List<Slot> sorted = new ArrayList<>(stored);
+        sorted.sort(Comparator.comparingLong(slot -> slot.due));
+        int overdueCount = 0;
+        while (overdueCount < sorted.size() && sorted.get(overdueCount).due < now) {
+            overdueCount++;
+        }
+        final long stagger = Math.min(CATCH_UP_STAGGER_MILLIS, CATCH_UP_WINDOW_MILLIS / Math.max(1, overdueCount));
+        int overdue = 0;
+        for (Slot slot : sorted) {
+            final long due = slot.due < now ? now + overdue++ * stagger : slot.due;
+            slots.put(slot.guildId, new Slot(slot.guildId, due, slot.intervalMinutes));
+            queue.add(new Pending(slot.guildId, due));
+        }
+        rearm();
+    }
+
+    public synchronized boolean contains(long guildId) {
+        return slots.containsKey(guildId);
+    }
+
+    public synchronized void schedule(long guildId, Instant time) {
+        Slot slot = slots.get(guildId);
+        if (slot == null) {
+            slot = new Slot(guildId, time.toEpochMilli(), DEFAULT_INTERVAL_MINUTES);
+            slots.put(guildId, slot);
+        } else {
+            slot.due = time.toEpochMilli();
+        }
+        dirty.put(guildId, slot.due);
+        queue.add(new Pending(guildId, slot.due));
+        rearm();
+    }
+
+    /**
+     * Schedules the guild one interval from now.
+     */
+    public synchronized Instant scheduleNext(long guildId) {
+        final Instant next = clock.instant().plus(getInterval(guildId), ChronoUnit.MINUTES);
+        schedule(guildId, next);
+        return next;
+    }
+
+    public synchronized int getInterval(long guildId) {
+        final Slot slot = slots.get(guildId);
+        return slot == null ? DEFAULT_INTERVAL_MINUTES : slot.intervalMinutes;
+    }
+
+    /**
+     * Only affects the time after the next one.
+     */
+    public synchronized void setInterval(long guildId, int minutes) {
+        final Slot slot = slots.get(guildId);
+        if (slot != null) {
+            slot.intervalMinutes = minutes;
+        }
+    }
+
+    /**
+     * @return the time the guild is due, which is in the past while its session is running, or null if it is not
+     * scheduled
+     */
+    public synchronized Instant getNextTime(long guildId) {
+        final Slot slot = slots.get(guildId);
+        return slot == null ? null : Instant.ofEpochMilli(slot.due);
+    }
+
+    public synchronized void remove(long guildId) {
+        // its entries in the queue are skipped when they come up
+        slots.remove(guildId);
+        dirty.remove(guildId);
+    }
+
+    public synchronized int size() {
+        return slots.size();
+    }
+
+    /**
+     * Removes every guild that is due from the queue.
+     *
+     * @return the guilds in the order they were due
+     */
+    synchronized TLongList poll(long now) {
+        final TLongList due = new TLongArrayList();
+        final TLongSet seen = new TLongHashSet();
+        while (!queue.isEmpty() && queue.peek().due <= now) {
+            final Pending pending = queue.poll();
+            final Slot slot = slots.get(pending.guildId);
+            // the guild was removed or rescheduled since this was queued
+            if (slot != null && slot.due == pending.due && seen.add(pending.guildId)) {
+                due.add(pending.guildId);
+            }
+        }
+        return due;
+    }
+
+    private void fire() {
+        final TLongList due;
+        synchronized (this) {
+            wakeup = null;
+            wakeupAt = Long.MAX_VALUE;
+            due = poll(clock.millis());
+        }
+        due.forEach(guildId -> {
+            try {
+                dispatcher.accept(guildId);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+            return true;
+        });
+        synchronized (this) {
+            rearm();
+        }
+    }
+
+    /**
+     * Makes sure the single wakeup task runs when the first guild is due.
+     */
+    private void rearm() {
+        if (flushTask == null || service.isShutdown()) {
+            return;
+        }
+        while (!queue.isEmpty()) {
+            final Pending head = queue.peek();
+            final Slot slot = slots.get(head.guildId);
+            if (slot != null && slot.due == head.due) {
+                break;
+            }
+            queue.poll();
+        }
+        if (queue.isEmpty()) {
+            return;
+        }
+        final long due = queue.peek().due;
+        if (wakeup != null && wakeupAt <= due) {
+            return;
+        }
+        if (wakeup != null) {
+            wakeup.cancel(false);
+        }
+        wakeupAt = due;
+        wakeup = service.schedule(this::fire, Math.max(0, due - clock.millis()), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes every time that changed since the last flush.
+     */
+    public void flush() {
+        final TLongLongMap changed;
+        synchronized (this) {
+            if (dirty.isEmpty()) {
+                return;
+            }
+            changed = new TLongLongHashMap(dirty);
+            dirty.clear();
+        }
+        try {
+            persister.accept(changed);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            synchronized (this) {
+                // kept for the next flush unless they changed again in the meantime
+                changed.forEachEntry((guildId, due) -> {
+                    if (!dirty.containsKey(guildId) && slots.containsKey(guildId)) {
+                        dirty.put(guildId, due);
+                    }
+                    return true;
+                });
+            }
+        }
+    }
+
+    /**
+     * Stops the scheduler and writes the remaining changes.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (wakeup != null) {
+                wakeup.cancel(false);
+                wakeup = null;
+            }
+            if (flushTask != null) {
+                flushTask.cancel(false);
+                flushTask = null;
+            }
+        }
+        flush();
+    }
+
+    public static class Slot {
+
+        private final long guildId;
+        private long due;
+        private int intervalMinutes;
+
+        /**
+         * @param due epoch millis
+         */
+        public Slot(long guildId, long due, int intervalMinutes) {
+            this.guildId = guildId;
+            this.due = due;
+            this.intervalMinutes = intervalMinutes;
+        }
+
+        public long getGuildId() {
+            return guildId;
+        }
+
+        public long getDue() {
+            return due;
+        }
+
+        public int getIntervalMinutes() {
+            return intervalMinutes;
+        }
+    }
+
+    private static class Pending {
+
+        private final long guildId;
+        private final long due;
+
+        private Pending(long guildId, long due) {
+            this.guildId = guildId;
+            this.due = due;
+        }
+    }
+}
@@ -32,4 +32,9 @@ public interface TriviaSession {
 
     void setIcon(String url);
 
+    /**
+     * @return the category of the current question
+     */
+    String getCategory();
+
 }
@@ -0,0 +1,130 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.breadmoirai.samurai.plugins.trivia.pack;
+
+import com.github.breadmoirai.samurai.plugins.trivia.BasicTriviaLine;
+import com.github.breadmoirai.samurai.plugins.trivia.TriviaIndex;
+import com.github.breadmoirai.samurai.plugins.trivia.TriviaProvider;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Questions bundled with the bot, so there is always something to ask before anything has been harvested or
+ * submitted.
+ * <p>
+ * The pack is a csv of {@code category,difficulty,question,answer} with a header row. Difficulty is one of easy,
+ * medium or hard, and the answer shown comes first with any others that are accepted after it, separated by
+ * {@code /}.
+ */
+public class TriviaPackProvider implements TriviaProvider {
+
+    public static final String DEFAULT_PACK = "questions.csv";
+
+    private final String name;
+    private final TriviaIndex index;
+
+    public TriviaPackProvider() {
+        this("SamuraiTrivia", TriviaPackProvider.class.getResourceAsStream(DEFAULT_PACK));
+    }
+
+    public TriviaPackProvider(String name, InputStream pack) {
+        this.name = name;
+        this.index = new TriviaIndex();
+        if (pack == null) {
+            System.err.println("Trivia pack " + name + " could not be found");
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(pack, StandardCharsets.UTF_8))) {
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                final List<String> values = split(line);
+                if (values.size() != 4) {
+                    System.err.println("Skipping trivia pack line: " + line);
+                    continue;
+                }
+                final String[] answers = values.get(3).split("/");
+                index.add(new BasicTriviaLine(values.get(2), answers[0], values.get(0), getWeight(values.get(1)), name,
+                                              Arrays.copyOfRange(answers, 1, answers.length)));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    static double getWeight(String difficulty) {
+        switch (difficulty.trim().toLowerCase()) {
+            case "easy":
+                return 0.2;
+            case "hard":
+                return 0.8;
+            default:
+                return 0.5;
+        }
+    }
+
+    /**
+     * Splits a csv line, where a value may be quoted to contain commas and a quote is escaped by doubling it.
+     */
+    static List<String> split(String line) {
+        final List<String> values = new ArrayList<>();
+        final StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    value.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public TriviaIndex getIndex() {
+        return index;
+    }
+}
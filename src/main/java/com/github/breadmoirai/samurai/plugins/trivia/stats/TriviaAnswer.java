@@ -0,0 +1,68 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.breadmoirai.samurai.plugins.trivia.stats;
+
+/**
+ * How one user did on one question: answered it, or guessed wrong and never got it.
+ */
+public class TriviaAnswer {
+
+    private final long guildId;
+    private final long userId;
+    private final String category;
+    private final boolean correct;
+    private final int latencyMillis;
+    private final long time;
+
+    /**
+     * @param latencyMillis time from the question being asked to the correct answer, or to the first guess if it was
+     *                      never answered
+     * @param time          epoch millis
+     */
+    public TriviaAnswer(long guildId, long userId, String category, boolean correct, int latencyMillis, long time) {
+        this.guildId = guildId;
+        this.userId = userId;
+        this.category = category;
+        this.correct = correct;
+        this.latencyMillis = latencyMillis;
+        this.time = time;
+    }
+
+    public long getGuildId() {
+        return guildId;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public boolean isCorrect() {
+        return correct;
+    }
+
+    public int getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    public long getTime() {
+        return time;
+    }
+}
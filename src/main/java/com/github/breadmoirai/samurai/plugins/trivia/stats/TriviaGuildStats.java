@@ -0,0 +1,86 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.breadmoirai.samurai.plugins.trivia.stats;
+
+import com.github.breadmoirai.samurai.util.RankTree;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.util.List;
+
+/**
+ * The stats of every user in one guild, with a {@link RankTree} by correct answers so that the leaderboard is read
+ * without going through the history.
+ */
+public class TriviaGuildStats {
+
+    private final long guildId;
+    private final TLongObjectMap<TriviaUserStats> users = new TLongObjectHashMap<>();
+    private final RankTree ranking = new RankTree();
+
+    public TriviaGuildStats(long guildId) {
+        this.guildId = guildId;
+    }
+
+    public long getGuildId() {
+        return guildId;
+    }
+
+    public synchronized void record(TriviaAnswer answer) {
+        TriviaUserStats user = users.get(answer.getUserId());
+        if (user == null) {
+            user = new TriviaUserStats(answer.getUserId());
+            users.put(answer.getUserId(), user);
+        }
+        user.record(answer);
+        ranking.put(answer.getUserId(), user.getCorrect());
+    }
+
+    /**
+     * Adds the restored totals of a user who has not answered since startup.
+     */
+    synchronized void load(TriviaUserStats user) {
+        users.put(user.getUserId(), user);
+        ranking.put(user.getUserId(), user.getCorrect());
+    }
+
+    /**
+     * @return null if the user has never answered
+     */
+    public synchronized TriviaUserStats getUser(long userId) {
+        return users.get(userId);
+    }
+
+    public synchronized int size() {
+        return users.size();
+    }
+
+    /**
+     * @return the zero-based rank of the user by correct answers, or -1 if the user has never answered
+     */
+    public synchronized int rank(long userId) {
+        return ranking.rank(userId);
+    }
+
+    /**
+     * @param from inclusive zero-based rank
+     * @param to   exclusive zero-based rank
+     */
+    public synchronized List<RankTree.Entry> range(int from, int to) {
+        return ranking.range(from, to);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.breadmoirai.samurai.plugins.trivia.stats;
+
+import com.github.breadmoirai.samurai.plugins.derby.DerbyDatabase;
+import com.github.breadmoirai.samurai.plugins.metrics.Counter;
+import com.github.breadmoirai.samurai.plugins.metrics.MetricRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the trivia stats of every guild in memory and appends each answer to the {@link TriviaStatsDatabase}.
+ * <p>
+ * A guild's totals are read from the stored totals the first time they are needed and then kept up to date one answer
+ * at a time. Answers are written in batches, on {@link #flush()} or once {@code flushThreshold} are waiting, and each
+ * batch also updates the stored totals.
+ */
+public class TriviaStats {
+
+    public static final int DEFAULT_FLUSH_THRESHOLD = 64;
+
+    private final ConcurrentMap<Long, TriviaGuildStats> guilds = new ConcurrentHashMap<>();
+    private final TriviaStatsDatabase database;
+    private final Executor executor;
+    private final int flushThreshold;
+
+    private final Object lock = new Object();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private List<TriviaAnswer> pending = new ArrayList<>();
+
+    private final Counter correctAnswers;
+    private final Counter incorrectAnswers;
+
+    public TriviaStats(DerbyDatabase database, Executor executor) {
+        this(database.getExtension(TriviaStatsDatabase::new), executor, DEFAULT_FLUSH_THRESHOLD);
+    }
+
+    public TriviaStats(TriviaStatsDatabase database, Executor executor, int flushThreshold) {
+        this.database = database;
+        this.executor = executor;
+        this.flushThreshold = flushThreshold;
+        final MetricRegistry registry = MetricRegistry.getDefault();
+        correctAnswers = registry.counter("trivia_answers_total", "Trivia questions answered or missed by a user",
+                                          "result", "correct");
+        incorrectAnswers = registry.counter("trivia_answers_total", "Trivia questions answered or missed by a user",
+                                            "result", "incorrect");
+    }
+
+    /**
+     * @return the stats of the guild, read from the database if they have not been needed since startup
+     */
+    public TriviaGuildStats getGuild(long guildId) {
+        final TriviaGuildStats stats = guilds.get(guildId);
+        if (stats != null) {
+            return stats;
+        }
+        // read outside of the map so other guilds are not held up; a guild loaded twice keeps the first copy
+        final TriviaGuildStats loaded = database.loadGuild(guildId);
+        final TriviaGuildStats existing = guilds.putIfAbsent(guildId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    public void record(TriviaAnswer answer) {
+        getGuild(answer.getGuildId()).record(answer);
+        (answer.isCorrect() ? correctAnswers : incorrectAnswers).increment();
+        final boolean full;
+        synchronized (lock) {
+            pending.add(answer);
+            full = pending.size() >= flushThreshold;
+        }
+        if (full && flushQueued.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                flushQueued.set(false);
+                flush();
+            });
+        }
+    }
+
+    /**
+     * Writes every waiting answer in one batch. If the write fails they are kept for the next flush. Only one batch is
+     * written at a time so that the stored totals are updated in order.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            final List<TriviaAnswer> batch;
+            synchronized (lock) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+            }
+            try {
+                database.addAnswers(batch);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                synchronized (lock) {
+                    batch.addAll(pending);
+                    pending = batch;
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public int getPending() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+}
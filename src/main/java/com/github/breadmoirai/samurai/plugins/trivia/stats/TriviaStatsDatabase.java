@@ -0,0 +1,295 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.breadmoirai.samurai.plugins.trivia.stats;
+
+import com.github.breadmoirai.samurai.plugins.derby.JdbiExtension;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.PreparedBatch;
+import org.jdbi.v3.core.statement.Query;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * An append-only log of every {@link TriviaAnswer}, along with the totals of each user that are rewritten with every
+ * batch so that a guild can be loaded without reading its history.
+ * <p>
+ * Answers to the same question share a timestamp, so the history is ordered by {@code Seq} within a timestamp to
+ * replay in the order the answers were recorded.
+ */
+public class TriviaStatsDatabase extends JdbiExtension {
+
+    public static final int MAX_CATEGORY = 32;
+    private static final String INSERT = "INSERT INTO TriviaAnswers " +
+            "(GuildId, UserId, Category, Correct, LatencyMillis, AnsweredAt) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_USER = "UPDATE TriviaUserTotals " +
+            "SET Attempts = ?, Correct = ?, Streak = ?, BestStreak = ?, Latencies = ? WHERE GuildId = ? AND UserId = ?";
+    private static final String INSERT_USER = "INSERT INTO TriviaUserTotals " +
+            "(Attempts, Correct, Streak, BestStreak, Latencies, GuildId, UserId) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_CATEGORY = "UPDATE TriviaCategoryTotals " +
+            "SET Attempts = ?, Correct = ? WHERE GuildId = ? AND UserId = ? AND Category = ?";
+    private static final String INSERT_CATEGORY = "INSERT INTO TriviaCategoryTotals " +
+            "(Attempts, Correct, GuildId, UserId, Category) VALUES (?, ?, ?, ?, ?)";
+
+    public TriviaStatsDatabase(Jdbi jdbi) {
+        super(jdbi);
+        if (tableAbsent("TriviaAnswers")) {
+            execute("CREATE TABLE TriviaAnswers (\n" +
+                            "  Seq           BIGINT      GENERATED ALWAYS AS IDENTITY,\n" +
+                            "  GuildId       BIGINT      NOT NULL,\n" +
+                            "  UserId        BIGINT      NOT NULL,\n" +
+                            "  Category      VARCHAR(32) NOT NULL,\n" +
+                            "  Correct       SMALLINT    NOT NULL,\n" +
+                            "  LatencyMillis INT         NOT NULL,\n" +
+                            "  AnsweredAt    TIMESTAMP   NOT NULL\n" +
+                            ")");
+            execute("CREATE INDEX TriviaAnswersGuild ON TriviaAnswers (GuildId)");
+        } else if (columnAbsent("TriviaAnswers", "Seq")) {
+            execute("ALTER TABLE TriviaAnswers ADD COLUMN Seq BIGINT GENERATED ALWAYS AS IDENTITY");
+        }
+        if (tableAbsent("TriviaUserTotals")) {
+            execute("CREATE TABLE TriviaUserTotals (\n" +
+                            "  GuildId    BIGINT       NOT NULL,\n" +
+                            "  UserId     BIGINT       NOT NULL,\n" +
+                            "  Attempts   INT          NOT NULL,\n" +
+                            "  Correct    INT          NOT NULL,\n" +
+                            "  Streak     INT          NOT NULL,\n" +
+                            "  BestStreak INT          NOT NULL,\n" +
+                            "  Latencies  VARCHAR(512) NOT NULL,\n" +
+                            "  PRIMARY KEY (GuildId, UserId)\n" +
+                            ")");
+            execute("CREATE TABLE TriviaCategoryTotals (\n" +
+                            "  GuildId  BIGINT      NOT NULL,\n" +
+                            "  UserId   BIGINT      NOT NULL,\n" +
+                            "  Category VARCHAR(32) NOT NULL,\n" +
+                            "  Attempts INT         NOT NULL,\n" +
+                            "  Correct  INT         NOT NULL,\n" +
+                            "  PRIMARY KEY (GuildId, UserId, Category)\n" +
+                            ")");
+            rebuildTotals();
+        }
+    }
+
+    /**
+     * Appends the answers and adds them to the stored totals in one transaction. Batches must not be written
+     * concurrently, since the totals are read and written back.
+     */
+    public void addAnswers(List<TriviaAnswer> answers) {
+        useHandle(handle -> handle.useTransaction(h -> {
+            final PreparedBatch insert = h.prepareBatch(INSERT);
+            final List<TriviaAnswer> truncated = new ArrayList<>(answers.size());
+            for (TriviaAnswer answer : answers) {
+                final String category = answer.getCategory().length() > MAX_CATEGORY
+                        ? answer.getCategory().substring(0, MAX_CATEGORY) : answer.getCategory();
+                final Instant time = Instant.ofEpochMilli(answer.getTime());
+                insert.add(answer.getGuildId(), answer.getUserId(), category, answer.isCorrect() ? 1 : 0,
+                           answer.getLatencyMillis(), Timestamp.valueOf(LocalDateTime.ofInstant(time, ZoneOffset.UTC)));
+                truncated.add(new TriviaAnswer(answer.getGuildId(), answer.getUserId(), category, answer.isCorrect(),
+                                               answer.getLatencyMillis(), answer.getTime()));
+            }
+            if (insert.size() == 0) {
+                return;
+            }
+            insert.execute();
+
+            final TLongObjectMap<TLongObjectMap<TriviaUserStats>> totals = new TLongObjectHashMap<>();
+            for (TriviaAnswer answer : truncated) {
+                TLongObjectMap<TriviaUserStats> guild = totals.get(answer.getGuildId());
+                if (guild == null) {
+                    totals.put(answer.getGuildId(), guild = new TLongObjectHashMap<>());
+                }
+                guild.put(answer.getUserId(), null);
+            }
+            totals.forEachEntry((guildId, users) -> {
+                loadUsers(h, guildId, users);
+                return true;
+            });
+            for (TriviaAnswer answer : truncated) {
+                totals.get(answer.getGuildId()).get(answer.getUserId()).record(answer);
+            }
+            writeTotals(h, totals);
+        }));
+    }
+
+    /**
+     * @return the stored totals of every user who has answered in the guild
+     */
+    public TriviaGuildStats loadGuild(long guildId) {
+        final TriviaGuildStats stats = new TriviaGuildStats(guildId);
+        useHandle(handle -> {
+            final TLongObjectMap<TriviaUserStats> users = new TLongObjectHashMap<>();
+            loadUsers(handle, guildId, users);
+            users.forEachValue(user -> {
+                stats.load(user);
+                return true;
+            });
+        });
+        return stats;
+    }
+
+    /**
+     * Reads the history of one guild in the order it happened.
+     */
+    public void forEachAnswer(long guildId, Consumer<TriviaAnswer> consumer) {
+        useHandle(handle -> handle
+                .createQuery("SELECT GuildId, UserId, Category, Correct, LatencyMillis, AnsweredAt " +
+                                     "FROM TriviaAnswers " +
+                                     "WHERE GuildId = ? " +
+                                     "ORDER BY AnsweredAt, Seq")
+                .bind(0, guildId)
+                .map((r, ctx) -> readAnswer(r))
+                .forEach(consumer));
+    }
+
+    private static TriviaAnswer readAnswer(ResultSet r) throws SQLException {
+        final long time = r.getTimestamp(6).toLocalDateTime().toInstant(ZoneOffset.UTC).toEpochMilli();
+        return new TriviaAnswer(r.getLong(1), r.getLong(2), r.getString(3), r.getShort(4) != 0, r.getInt(5), time);
+    }
+
+    /**
+     * Builds the totals of every user from the whole history, once, when the totals tables are first created.
+     */
+    private void rebuildTotals() {
+        useHandle(handle -> handle.useTransaction(h -> {
+            final TLongObjectMap<TLongObjectMap<TriviaUserStats>> totals = new TLongObjectHashMap<>();
+            h.createQuery("SELECT GuildId, UserId, Category, Correct, LatencyMillis, AnsweredAt " +
+                                  "FROM TriviaAnswers " +
+                                  "ORDER BY AnsweredAt, Seq")
+             .map((r, ctx) -> readAnswer(r))
+             .forEach(answer -> {
+                 TLongObjectMap<TriviaUserStats> guild = totals.get(answer.getGuildId());
+                 if (guild == null) {
+                     totals.put(answer.getGuildId(), guild = new TLongObjectHashMap<>());
+                 }
+                 TriviaUserStats user = guild.get(answer.getUserId());
+                 if (user == null) {
+                     guild.put(answer.getUserId(), user = new TriviaUserStats(answer.getUserId()));
+                 }
+                 user.record(answer);
+             });
+            writeTotals(h, totals);
+        }));
+    }
+
+    /**
+     * Fills in the stored totals of the users that are keys of the map, or of every user in the guild if it is empty.
+     * Users without stored totals are given empty ones.
+     */
+    private static void loadUsers(Handle handle, long guildId, TLongObjectMap<TriviaUserStats> users) {
+        final long[] ids = users.keys();
+        final StringBuilder where = new StringBuilder(" WHERE GuildId = ?");
+        if (ids.length > 0) {
+            where.append(" AND UserId IN (?");
+            for (int i = 1; i < ids.length; i++) {
+                where.append(", ?");
+            }
+            where.append(')');
+        }
+        final Query totals = handle.createQuery(
+                "SELECT UserId, Attempts, Correct, Streak, BestStreak, Latencies FROM TriviaUserTotals" + where);
+        final Query categories = handle.createQuery(
+                "SELECT UserId, Category, Attempts, Correct FROM TriviaCategoryTotals" + where);
+        for (Query query : new Query[]{totals, categories}) {
+            query.bind(0, guildId);
+            for (int i = 0; i < ids.length; i++) {
+                query.bind(i + 1, ids[i]);
+            }
+        }
+        totals.map((r, ctx) -> new TriviaUserStats(r.getLong(1), r.getInt(2), r.getInt(3), r.getInt(4), r.getInt(5),
+                                                   decodeLatencies(r.getString(6))))
+              .forEach(user -> users.put(user.getUserId(), user));
+        categories.map((r, ctx) -> new Object[]{r.getLong(1), r.getString(2), r.getInt(3), r.getInt(4)})
+                  .forEach(row -> users.get((long) row[0]).addCategory((String) row[1], (int) row[2], (int) row[3]));
+        for (long id : ids) {
+            if (users.get(id) == null) {
+                users.put(id, new TriviaUserStats(id));
+            }
+        }
+    }
+
+    private static void writeTotals(Handle handle, TLongObjectMap<TLongObjectMap<TriviaUserStats>> totals) {
+        final List<Object[]> userRows = new ArrayList<>();
+        final List<Object[]> categoryRows = new ArrayList<>();
+        totals.forEachEntry((guildId, users) -> {
+            users.forEachValue(user -> {
+                userRows.add(new Object[]{user.getAttempts(), user.getCorrect(), user.getStreak(),
+                        user.getBestStreak(), encodeLatencies(user.getLatencyCounts()), guildId, user.getUserId()});
+                for (String category : user.getCategories()) {
+                    categoryRows.add(new Object[]{user.getCategoryAttempts(category),
+                            user.getCategoryCorrect(category), guildId, user.getUserId(), category});
+                }
+                return true;
+            });
+            return true;
+        });
+        upsert(handle, UPDATE_USER, INSERT_USER, userRows);
+        upsert(handle, UPDATE_CATEGORY, INSERT_CATEGORY, categoryRows);
+    }
+
+    /**
+     * Updates each row, and inserts the rows that were not there. Both statements take the same arguments.
+     */
+    private static void upsert(Handle handle, String updateSql, String insertSql, List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        final PreparedBatch update = handle.prepareBatch(updateSql);
+        for (Object[] row : rows) {
+            update.add(row);
+        }
+        final int[] updated = update.execute();
+        final PreparedBatch insert = handle.prepareBatch(insertSql);
+        for (int i = 0; i < rows.size(); i++) {
+            if (updated[i] == 0) {
+                insert.add(rows.get(i));
+            }
+        }
+        if (insert.size() > 0) {
+            insert.execute();
+        }
+    }
+
+    private static String encodeLatencies(int[] latencies) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < latencies.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(latencies[i]);
+        }
+        return sb.toString();
+    }
+
+    private static int[] decodeLatencies(String latencies) {
+        final String[] split = latencies.split(",");
+        final int[] counts = new int[split.length];
+        for (int i = 0; i < split.length; i++) {
+            counts[i] = Integer.parseInt(split[i]);
+        }
+        return counts;
+    }
+}
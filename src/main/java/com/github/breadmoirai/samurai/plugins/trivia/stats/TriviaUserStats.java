@@ -0,0 +1,185 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.breadmoirai.samurai.plugins.trivia.stats;
+
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The running totals of one user in one guild, updated one answer at a time.
+ * <p>
+ * Answer times are counted in buckets that each span 25% more than the last, so the median is kept in a fixed amount
+ * of memory and is accurate to within a bucket.
+ */
+public class TriviaUserStats {
+
+    static final int LATENCY_BUCKETS = 40;
+    private static final double LATENCY_BASE_MILLIS = 100;
+    private static final double LATENCY_GROWTH = 1.25;
+    /**
+     * A category needs this many attempts before it counts as a strength.
+     */
+    private static final int MIN_CATEGORY_ATTEMPTS = 3;
+
+    private final long userId;
+    private int attempts;
+    private int correct;
+    private int streak;
+    private int bestStreak;
+    private final int[] latencies = new int[LATENCY_BUCKETS];
+    private final TObjectIntMap<String> categoryAttempts = new TObjectIntHashMap<>();
+    private final TObjectIntMap<String> categoryCorrect = new TObjectIntHashMap<>();
+
+    public TriviaUserStats(long userId) {
+        this.userId = userId;
+    }
+
+    /**
+     * Restores the totals stored by {@link TriviaStatsDatabase}. Categories are added with {@link #addCategory}.
+     */
+    TriviaUserStats(long userId, int attempts, int correct, int streak, int bestStreak, int[] latencies) {
+        this.userId = userId;
+        this.attempts = attempts;
+        this.correct = correct;
+        this.streak = streak;
+        this.bestStreak = bestStreak;
+        System.arraycopy(latencies, 0, this.latencies, 0, Math.min(latencies.length, LATENCY_BUCKETS));
+    }
+
+    synchronized void addCategory(String category, int attempts, int correct) {
+        categoryAttempts.put(category, attempts);
+        categoryCorrect.put(category, correct);
+    }
+
+    static int bucket(int latencyMillis) {
+        if (latencyMillis < LATENCY_BASE_MILLIS) {
+            return 0;
+        }
+        final int bucket = (int) (Math.log(latencyMillis / LATENCY_BASE_MILLIS) / Math.log(LATENCY_GROWTH));
+        return Math.min(bucket, LATENCY_BUCKETS - 1);
+    }
+
+    synchronized void record(TriviaAnswer answer) {
+        attempts++;
+        categoryAttempts.adjustOrPutValue(answer.getCategory(), 1, 1);
+        if (answer.isCorrect()) {
+            correct++;
+            streak++;
+            bestStreak = Math.max(bestStreak, streak);
+            categoryCorrect.adjustOrPutValue(answer.getCategory(), 1, 1);
+            latencies[bucket(answer.getLatencyMillis())]++;
+        } else {
+            streak = 0;
+        }
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public synchronized int getAttempts() {
+        return attempts;
+    }
+
+    public synchronized int getCorrect() {
+        return correct;
+    }
+
+    /**
+     * @return 0-1
+     */
+    public synchronized double getAccuracy() {
+        return attempts == 0 ? 0 : (double) correct / attempts;
+    }
+
+    public synchronized int getStreak() {
+        return streak;
+    }
+
+    public synchronized int getBestStreak() {
+        return bestStreak;
+    }
+
+    /**
+     * @return the median time to a correct answer, or -1 if there are none
+     */
+    public synchronized long getMedianLatencyMillis() {
+        if (correct == 0) {
+            return -1;
+        }
+        final int half = (correct + 1) / 2;
+        int seen = 0;
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            seen += latencies[i];
+            if (seen >= half) {
+                if (i == 0) {
+                    return (long) LATENCY_BASE_MILLIS;
+                }
+                // the geometric middle of the bucket
+                return Math.round(LATENCY_BASE_MILLIS * Math.pow(LATENCY_GROWTH, i + 0.5));
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return up to {@code count} categories with the best accuracy, ignoring those with too few attempts
+     */
+    public synchronized List<String> getStrongestCategories(int count) {
+        final List<String> categories = new ArrayList<>();
+        categoryAttempts.forEachEntry((category, n) -> {
+            if (n >= MIN_CATEGORY_ATTEMPTS) {
+                categories.add(category);
+            }
+            return true;
+        });
+        categories.sort(Comparator.comparingDouble(this::getCategoryAccuracy).reversed()
+                                  .thenComparing(Comparator.naturalOrder()));
+        return categories.size() > count ? new ArrayList<>(categories.subList(0, count)) : categories;
+    }
+
+    /**
+     * @return the number of correct answers in each latency bucket
+     */
+    synchronized int[] getLatencyCounts() {
+        return latencies.clone();
+    }
+
+    synchronized List<String> getCategories() {
+        return new ArrayList<>(categoryAttempts.keySet());
+    }
+
+    synchronized int getCategoryAttempts(String category) {
+        return categoryAttempts.get(category);
+    }
+
+    synchronized int getCategoryCorrect(String category) {
+        return categoryCorrect.get(category);
+    }
+
+    /**
+     * @return 0-1
+     */
+    public synchronized double getCategoryAccuracy(String category) {
+        final int n = categoryAttempts.get(category);
+        return n == 0 ? 0 : (double) categoryCorrect.get(category) / n;
+    }
+}
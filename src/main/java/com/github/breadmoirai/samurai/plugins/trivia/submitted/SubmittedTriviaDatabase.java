@@ -0,0 +1,145 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.breadmoirai.samurai.plugins.trivia.submitted;
+
+import com.github.breadmoirai.samurai.plugins.derby.JdbiExtension;
+import com.github.breadmoirai.samurai.plugins.trivia.TriviaLine;
+import org.jdbi.v3.core.Jdbi;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Questions written by users. A submission is pending until the owner of the bot approves it, since approved questions
+ * are asked in every guild.
+ */
+public class SubmittedTriviaDatabase extends JdbiExtension {
+
+    public SubmittedTriviaDatabase(Jdbi jdbi) {
+        super(jdbi);
+        if (tableAbsent("TriviaSubmissions")) {
+            execute("CREATE TABLE TriviaSubmissions (\n" +
+                            "  Id         INT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,\n" +
+                            "  AuthorId   BIGINT        NOT NULL,\n" +
+                            "  Question   VARCHAR (256) NOT NULL,\n" +
+                            "  Answer     VARCHAR (128) NOT NULL,\n" +
+                            "  Category   VARCHAR (32)  NOT NULL,\n" +
+                            "  Approved   BOOLEAN       NOT NULL DEFAULT FALSE\n" +
+                            ")");
+        } else if (columnAbsent("TriviaSubmissions", "Approved")) {
+            // questions submitted before there was a review have to be reviewed as well
+            execute("ALTER TABLE TriviaSubmissions ADD COLUMN Approved BOOLEAN NOT NULL DEFAULT FALSE");
+        }
+    }
+
+    /**
+     * @return every approved question, oldest first
+     */
+    public List<TriviaLine> getLines(String source) {
+        return withHandle(handle -> handle
+                .createQuery("SELECT Question, Answer, Category FROM TriviaSubmissions WHERE Approved = TRUE ORDER BY Id")
+                .map((r, ctx) -> SubmittedTriviaProvider.createLine(r.getString(1), r.getString(2), r.getString(3), source))
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * @return at most {@code limit} questions waiting for review, oldest first
+     */
+    public List<Submission> getPending(int limit) {
+        return withHandle(handle -> handle
+                .createQuery("SELECT Id, AuthorId, Question, Answer, Category FROM TriviaSubmissions " +
+                                     "WHERE Approved = FALSE ORDER BY Id FETCH FIRST " + limit + " ROWS ONLY")
+                .map((r, ctx) -> new Submission(r.getInt(1), r.getLong(2), r.getString(3), r.getString(4), r.getString(5)))
+                .collect(Collectors.toList()));
+    }
+
+    public int countPending() {
+        return selectInt("SELECT COUNT(*) FROM TriviaSubmissions WHERE Approved = FALSE").orElse(0);
+    }
+
+    /**
+     * @return the question if it was waiting for review
+     */
+    public Optional<Submission> approve(int id) {
+        final boolean approved = withHandle(handle -> handle
+                .createUpdate("UPDATE TriviaSubmissions SET Approved = TRUE WHERE Id = ? AND Approved = FALSE")
+                .bind(0, id)
+                .execute()) > 0;
+        if (!approved) {
+            return Optional.empty();
+        }
+        return withHandle(handle -> handle
+                .createQuery("SELECT Id, AuthorId, Question, Answer, Category FROM TriviaSubmissions WHERE Id = ?")
+                .bind(0, id)
+                .map((r, ctx) -> new Submission(r.getInt(1), r.getLong(2), r.getString(3), r.getString(4), r.getString(5)))
+                .findFirst());
+    }
+
+    /**
+     * Deletes a question that is waiting for review.
+     *
+     * @return true if there was such a question
+     */
+    public boolean reject(int id) {
+        return withHandle(handle -> handle
+                .createUpdate("DELETE FROM TriviaSubmissions WHERE Id = ? AND Approved = FALSE")
+                .bind(0, id)
+                .execute()) > 0;
+    }
+
+    public void addQuestion(long authorId, String question, String answer, String category) {
+        execute("INSERT INTO TriviaSubmissions (AuthorId, Question, Answer, Category) VALUES (?, ?, ?, ?)",
+                authorId, question, answer, category);
+    }
+
+    public static class Submission {
+        private final int id;
+        private final long authorId;
+        private final String question;
+        private final String answer;
+        private final String category;
+
+        Submission(int id, long authorId, String question, String answer, String category) {
+            this.id = id;
+            this.authorId = authorId;
+            this.question = question;
+            this.answer = answer;
+            this.category = category;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public long getAuthorId() {
+            return authorId;
+        }
+
+        public String getQuestion() {
+            return question;
+        }
+
+        public String getAnswer() {
+            return answer;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+    }
+}
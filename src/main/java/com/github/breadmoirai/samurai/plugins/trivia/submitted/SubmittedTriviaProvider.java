@@ -0,0 +1,118 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.breadmoirai.samurai.plugins.trivia.submitted;
+
+import com.github.breadmoirai.samurai.plugins.derby.DerbyDatabase;
+import com.github.breadmoirai.samurai.plugins.trivia.BasicTriviaLine;
+import com.github.breadmoirai.samurai.plugins.trivia.TriviaIndex;
+import com.github.breadmoirai.samurai.plugins.trivia.TriviaLine;
+import com.github.breadmoirai.samurai.plugins.trivia.TriviaProvider;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Questions written by users. Approved questions are loaded into the index once and each question is added to the
+ * index when it is approved, so sessions never read the table. Submissions are only stored until then.
+ */
+public class SubmittedTriviaProvider implements TriviaProvider {
+
+    public static final String NAME = "User Submitted";
+    public static final int MAX_QUESTION = 256;
+    public static final int MAX_ANSWER = 128;
+    public static final int MAX_CATEGORY = 32;
+
+    private final SubmittedTriviaDatabase database;
+    private final TriviaIndex index;
+
+    public SubmittedTriviaProvider(DerbyDatabase database) {
+        this(database.getExtension(SubmittedTriviaDatabase::new));
+    }
+
+    SubmittedTriviaProvider(SubmittedTriviaDatabase database) {
+        this.database = database;
+        this.index = new TriviaIndex();
+        database.getLines(NAME).forEach(index::add);
+    }
+
+    /**
+     * @param answer the answer shown, followed by any others that are accepted, separated by {@code /}
+     */
+    static TriviaLine createLine(String question, String answer, String category, String source) {
+        final String[] answers = answer.split("/");
+        return new BasicTriviaLine(question, answers[0].trim(), category, 0.5, source,
+                                   Arrays.copyOfRange(answers, 1, answers.length));
+    }
+
+    /**
+     * Stores the question for review. It is not asked until it has been {@link #approve approved}.
+     *
+     * @throws IllegalArgumentException if a part is empty or longer than its column
+     */
+    public void submit(long authorId, String question, String answer, String category) {
+        check("question", question, MAX_QUESTION);
+        check("answer", answer, MAX_ANSWER);
+        check("category", category, MAX_CATEGORY);
+        database.addQuestion(authorId, question, answer, category);
+    }
+
+    public List<SubmittedTriviaDatabase.Submission> getPending(int limit) {
+        return database.getPending(limit);
+    }
+
+    public int countPending() {
+        return database.countPending();
+    }
+
+    /**
+     * Makes a pending question available to every guild.
+     *
+     * @return the question, or empty if there was no pending question with this id
+     */
+    public Optional<SubmittedTriviaDatabase.Submission> approve(int id) {
+        final Optional<SubmittedTriviaDatabase.Submission> submission = database.approve(id);
+        submission.ifPresent(s -> index.add(createLine(s.getQuestion(), s.getAnswer(), s.getCategory(), NAME)));
+        return submission;
+    }
+
+    /**
+     * @return true if there was a pending question with this id
+     */
+    public boolean reject(int id) {
+        return database.reject(id);
+    }
+
+    private static void check(String name, String value, int max) {
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("The " + name + " is missing");
+        }
+        if (value.length() > max) {
+            throw new IllegalArgumentException("The " + name + " can be at most " + max + " characters");
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public TriviaIndex getIndex() {
+        return index;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.breadmoirai.samurai.plugins.trivia.triviaquestionsdotnet;
+
+import com.github.breadmoirai.samurai.plugins.trivia.TriviaIndex;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Every harvested question, held in memory so that sessions can be drawn without touching the network or the
+ * database. The urls only guard against adding a question twice, the questions themselves live in the index.
+ */
+public class TriviaQuestionsDotNetCorpus {
+
+    private final TriviaIndex index = new TriviaIndex();
+    private final Set<String> urls = new HashSet<>();
+
+    public TriviaQuestionsDotNetCorpus() {
+    }
+
+    public TriviaQuestionsDotNetCorpus(Collection<TriviaQuestionsDotNetLine> lines) {
+        lines.forEach(this::add);
+    }
+
+    /**
+     * @return false if a question with the same url is already present
+     */
+    public synchronized boolean add(TriviaQuestionsDotNetLine line) {
+        if (!urls.add(line.getUrl())) {
+            return false;
+        }
+        index.add(line);
+        return true;
+    }
+
+    public synchronized boolean contains(String url) {
+        return urls.contains(url);
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public TriviaIndex getIndex() {
+        return index;
+    }
+}
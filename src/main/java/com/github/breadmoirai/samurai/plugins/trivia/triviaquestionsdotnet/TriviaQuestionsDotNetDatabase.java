@@ -18,8 +18,12 @@ package com.github.breadmoirai.samurai.plugins.trivia.triviaquestionsdotnet;
 
 import com.github.breadmoirai.samurai.plugins.derby.JdbiExtension;
 import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.Update;
 
+import java.sql.Types;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 public class TriviaQuestionsDotNetDatabase extends JdbiExtension {
 
@@ -30,11 +34,14 @@ public class TriviaQuestionsDotNetDatabase extends JdbiExtension {
                             "  Url        VARCHAR (384) PRIMARY KEY,\n" +
                             "  Question   VARCHAR (256) NOT NULL,\n" +
                             "  Answer     VARCHAR (128) NOT NULL,\n" +
-                            "  Category   VARCHAR (32)  NOT NULL\n" +
+                            "  Category   VARCHAR (32)  NOT NULL,\n" +
+                            "  NextUrl    VARCHAR (384)\n" +
                             ")");
             execute("CREATE TABLE TriviaQuestionsDotNetBlackList (\n" +
                             "  Url        VARCHAR (384) PRIMARY KEY\n" +
                             ")");
+        } else if (columnAbsent("TriviaQuestionsDotNet", "NextUrl")) {
+            execute("ALTER TABLE TriviaQuestionsDotNet ADD COLUMN NextUrl VARCHAR (384)");
         }
     }
 
@@ -44,20 +51,73 @@ public class TriviaQuestionsDotNetDatabase extends JdbiExtension {
                                  "WHERE Url=?", url).isPresent();
     }
 
+    /**
+     * @return true if the url has been harvested or blacklisted
+     */
+    public boolean isKnown(String url) {
+        return selectInt("SELECT 1 FROM TriviaQuestionsDotNet WHERE Url = ? " +
+                                 "UNION ALL " +
+                                 "SELECT 1 FROM TriviaQuestionsDotNetBlackList WHERE Url = ?", url, url).isPresent();
+    }
+
     public Optional<TriviaQuestionsDotNetLine> getLine(String url) {
         return withHandle(handle -> handle
-                .createQuery("SELECT Question, Answer, Category " +
+                .createQuery("SELECT Question, Answer, Category, NextUrl " +
                                      "FROM TriviaQuestionsDotNet " +
                                      "WHERE Url = ?")
                 .bind(0, url)
                 .map((r, ctx) -> new TriviaQuestionsDotNetLine(url, r.getString(1), r.getString(2),
-                                                               r.getString(3)))
+                                                               r.getString(3), r.getString(4)))
                 .findFirst());
     }
 
+    /**
+     * @return every question that is not blacklisted
+     */
+    public List<TriviaQuestionsDotNetLine> getLines() {
+        return withHandle(handle -> handle
+                .createQuery("SELECT q.Url, q.Question, q.Answer, q.Category, q.NextUrl " +
+                                     "FROM TriviaQuestionsDotNet q " +
+                                     "WHERE NOT EXISTS (SELECT 1 FROM TriviaQuestionsDotNetBlackList b WHERE b.Url = q.Url)")
+                .map((r, ctx) -> new TriviaQuestionsDotNetLine(r.getString(1), r.getString(2), r.getString(3),
+                                                               r.getString(4), r.getString(5)))
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * @return the next links of harvested questions that lead to pages which have not been harvested yet, which is
+     * where an interrupted crawl picks up again
+     */
+    public List<String> getFrontier() {
+        return withHandle(handle -> handle
+                .createQuery("SELECT DISTINCT q.NextUrl " +
+                                     "FROM TriviaQuestionsDotNet q " +
+                                     "WHERE q.NextUrl IS NOT NULL " +
+                                     "AND NOT EXISTS (SELECT 1 FROM TriviaQuestionsDotNet p WHERE p.Url = q.NextUrl) " +
+                                     "AND NOT EXISTS (SELECT 1 FROM TriviaQuestionsDotNetBlackList b WHERE b.Url = q.NextUrl)")
+                .mapTo(String.class)
+                .collect(Collectors.toList()));
+    }
+
     public void addQuestion(TriviaQuestionsDotNetLine line) {
-        execute("INSERT INTO TriviaQuestionsDotNet VALUES (?, ?, ?, ?)",
-                line.getUrl(), line.getQuestion(), line.getAnswer(), line.getCategory());
+        useHandle(handle -> {
+            final Update update = handle
+                    .createUpdate("INSERT INTO TriviaQuestionsDotNet (Url, Question, Answer, Category, NextUrl) VALUES (?, ?, ?, ?, ?)")
+                    .bind(0, line.getUrl())
+                    .bind(1, line.getQuestion())
+                    .bind(2, line.getAnswer())
+                    .bind(3, line.getCategory());
+            if (line.getNext() == null) {
+                update.bindNull(4, Types.VARCHAR);
+            } else {
+                update.bind(4, line.getNext());
+            }
+            update.execute();
+        });
+    }
+
+    public void blacklist(String url) {
+        execute("INSERT INTO TriviaQuestionsDotNetBlackList VALUES (?)", url);
     }
 
 }
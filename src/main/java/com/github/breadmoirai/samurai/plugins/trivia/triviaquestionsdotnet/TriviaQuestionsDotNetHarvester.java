@@ -0,0 +1,160 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.breadmoirai.samurai.plugins.trivia.triviaquestionsdotnet;
+
+import com.github.breadmoirai.samurai.plugins.metrics.Counter;
+import com.github.breadmoirai.samurai.plugins.metrics.MetricRegistry;
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Crawls trivia-questions.net in the background and stores every question it finds, so that sessions never wait on
+ * the site. Each run first looks for new questions on the front page and then follows the next link of each
+ * question. Where the crawl stopped is kept in the database as the next links that have not been visited yet, so it
+ * carries on after a restart.
+ */
+public class TriviaQuestionsDotNetHarvester {
+
+    public static final String SITE_URL = "http://www.trivia-questions.net";
+    private static final int TIMEOUT_MILLIS = 10_000;
+
+    private final TriviaQuestionsDotNetDatabase database;
+    private final TriviaQuestionsDotNetCorpus corpus;
+    private final String siteUrl;
+    private final long pageDelayMillis;
+    private final Deque<String> frontier = new ArrayDeque<>();
+
+    private final Counter added;
+    private final Counter rejected;
+    private final Counter failed;
+
+    /**
+     * @param pageDelayMillis how long to wait between two pages, to go easy on the site
+     */
+    public TriviaQuestionsDotNetHarvester(TriviaQuestionsDotNetDatabase database, TriviaQuestionsDotNetCorpus corpus,
+                                          String siteUrl, long pageDelayMillis) {
+        this.database = database;
+        this.corpus = corpus;
+        this.siteUrl = siteUrl;
+        this.pageDelayMillis = pageDelayMillis;
+        final MetricRegistry registry = MetricRegistry.getDefault();
+        final String help = "Pages fetched by the trivia harvester";
+        added = registry.counter("trivia_harvest_pages_total", help, "result", "added");
+        rejected = registry.counter("trivia_harvest_pages_total", help, "result", "rejected");
+        failed = registry.counter("trivia_harvest_pages_total", help, "result", "failed");
+    }
+
+    /**
+     * Fetches at most {@code maxPages} pages, including the front page. Stops early if the site cannot be reached.
+     * Only one thread may harvest at a time.
+     *
+     * @return the number of questions added
+     */
+    public int harvest(int maxPages) {
+        int pages = 0;
+        int count = 0;
+        try {
+            final Document front = fetch(siteUrl);
+            pages++;
+            final List<String> links = front.select("h2.entry-title > a").eachAttr("abs:href");
+            for (int i = links.size() - 1; i >= 0; i--) {
+                if (!isKnown(links.get(i))) {
+                    frontier.addFirst(links.get(i));
+                }
+            }
+            boolean resumed = false;
+            while (pages < maxPages) {
+                if (frontier.isEmpty()) {
+                    if (resumed) {
+                        break;
+                    }
+                    frontier.addAll(database.getFrontier());
+                    resumed = true;
+                    continue;
+                }
+                final String url = frontier.peekFirst();
+                if (isKnown(url)) {
+                    frontier.pollFirst();
+                    continue;
+                }
+                if (pageDelayMillis > 0) {
+                    Thread.sleep(pageDelayMillis);
+                }
+                final Document document;
+                try {
+                    document = fetch(url);
+                } catch (HttpStatusException e) {
+                    if (e.getStatusCode() != 404 && e.getStatusCode() != 410) {
+                        // the site is having trouble, so the page stays first in line for the next run
+                        throw e;
+                    }
+                    // the page is gone rather than the site
+                    frontier.pollFirst();
+                    database.blacklist(url);
+                    failed.increment();
+                    continue;
+                } finally {
+                    pages++;
+                }
+                frontier.pollFirst();
+                final TriviaQuestionsDotNetLine line = TriviaQuestionsDotNetLine.parse(url, document);
+                if (line == null || !store(line)) {
+                    database.blacklist(url);
+                    rejected.increment();
+                    continue;
+                }
+                added.increment();
+                count++;
+                if (line.getNext() != null && !isKnown(line.getNext())) {
+                    frontier.addFirst(line.getNext());
+                }
+            }
+        } catch (IOException e) {
+            failed.increment();
+            System.err.println("Trivia harvest stopped: " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return count;
+    }
+
+    private boolean store(TriviaQuestionsDotNetLine line) {
+        try {
+            database.addQuestion(line);
+        } catch (RuntimeException e) {
+            // usually a question or answer longer than its column
+            e.printStackTrace();
+            return false;
+        }
+        corpus.add(line);
+        return true;
+    }
+
+    private boolean isKnown(String url) {
+        return corpus.contains(url) || database.isKnown(url);
+    }
+
+    private Document fetch(String url) throws IOException {
+        return Jsoup.connect(url).timeout(TIMEOUT_MILLIS).get();
+    }
+}
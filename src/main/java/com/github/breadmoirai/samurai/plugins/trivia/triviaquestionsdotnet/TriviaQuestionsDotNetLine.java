@@ -16,70 +16,63 @@
 
 package com.github.breadmoirai.samurai.plugins.trivia.triviaquestionsdotnet;
 
+import com.github.breadmoirai.samurai.plugins.trivia.AnswerMatcher;
 import com.github.breadmoirai.samurai.plugins.trivia.TriviaLine;
-import com.github.breadmoirai.samurai.util.WagnerFischer;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
-
-import java.io.IOException;
+import org.jsoup.nodes.Element;
 
 public class TriviaQuestionsDotNetLine implements TriviaLine {
 
-    private static int DISTANCE = 2;
     private final String url;
-    private String question;
-    private String answer;
-    private String category;
-    private String next;
-    private String checkedAnswer;
-    private TriviaQuestionsDotNetDatabase database;
+    private final String question;
+    private final String answer;
+    private final String category;
+    private final String next;
+    private volatile AnswerMatcher matcher;
 
-    public TriviaQuestionsDotNetLine(String url) {
-        this.url = url;
+    public TriviaQuestionsDotNetLine(String url, String question, String answer, String category) {
+        this(url, question, answer, category, null);
     }
 
-    public TriviaQuestionsDotNetLine(String url, String question, String answer, String category) {
+    public TriviaQuestionsDotNetLine(String url, String question, String answer, String category, String next) {
         this.url = url;
         this.question = question;
         this.answer = answer;
         this.category = category;
+        this.next = next;
     }
 
-    @Override
-    public String getQuestion() {
-        if (question == null) {
-            setFields();
+    /**
+     * Reads a question from its page.
+     *
+     * @return the question, or null if the page is not a question
+     */
+    public static TriviaQuestionsDotNetLine parse(String url, Document document) {
+        final Element question = document.selectFirst("h1.single-title.entry-title");
+        final Element answer = document.selectFirst("p.post-answer + p");
+        final Element category = document.selectFirst("meta[property=\"article:section\"]");
+        if (question == null || answer == null || category == null) {
+            return null;
         }
-        return question;
+        final Element next = document.selectFirst("div.next-post-link > a");
+        return new TriviaQuestionsDotNetLine(url, question.text(), answer.text(),
+                                             category.attr("content").replace(" Trivia Questions", ""),
+                                             next == null ? null : next.attr("abs:href"));
     }
 
-    private void setFields() {
-        try {
-            final Document document = Jsoup.connect(url).get();
-            question = document.selectFirst("h1.single-title.entry-title").text();
-            answer = document.selectFirst("p.post-answer + p").text();
-            next = document.selectFirst("div.next-post-link > a").attr("href");
-            category = document.selectFirst("meta[property=\"article:section\"]")
-                               .attr("content")
-                               .replace(" Trivia Questions", "");
-            database.addQuestion(this);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    @Override
+    public String getQuestion() {
+        return question;
     }
 
     @Override
     public boolean checkAnswer(String s) {
-        if (checkedAnswer == null) {
-            checkedAnswer = answer.toLowerCase();
-            if (checkedAnswer.startsWith("the ")) {
-                checkedAnswer = checkedAnswer.substring(4);
-            }
-            checkedAnswer = checkedAnswer.replaceAll("\\s+", " ")
-                                         .replaceAll(",\\s*", " ")
-                                         .replaceAll("&", "and");
+        // built on the first guess, since most of the corpus is never asked
+        AnswerMatcher matcher = this.matcher;
+        if (matcher == null) {
+            this.matcher = matcher = new AnswerMatcher(answer);
         }
-        return WagnerFischer.getLevenshteinDistance(checkedAnswer, s) < DISTANCE;
+        return matcher.matches(s);
     }
 
     @Override
@@ -89,7 +82,8 @@ public class TriviaQuestionsDotNetLine implements TriviaLine {
 
     @Override
     public double getWeight() {
-        return 0.1;
+        // the site does not grade its questions, so they all start as medium and move as they are asked
+        return 0.5;
     }
 
     @Override
@@ -106,13 +100,10 @@ public class TriviaQuestionsDotNetLine implements TriviaLine {
         return url;
     }
 
-    public TriviaQuestionsDotNetLine getNext() {
-        if (next == null)
-            return null;
-        return new TriviaQuestionsDotNetLine(next);
-    }
-
-    public void setDatabase(TriviaQuestionsDotNetDatabase database) {
-        this.database = database;
+    /**
+     * @return the url of the question the page links to next, or null if there is none
+     */
+    public String getNext() {
+        return next;
     }
 }
@@ -17,38 +17,74 @@
 package com.github.breadmoirai.samurai.plugins.trivia.triviaquestionsdotnet;
 
 import com.github.breadmoirai.samurai.plugins.derby.DerbyDatabase;
+import com.github.breadmoirai.samurai.plugins.metrics.MetricRegistry;
+import com.github.breadmoirai.samurai.plugins.trivia.TriviaIndex;
 import com.github.breadmoirai.samurai.plugins.trivia.TriviaProvider;
-import com.github.breadmoirai.samurai.plugins.trivia.TriviaSession;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 
-import java.io.IOException;
-import java.util.ArrayDeque;
-import java.util.Deque;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Serves questions from the local corpus, which a {@link TriviaQuestionsDotNetHarvester} keeps growing on its own
+ * thread.
+ */
 public class TriviaQuestionsDotNetProvider implements TriviaProvider {
 
-    private final TriviaQuestionsDotNetDatabase database;
+    private static final int PAGES_PER_HARVEST = 50;
+    private static final long PAGE_DELAY_MILLIS = 1000;
+    /**
+     * Below this many questions the harvester runs every minute instead of every {@value HARVEST_INTERVAL_MINUTES}.
+     */
+    private static final int MIN_CORPUS = 200;
+    private static final long HARVEST_INTERVAL_MINUTES = 30;
+
+    private final TriviaQuestionsDotNetCorpus corpus;
+    private final TriviaQuestionsDotNetHarvester harvester;
+    private final ScheduledExecutorService harvestService;
 
     public TriviaQuestionsDotNetProvider(DerbyDatabase database) {
-        this.database = database.getExtension(TriviaQuestionsDotNetDatabase::new);
+        this(database.getExtension(TriviaQuestionsDotNetDatabase::new), TriviaQuestionsDotNetHarvester.SITE_URL);
     }
 
-    @Override
-    public TriviaSession provide() {
-        final Document document;
+    TriviaQuestionsDotNetProvider(TriviaQuestionsDotNetDatabase database, String siteUrl) {
+        corpus = new TriviaQuestionsDotNetCorpus(database.getLines());
+        harvester = new TriviaQuestionsDotNetHarvester(database, corpus, siteUrl, PAGE_DELAY_MILLIS);
+        harvestService = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "trivia-harvester");
+            thread.setDaemon(true);
+            return thread;
+        });
+        MetricRegistry.getDefault().gauge("trivia_corpus_questions", "Questions available to trivia sessions", corpus::size,
+                                          "source", "trivia-questions.net");
+        harvestService.execute(this::harvest);
+    }
+
+    private void harvest() {
         try {
-            document = Jsoup.connect("http://www.trivia-questions.net").get();
-        } catch (IOException e) {
+            harvester.harvest(PAGES_PER_HARVEST);
+        } catch (RuntimeException e) {
             e.printStackTrace();
-            return null;
         }
-        final List<String> links = document.select("h2.entry-title > a").eachAttr("href");
-        final Deque<TriviaQuestionsDotNetLine> questions = links.stream()
-                                                                .map(TriviaQuestionsDotNetLine::new)
-                                                                .collect(Collectors.toCollection(ArrayDeque::new));
-        return new TriviaQuestionsDotNetSession(questions, database);
+        final long delay = corpus.size() < MIN_CORPUS ? 1 : HARVEST_INTERVAL_MINUTES;
+        harvestService.schedule(this::harvest, delay, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public String getName() {
+        return "Trivia-Questions.net";
+    }
+
+    @Override
+    public TriviaIndex getIndex() {
+        return corpus.getIndex();
+    }
+
+    public TriviaQuestionsDotNetCorpus getCorpus() {
+        return corpus;
+    }
+
+    public void close() {
+        harvestService.shutdownNow();
     }
 }
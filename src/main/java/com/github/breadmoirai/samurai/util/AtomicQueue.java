@@ -0,0 +1,359 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.breadmoirai.samurai.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A lock-free list meant for small queues that are read far more often than they are changed.
+ * <p>
+ * The elements are kept in an array that is never modified once published. Every change copies the array and swaps
+ * it in with a compare-and-set, retrying if another thread got there first, so no thread ever blocks. Reads are a
+ * single volatile load and {@link #snapshot()} is free. Changes are O(n), which is fine for queues of a few hundred
+ * elements.
+ * <p>
+ * Changes that touch several elements, such as {@link #removeAll(int[])} or {@link #shuffle(Random)}, are atomic.
+ * <p>
+ * Every change publishes a new version, numbered from 1. A {@link Listener} is told about each change together with
+ * its version, which lets an observer such as a journal put changes made by different threads back in order without
+ * the queue taking a lock.
+ *
+ * @param <E> the type of element
+ */
+public class AtomicQueue<E> implements Iterable<E> {
+
+    private static final Object[] EMPTY = {};
+
+    private final AtomicReference<State> state = new AtomicReference<>(new State(EMPTY, 0));
+    private final Listener<E> listener;
+
+    public AtomicQueue() {
+        this(null);
+    }
+
+    /**
+     * @param listener told about every change, or null
+     */
+    public AtomicQueue(Listener<E> listener) {
+        this.listener = listener;
+    }
+
+    public int size() {
+        return state.get().elements.length;
+    }
+
+    public boolean isEmpty() {
+        return state.get().elements.length == 0;
+    }
+
+    /**
+     * @return an immutable view of the queue as it is now
+     */
+    public List<E> snapshot() {
+        return view(state.get().elements);
+    }
+
+    /**
+     * @return an immutable view of the queue as it is now, along with the version of the change that produced it
+     */
+    public Version<E> version() {
+        final State current = state.get();
+        return new Version<>(current.version, view(current.elements));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> List<E> view(Object[] elements) {
+        return Collections.unmodifiableList(Arrays.asList((E[]) elements));
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return snapshot().iterator();
+    }
+
+    /**
+     * @return the first element, or null if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        final Object[] current = state.get().elements;
+        return current.length == 0 ? null : (E) current[0];
+    }
+
+    /**
+     * Removes the first element.
+     *
+     * @return the element removed, or null if the queue is empty
+     */
+    public E poll() {
+        return remove(0);
+    }
+
+    /**
+     * Appends an element.
+     *
+     * @return the index it was added at
+     */
+    public int add(E element) {
+        State current, next;
+        do {
+            current = state.get();
+            final Object[] elements = Arrays.copyOf(current.elements, current.elements.length + 1);
+            elements[current.elements.length] = element;
+            next = current.next(elements);
+        } while (!state.compareAndSet(current, next));
+        final int index = current.elements.length;
+        if (listener != null) {
+            listener.added(next.version, index, Collections.singletonList(element));
+        }
+        return index;
+    }
+
+    /**
+     * Inserts an element. An index past the end appends it.
+     */
+    public void add(int index, E element) {
+        addAll(index, Collections.singletonList(element));
+    }
+
+    /**
+     * Inserts every element in order, starting at {@code index}. An index past the end appends them.
+     */
+    public void addAll(int index, Collection<? extends E> collection) {
+        final Object[] added = collection.toArray();
+        if (added.length == 0) return;
+        State current, next;
+        int at;
+        do {
+            current = state.get();
+            final Object[] elements = current.elements;
+            at = Math.max(0, Math.min(index, elements.length));
+            final Object[] copy = new Object[elements.length + added.length];
+            System.arraycopy(elements, 0, copy, 0, at);
+            System.arraycopy(added, 0, copy, at, added.length);
+            System.arraycopy(elements, at, copy, at + added.length, elements.length - at);
+            next = current.next(copy);
+        } while (!state.compareAndSet(current, next));
+        if (listener != null) {
+            listener.added(next.version, at, view(added));
+        }
+    }
+
+    /**
+     * @return the element removed, or null if the index is out of range
+     */
+    @SuppressWarnings("unchecked")
+    public E remove(int index) {
+        State current, next;
+        do {
+            current = state.get();
+            final Object[] elements = current.elements;
+            if (index < 0 || index >= elements.length) {
+                return null;
+            }
+            final Object[] copy = new Object[elements.length - 1];
+            System.arraycopy(elements, 0, copy, 0, index);
+            System.arraycopy(elements, index + 1, copy, index, elements.length - index - 1);
+            next = current.next(copy);
+        } while (!state.compareAndSet(current, next));
+        final E removed = (E) current.elements[index];
+        if (listener != null) {
+            listener.removed(next.version, Collections.singletonList(new Removed<>(index, removed)));
+        }
+        return removed;
+    }
+
+    /**
+     * Removes the elements at each index in one step. Indexes that are out of range or repeated are ignored.
+     *
+     * @return the removed elements in the order they were in the queue, paired with the index they had
+     */
+    @SuppressWarnings("unchecked")
+    public List<Removed<E>> removeAll(int[] indexes) {
+        State current, next;
+        List<Removed<E>> removed;
+        do {
+            current = state.get();
+            final Object[] elements = current.elements;
+            final boolean[] remove = new boolean[elements.length];
+            int count = 0;
+            for (int index : indexes) {
+                if (index >= 0 && index < elements.length && !remove[index]) {
+                    remove[index] = true;
+                    count++;
+                }
+            }
+            if (count == 0) {
+                return Collections.emptyList();
+            }
+            final Object[] copy = new Object[elements.length - count];
+            removed = new ArrayList<>(count);
+            for (int i = 0, j = 0; i < elements.length; i++) {
+                if (remove[i]) {
+                    removed.add(new Removed<>(i, (E) elements[i]));
+                } else {
+                    copy[j++] = elements[i];
+                }
+            }
+            next = current.next(copy);
+        } while (!state.compareAndSet(current, next));
+        if (listener != null) {
+            listener.removed(next.version, Collections.unmodifiableList(removed));
+        }
+        return removed;
+    }
+
+    /**
+     * @return the number of elements shuffled
+     */
+    public int shuffle(Random random) {
+        State current, next;
+        do {
+            current = state.get();
+            final Object[] copy = current.elements.clone();
+            for (int i = copy.length - 1; i > 0; i--) {
+                final int j = random.nextInt(i + 1);
+                final Object swap = copy[i];
+                copy[i] = copy[j];
+                copy[j] = swap;
+            }
+            next = current.next(copy);
+        } while (!state.compareAndSet(current, next));
+        if (listener != null) {
+            listener.replaced(next.version, view(next.elements));
+        }
+        return next.elements.length;
+    }
+
+    /**
+     * @return the elements that were removed
+     */
+    public List<E> clear() {
+        State current, next;
+        do {
+            current = state.get();
+            next = current.next(EMPTY);
+        } while (!state.compareAndSet(current, next));
+        if (listener != null) {
+            listener.replaced(next.version, Collections.emptyList());
+        }
+        return view(current.elements);
+    }
+
+    public int indexOf(Object element) {
+        final Object[] current = state.get().elements;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == null ? element == null : current[i].equals(element)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Told about each change after it has been published, on the thread that made it. Changes made by different
+     * threads may be reported out of order, but every version is reported exactly once.
+     */
+    public interface Listener<E> {
+
+        /**
+         * @param index    where the first element was inserted
+         * @param elements the elements inserted, in order
+         */
+        void added(long version, int index, List<E> elements);
+
+        /**
+         * @param removed the elements removed in the order they were in the queue, paired with the index they had
+         */
+        void removed(long version, List<Removed<E>> removed);
+
+        /**
+         * The whole queue was replaced, as by {@link #shuffle(Random)} or {@link #clear()}.
+         *
+         * @param elements the queue as it is after the change
+         */
+        void replaced(long version, List<E> elements);
+    }
+
+    /**
+     * The queue as it was after one change.
+     */
+    public static class Version<E> {
+        private final long version;
+        private final List<E> elements;
+
+        private Version(long version, List<E> elements) {
+            this.version = version;
+            this.elements = elements;
+        }
+
+        /**
+         * @return the version of the change, or 0 if the queue has never changed
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        public List<E> getElements() {
+            return elements;
+        }
+    }
+
+    private static final class State {
+        private final Object[] elements;
+        private final long version;
+
+        private State(Object[] elements, long version) {
+            this.elements = elements;
+            this.version = version;
+        }
+
+        private State next(Object[] elements) {
+            return new State(elements, version + 1);
+        }
+    }
+
+    /**
+     * An element taken out by {@link #removeAll(int[])}.
+     */
+    public static class Removed<E> {
+        private final int index;
+        private final E element;
+
+        private Removed(int index, E element) {
+            this.index = index;
+            this.element = element;
+        }
+
+        /**
+         * @return the index the element had, starting at 0
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public E getElement() {
+            return element;
+        }
+    }
+}
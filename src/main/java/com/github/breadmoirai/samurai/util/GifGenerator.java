@@ -19,11 +19,21 @@ import javax.imageio.stream.MemoryCacheImageOutputStream;
 import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * @author TonTL
@@ -31,10 +41,32 @@ import java.util.Queue;
  */
 public class GifGenerator {
 
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Frames are rendered in parallel on this pool, which is shared by every generator so that concurrent requests
+     * cannot use more threads than there are cores.
+     */
+    private static final ExecutorService RENDERER = Executors.newFixedThreadPool(THREADS, r -> {
+        final Thread thread = new Thread(r, "gif-renderer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * A 6x6x6 color cube followed by 40 greys. Every hue of a rave animation is covered equally well, so one palette
+     * can serve every frame.
+     */
+    private static final IndexColorModel SHARED_PALETTE = createPalette();
+
     Queue<BufferedImage> imageQueue;
     private BufferedImage base;
     private BufferedImage overlay;
     private String filename;
+    private boolean sharedPalette;
+
+    private AffineTransform[] transforms;
+    private HsbRaster hsb;
 
     public GifGenerator(BufferedImage base, BufferedImage overlay, String filename) {
 
@@ -44,35 +76,122 @@ public class GifGenerator {
         imageQueue = new LinkedList<>();
     }
 
+    private static IndexColorModel createPalette() {
+        final byte[] r = new byte[256], g = new byte[256], b = new byte[256];
+        int i = 0;
+        for (int red = 0; red < 6; red++) {
+            for (int green = 0; green < 6; green++) {
+                for (int blue = 0; blue < 6; blue++, i++) {
+                    r[i] = (byte) (red * 51);
+                    g[i] = (byte) (green * 51);
+                    b[i] = (byte) (blue * 51);
+                }
+            }
+        }
+        for (int grey = 0; i < 256; grey++, i++) {
+            r[i] = g[i] = b[i] = (byte) (grey * 255 / 39);
+        }
+        return new IndexColorModel(8, 256, r, g, b);
+    }
+
+    /**
+     * When enabled, every frame is mapped onto one fixed palette as it is rendered instead of letting the encoder
+     * build a palette for each frame. This is considerably faster at the cost of some banding.
+     */
+    public GifGenerator setSharedPalette(boolean sharedPalette) {
+        this.sharedPalette = sharedPalette;
+        return this;
+    }
+
+    /**
+     * Encodes the frames created by {@link #generate(int, boolean, boolean, boolean)}. Frames are released as they
+     * are written.
+     */
     public ByteArrayInputStream getInputStream() {
-        ByteArrayOutputStream output;
-        GifSequenceWriter writer;
+        final ExposedByteArrayOutputStream output = new ExposedByteArrayOutputStream();
         try {
-
-            output = new ByteArrayOutputStream();
-            ImageOutputStream ios = new MemoryCacheImageOutputStream(output);
-            writer = new GifSequenceWriter(ios, BufferedImage.TYPE_3BYTE_BGR, 63, true);
+            final GifSequenceWriter writer = createWriter(output);
             while (!imageQueue.isEmpty()) writer.writeToSequence(imageQueue.poll());
             writer.close();
             output.close();
-            return new ByteArrayInputStream(output.toByteArray());
+            // the buffer is handed over as is rather than copied
+            return output.toInputStream();
         } catch (IOException e) {
             e.printStackTrace();
             return null;
         }
     }
 
+    /**
+     * Renders and encodes each frame straight into {@code out}, without buffering the animation. Only the frames
+     * currently being rendered are held in memory. The stream is not closed.
+     */
+    public void writeTo(OutputStream out, int frameCount, boolean spin, boolean rave, boolean grey) throws IOException {
+        prepare(frameCount, spin, rave, grey);
+        final GifSequenceWriter writer = createWriter(out);
+        // keep one more frame in flight than there are threads so that no renderer idles while a frame is encoded
+        final Queue<Future<BufferedImage>> window = new ArrayDeque<>(THREADS + 1);
+        int next = 0;
+        try {
+            while (next < frameCount && window.size() <= THREADS) {
+                window.add(submit(next++));
+            }
+            while (!window.isEmpty()) {
+                writer.writeToSequence(window.poll().get());
+                if (next < frameCount) {
+                    window.add(submit(next++));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            window.forEach(f -> f.cancel(true));
+        }
+        writer.close();
+    }
+
     public void generate(int frameCount, boolean spin, boolean rave, boolean grey) {
+        prepare(frameCount, spin, rave, grey);
+        final List<Future<BufferedImage>> frames = new ArrayList<>(frameCount);
+        for (int i = 0; i < frameCount; i++) {
+            frames.add(submit(i));
+        }
+        final Queue<BufferedImage> queue = new ArrayDeque<>(frameCount);
+        try {
+            for (Future<BufferedImage> frame : frames) {
+                queue.add(frame.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            frames.forEach(f -> f.cancel(true));
+            return;
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+            frames.forEach(f -> f.cancel(true));
+            return;
+        }
+        imageQueue = queue;
+    }
+
+    private GifSequenceWriter createWriter(OutputStream out) throws IOException {
+        final ImageOutputStream ios = new MemoryCacheImageOutputStream(out);
+        return new GifSequenceWriter(ios, sharedPalette ? BufferedImage.TYPE_BYTE_INDEXED : BufferedImage.TYPE_3BYTE_BGR, 63, true);
+    }
+
+    private void prepare(int frameCount, boolean spin, boolean rave, boolean grey) {
         if (grey) {
             base = ImageUtils.greyScale(base);
         }
         //20 fps
-        int width = base.getWidth();
-        int height = base.getHeight();
-        Queue<BufferedImage> queue = new LinkedList<>();
-        AffineTransform at = new AffineTransform();
+        final int width = base.getWidth();
+        final int height = base.getHeight();
+        // the transform accumulates from frame to frame so it is computed up front
+        transforms = new AffineTransform[frameCount];
+        final AffineTransform at = new AffineTransform();
         for (int i = 0; i < frameCount; i++) {
-            BufferedImage bi = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
             if (spin) {
                 at.translate(width >> 1, height >> 1);
                 at.rotate(Math.PI / frameCount * 2);
@@ -81,17 +200,46 @@ public class GifGenerator {
                 }
                 at.translate(-width / 2.0, -height / 2.0);
             }
-            Graphics2D g = (Graphics2D) bi.getGraphics();
+            transforms[i] = new AffineTransform(at);
+        }
+        hsb = rave ? HsbRaster.of(base) : null;
+    }
 
-            if (rave) {
-                BufferedImage base2 = ImageUtils.hueShift(base, 360 * i / frameCount);
-                g.drawImage(base2, at, null);
-            } else g.drawImage(base, at, null);
+    private Future<BufferedImage> submit(int frame) {
+        final int frameCount = transforms.length;
+        final AffineTransform transform = transforms[frame];
+        final HsbRaster hsb = this.hsb;
+        final BufferedImage source = base;
+        final boolean indexed = sharedPalette;
+        return RENDERER.submit(() -> {
+            final int width = source.getWidth();
+            final int height = source.getHeight();
+            BufferedImage bi = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+            Graphics2D g = (Graphics2D) bi.getGraphics();
+            if (hsb != null) {
+                g.drawImage(hsb.withHue(360 * frame / frameCount / 360.0f), transform, null);
+            } else g.drawImage(source, transform, null);
             g.drawImage(overlay, width / 6, height / 6, width * 2 / 3, height * 2 / 3, null);
             g.dispose();
+            if (!indexed) {
+                return bi;
+            }
+            final BufferedImage quantized = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, SHARED_PALETTE);
+            g = quantized.createGraphics();
+            g.drawImage(bi, 0, 0, null);
+            g.dispose();
+            return quantized;
+        });
+    }
+
+    private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
 
-            queue.add(bi);
+        ExposedByteArrayOutputStream() {
+            super(8192);
+        }
+
+        ByteArrayInputStream toInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
         }
-        imageQueue = queue;
     }
 }
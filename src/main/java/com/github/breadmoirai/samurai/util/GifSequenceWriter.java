@@ -40,6 +40,7 @@ import java.io.IOException;
 import java.util.Iterator;
 
 public class GifSequenceWriter {
+    protected ImageOutputStream outputStream;
     protected ImageWriter gifWriter;
     protected ImageWriteParam imageWriteParam;
     protected IIOMetadata imageMetaData;
@@ -110,6 +111,7 @@ public class GifSequenceWriter {
 
         imageMetaData.setFromTree(metaFormatName, root);
 
+        this.outputStream = outputStream;
         gifWriter.setOutput(outputStream);
 
         gifWriter.prepareWriteSequence(null);
@@ -198,6 +200,8 @@ public class GifSequenceWriter {
                         null,
                         imageMetaData),
                 imageWriteParam);
+        // frames are never revisited, so anything cached by the stream can be released
+        outputStream.flush();
     }
 
     /**
@@ -206,6 +210,7 @@ public class GifSequenceWriter {
      */
     public void close() throws IOException {
         gifWriter.endWriteSequence();
+        outputStream.flush();
     }
 
 
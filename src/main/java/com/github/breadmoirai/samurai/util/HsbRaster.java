@@ -0,0 +1,132 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.breadmoirai.samurai.util;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+
+/**
+ * The saturation and brightness of every pixel of an image, computed once so that the image can be redrawn with any
+ * number of hues without converting from RGB again.
+ * <p>
+ * Pixels are converted exactly as {@link Color#HSBtoRGB(float, float, float)} would, so the results are identical to
+ * calling {@link Color#getHSBColor(float, float, float)} per pixel.
+ */
+public class HsbRaster {
+
+    private final int width;
+    private final int height;
+    private final float[] saturation;
+    private final float[] brightness;
+
+    private HsbRaster(int width, int height, float[] saturation, float[] brightness) {
+        this.width = width;
+        this.height = height;
+        this.saturation = saturation;
+        this.brightness = brightness;
+    }
+
+    public static HsbRaster of(BufferedImage image) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final int[] rgb = image.getRGB(0, 0, width, height, null, 0, width);
+        final float[] saturation = new float[rgb.length];
+        final float[] brightness = new float[rgb.length];
+        final float[] hsb = new float[3];
+        for (int i = 0; i < rgb.length; i++) {
+            final int pixel = rgb[i];
+            Color.RGBtoHSB((pixel >> 16) & 0xff, (pixel >> 8) & 0xff, pixel & 0xff, hsb);
+            saturation[i] = hsb[1];
+            brightness[i] = hsb[2];
+        }
+        return new HsbRaster(width, height, saturation, brightness);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Renders every pixel with the given hue.
+     *
+     * @param hue 0-1
+     * @return a new image of TYPE_3BYTE_BGR
+     */
+    public BufferedImage withHue(float hue) {
+        final BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        final byte[] data = ((DataBufferByte) result.getRaster().getDataBuffer()).getData();
+        // everything that depends only on the hue is hoisted out of the loop
+        final float h = (hue - (float) Math.floor(hue)) * 6.0f;
+        final float f = h - (float) Math.floor(h);
+        final int sector = (int) h;
+        for (int i = 0, j = 0; i < saturation.length; i++, j += 3) {
+            final float s = saturation[i];
+            final float v = brightness[i];
+            final int value = (int) (v * 255.0f + 0.5f);
+            int r, g, b;
+            if (s == 0) {
+                r = g = b = value;
+            } else {
+                final int p = (int) (v * (1.0f - s) * 255.0f + 0.5f);
+                final int q = (int) (v * (1.0f - s * f) * 255.0f + 0.5f);
+                final int t = (int) (v * (1.0f - (s * (1.0f - f))) * 255.0f + 0.5f);
+                switch (sector) {
+                    case 0:
+                        r = value;
+                        g = t;
+                        b = p;
+                        break;
+                    case 1:
+                        r = q;
+                        g = value;
+                        b = p;
+                        break;
+                    case 2:
+                        r = p;
+                        g = value;
+                        b = t;
+                        break;
+                    case 3:
+                        r = p;
+                        g = q;
+                        b = value;
+                        break;
+                    case 4:
+                        r = t;
+                        g = p;
+                        b = value;
+                        break;
+                    case 5:
+                        r = value;
+                        g = p;
+                        b = q;
+                        break;
+                    default:
+                        r = g = b = 0;
+                }
+            }
+            data[j] = (byte) b;
+            data[j + 1] = (byte) g;
+            data[j + 2] = (byte) r;
+        }
+        return result;
+    }
+}
@@ -45,19 +45,6 @@ public class ImageUtils {
      * @return a new hue-shifted image
      */
     public static BufferedImage hueShift(BufferedImage image, int hue) {
-        BufferedImage result = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
-        float ihue = hue / 360.0f;
-        for (int y = 0; y < image.getHeight(); y++) {
-            for (int x = 0; x < image.getWidth(); x++) {
-                int RGB = image.getRGB(x, y);
-                int R = (RGB >> 16) & 0xff;
-                int G = (RGB >> 8) & 0xff;
-                int B = (RGB) & 0xff;
-                float HSV[] = new float[3];
-                Color.RGBtoHSB(R, G, B, HSV);
-                result.setRGB(x, y, Color.getHSBColor(ihue, HSV[1], HSV[2]).getRGB());
-            }
-        }
-        return result;
+        return HsbRaster.of(image).withHue(hue / 360.0f);
     }
 }
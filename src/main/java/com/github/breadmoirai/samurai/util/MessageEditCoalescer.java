@@ -0,0 +1,208 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.breadmoirai.samurai.util;
+
+import com.github.breadmoirai.samurai.plugins.metrics.Counter;
+import com.github.breadmoirai.samurai.plugins.metrics.MetricRegistry;
+import net.dv8tion.jda.core.entities.Message;
+import net.dv8tion.jda.core.entities.MessageChannel;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Limits how often each message is edited. The first edit of a message is sent at once; any edits requested within
+ * the following interval are merged into a single edit at the end of it that renders the newest state, so a message
+ * that changes faster than Discord's rate limit allows never builds up a backlog of stale edits.
+ * <p>
+ * Renders are only built when an edit is actually sent. Final states should go through {@link #finish} so that they
+ * are never overwritten by a pending edit, nor by an edit that is requested late.
+ */
+public class MessageEditCoalescer {
+
+    public static final long DEFAULT_INTERVAL_MILLIS = 1000;
+    /**
+     * How long edits of a finished message are ignored for.
+     */
+    public static final long FINISHED_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final MessageEditCoalescer DEFAULT = new MessageEditCoalescer(Executors.newSingleThreadScheduledExecutor(r -> {
+        final Thread thread = new Thread(r, "message-edits");
+        thread.setDaemon(true);
+        return thread;
+    }), DEFAULT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+    private final ScheduledExecutorService scheduler;
+    private final long intervalNanos;
+    private final ConcurrentHashMap<Long, Slot> slots = new ConcurrentHashMap<>();
+
+    private final Counter sent;
+    private final Counter superseded;
+
+    /**
+     * @param scheduler sends the edits that were held back. Sending only queues the request, so this can be shared.
+     * @param interval  the least time between two edits of the same message
+     */
+    public MessageEditCoalescer(ScheduledExecutorService scheduler, long interval, TimeUnit unit) {
+        this.scheduler = scheduler;
+        this.intervalNanos = unit.toNanos(interval);
+        final MetricRegistry registry = MetricRegistry.getDefault();
+        sent = registry.counter("message_edits_total", "Message edits requested through a coalescer", "result", "sent");
+        superseded = registry.counter("message_edits_total", "Message edits requested through a coalescer", "result", "superseded");
+    }
+
+    /**
+     * @return a coalescer with its own thread that edits each message at most once a second
+     */
+    public static MessageEditCoalescer getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Edits the message with the newest render as soon as the interval allows.
+     *
+     * @param render builds the new content of the message when the edit is sent
+     */
+    public void edit(MessageChannel channel, long messageId, Supplier<Message> render) {
+        while (true) {
+            final Slot slot = slots.computeIfAbsent(messageId, Slot::new);
+            synchronized (slot) {
+                if (slot.finished) {
+                    superseded.increment();
+                    return;
+                }
+                if (slot.removed) {
+                    continue;
+                }
+                if (slot.render != null) {
+                    superseded.increment();
+                }
+                slot.channel = channel;
+                slot.render = render;
+                if (slot.future == null) {
+                    send(slot);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Drops any pending edit and edits the message right away. Calls to {@link #edit} for this message in the next
+     * {@value #FINISHED_MILLIS} milliseconds are ignored, while another finish replaces this one.
+     *
+     * @param success called with the edited message, may be null
+     */
+    public void finish(MessageChannel channel, long messageId, Supplier<Message> render, Consumer<Message> success) {
+        final Slot tombstone = new Slot(messageId);
+        tombstone.finished = true;
+        final Slot slot = slots.put(messageId, tombstone);
+        scheduler.schedule(() -> {
+            slots.remove(messageId, tombstone);
+        }, FINISHED_MILLIS, TimeUnit.MILLISECONDS);
+        if (slot == null || slot.finished) {
+            queue(channel, messageId, render, success);
+            return;
+        }
+        synchronized (slot) {
+            discard(slot);
+            // sent while holding the slot, so that an edit being sent at the same time cannot land after this one
+            queue(channel, messageId, render, success);
+        }
+    }
+
+    public void finish(MessageChannel channel, long messageId, Supplier<Message> render) {
+        finish(channel, messageId, render, null);
+    }
+
+    /**
+     * Drops any pending edit of the message without sending it.
+     */
+    public void cancel(long messageId) {
+        final Slot slot = slots.get(messageId);
+        if (slot != null && !slot.finished && slots.remove(messageId, slot)) {
+            synchronized (slot) {
+                discard(slot);
+            }
+        }
+    }
+
+    private void discard(Slot slot) {
+        if (slot.render != null) {
+            superseded.increment();
+        }
+        slot.removed = true;
+        slot.render = null;
+        if (slot.future != null) {
+            slot.future.cancel(false);
+            slot.future = null;
+        }
+    }
+
+    /**
+     * Sends the pending edit, if there is one, and holds back further edits until the interval has passed. A slot
+     * that is quiet for a whole interval is dropped.
+     */
+    private void send(Slot slot) {
+        if (slot.removed) {
+            return;
+        }
+        final Supplier<Message> render = slot.render;
+        if (render == null) {
+            slot.future = null;
+            slot.removed = true;
+            slots.remove(slot.messageId, slot);
+            return;
+        }
+        slot.render = null;
+        slot.future = scheduler.schedule(() -> {
+            synchronized (slot) {
+                send(slot);
+            }
+        }, intervalNanos, TimeUnit.NANOSECONDS);
+        queue(slot.channel, slot.messageId, render, null);
+    }
+
+    private void queue(MessageChannel channel, long messageId, Supplier<Message> render, Consumer<Message> success) {
+        try {
+            channel.editMessageById(messageId, render.get()).queue(success);
+            sent.increment();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static class Slot {
+        private final long messageId;
+        private MessageChannel channel;
+        private Supplier<Message> render;
+        private ScheduledFuture<?> future;
+        private boolean removed;
+        /**
+         * set on the slot that {@link #finish} leaves in place of the live one
+         */
+        private boolean finished;
+
+        private Slot(long messageId) {
+            this.messageId = messageId;
+        }
+    }
+}
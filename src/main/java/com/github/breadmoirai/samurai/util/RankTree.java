@@ -0,0 +1,261 @@
+/*
+ *     Copyright 2017-2018 Ton Ly
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.breadmoirai.samurai.util;
+
+import gnu.trove.map.TLongDoubleMap;
+import gnu.trove.map.hash.TLongDoubleHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An order-statistic treap of ids ordered by score, highest first. Ties are broken by ascending id.
+ * <p>
+ * Updating a score, finding the rank of an id and selecting by rank are all O(log n) expected.
+ * This class is not thread-safe.
+ */
+public class RankTree {
+
+    private final TLongDoubleMap scores;
+    private Node root;
+
+    public RankTree() {
+        this(16);
+    }
+
+    public RankTree(int capacity) {
+        this.scores = new TLongDoubleHashMap(capacity);
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public boolean contains(long id) {
+        return scores.containsKey(id);
+    }
+
+    /**
+     * @return the score of this id, or 0 if it is not in the tree
+     */
+    public double getScore(long id) {
+        return scores.get(id);
+    }
+
+    /**
+     * Inserts the id or moves it to its new position.
+     */
+    public void put(long id, double score) {
+        if (scores.containsKey(id)) {
+            final double old = scores.get(id);
+            if (Double.compare(old, score) == 0) return;
+            root = delete(root, old, id);
+        }
+        scores.put(id, score);
+        final Node node = new Node(id, score);
+        split(root, score, id);
+        final Node right = splitRight;
+        root = merge(merge(splitLeft, node), right);
+    }
+
+    /**
+     * Adds the delta to the score of this id. Ids that are not in the tree are inserted with the delta as their score.
+     */
+    public void offset(long id, double delta) {
+        put(id, scores.get(id) + delta);
+    }
+
+    public boolean remove(long id) {
+        if (!scores.containsKey(id)) return false;
+        root = delete(root, scores.remove(id), id);
+        return true;
+    }
+
+    public void clear() {
+        scores.clear();
+        root = null;
+    }
+
+    /**
+     * @return the zero-based rank of this id, or -1 if it is not in the tree
+     */
+    public int rank(long id) {
+        if (!scores.containsKey(id)) return -1;
+        final double score = scores.get(id);
+        int rank = 0;
+        Node node = root;
+        while (node != null) {
+            final int c = compare(score, id, node);
+            if (c < 0) {
+                node = node.left;
+            } else if (c > 0) {
+                rank += size(node.left) + 1;
+                node = node.right;
+            } else {
+                return rank + size(node.left);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the entry at this zero-based rank
+     * @throws IndexOutOfBoundsException if the rank is not within [0, size)
+     */
+    public Entry get(int rank) {
+        if (rank < 0 || rank >= size()) {
+            throw new IndexOutOfBoundsException("Rank: " + rank + ", Size: " + size());
+        }
+        Node node = root;
+        while (true) {
+            final int leftSize = size(node.left);
+            if (rank < leftSize) {
+                node = node.left;
+            } else if (rank > leftSize) {
+                rank -= leftSize + 1;
+                node = node.right;
+            } else {
+                return new Entry(node.id, node.score);
+            }
+        }
+    }
+
+    /**
+     * @param from inclusive zero-based rank
+     * @param to   exclusive zero-based rank
+     * @return the entries in order, clamped to the size of the tree
+     */
+    public List<Entry> range(int from, int to) {
+        from = Math.max(0, from);
+        to = Math.min(size(), to);
+        final List<Entry> entries = new ArrayList<>(Math.max(0, to - from));
+        if (from < to) {
+            collect(root, 0, from, to, entries);
+        }
+        return entries;
+    }
+
+    private static void collect(Node node, int offset, int from, int to, List<Entry> entries) {
+        if (node == null) return;
+        final int index = offset + size(node.left);
+        if (from < index) {
+            collect(node.left, offset, from, to, entries);
+        }
+        if (index >= from && index < to) {
+            entries.add(new Entry(node.id, node.score));
+        }
+        if (index + 1 < to) {
+            collect(node.right, index + 1, from, to, entries);
+        }
+    }
+
+    private static int compare(double score, long id, Node node) {
+        final int c = Double.compare(node.score, score);
+        return c != 0 ? c : Long.compare(id, node.id);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private Node splitLeft, splitRight;
+
+    /**
+     * Splits the tree into nodes ordered before the key and the rest, stored in {@link #splitLeft} and
+     * {@link #splitRight}.
+     */
+    private void split(Node node, double score, long id) {
+        if (node == null) {
+            splitLeft = splitRight = null;
+        } else if (compare(score, id, node) > 0) {
+            split(node.right, score, id);
+            node.right = splitLeft;
+            node.update();
+            splitLeft = node;
+        } else {
+            split(node.left, score, id);
+            node.left = splitRight;
+            node.update();
+            splitRight = node;
+        }
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) return right;
+        if (right == null) return left;
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        } else {
+            right.left = merge(left, right.left);
+            right.update();
+            return right;
+        }
+    }
+
+    private static Node delete(Node node, double score, long id) {
+        if (node == null) return null;
+        final int c = compare(score, id, node);
+        if (c < 0) {
+            node.left = delete(node.left, score, id);
+        } else if (c > 0) {
+            node.right = delete(node.right, score, id);
+        } else {
+            return merge(node.left, node.right);
+        }
+        node.update();
+        return node;
+    }
+
+    public static class Entry {
+        private final long id;
+        private final double score;
+
+        private Entry(long id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+
+    private static class Node {
+        private final long id;
+        private final double score;
+        private final int priority;
+        private int size;
+        private Node left, right;
+
+        private Node(long id, double score) {
+            this.id = id;
+            this.score = score;
+            this.priority = ThreadLocalRandom.current().nextInt();
+            this.size = 1;
+        }
+
+        private void update() {
+            size = 1 + RankTree.size(left) + RankTree.size(right);
+        }
+    }
+}
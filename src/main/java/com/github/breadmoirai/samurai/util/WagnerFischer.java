@@ -24,20 +24,60 @@ public class WagnerFischer {
     private WagnerFischer() {
     }
 
+    private static final ThreadLocal<int[][]> ROWS = ThreadLocal.withInitial(() -> new int[2][64]);
+
     public static int getLevenshteinDistance(String str1, String str2) {
-        int len1 = str1.length();
-        int len2 = str2.length();
-        int[][] arr = new int[len1 + 1][len2 + 1];
-        for (int i = 0; i <= len1; i++)
-            arr[i][0] = i;
-        for (int i = 1; i <= len2; i++)
-            arr[0][i] = i;
+        return getLevenshteinDistance(str1, str2, Math.max(str1.length(), str2.length()));
+    }
+
+    /**
+     * Computes the distance with two rows that are reused by each thread, only filling the cells within {@code max} of
+     * the diagonal, and stops as soon as the distance is known to exceed {@code max}.
+     *
+     * @return the distance, or {@code max + 1} if it is greater than {@code max}
+     */
+    public static int getLevenshteinDistance(CharSequence str1, CharSequence str2, int max) {
+        final int len1 = str1.length();
+        final int len2 = str2.length();
+        if (Math.abs(len1 - len2) > max) {
+            return max + 1;
+        }
+        int[][] rows = ROWS.get();
+        if (rows[0].length <= len2) {
+            rows = new int[2][len2 + 1];
+            ROWS.set(rows);
+        }
+        int[] prev = rows[0];
+        int[] curr = rows[1];
+        final int outside = max + 1;
+        for (int j = 0; j <= len2; j++) {
+            prev[j] = j <= max ? j : outside;
+        }
         for (int i = 1; i <= len1; i++) {
-            for (int j = 1; j <= len2; j++) {
-                int m = (str1.charAt(i - 1) == str2.charAt(j - 1)) ? 0 : 1;
-                arr[i][j] = Math.min(Math.min(arr[i - 1][j] + 1, arr[i][j - 1] + 1), arr[i - 1][j - 1] + m);
+            final int from = Math.max(1, i - max);
+            final int to = Math.min(len2, i + max);
+            curr[0] = i <= max ? i : outside;
+            if (from > 1) {
+                curr[from - 1] = outside;
+            }
+            int rowMin = curr[0];
+            final char c = str1.charAt(i - 1);
+            for (int j = from; j <= to; j++) {
+                final int m = c == str2.charAt(j - 1) ? 0 : 1;
+                final int d = Math.min(Math.min(prev[j] + 1, curr[j - 1] + 1), prev[j - 1] + m);
+                curr[j] = Math.min(d, outside);
+                rowMin = Math.min(rowMin, curr[j]);
+            }
+            if (to < len2) {
+                curr[to + 1] = outside;
+            }
+            if (rowMin > max) {
+                return outside;
             }
+            final int[] swap = prev;
+            prev = curr;
+            curr = swap;
         }
-        return arr[len1][len2];
+        return Math.min(prev[len2], outside);
     }
 }
@@ -0,0 +1,114 @@
+package com.github.breadmoirai.samurai.plugins.derby;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DerbyConnectionPoolTest {
+
+    private String url;
+    private DerbyConnectionPool pool;
+
+    @Before
+    public void setUp() throws SQLException {
+        url = "jdbc:derby:memory:pool" + System.nanoTime() + ";";
+        DriverManager.getConnection(url + "create=true").close();
+    }
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void exhaustedPoolTimesOutUntilAConnectionIsReturned() throws SQLException {
+        pool = new DerbyConnectionPool(url, 1, 4, 100);
+        final Connection held = pool.getConnection();
+        final long start = System.nanoTime();
+        try {
+            pool.getConnection();
+            fail("the pool has no connections left");
+        } catch (SQLException e) {
+            assertTrue((System.nanoTime() - start) / 1_000_000 >= 90);
+        }
+        assertEquals(1, pool.getTimeouts());
+        assertEquals(1, pool.getActiveConnections());
+
+        held.close();
+        assertEquals(0, pool.getActiveConnections());
+        assertEquals(1, pool.getIdleConnections());
+        try (Connection again = pool.getConnection()) {
+            assertFalse(again.isClosed());
+        }
+        assertEquals(1, pool.getOpenConnections());
+        assertEquals(1, pool.getTimeouts());
+    }
+
+    @Test
+    public void leastRecentlyUsedStatementsAreEvicted() throws SQLException {
+        pool = new DerbyConnectionPool(url, 1, 2, 100);
+        try (Connection connection = pool.getConnection()) {
+            prepareAndClose(connection, "VALUES 1");
+            prepareAndClose(connection, "VALUES 2");
+            prepareAndClose(connection, "VALUES 1");
+            assertEquals(2, pool.getStatementCacheMisses());
+            assertEquals(1, pool.getStatementCacheHits());
+
+            // VALUES 2 is the least recently used, so VALUES 3 pushes it out
+            prepareAndClose(connection, "VALUES 3");
+            prepareAndClose(connection, "VALUES 1");
+            assertEquals(2, pool.getStatementCacheHits());
+            prepareAndClose(connection, "VALUES 2");
+            assertEquals(4, pool.getStatementCacheMisses());
+        }
+    }
+
+    @Test
+    public void evictedStatementStaysUsableUntilItIsClosed() throws SQLException {
+        pool = new DerbyConnectionPool(url, 1, 1, 100);
+        try (Connection connection = pool.getConnection()) {
+            final PreparedStatement leased = connection.prepareStatement("VALUES 1");
+            prepareAndClose(connection, "VALUES 2");
+            assertTrue(leased.execute());
+            leased.close();
+            assertTrue(leased.isClosed());
+        }
+    }
+
+    @Test
+    public void closedPoolRejectsConnections() throws SQLException {
+        pool = new DerbyConnectionPool(url, 2, 2, 100);
+        final Connection leased = pool.getConnection();
+        pool.getConnection().close();
+        assertEquals(2, pool.getOpenConnections());
+
+        pool.close();
+        assertEquals(0, pool.getIdleConnections());
+        assertEquals(1, pool.getOpenConnections());
+        try {
+            pool.getConnection();
+            fail("the pool is closed");
+        } catch (SQLException expected) {
+        }
+        leased.close();
+        assertEquals(0, pool.getOpenConnections());
+    }
+
+    private static void prepareAndClose(Connection connection, String sql) throws SQLException {
+        final PreparedStatement statement = connection.prepareStatement(sql);
+        assertTrue(statement.execute());
+        statement.close();
+    }
+}
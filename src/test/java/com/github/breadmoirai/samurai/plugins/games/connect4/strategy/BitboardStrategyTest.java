@@ -0,0 +1,96 @@
+package com.github.breadmoirai.samurai.plugins.games.connect4.strategy;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BitboardStrategyTest {
+
+    private static final int X_BOUND = 7, Y_BOUND = 6;
+    private static final long BUDGET_MILLIS = 50;
+
+    /**
+     * The strategy plays {@code 'b'} against {@code 'a'}.
+     *
+     * @param rows the board from the top row down, with {@code '.'} for an empty cell
+     */
+    private static char[][] board(String... rows) {
+        final char[][] board = new char[X_BOUND][Y_BOUND];
+        for (int r = 0; r < rows.length; r++) {
+            final int y = rows.length - 1 - r;
+            for (int x = 0; x < X_BOUND; x++) {
+                final char c = rows[r].charAt(x);
+                board[x][y] = c == '.' ? '\u0000' : c;
+            }
+        }
+        return board;
+    }
+
+    private static BitboardStrategy strategy() {
+        return new BitboardStrategy(X_BOUND, Y_BOUND, BUDGET_MILLIS);
+    }
+
+    @Test
+    public void takesAnImmediateWin() {
+        assertEquals(2, strategy().makeMove(board(
+                "..b....",
+                "..b....",
+                "a.b.a.a")));
+        assertEquals(6, strategy().makeMove(board(
+                "...a.a.",
+                "a.abbb.")));
+    }
+
+    @Test
+    public void blocksAForcedLoss() {
+        assertEquals(3, strategy().makeMove(board(
+                "......b",
+                "aaa...b")));
+        assertEquals(4, strategy().makeMove(board(
+                "....a..",
+                "....a..",
+                "b...a.b")));
+    }
+
+    @Test
+    public void neverPlaysAFullColumn() {
+        final char[][] board = board(
+                "..b....",
+                "..a....",
+                "..b....",
+                "..a....",
+                "..b....",
+                "..a....");
+        for (int i = 0; i < 5; i++) {
+            final int move = strategy().makeMove(board);
+            assertTrue(move >= 0 && move < X_BOUND);
+            assertNotEquals(2, move);
+        }
+    }
+
+    @Test
+    public void playsTheOnlyColumnLeft() {
+        final char[][] board = board(
+                "abab.ab",
+                "abab.ab",
+                "baba.ba",
+                "baba.ba",
+                "abab.ab",
+                "abababa");
+        assertEquals(4, strategy().makeMove(board));
+    }
+
+    @Test
+    public void returnsNothingOnAFullBoard() {
+        final char[][] board = board(
+                "abababa",
+                "abababa",
+                "bababab",
+                "bababab",
+                "abababa",
+                "abababa");
+        assertEquals(-1, strategy().makeMove(board));
+    }
+}
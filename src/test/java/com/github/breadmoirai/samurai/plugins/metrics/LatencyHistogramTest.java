@@ -0,0 +1,64 @@
+package com.github.breadmoirai.samurai.plugins.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void everyValueMapsToABucketWithinThreePercent() {
+        for (long value = 0; value < 100_000; value++) {
+            assertClose(value);
+        }
+        for (long value = 100_000; value > 0 && value < Long.MAX_VALUE / 2; value = value * 3 / 2 + 7) {
+            assertClose(value);
+        }
+        assertClose(Long.MAX_VALUE);
+    }
+
+    private static void assertClose(long value) {
+        final int index = LatencyHistogram.index(value);
+        final long bucket = LatencyHistogram.valueOf(index);
+        assertEquals(index, LatencyHistogram.index(bucket));
+        assertTrue(value + " -> " + bucket, Math.abs((double) bucket - value) <= value * 0.032);
+    }
+
+    @Test
+    public void bucketsIncreaseWithTheirIndex() {
+        long previous = -1;
+        for (int index = 0; index <= LatencyHistogram.index(Long.MAX_VALUE); index++) {
+            final long value = LatencyHistogram.valueOf(index);
+            assertTrue(String.valueOf(index), value > previous);
+            assertEquals(index, LatencyHistogram.index(value));
+            previous = value;
+        }
+    }
+
+    @Test
+    public void quantilesComeFromTheRecordedValues() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getQuantileNanos(0.5));
+        for (long ms = 1; ms <= 1000; ms++) {
+            histogram.record(ms * 1_000_000);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1_000_000_000L, histogram.getMaxNanos());
+        final long[] quantiles = histogram.getQuantilesNanos(0.5, 0.9, 0.99, 1);
+        final long[] expected = {500_000_000L, 900_000_000L, 990_000_000L, 1_000_000_000L};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals((double) expected[i], quantiles[i], expected[i] * 0.032);
+        }
+        // the top quantile never reports more than the largest value seen
+        assertTrue(quantiles[3] <= histogram.getMaxNanos());
+    }
+
+    @Test
+    public void negativeValuesCountAsZero() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getQuantileNanos(1));
+    }
+}
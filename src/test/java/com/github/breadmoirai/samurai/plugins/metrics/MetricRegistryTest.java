@@ -0,0 +1,59 @@
+package com.github.breadmoirai.samurai.plugins.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MetricRegistryTest {
+
+    @Test
+    public void theSameNameAndLabelsGiveTheSameMetric() {
+        final MetricRegistry registry = new MetricRegistry();
+        final Counter counter = registry.counter("requests_total", "Requests", "a", "1", "b", "2");
+        assertSame(counter, registry.counter("requests_total", "Requests", "b", "2", "a", "1"));
+        assertNotSame(counter, registry.counter("requests_total", "Requests", "a", "2", "b", "2"));
+        final LatencyHistogram histogram = registry.histogram("request_seconds", "Request time");
+        assertSame(histogram, registry.histogram("request_seconds", "Request time"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void aNameKeepsItsType() {
+        final MetricRegistry registry = new MetricRegistry();
+        registry.counter("requests_total", "Requests");
+        registry.histogram("requests_total", "Requests");
+    }
+
+    @Test
+    public void metricsAreRenderedInThePrometheusTextFormat() {
+        final MetricRegistry registry = new MetricRegistry();
+        registry.counter("requests_total", "Requests handled", "type", "say \"hi\"").add(3);
+        registry.counter("tasks_total", "Tasks completed", () -> 7, "executor", "pool");
+        registry.gauge("queue_depth", "Waiting tasks", () -> 2.5);
+        registry.histogram("request_seconds", "Request time", "type", "a").record(2_000_000_000L);
+
+        final String text = registry.toPrometheus();
+        assertTrue(text, text.contains("# HELP requests_total Requests handled\n" +
+                                               "# TYPE requests_total counter\n" +
+                                               "requests_total{type=\"say \\\"hi\\\"\"} 3\n"));
+        assertTrue(text, text.contains("# TYPE tasks_total counter\ntasks_total{executor=\"pool\"} 7.0\n"));
+        assertTrue(text, text.contains("# TYPE queue_depth gauge\nqueue_depth 2.5\n"));
+        assertTrue(text, text.contains("# TYPE request_seconds summary\n"));
+        // 2s is reported as the middle of its bucket, just under
+        assertTrue(text, text.contains("request_seconds{type=\"a\",quantile=\"0.5\"} 1.9"));
+        assertTrue(text, text.contains("request_seconds_sum{type=\"a\"} 2.0\nrequest_seconds_count{type=\"a\"} 1\n"));
+    }
+
+    @Test
+    public void removedMetricsAreNoLongerRendered() {
+        final MetricRegistry registry = new MetricRegistry();
+        registry.counter("requests_total", "Requests", "guild", "1").increment();
+        registry.counter("requests_total", "Requests", "guild", "2").increment();
+        registry.remove("requests_total", "guild", "1");
+        final String text = registry.toPrometheus();
+        assertTrue(text, !text.contains("guild=\"1\""));
+        assertEquals(1, text.split("guild=").length - 1);
+    }
+}
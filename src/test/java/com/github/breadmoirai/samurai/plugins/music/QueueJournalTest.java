@@ -0,0 +1,215 @@
+package com.github.breadmoirai.samurai.plugins.music;
+
+import org.jdbi.v3.core.Jdbi;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class QueueJournalTest {
+
+    private static final long GUILD = 1;
+    private static final long OTHER_GUILD = 2;
+
+    private QueueExtension database;
+    private QueueJournal journal;
+
+    @Before
+    public void setUp() {
+        final Jdbi jdbi = Jdbi.create("jdbc:derby:memory:queue" + System.nanoTime() + ";create=true");
+        database = new QueueExtension(jdbi);
+        journal = new QueueJournal(database);
+    }
+
+    private static QueueJournal.Entry entry(int op, int index, long position, String track) {
+        return new QueueJournal.Entry(GUILD, 0, op, index, position, track);
+    }
+
+    @Test
+    public void replayAppliesEachOperationInOrder() {
+        final QueueJournal.State state = QueueJournal.replay(Arrays.asList(
+                entry(QueueJournal.ADD, -1, 0, "a"),
+                entry(QueueJournal.ADD, -1, 0, "b"),
+                entry(QueueJournal.ADD, 0, 0, "c"),
+                entry(QueueJournal.ADD, 2, 0, "d"),
+                entry(QueueJournal.REMOVE, 1, 0, null),
+                entry(QueueJournal.CURRENT, 0, 1500, "e")));
+
+        assertEquals(Arrays.asList("c", "d", "b"), state.getQueue());
+        assertEquals("e", state.getCurrent());
+        assertEquals(1500, state.getPosition());
+    }
+
+    @Test
+    public void replayIgnoresIndexesOutsideTheQueue() {
+        final QueueJournal.State state = QueueJournal.replay(Arrays.asList(
+                entry(QueueJournal.ADD, 5, 0, "a"),
+                entry(QueueJournal.REMOVE, 3, 0, null),
+                entry(QueueJournal.REMOVE, -1, 0, null)));
+
+        assertEquals(Collections.singletonList("a"), state.getQueue());
+    }
+
+    @Test
+    public void replayStartsOverAtEachClear() {
+        final QueueJournal.State state = QueueJournal.replay(Arrays.asList(
+                entry(QueueJournal.CURRENT, 0, 10, "a"),
+                entry(QueueJournal.ADD, -1, 0, "b"),
+                entry(QueueJournal.CLEAR, 0, 0, null),
+                entry(QueueJournal.ADD, -1, 0, "c")));
+
+        assertNull(state.getCurrent());
+        assertEquals(0, state.getPosition());
+        assertEquals(Collections.singletonList("c"), state.getQueue());
+    }
+
+    /**
+     * Opens a guild with an empty queue at version 0.
+     */
+    private void open(long guildId) {
+        journal.open(guildId);
+        journal.snapshot(guildId, 0, Collections.emptyList());
+    }
+
+    @Test
+    public void loadCombinesWrittenAndPendingEntries() {
+        open(GUILD);
+        open(OTHER_GUILD);
+        journal.add(GUILD, 1, 0, Collections.singletonList("a"));
+        journal.add(GUILD, 2, 1, Collections.singletonList("b"));
+        journal.add(OTHER_GUILD, 1, 0, Collections.singletonList("x"));
+        journal.flush();
+        assertEquals(0, journal.getQueueDepth());
+
+        journal.remove(GUILD, 3, 0);
+        journal.current(GUILD, "c", 42);
+        assertEquals(2, journal.getQueueDepth());
+
+        final QueueJournal.State state = journal.load(GUILD);
+        assertEquals(Collections.singletonList("b"), state.getQueue());
+        assertEquals("c", state.getCurrent());
+        assertEquals(42, state.getPosition());
+        assertEquals(Collections.singletonList("x"), journal.load(OTHER_GUILD).getQueue());
+    }
+
+    @Test
+    public void changesAreRecordedInVersionOrder() {
+        open(GUILD);
+        journal.remove(GUILD, 3, 0);
+        journal.add(GUILD, 2, 0, Collections.singletonList("b"));
+        assertEquals(1, journal.getQueueDepth());
+        assertTrue(journal.load(GUILD).getQueue().isEmpty());
+
+        journal.add(GUILD, 1, 0, Arrays.asList("a", "c"));
+        assertEquals(5, journal.getQueueDepth());
+        assertEquals(Arrays.asList("a", "c"), journal.load(GUILD).getQueue());
+    }
+
+    @Test
+    public void changesWaitForTheFirstSnapshot() {
+        journal.open(GUILD);
+        journal.add(GUILD, 2, 1, Collections.singletonList("b"));
+        journal.add(GUILD, 1, 0, Collections.singletonList("a"));
+        assertEquals(0, journal.getQueueDepth());
+
+        // the snapshot already holds the change of version 1
+        journal.snapshot(GUILD, 1, Collections.singletonList("a"));
+        assertEquals(Arrays.asList("a", "b"), journal.load(GUILD).getQueue());
+
+        journal.add(GUILD, 1, 0, Collections.singletonList("late"));
+        assertEquals(Arrays.asList("a", "b"), journal.load(GUILD).getQueue());
+    }
+
+    @Test
+    public void snapshotKeepsTheCurrentTrack() {
+        open(GUILD);
+        journal.current(GUILD, "playing", 5);
+        journal.add(GUILD, 1, 0, Arrays.asList("a", "b"));
+        journal.snapshot(GUILD, 2, Arrays.asList("b", "a"));
+
+        final QueueJournal.State state = journal.load(GUILD);
+        assertEquals(Arrays.asList("b", "a"), state.getQueue());
+        assertEquals("playing", state.getCurrent());
+        assertEquals(5, state.getPosition());
+    }
+
+    @Test
+    public void closedGuildsAreIgnored() {
+        open(GUILD);
+        journal.add(GUILD, 1, 0, Collections.singletonList("a"));
+        journal.close(GUILD);
+        journal.add(GUILD, 2, 1, Collections.singletonList("b"));
+
+        assertEquals(Collections.singletonList("a"), journal.load(GUILD).getQueue());
+        assertFalse(journal.shouldCompact(GUILD, 0));
+    }
+
+    @Test
+    public void sequenceContinuesAfterARestart() {
+        open(GUILD);
+        journal.add(GUILD, 1, 0, Collections.singletonList("a"));
+        journal.flush();
+
+        final QueueJournal restarted = new QueueJournal(database);
+        restarted.open(GUILD);
+        restarted.snapshot(GUILD, 0, restarted.load(GUILD).getQueue());
+        restarted.add(GUILD, 1, 1, Collections.singletonList("b"));
+        restarted.flush();
+
+        assertEquals(Arrays.asList("a", "b"), restarted.load(GUILD).getQueue());
+    }
+
+    @Test
+    public void compactionReplacesTheHistoryWithASnapshot() {
+        open(GUILD);
+        final List<String> queue = new ArrayList<>();
+        long version = 0;
+        for (int i = 0; i < 200; i++) {
+            journal.add(GUILD, ++version, queue.size(), Collections.singletonList("t" + i));
+            queue.add("t" + i);
+            journal.remove(GUILD, ++version, 0);
+            queue.remove(0);
+        }
+        journal.add(GUILD, ++version, queue.size(), Collections.singletonList("last"));
+        queue.add("last");
+        assertTrue(journal.shouldCompact(GUILD, queue.size()));
+        journal.flush();
+        assertEquals(402, database.getEntries(GUILD).size());
+
+        journal.current(GUILD, "playing", 7);
+        journal.snapshot(GUILD, version, queue);
+        assertFalse(journal.shouldCompact(GUILD, queue.size()));
+        journal.flush();
+
+        final List<QueueJournal.Entry> entries = database.getEntries(GUILD);
+        assertEquals(3, entries.size());
+        assertEquals(QueueJournal.CLEAR, entries.get(0).getOp());
+
+        final QueueJournal.State state = journal.load(GUILD);
+        assertEquals(queue, state.getQueue());
+        assertEquals("playing", state.getCurrent());
+        assertEquals(7, state.getPosition());
+    }
+
+    @Test
+    public void clearOnlyTruncatesItsOwnGuild() {
+        open(GUILD);
+        open(OTHER_GUILD);
+        journal.add(GUILD, 1, 0, Collections.singletonList("a"));
+        journal.add(OTHER_GUILD, 1, 0, Collections.singletonList("x"));
+        journal.snapshot(GUILD, 2, Collections.emptyList());
+        journal.flush();
+
+        assertEquals(1, database.getEntries(GUILD).size());
+        assertTrue(journal.load(GUILD).getQueue().isEmpty());
+        assertEquals(Collections.singletonList("x"), journal.load(OTHER_GUILD).getQueue());
+    }
+}
@@ -0,0 +1,204 @@
+package com.github.breadmoirai.samurai.plugins.music;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioLoadResultHandler;
+import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
+import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.BasicAudioPlaylist;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class TrackCacheTest {
+
+    private static final long TTL_MILLIS = 60_000;
+    private static final long SHORT_TTL_MILLIS = 50;
+
+    private final List<Call> calls = new ArrayList<>();
+    private final List<Runnable> tasks = new ArrayList<>();
+    private final List<Object> results = new ArrayList<>();
+    private final AudioLoadResultHandler recorder = new Recorder();
+
+    @Before
+    public void setUp() {
+        calls.clear();
+        tasks.clear();
+        results.clear();
+    }
+
+    private TrackCache cache(long ttlMillis, long negativeTtlMillis) {
+        return new TrackCache((key, request, handler) -> calls.add(new Call(request, handler)), tasks::add, 16, ttlMillis, negativeTtlMillis);
+    }
+
+    private void runTasks() {
+        while (!tasks.isEmpty()) {
+            tasks.remove(0).run();
+        }
+    }
+
+    @Test
+    public void hitIsAClonePassedToTheExecutor() {
+        final TrackCache cache = cache(TTL_MILLIS, TTL_MILLIS);
+        final AudioTrack loaded = track("a");
+        cache.loadItem(this, "a", recorder);
+        calls.get(0).handler.trackLoaded(loaded);
+        assertEquals(Arrays.<Object>asList(loaded), results);
+
+        cache.loadItem(this, "a", recorder);
+        cache.loadItem(this, "a", recorder);
+        assertEquals(1, calls.size());
+        assertEquals(1, results.size());
+
+        runTasks();
+        assertEquals(3, results.size());
+        final AudioTrack first = (AudioTrack) results.get(1);
+        final AudioTrack second = (AudioTrack) results.get(2);
+        assertEquals("a", first.getIdentifier());
+        assertEquals("a", second.getIdentifier());
+        assertNotSame(loaded, first);
+        assertNotSame(loaded, second);
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void playlistHitClonesEveryTrack() {
+        final TrackCache cache = cache(TTL_MILLIS, TTL_MILLIS);
+        final List<AudioTrack> tracks = Arrays.asList(track("a"), track("b"));
+        cache.loadItem(this, "ytsearch:Song", recorder);
+        calls.get(0).handler.playlistLoaded(new BasicAudioPlaylist("Search", tracks, tracks.get(1), true));
+
+        cache.loadItem(this, "ytsearch:song", recorder);
+        runTasks();
+        assertEquals(1, calls.size());
+        final AudioPlaylist hit = (AudioPlaylist) results.get(1);
+        assertEquals("Search", hit.getName());
+        assertTrue(hit.isSearchResult());
+        assertEquals(2, hit.getTracks().size());
+        for (int i = 0; i < tracks.size(); i++) {
+            assertEquals(tracks.get(i).getIdentifier(), hit.getTracks().get(i).getIdentifier());
+            assertNotSame(tracks.get(i), hit.getTracks().get(i));
+        }
+        assertTrue(hit.getSelectedTrack() == hit.getTracks().get(1));
+    }
+
+    @Test
+    public void expiredResultsAreLoadedAgain() throws InterruptedException {
+        final TrackCache cache = cache(SHORT_TTL_MILLIS, SHORT_TTL_MILLIS);
+        cache.loadItem(this, "a", recorder);
+        calls.get(0).handler.trackLoaded(track("a"));
+        Thread.sleep(SHORT_TTL_MILLIS * 2);
+
+        cache.loadItem(this, "a", recorder);
+        assertEquals(2, calls.size());
+        assertTrue(tasks.isEmpty());
+    }
+
+    @Test
+    public void noMatchesIsCachedForTheNegativeTtl() throws InterruptedException {
+        final TrackCache cache = cache(TTL_MILLIS, SHORT_TTL_MILLIS);
+        cache.loadItem(this, "nothing", recorder);
+        calls.get(0).handler.noMatches();
+
+        cache.loadItem(this, "nothing", recorder);
+        runTasks();
+        assertEquals(1, calls.size());
+        assertEquals(Arrays.<Object>asList("noMatches", "noMatches"), results);
+
+        Thread.sleep(SHORT_TTL_MILLIS * 2);
+        cache.loadItem(this, "nothing", recorder);
+        assertEquals(2, calls.size());
+    }
+
+    @Test
+    public void failuresAreNotCached() {
+        final TrackCache cache = cache(TTL_MILLIS, TTL_MILLIS);
+        cache.loadItem(this, "a", recorder);
+        calls.get(0).handler.loadFailed(new FriendlyException("down", FriendlyException.Severity.COMMON, null));
+
+        cache.loadItem(this, "a", recorder);
+        assertEquals(2, calls.size());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void loadsForTheSameKeyAreDeliveredInOrder() {
+        final TrackCache cache = cache(TTL_MILLIS, TTL_MILLIS);
+        final Object otherKey = new Object();
+        cache.loadItem(this, "a", recorder);
+        cache.loadItem(this, "a", recorder);
+        // the second load waits for the first, while another key is not held up
+        cache.loadItem(otherKey, "b", recorder);
+        assertEquals(2, calls.size());
+        assertEquals("b", calls.get(1).request);
+
+        final AudioTrack loaded = track("a");
+        calls.get(0).handler.trackLoaded(loaded);
+        runTasks();
+
+        assertEquals(2, calls.size());
+        assertEquals(2, results.size());
+        assertTrue(results.get(0) == loaded);
+        assertEquals("a", ((AudioTrack) results.get(1)).getIdentifier());
+        assertNotSame(loaded, results.get(1));
+    }
+
+    private static AudioTrack track(String identifier) {
+        return (AudioTrack) Proxy.newProxyInstance(AudioTrack.class.getClassLoader(), new Class<?>[]{AudioTrack.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getIdentifier":
+                    return identifier;
+                case "makeClone":
+                    return track(identifier);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return identifier;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private static class Call {
+        private final String request;
+        private final AudioLoadResultHandler handler;
+
+        private Call(String request, AudioLoadResultHandler handler) {
+            this.request = request;
+            this.handler = handler;
+        }
+    }
+
+    private class Recorder implements AudioLoadResultHandler {
+
+        @Override
+        public void trackLoaded(AudioTrack track) {
+            results.add(track);
+        }
+
+        @Override
+        public void playlistLoaded(AudioPlaylist playlist) {
+            results.add(playlist);
+        }
+
+        @Override
+        public void noMatches() {
+            results.add("noMatches");
+        }
+
+        @Override
+        public void loadFailed(FriendlyException exception) {
+            results.add(exception);
+        }
+    }
+}
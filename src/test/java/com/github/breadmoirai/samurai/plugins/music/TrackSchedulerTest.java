@@ -0,0 +1,168 @@
+package com.github.breadmoirai.samurai.plugins.music;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import org.jdbi.v3.core.Jdbi;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+
+public class TrackSchedulerTest {
+
+    private static final int ROUNDS = 10;
+    // large enough that compaction, which would hide an entry journaled out of order, rarely runs
+    private static final int INITIAL_TRACKS = 2000;
+    private static final int SKIPPERS = 3;
+    private static final int ADDERS = 2;
+    private static final int OPERATIONS = 2000;
+
+    private QueueJournal journal;
+
+    @Before
+    public void setUp() {
+        final Jdbi jdbi = Jdbi.create("jdbc:derby:memory:scheduler" + System.nanoTime() + ";create=true");
+        journal = new QueueJournal(new QueueExtension(jdbi));
+    }
+
+    /**
+     * The player thread takes tracks from the front while commands skip and add tracks, and the journal is flushed and
+     * compacted throughout. Replaying the journal must give back exactly the queue the scheduler ended up with.
+     */
+    @Test
+    public void journalReplaysToTheQueueUnderConcurrentChanges() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(2 + SKIPPERS + ADDERS);
+        try {
+            for (long guildId = 0; guildId < ROUNDS; guildId++) {
+                hammer(executor, guildId);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void hammer(ExecutorService executor, long guildId) throws Exception {
+        final TrackScheduler scheduler = new TrackScheduler(null, player(), guildId, AudioTrack::getIdentifier);
+        scheduler.attach(journal);
+        for (int i = 0; i < INITIAL_TRACKS; i++) {
+            scheduler.queue(track(guildId + "-initial-" + i));
+        }
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final List<Future<?>> workers = new ArrayList<>();
+        workers.add(executor.submit(() -> {
+            await(start);
+            for (int i = 0; i < OPERATIONS; i++) {
+                scheduler.nextTrack();
+            }
+        }));
+        for (int s = 0; s < SKIPPERS; s++) {
+            workers.add(executor.submit(() -> {
+                await(start);
+                final ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < OPERATIONS; i++) {
+                    if (i % 2 == 0) {
+                        scheduler.skip(new int[]{random.nextInt(1, 4)});
+                    }
+                }
+            }));
+        }
+        for (int a = 0; a < ADDERS; a++) {
+            final String prefix = guildId + "-" + a + "-";
+            workers.add(executor.submit(() -> {
+                await(start);
+                for (int i = 0; i < OPERATIONS; i++) {
+                    if (i % 3 == 0) {
+                        scheduler.queueFirst(track(prefix + i));
+                    } else {
+                        scheduler.queue(track(prefix + i));
+                    }
+                }
+            }));
+        }
+        final Future<?> flusher = executor.submit(() -> {
+            await(start);
+            while (running.get()) {
+                journal.flush();
+            }
+        });
+
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get(30, TimeUnit.SECONDS);
+        }
+        running.set(false);
+        flusher.get(30, TimeUnit.SECONDS);
+        journal.flush();
+
+        final QueueJournal.State state = journal.load(guildId);
+        final List<String> expected = new ArrayList<>();
+        for (AudioTrack track : scheduler.getQueue()) {
+            expected.add(track.getIdentifier());
+        }
+        assertEquals(expected, state.getQueue());
+        final AudioTrack current = scheduler.getCurrent();
+        assertEquals(current == null ? null : current.getIdentifier(), state.getCurrent());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A player that is always busy, so every queued track goes into the queue.
+     */
+    private static AudioPlayer player() {
+        return (AudioPlayer) Proxy.newProxyInstance(AudioPlayer.class.getClassLoader(), new Class<?>[]{AudioPlayer.class}, (proxy, method, args) -> {
+            if (method.getName().equals("startTrack")) {
+                return !((Boolean) args[1]);
+            }
+            return defaultValue(method.getReturnType());
+        });
+    }
+
+    private static AudioTrack track(String identifier) {
+        return (AudioTrack) Proxy.newProxyInstance(AudioTrack.class.getClassLoader(), new Class<?>[]{AudioTrack.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getIdentifier":
+                case "toString":
+                    return identifier;
+                case "makeClone":
+                    return track(identifier);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == int.class) {
+            return 0;
+        }
+        return null;
+    }
+}
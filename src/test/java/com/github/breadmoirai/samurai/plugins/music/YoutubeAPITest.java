@@ -0,0 +1,235 @@
+package com.github.breadmoirai.samurai.plugins.music;
+
+import com.google.api.client.json.Json;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class YoutubeAPITest {
+
+    private static final String RELATED = "{\"items\": [" +
+            "{\"id\": {\"kind\": \"youtube#video\", \"videoId\": \"a\"}}," +
+            "{\"id\": {\"kind\": \"youtube#video\", \"videoId\": \"b\"}}," +
+            "{\"id\": {\"kind\": \"youtube#video\", \"videoId\": \"c\"}}]}";
+
+    private static final String QUOTA_EXCEEDED = "{\"error\": {\"code\": 403, \"message\": \"quota\", " +
+            "\"errors\": [{\"domain\": \"youtube.quota\", \"reason\": \"quotaExceeded\", \"message\": \"quota\"}]}}";
+
+    /**
+     * Answers every search with the same three videos, optionally waiting for a latch first.
+     */
+    private static class StubTransport extends MockHttpTransport {
+        private final AtomicInteger requests = new AtomicInteger();
+        private final CountDownLatch release;
+        private volatile boolean overQuota;
+
+        StubTransport(CountDownLatch release) {
+            this.release = release;
+        }
+
+        String content(String url) {
+            return RELATED;
+        }
+
+        @Override
+        public MockLowLevelHttpRequest buildRequest(String method, String url) {
+            requests.incrementAndGet();
+            return new MockLowLevelHttpRequest(url) {
+                @Override
+                public MockLowLevelHttpResponse execute() throws java.io.IOException {
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new java.io.InterruptedIOException();
+                    }
+                    if (overQuota) {
+                        return new MockLowLevelHttpResponse().setStatusCode(403).setContentType(Json.MEDIA_TYPE)
+                                                             .setContent(QUOTA_EXCEEDED);
+                    }
+                    return new MockLowLevelHttpResponse().setContentType(Json.MEDIA_TYPE).setContent(content(url));
+                }
+            };
+        }
+    }
+
+    /**
+     * Answers every search with as many videos as it asked for.
+     */
+    private static class SizedTransport extends StubTransport {
+        private static final Pattern MAX_RESULTS = Pattern.compile("maxResults=(\\d+)");
+
+        SizedTransport(CountDownLatch release) {
+            super(release);
+        }
+
+        @Override
+        String content(String url) {
+            final Matcher matcher = MAX_RESULTS.matcher(url);
+            final int count = matcher.find() ? Integer.parseInt(matcher.group(1)) : 5;
+            final StringBuilder sb = new StringBuilder("{\"items\": [");
+            for (int i = 0; i < count; i++) {
+                sb.append(i == 0 ? "" : ",").append("{\"id\": {\"kind\": \"youtube#video\", \"videoId\": \"v")
+                  .append(i).append("\"}}");
+            }
+            return sb.append("]}").toString();
+        }
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2018-01-01T12:00:00Z");
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            final MutableClock clock = this;
+            return new Clock() {
+                @Override
+                public ZoneId getZone() {
+                    return zone;
+                }
+
+                @Override
+                public Clock withZone(ZoneId zone) {
+                    return clock.withZone(zone);
+                }
+
+                @Override
+                public Instant instant() {
+                    return clock.instant();
+                }
+            };
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+    }
+
+    @Test
+    public void repeatedLookupsAreCached() {
+        final StubTransport transport = new StubTransport(new CountDownLatch(0));
+        final YoutubeAPI api = new YoutubeAPI("key", transport, new MutableClock(), QuotaTracker.DEFAULT_DAILY_UNITS);
+        final List<String> first = api.getRelated("video", 15);
+        final List<String> second = api.getRelated("video", 2);
+        assertEquals(3, first.size());
+        assertEquals("https://www.youtube.com/watch?v=a", first.get(0));
+        assertEquals(first.subList(0, 2), second);
+        assertEquals(1, transport.requests.get());
+        assertEquals(YoutubeAPI.SEARCH_COST, api.getQuota().getUsed());
+    }
+
+    @Test
+    public void expiredLookupsAreRefreshed() {
+        final StubTransport transport = new StubTransport(new CountDownLatch(0));
+        final MutableClock clock = new MutableClock();
+        final YoutubeAPI api = new YoutubeAPI("key", transport, clock, QuotaTracker.DEFAULT_DAILY_UNITS);
+        api.getRelated("video", 15);
+        clock.advance(Duration.ofHours(7));
+        api.getRelated("video", 15);
+        assertEquals(2, transport.requests.get());
+    }
+
+    @Test
+    public void concurrentLookupsShareOneCall() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final StubTransport transport = new StubTransport(release);
+        final YoutubeAPI api = new YoutubeAPI("key", transport, new MutableClock(), QuotaTracker.DEFAULT_DAILY_UNITS);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final List<Future<List<String>>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> api.getRelated("video", 15)));
+        }
+        // give every thread time to find the call in flight
+        Thread.sleep(200);
+        release.countDown();
+        for (Future<List<String>> future : futures) {
+            assertEquals(3, future.get(10, TimeUnit.SECONDS).size());
+        }
+        executor.shutdown();
+        assertEquals(1, transport.requests.get());
+    }
+
+    @Test
+    public void spentQuotaFallsBackToTheCache() {
+        final StubTransport transport = new StubTransport(new CountDownLatch(0));
+        final MutableClock clock = new MutableClock();
+        // a tenth is held in reserve, leaving room for exactly two searches
+        final YoutubeAPI api = new YoutubeAPI("key", transport, clock, 2 * YoutubeAPI.SEARCH_COST * 10 / 9 + 1);
+        api.getRelated("first", 15);
+        api.getRelated("second", 15);
+        clock.advance(Duration.ofHours(7));
+        assertEquals(3, api.getRelated("first", 15).size());
+        assertTrue(api.getRelated("third", 15).isEmpty());
+        assertEquals(2, transport.requests.get());
+
+        // the quota resets at midnight pacific time
+        clock.advance(Duration.ofDays(1));
+        assertEquals(3, api.getRelated("third", 15).size());
+        assertEquals(3, transport.requests.get());
+    }
+
+    @Test
+    public void failedSearchesFallBackToAnExpiredEntry() {
+        final StubTransport transport = new StubTransport(new CountDownLatch(0));
+        final MutableClock clock = new MutableClock();
+        final YoutubeAPI api = new YoutubeAPI("key", transport, clock, QuotaTracker.DEFAULT_DAILY_UNITS);
+        assertEquals(3, api.getRelated("video", 15).size());
+        clock.advance(Duration.ofHours(7));
+        transport.overQuota = true;
+        assertEquals(3, api.getRelated("video", 15).size());
+        assertEquals(2, transport.requests.get());
+        // the quota is now known to be spent, so nothing else is sent today
+        assertTrue(api.getRelated("other", 15).isEmpty());
+        assertEquals(2, transport.requests.get());
+    }
+
+    @Test
+    public void waitersWantingMoreThanTheSharedCallLookUpTheRest() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final StubTransport transport = new SizedTransport(release);
+        final YoutubeAPI api = new YoutubeAPI("key", transport, new MutableClock(), QuotaTracker.DEFAULT_DAILY_UNITS);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<List<String>> small = executor.submit(() -> api.getRelated("video", 15));
+            // give the first lookup time to be in flight
+            Thread.sleep(200);
+            final Future<List<String>> large = executor.submit(() -> api.getRelated("video", 40));
+            Thread.sleep(200);
+            release.countDown();
+            assertEquals(15, small.get(10, TimeUnit.SECONDS).size());
+            assertEquals(40, large.get(10, TimeUnit.SECONDS).size());
+            assertEquals(2, transport.requests.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
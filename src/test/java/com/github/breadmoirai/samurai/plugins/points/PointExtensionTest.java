@@ -0,0 +1,62 @@
+package com.github.breadmoirai.samurai.plugins.points;
+
+import gnu.trove.map.TLongDoubleMap;
+import gnu.trove.map.hash.TLongDoubleHashMap;
+import org.jdbi.v3.core.Jdbi;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PointExtensionTest {
+
+    private Jdbi jdbi;
+    private PointExtension database;
+
+    @Before
+    public void setUp() {
+        jdbi = Jdbi.create("jdbc:derby:memory:points" + System.nanoTime() + ";create=true");
+        database = new PointExtension(jdbi);
+    }
+
+    private int countRows() {
+        return jdbi.withHandle(handle -> handle.createQuery("SELECT COUNT(*) FROM Points")
+                                               .map((r, ctx) -> r.getInt(1))
+                                               .findFirst()
+                                               .orElse(0));
+    }
+
+    @Test
+    public void bulkLoadDoesNotInsertMissingUsers() {
+        final TLongDoubleMap deltas = new TLongDoubleHashMap();
+        deltas.put(1, 2.5);
+        database.offsetPoints(deltas);
+
+        final TLongDoubleMap points = database.getPoints(new long[]{1, 2, 3});
+        assertEquals(3, points.size());
+        assertEquals(2.5, points.get(1), 0);
+        assertEquals(0, points.get(2), 0);
+        assertEquals(0, points.get(3), 0);
+        assertEquals(1, countRows());
+    }
+
+    @Test
+    public void bulkLoadSpansChunks() {
+        final long[] userIds = new long[1201];
+        final TLongDoubleMap deltas = new TLongDoubleHashMap();
+        for (int i = 0; i < userIds.length; i++) {
+            userIds[i] = i;
+            if (i % 2 == 0) {
+                deltas.put(i, i);
+            }
+        }
+        database.offsetPoints(deltas);
+
+        final TLongDoubleMap points = database.getPoints(userIds);
+        assertEquals(userIds.length, points.size());
+        for (int i = 0; i < userIds.length; i++) {
+            assertEquals(i % 2 == 0 ? i : 0, points.get(i), 0);
+        }
+        assertEquals(deltas.size(), countRows());
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.breadmoirai.samurai.plugins.points;
+
+import gnu.trove.map.TLongDoubleMap;
+import org.jdbi.v3.core.Jdbi;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class PointJournalTest {
+
+    private static Jdbi jdbi() {
+        return Jdbi.create("jdbc:derby:memory:journal" + System.nanoTime() + ";create=true");
+    }
+
+    @Test
+    public void readsDuringAFlushIncludeTheBatchBeingWritten() throws Exception {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final PointExtension database = new PointExtension(jdbi()) {
+            @Override
+            public void offsetPoints(TLongDoubleMap deltas) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.offsetPoints(deltas);
+            }
+        };
+        final PointJournal journal = new PointJournal(database, Runnable::run, Integer.MAX_VALUE);
+        journal.offset(1, 5);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<?> flush = executor.submit(journal::flush);
+            writing.await();
+            final Future<Double> read = executor.submit(() -> journal.getPoints(1));
+            journal.offset(1, 2);
+            release.countDown();
+            flush.get(10, TimeUnit.SECONDS);
+            assertEquals(7, read.get(10, TimeUnit.SECONDS), 0);
+            assertEquals(7, journal.getPoints(new long[]{1}).get(1), 0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void offsetsAfterTheExecutorStopsAreFlushedInline() {
+        final PointExtension database = new PointExtension(jdbi());
+        final PointJournal journal = new PointJournal(database, command -> {
+            throw new RejectedExecutionException();
+        }, 1);
+        journal.offset(1, 3);
+        assertEquals(0, journal.getQueueDepth());
+        assertEquals(3, database.getPoints(1), 0);
+    }
+}
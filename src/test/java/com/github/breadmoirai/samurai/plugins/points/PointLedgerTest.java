@@ -0,0 +1,136 @@
+package com.github.breadmoirai.samurai.plugins.points;
+
+import net.dv8tion.jda.core.OnlineStatus;
+import org.jdbi.v3.core.Jdbi;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.Assert.assertEquals;
+
+public class PointLedgerTest {
+
+    private static final int USERS = 64;
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 50_000;
+
+    private PointExtension database;
+    private PointJournal journal;
+    private PointLedger ledger;
+
+    @Before
+    public void setUp() {
+        final Jdbi jdbi = Jdbi.create("jdbc:derby:memory:ledger" + System.nanoTime() + ";create=true");
+        database = new PointExtension(jdbi);
+        journal = new PointJournal(database, Runnable::run, Integer.MAX_VALUE);
+        ledger = new PointLedger(USERS, 4);
+        for (long id = 0; id < USERS; id++) {
+            ledger.putIfAbsent(id, new PointSession(id, 0, OnlineStatus.ONLINE, journal));
+        }
+    }
+
+    private PointSession load(long userId) {
+        return new PointSession(userId, journal.getPoints(userId), OnlineStatus.ONLINE, journal);
+    }
+
+    private void offset(long userId, double value) {
+        final PointSession session = ledger.get(userId);
+        if (session != null) {
+            session.offsetPoints(value);
+        } else {
+            journal.offset(userId, value);
+        }
+    }
+
+    @Test
+    public void concurrentOffsetsAreNotLost() throws Exception {
+        final PointSession session = ledger.get(0);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < OPERATIONS; i++) {
+                    session.offsetPoints(1.0);
+                }
+            }));
+        }
+        for (Future<?> future : futures) future.get();
+        executor.shutdown();
+        assertEquals(THREADS * OPERATIONS, session.getPoints(), 0);
+    }
+
+    @Test
+    public void totalsAreConserved() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS + 2);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final LongAdder minted = new LongAdder();
+        final List<Future<?>> workers = new ArrayList<>();
+
+        // transfers between users conserve the total, minute points add a known amount
+        for (int t = 0; t < THREADS; t++) {
+            workers.add(executor.submit(() -> {
+                start.await();
+                final ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < OPERATIONS; i++) {
+                    if (i % 100 == 0) {
+                        ledger.parallelForEach(session -> {
+                            session.offsetPoints(0.5);
+                            minted.increment();
+                        });
+                    } else {
+                        final long from = random.nextInt(USERS), to = random.nextInt(USERS);
+                        final double amount = random.nextInt(8);
+                        offset(from, -amount);
+                        offset(to, amount);
+                    }
+                }
+                return null;
+            }));
+        }
+        // committing and users going offline and online again must not lose anything in between
+        final Future<?> churn = executor.submit(() -> {
+            start.await();
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (running.get()) {
+                final long id = random.nextInt(USERS);
+                final PointSession removed = ledger.remove(id);
+                if (removed != null) {
+                    removed.close();
+                }
+                ledger.getOrLoad(id, this::load);
+                ledger.forEach(PointSession::commit);
+            }
+            return null;
+        });
+
+        start.countDown();
+        for (Future<?> worker : workers) worker.get();
+        running.set(false);
+        churn.get();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        for (long id = 0; id < USERS; id++) {
+            final PointSession session = ledger.remove(id);
+            if (session != null) session.close();
+        }
+        journal.flush();
+
+        double total = 0;
+        for (long id = 0; id < USERS; id++) {
+            total += database.getPoints(id);
+        }
+        assertEquals(minted.sum() * 0.5, total, 0);
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.breadmoirai.samurai.plugins.trivia;
+
+import com.github.breadmoirai.samurai.util.WagnerFischer;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AnswerMatcherTest {
+
+    private static int reference(String a, String b) {
+        final int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) d[i][0] = i;
+        for (int j = 0; j <= b.length(); j++) d[0][j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                final int m = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + m);
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    private static String random(Random random, int maxLength, String alphabet) {
+        final int length = random.nextInt(maxLength + 1);
+        final StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void boundedDistancesAgreeWithTheFullMatrix() {
+        final Random random = new Random(22);
+        for (int k = 0; k < 20_000; k++) {
+            // long patterns go through the banded matrix instead of the bit-parallel one
+            final String alphabet = k % 2 == 0 ? "abc" : "ab\u00e9\u00fc ";
+            final String a = random(random, k % 10 == 0 ? 90 : 64, alphabet);
+            final String b = random(random, k % 10 == 0 ? 90 : 64, alphabet);
+            final int max = random.nextInt(6);
+            final int expected = Math.min(reference(a, b), max + 1);
+            if (!a.isEmpty()) {
+                assertEquals(a + " / " + b, expected, AnswerMatcher.distance(a, b, max));
+            }
+            assertEquals(a + " / " + b, expected, WagnerFischer.getLevenshteinDistance(a, b, max));
+        }
+        assertEquals(3, WagnerFischer.getLevenshteinDistance("kitten", "sitting"));
+    }
+
+    @Test
+    public void normalizesPunctuationCaseAndArticles() {
+        assertEquals("rock and roll", AnswerNormalizer.normalize("The  Rock & Roll!"));
+        assertEquals("dont stop", AnswerNormalizer.normalize("Don't, stop"));
+        assertEquals("theory", AnswerNormalizer.normalize("theory"));
+        assertEquals("a", AnswerNormalizer.normalize("A"));
+    }
+
+    @Test
+    public void acceptsVariantsAndTypos() {
+        final AnswerMatcher matcher = new AnswerMatcher("The Seven Years' War (1756-1763)");
+        assertTrue(matcher.matches("seven years war"));
+        assertTrue(matcher.matches("7 years war"));
+        assertTrue(matcher.matches("the seven yeras war"));
+        assertTrue(matcher.matches("1756 1763"));
+        assertFalse(matcher.matches("thirty years war"));
+
+        final AnswerMatcher slash = new AnswerMatcher("Burma/Myanmar");
+        assertTrue(slash.matches("myanmar"));
+        assertTrue(slash.matches("Burma"));
+
+        final AnswerMatcher alias = new AnswerMatcher("Samuel Clemens", "Mark Twain");
+        assertTrue(alias.matches("mark twain"));
+
+        // short answers have to be exact
+        final AnswerMatcher shortAnswer = new AnswerMatcher("Tin");
+        assertTrue(shortAnswer.matches("tin"));
+        assertFalse(shortAnswer.matches("tan"));
+    }
+}
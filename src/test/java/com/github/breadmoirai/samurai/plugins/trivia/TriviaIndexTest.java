@@ -0,0 +1,114 @@
+package com.github.breadmoirai.samurai.plugins.trivia;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TriviaIndexTest {
+
+    private static TriviaIndex index(int perBucket, int categories) {
+        final TriviaIndex index = new TriviaIndex();
+        final double[] weights = {0.2, 0.5, 0.8};
+        for (int i = 0; i < perBucket; i++) {
+            for (double weight : weights) {
+                index.add(new BasicTriviaLine("q" + index.size(), "a" + index.size(), "c" + (index.size() % categories),
+                                              weight, "test"));
+            }
+        }
+        return index;
+    }
+
+    @Test
+    public void sessionsMixDifficultiesAndCategoriesFromEasyToHard() {
+        final TriviaIndex index = index(20, 6);
+        final int[] ids = index.assemble(10, new BitSet(), null, new Random(1));
+        assertEquals(10, ids.length);
+        final int[] perBucket = new int[3];
+        final int[] perCategory = new int[6];
+        for (int i = 0; i < ids.length; i++) {
+            perBucket[index.getBucket(ids[i])]++;
+            perCategory[Integer.parseInt(index.get(ids[i]).getCategory().substring(1))]++;
+            if (i > 0) {
+                assertTrue(index.getDifficulty(ids[i - 1]) <= index.getDifficulty(ids[i]));
+            }
+        }
+        assertEquals(3, perBucket[TriviaIndex.EASY]);
+        assertEquals(4, perBucket[TriviaIndex.MEDIUM]);
+        assertEquals(3, perBucket[TriviaIndex.HARD]);
+        for (int n : perCategory) {
+            assertTrue(n <= 2);
+        }
+    }
+
+    @Test
+    public void seenQuestionsAreLeftOutUntilTooFewRemain() {
+        final TriviaIndex index = index(5, 3);
+        final BitSet seen = new BitSet();
+        final Set<Integer> asked = new HashSet<>();
+        for (int session = 0; session < 3; session++) {
+            for (int id : index.assemble(5, seen, null, new Random(session))) {
+                assertTrue(asked.add(id));
+                seen.set(id);
+            }
+        }
+        assertEquals(0, index.assemble(5, seen, null, new Random(3)).length);
+    }
+
+    @Test
+    public void theLastUnseenQuestionsAreStillFound() {
+        final TriviaIndex index = index(200, 6);
+        final BitSet seen = new BitSet();
+        seen.set(0, index.size());
+        final int[] unseen = {7, 301, 598};
+        for (int id : unseen) {
+            seen.clear(id);
+        }
+        assertEquals(toSet(unseen), toSet(index.assemble(10, seen, null, new Random(5))));
+        assertEquals(toSet(new int[]{7, 301}), toSet(index.assemble(10, seen, "c1", new Random(6))));
+    }
+
+    @Test
+    public void categoryFilterOnlyPicksThatCategory() {
+        final TriviaIndex index = index(10, 3);
+        assertTrue(index.hasCategory("c1"));
+        assertFalse(index.hasCategory("c9"));
+        final int[] ids = index.assemble(10, new BitSet(), "c1", new Random(2));
+        assertEquals(10, ids.length);
+        for (int id : ids) {
+            assertEquals("c1", index.get(id).getCategory());
+        }
+    }
+
+    @Test
+    public void answerRatesMoveQuestionsBetweenDifficulties() {
+        final TriviaIndex index = index(3, 1);
+        final int easy = 0;
+        final int hard = 2;
+        assertEquals(TriviaIndex.EASY, index.getBucket(easy));
+        assertEquals(TriviaIndex.HARD, index.getBucket(hard));
+        for (int i = 0; i < 8; i++) {
+            index.record(easy, false);
+            index.record(hard, true);
+        }
+        assertEquals(TriviaIndex.HARD, index.getBucket(easy));
+        assertEquals(TriviaIndex.EASY, index.getBucket(hard));
+        // every question is still in exactly one bucket
+        final int[] ids = index.assemble(9, new BitSet(), null, new Random(4));
+        assertEquals(9, toSet(ids).size());
+    }
+
+    private static Set<Integer> toSet(int[] ids) {
+        final Set<Integer> set = new HashSet<>();
+        for (int id : ids) {
+            set.add(id);
+        }
+        return set;
+    }
+}
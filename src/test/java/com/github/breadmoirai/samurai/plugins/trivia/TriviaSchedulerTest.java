@@ -0,0 +1,158 @@
+package com.github.breadmoirai.samurai.plugins.trivia;
+
+import gnu.trove.list.TLongList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.TLongLongMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TriviaSchedulerTest {
+
+    private static final long NOW = 1_000_000_000L;
+
+    private ScheduledExecutorService service;
+    private final List<TLongLongMap> flushed = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        service = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        service.shutdownNow();
+    }
+
+    private TriviaScheduler scheduler() {
+        // never started, so nothing runs on its own and the queue is driven through poll
+        return new TriviaScheduler(service, guildId -> {}, flushed::add,
+                                   Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC));
+    }
+
+    @Test
+    public void overdueGuildsCatchUpOnceEachInTheOrderTheyWereDue() {
+        final TriviaScheduler scheduler = scheduler();
+        scheduler.restore(Arrays.asList(new TriviaScheduler.Slot(1, NOW - 1000, 60),
+                                        new TriviaScheduler.Slot(2, 0, 60),
+                                        new TriviaScheduler.Slot(3, NOW + 60_000, 60),
+                                        new TriviaScheduler.Slot(4, NOW - 5, 60)));
+        final long stagger = TriviaScheduler.CATCH_UP_STAGGER_MILLIS;
+        assertArrayEquals(new long[]{2}, scheduler.poll(NOW).toArray());
+        assertArrayEquals(new long[]{1}, scheduler.poll(NOW + stagger).toArray());
+        assertArrayEquals(new long[]{4}, scheduler.poll(NOW + 2 * stagger).toArray());
+        assertEquals(0, scheduler.poll(NOW + 3 * stagger).size());
+        assertArrayEquals(new long[]{3}, scheduler.poll(NOW + 60_000).toArray());
+    }
+
+    @Test
+    public void manyOverdueGuildsCatchUpWithinTheWindow() {
+        final TriviaScheduler scheduler = scheduler();
+        final int count = 1000;
+        final List<TriviaScheduler.Slot> slots = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            slots.add(new TriviaScheduler.Slot(i, NOW - count + i, 60));
+        }
+        scheduler.restore(slots);
+        final long window = TriviaScheduler.CATCH_UP_WINDOW_MILLIS;
+        final int early = scheduler.poll(NOW + window / 2).size();
+        assertTrue(String.valueOf(early), early > count / 3 && early < count * 2 / 3);
+        assertEquals(count - early, scheduler.poll(NOW + window).size());
+    }
+
+    @Test
+    public void rescheduledAndRemovedGuildsAreSkipped() {
+        final TriviaScheduler scheduler = scheduler();
+        scheduler.schedule(1, Instant.ofEpochMilli(NOW + 10));
+        scheduler.schedule(2, Instant.ofEpochMilli(NOW + 20));
+        scheduler.schedule(3, Instant.ofEpochMilli(NOW + 30));
+        scheduler.schedule(1, Instant.ofEpochMilli(NOW + 100));
+        scheduler.remove(2);
+        assertArrayEquals(new long[]{3}, scheduler.poll(NOW + 50).toArray());
+        assertArrayEquals(new long[]{1}, scheduler.poll(NOW + 100).toArray());
+        assertFalse(scheduler.contains(2));
+        assertEquals(2, scheduler.size());
+    }
+
+    @Test
+    public void intervalsArePerGuild() {
+        final TriviaScheduler scheduler = scheduler();
+        scheduler.restore(Arrays.asList(new TriviaScheduler.Slot(1, NOW, 30), new TriviaScheduler.Slot(2, NOW, 600)));
+        assertEquals(Instant.ofEpochMilli(NOW + 30 * 60_000), scheduler.scheduleNext(1));
+        assertEquals(Instant.ofEpochMilli(NOW + 600 * 60_000), scheduler.scheduleNext(2));
+        scheduler.setInterval(1, 90);
+        assertEquals(Instant.ofEpochMilli(NOW + 90 * 60_000), scheduler.scheduleNext(1));
+    }
+
+    @Test
+    public void onlyChangedTimesAreFlushedInOneBatch() {
+        final TriviaScheduler scheduler = scheduler();
+        scheduler.restore(Arrays.asList(new TriviaScheduler.Slot(1, NOW + 10, 60), new TriviaScheduler.Slot(2, NOW + 10, 60)));
+        scheduler.flush();
+        assertTrue(flushed.isEmpty());
+        scheduler.schedule(1, Instant.ofEpochMilli(NOW + 5));
+        scheduler.schedule(1, Instant.ofEpochMilli(NOW + 7));
+        scheduler.schedule(3, Instant.ofEpochMilli(NOW + 9));
+        scheduler.flush();
+        assertEquals(1, flushed.size());
+        assertEquals(2, flushed.get(0).size());
+        assertEquals(NOW + 7, flushed.get(0).get(1));
+        assertEquals(NOW + 9, flushed.get(0).get(3));
+        scheduler.flush();
+        assertEquals(1, flushed.size());
+    }
+
+    @Test
+    public void failedFlushesAreRetried() {
+        final int[] attempts = {0};
+        final TriviaScheduler scheduler = new TriviaScheduler(service, guildId -> {}, changes -> {
+            if (attempts[0]++ == 0) {
+                throw new IllegalStateException("database is unavailable");
+            }
+            flushed.add(changes);
+        });
+        scheduler.schedule(1, Instant.ofEpochMilli(NOW));
+        scheduler.flush();
+        assertTrue(flushed.isEmpty());
+        scheduler.flush();
+        assertEquals(NOW, flushed.get(0).get(1));
+    }
+
+    @Test
+    public void dueGuildsAreDispatchedOnTheExecutor() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(3);
+        final TLongList dispatched = new TLongArrayList();
+        final TriviaScheduler scheduler = new TriviaScheduler(service, guildId -> {
+            synchronized (dispatched) {
+                dispatched.add(guildId);
+            }
+            latch.countDown();
+        }, changes -> {});
+        scheduler.start();
+        final Instant now = Instant.now();
+        scheduler.schedule(3, now.plusMillis(150));
+        scheduler.schedule(1, now.plusMillis(50));
+        scheduler.schedule(2, now.plusMillis(100));
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        synchronized (dispatched) {
+            assertArrayEquals(new long[]{1, 2, 3}, dispatched.toArray());
+        }
+        scheduler.shutdown();
+    }
+}
@@ -0,0 +1,165 @@
+package com.github.breadmoirai.samurai.plugins.trivia.stats;
+
+import com.github.breadmoirai.samurai.util.RankTree;
+import org.jdbi.v3.core.Jdbi;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TriviaStatsTest {
+
+    private static final long GUILD = 10;
+
+    private Jdbi jdbi;
+    private TriviaStatsDatabase database;
+    private long time;
+
+    @Before
+    public void setUp() {
+        jdbi = Jdbi.create("jdbc:derby:memory:triviastats" + System.nanoTime() + ";create=true");
+        database = new TriviaStatsDatabase(jdbi);
+    }
+
+    private TriviaAnswer answer(long userId, String category, boolean correct, int latencyMillis) {
+        return new TriviaAnswer(GUILD, userId, category, correct, latencyMillis, ++time * 1000);
+    }
+
+    @Test
+    public void userTotalsAreKeptOneAnswerAtATime() {
+        final TriviaUserStats user = new TriviaUserStats(1);
+        final int[] latencies = {2000, 3000, 4000, 50_000, 9000};
+        for (int latency : latencies) {
+            user.record(answer(1, "Science", true, latency));
+        }
+        user.record(answer(1, "History", false, 1000));
+        user.record(answer(1, "History", false, 1000));
+        user.record(answer(1, "History", true, 1000));
+        user.record(answer(1, "Sports", true, 1000));
+
+        assertEquals(9, user.getAttempts());
+        assertEquals(7, user.getCorrect());
+        assertEquals(2, user.getStreak());
+        assertEquals(5, user.getBestStreak());
+        // the true median of the correct answers is 3000, and a bucket is 25% wide
+        final long median = user.getMedianLatencyMillis();
+        assertTrue(String.valueOf(median), median >= 2400 && median <= 3750);
+        assertEquals(Arrays.asList("Science", "History"), user.getStrongestCategories(3));
+    }
+
+    @Test
+    public void latencyBucketsCoverEveryTime() {
+        assertEquals(0, TriviaUserStats.bucket(0));
+        assertEquals(0, TriviaUserStats.bucket(99));
+        assertEquals(TriviaUserStats.LATENCY_BUCKETS - 1, TriviaUserStats.bucket(Integer.MAX_VALUE));
+        for (int ms = 100; ms < 1_000_000; ms += 997) {
+            assertTrue(TriviaUserStats.bucket(ms) <= TriviaUserStats.bucket(ms + 997));
+        }
+    }
+
+    @Test
+    public void answersAreWrittenInBatchesAndLoadedFromTotals() {
+        final TriviaStats stats = new TriviaStats(database, Runnable::run, 4);
+        stats.record(answer(1, "Science", true, 2000));
+        stats.record(answer(2, "Science", false, 5000));
+        stats.record(answer(2, "Science", true, 3000));
+        assertEquals(3, stats.getPending());
+        stats.record(answer(3, "History", true, 1000));
+        assertEquals(0, stats.getPending());
+        stats.record(answer(2, "History", true, 4000));
+        stats.flush();
+
+        final TriviaGuildStats live = stats.getGuild(GUILD);
+        final TriviaGuildStats rebuilt = new TriviaStats(database, Runnable::run, 4).getGuild(GUILD);
+        for (TriviaGuildStats guild : Arrays.asList(live, rebuilt)) {
+            assertEquals(3, guild.size());
+            assertEquals(0, guild.rank(2));
+            assertEquals(3, guild.getUser(2).getAttempts());
+            assertEquals(2, guild.getUser(2).getStreak());
+            final List<RankTree.Entry> top = guild.range(0, 2);
+            assertEquals(2, top.get(0).getId());
+            assertEquals(2, top.get(0).getScore(), 0);
+            assertEquals(1, top.get(1).getId());
+            assertNull(guild.getUser(4));
+        }
+        assertEquals(live.getUser(2).getMedianLatencyMillis(), rebuilt.getUser(2).getMedianLatencyMillis());
+        assertEquals(live.getUser(2).getCategoryAccuracy("Science"),
+                     rebuilt.getUser(2).getCategoryAccuracy("Science"), 0);
+    }
+
+    @Test
+    public void guildsAreLoadedWithoutReadingHistory() {
+        final TriviaStats stats = new TriviaStats(database, Runnable::run, 100);
+        stats.record(answer(1, "Science", true, 2000));
+        stats.record(answer(1, "Science", true, 2000));
+        stats.flush();
+        stats.record(answer(1, "History", false, 2000));
+        stats.flush();
+        jdbi.useHandle(handle -> handle.execute("DELETE FROM TriviaAnswers"));
+
+        final TriviaUserStats user = new TriviaStats(database, Runnable::run, 100).getGuild(GUILD).getUser(1);
+        assertEquals(3, user.getAttempts());
+        assertEquals(2, user.getCorrect());
+        assertEquals(0, user.getStreak());
+        assertEquals(2, user.getBestStreak());
+        assertEquals(0, user.getCategoryAccuracy("History"), 0);
+        assertEquals(1, user.getCategoryAccuracy("Science"), 0);
+    }
+
+    @Test
+    public void answersWithTheSameTimeAreReplayedInOrder() {
+        final TriviaStats stats = new TriviaStats(database, Runnable::run, 100);
+        final long now = 5000;
+        for (int i = 0; i < 10; i++) {
+            stats.record(new TriviaAnswer(GUILD, 1, "Science", i % 3 != 2, 1000, now));
+        }
+        stats.flush();
+
+        final TriviaUserStats replayed = new TriviaUserStats(1);
+        final List<TriviaAnswer> history = new ArrayList<>();
+        database.forEachAnswer(GUILD, history::add);
+        history.forEach(replayed::record);
+        final TriviaUserStats live = stats.getGuild(GUILD).getUser(1);
+        assertEquals(10, history.size());
+        assertEquals(live.getStreak(), replayed.getStreak());
+        assertEquals(live.getBestStreak(), replayed.getBestStreak());
+        assertEquals(1, live.getStreak());
+    }
+
+    @Test
+    public void totalsAreBuiltOnceFromAnExistingHistory() {
+        final Jdbi old = Jdbi.create("jdbc:derby:memory:triviastatsold" + System.nanoTime() + ";create=true");
+        old.useHandle(handle -> {
+            handle.execute("CREATE TABLE TriviaAnswers (GuildId BIGINT NOT NULL, UserId BIGINT NOT NULL, " +
+                                   "Category VARCHAR(32) NOT NULL, Correct SMALLINT NOT NULL, " +
+                                   "LatencyMillis INT NOT NULL, AnsweredAt TIMESTAMP NOT NULL)");
+            for (int i = 0; i < 4; i++) {
+                handle.createUpdate("INSERT INTO TriviaAnswers VALUES (?, 7, 'Science', ?, 1000, ?)")
+                      .bind(0, GUILD)
+                      .bind(1, i == 0 ? 0 : 1)
+                      .bind(2, new Timestamp(i * 1000))
+                      .execute();
+            }
+        });
+
+        final TriviaStatsDatabase migrated = new TriviaStatsDatabase(old);
+        final TriviaUserStats user = new TriviaStats(migrated, Runnable::run, 100).getGuild(GUILD).getUser(7);
+        assertEquals(4, user.getAttempts());
+        assertEquals(3, user.getStreak());
+
+        final TriviaStats stats = new TriviaStats(migrated, Runnable::run, 100);
+        stats.record(new TriviaAnswer(GUILD, 7, "Science", true, 1000, 10_000));
+        stats.flush();
+        final TriviaUserStats reloaded = new TriviaStats(new TriviaStatsDatabase(old), Runnable::run, 100)
+                .getGuild(GUILD).getUser(7);
+        assertEquals(5, reloaded.getAttempts());
+        assertEquals(4, reloaded.getStreak());
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.breadmoirai.samurai.plugins.trivia.submitted;
+
+import org.jdbi.v3.core.Jdbi;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SubmittedTriviaProviderTest {
+
+    private Jdbi jdbi;
+
+    @Before
+    public void setUp() {
+        jdbi = Jdbi.create("jdbc:derby:memory:submitted" + System.nanoTime() + ";create=true");
+    }
+
+    @Test
+    public void submissionsAreOnlyAskedOnceApproved() {
+        final SubmittedTriviaProvider provider = new SubmittedTriviaProvider(new SubmittedTriviaDatabase(jdbi));
+        provider.submit(1, "Question one?", "One / 1", "Numbers");
+        provider.submit(2, "Question two?", "Two", "Numbers");
+        assertEquals(0, provider.getIndex().size());
+        assertEquals(2, provider.countPending());
+
+        final List<SubmittedTriviaDatabase.Submission> pending = provider.getPending(10);
+        assertEquals(2, pending.size());
+        assertEquals("Question one?", pending.get(0).getQuestion());
+        assertEquals(1, pending.get(0).getAuthorId());
+
+        assertTrue(provider.approve(pending.get(0).getId()).isPresent());
+        assertEquals(1, provider.getIndex().size());
+        assertEquals("Question one?", provider.getIndex().get(0).getQuestion());
+        assertFalse(provider.approve(pending.get(0).getId()).isPresent());
+        assertEquals(1, provider.getIndex().size());
+
+        assertTrue(provider.reject(pending.get(1).getId()));
+        assertFalse(provider.reject(pending.get(1).getId()));
+        assertEquals(0, provider.countPending());
+    }
+
+    @Test
+    public void onlyApprovedQuestionsAreLoaded() {
+        final SubmittedTriviaProvider provider = new SubmittedTriviaProvider(new SubmittedTriviaDatabase(jdbi));
+        provider.submit(1, "Approved?", "Yes", "Review");
+        provider.submit(1, "Pending?", "No", "Review");
+        provider.approve(provider.getPending(1).get(0).getId());
+
+        final SubmittedTriviaProvider restarted = new SubmittedTriviaProvider(new SubmittedTriviaDatabase(jdbi));
+        assertEquals(1, restarted.getIndex().size());
+        assertEquals("Approved?", restarted.getIndex().get(0).getQuestion());
+        assertEquals(1, restarted.countPending());
+    }
+
+    @Test
+    public void pendingIsLimited() {
+        final SubmittedTriviaProvider provider = new SubmittedTriviaProvider(new SubmittedTriviaDatabase(jdbi));
+        for (int i = 0; i < 5; i++) {
+            provider.submit(1, "Question " + i + "?", "Answer", "Many");
+        }
+        assertEquals(3, provider.getPending(3).size());
+        assertEquals("Question 0?", provider.getPending(3).get(0).getQuestion());
+        assertEquals(5, provider.countPending());
+    }
+
+    @Test
+    public void questionsFromBeforeTheReviewArePending() {
+        jdbi.useHandle(handle -> {
+            handle.execute("CREATE TABLE TriviaSubmissions (\n" +
+                                   "  Id         INT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,\n" +
+                                   "  AuthorId   BIGINT        NOT NULL,\n" +
+                                   "  Question   VARCHAR (256) NOT NULL,\n" +
+                                   "  Answer     VARCHAR (128) NOT NULL,\n" +
+                                   "  Category   VARCHAR (32)  NOT NULL\n" +
+                                   ")");
+            handle.execute("INSERT INTO TriviaSubmissions (AuthorId, Question, Answer, Category) VALUES (1, 'Old?', 'Yes', 'Old')");
+        });
+
+        final SubmittedTriviaProvider provider = new SubmittedTriviaProvider(new SubmittedTriviaDatabase(jdbi));
+        assertEquals(0, provider.getIndex().size());
+        assertEquals(1, provider.countPending());
+        assertTrue(provider.approve(provider.getPending(1).get(0).getId()).isPresent());
+        assertEquals(1, provider.getIndex().size());
+    }
+}
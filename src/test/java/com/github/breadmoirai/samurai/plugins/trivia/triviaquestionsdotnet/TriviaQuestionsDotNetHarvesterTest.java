@@ -0,0 +1,176 @@
+package com.github.breadmoirai.samurai.plugins.trivia.triviaquestionsdotnet;
+
+import com.sun.net.httpserver.HttpServer;
+import org.jdbi.v3.core.Jdbi;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Crawls a local server that serves pages shaped like trivia-questions.net.
+ * <p>
+ * The front page links to 1 and 4. Questions 1, 2 and 3 form a chain of next links, 4 links to 5, which is not a
+ * question page, and 5 links to 6, which does not exist.
+ */
+public class TriviaQuestionsDotNetHarvesterTest {
+
+    private HttpServer server;
+    private String base;
+    private final Map<String, String> pages = new HashMap<>();
+    private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+    private final Map<String, Integer> statuses = new ConcurrentHashMap<>();
+
+    private TriviaQuestionsDotNetDatabase database;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+        pages.put("/", front("/q/1", "/q/4"));
+        pages.put("/q/1", question("Question one?", "Answer one", "History", "/q/2"));
+        pages.put("/q/2", question("Question two?", "Answer two", "Science", base + "/q/3"));
+        pages.put("/q/3", question("Question three?", "Answer three", "History", null));
+        pages.put("/q/4", question("Question four?", "Answer four", "Music", "/q/5"));
+        pages.put("/q/5", "<html><body><div class=\"next-post-link\"><a href=\"/q/6\">next</a></div></body></html>");
+        server.createContext("/", exchange -> {
+            final String path = exchange.getRequestURI().getPath();
+            hits.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+            final String page = pages.get(path);
+            final byte[] body = (page == null ? "not found" : page).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(statuses.getOrDefault(path, page == null ? 404 : 200), body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        database = new TriviaQuestionsDotNetDatabase(Jdbi.create("jdbc:derby:memory:trivia" + System.nanoTime() + ";create=true"));
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private static String front(String... links) {
+        final StringBuilder sb = new StringBuilder("<html><body>");
+        for (String link : links) {
+            sb.append("<h2 class=\"entry-title\"><a href=\"").append(link).append("\">q</a></h2>");
+        }
+        return sb.append("</body></html>").toString();
+    }
+
+    private static String question(String question, String answer, String category, String next) {
+        return "<html><head><meta property=\"article:section\" content=\"" + category + " Trivia Questions\"></head><body>" +
+                "<h1 class=\"single-title entry-title\">" + question + "</h1>" +
+                "<p class=\"post-answer\">Answer:</p><p>" + answer + "</p>" +
+                (next == null ? "" : "<div class=\"next-post-link\"><a href=\"" + next + "\">next</a></div>") +
+                "</body></html>";
+    }
+
+    private int hits(String path) {
+        final AtomicInteger count = hits.get(path);
+        return count == null ? 0 : count.get();
+    }
+
+    private TriviaQuestionsDotNetHarvester harvester(TriviaQuestionsDotNetCorpus corpus) {
+        return new TriviaQuestionsDotNetHarvester(database, corpus, base + "/", 0);
+    }
+
+    @Test
+    public void followsNextLinksAndBlacklistsPagesThatAreNotQuestions() {
+        final TriviaQuestionsDotNetCorpus corpus = new TriviaQuestionsDotNetCorpus();
+        assertEquals(4, harvester(corpus).harvest(100));
+
+        assertEquals(4, corpus.size());
+        assertEquals(4, database.getLines().size());
+        assertTrue(database.isBlacklisted(base + "/q/5"));
+        assertTrue(database.getFrontier().isEmpty());
+        final TriviaQuestionsDotNetLine line = database.getLine(base + "/q/1").get();
+        assertEquals("Question one?", line.getQuestion());
+        assertEquals("Answer one", line.getAnswer());
+        assertEquals("History", line.getCategory());
+        assertEquals(base + "/q/2", line.getNext());
+        assertEquals(0, hits("/q/6"));
+    }
+
+    @Test
+    public void harvestedPagesAreNotFetchedAgain() {
+        final TriviaQuestionsDotNetHarvester harvester = harvester(new TriviaQuestionsDotNetCorpus());
+        harvester.harvest(100);
+        assertEquals(0, harvester.harvest(100));
+        assertEquals(2, hits("/"));
+        for (int i = 1; i <= 5; i++) {
+            assertEquals(1, hits("/q/" + i));
+        }
+    }
+
+    @Test
+    public void resumesFromStoredNextLinksAfterARestart() {
+        // the front page and question 1
+        assertEquals(1, harvester(new TriviaQuestionsDotNetCorpus()).harvest(2));
+        assertEquals(1, database.getFrontier().size());
+
+        final TriviaQuestionsDotNetCorpus corpus = new TriviaQuestionsDotNetCorpus(database.getLines());
+        assertEquals(3, harvester(corpus).harvest(100));
+        assertEquals(4, corpus.size());
+        assertEquals(1, hits("/q/1"));
+        assertEquals(1, hits("/q/2"));
+    }
+
+    @Test
+    public void goneStatusesBlacklistThePage() {
+        statuses.put("/q/2", 410);
+        assertEquals(2, harvester(new TriviaQuestionsDotNetCorpus()).harvest(100));
+
+        assertTrue(database.isBlacklisted(base + "/q/2"));
+        assertEquals(0, hits("/q/3"));
+    }
+
+    @Test
+    public void otherStatusesStopTheRunAndRetryThePageLater() {
+        statuses.put("/q/2", 503);
+        final TriviaQuestionsDotNetHarvester harvester = harvester(new TriviaQuestionsDotNetCorpus());
+        assertEquals(1, harvester.harvest(100));
+        assertFalse(database.isBlacklisted(base + "/q/2"));
+        assertEquals(0, hits("/q/4"));
+
+        statuses.clear();
+        assertEquals(3, harvester.harvest(100));
+        assertEquals(2, hits("/q/2"));
+        assertEquals(1, hits("/q/3"));
+        assertEquals(1, hits("/q/4"));
+    }
+
+    @Test
+    public void unreachableSiteLeavesTheCorpusUsable() {
+        final TriviaQuestionsDotNetCorpus corpus = new TriviaQuestionsDotNetCorpus();
+        harvester(corpus).harvest(100);
+        server.stop(0);
+
+        assertEquals(0, harvester(corpus).harvest(100));
+        final int[] ids = corpus.getIndex().assemble(10, new BitSet(), null, new Random(7));
+        assertEquals(4, ids.length);
+        final HashSet<String> urls = new HashSet<>();
+        for (int id : ids) {
+            urls.add(((TriviaQuestionsDotNetLine) corpus.getIndex().get(id)).getUrl());
+        }
+        assertEquals(4, urls.size());
+    }
+}
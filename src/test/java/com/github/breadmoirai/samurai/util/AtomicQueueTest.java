@@ -0,0 +1,229 @@
+package com.github.breadmoirai.samurai.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AtomicQueueTest {
+
+    private static final int PRODUCERS = 4;
+    private static final int PER_PRODUCER = 20_000;
+
+    @Test
+    public void indexedOperations() {
+        final AtomicQueue<String> queue = new AtomicQueue<>();
+        queue.add("b");
+        queue.add(0, "a");
+        queue.add(10, "e");
+        queue.addAll(2, Arrays.asList("c", "d"));
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"), queue.snapshot());
+
+        final List<String> before = queue.snapshot();
+        final List<AtomicQueue.Removed<String>> removed = queue.removeAll(new int[]{3, 1, 3, -1, 9});
+        assertEquals(2, removed.size());
+        assertEquals(1, removed.get(0).getIndex());
+        assertEquals("b", removed.get(0).getElement());
+        assertEquals(3, removed.get(1).getIndex());
+        assertEquals("d", removed.get(1).getElement());
+        assertEquals(Arrays.asList("a", "c", "e"), queue.snapshot());
+        // snapshots are not affected by later changes
+        assertEquals(5, before.size());
+
+        assertEquals("a", queue.poll());
+        assertEquals("e", queue.remove(1));
+        assertNull(queue.remove(1));
+        assertEquals(Collections.singletonList("c"), queue.clear());
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+    }
+
+    /**
+     * Producers queue tracks while other threads play the next track, skip random positions, shuffle and read the
+     * queue, as the music commands and the audio thread do. Every element must come out exactly once.
+     */
+    @Test
+    public void concurrentQueueSkipAndNextTrack() throws Exception {
+        final AtomicQueue<Integer> queue = new AtomicQueue<>();
+        final ConcurrentLinkedQueue<Integer> taken = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean producing = new AtomicBoolean(true);
+        final AtomicInteger readErrors = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(PRODUCERS + 4);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<?>> producers = new ArrayList<>();
+        final List<Future<?>> consumers = new ArrayList<>();
+
+        for (int p = 0; p < PRODUCERS; p++) {
+            final int base = p * PER_PRODUCER;
+            producers.add(executor.submit(() -> {
+                start.await();
+                final ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < PER_PRODUCER; i++) {
+                    final int element = base + i;
+                    switch (random.nextInt(3)) {
+                        case 0:
+                            queue.add(element);
+                            break;
+                        case 1:
+                            queue.add(0, element);
+                            break;
+                        default:
+                            queue.add(random.nextInt(8), element);
+                    }
+                }
+                return null;
+            }));
+        }
+        // nextTrack
+        consumers.add(executor.submit(() -> {
+            start.await();
+            while (producing.get() || !queue.isEmpty()) {
+                final Integer element = queue.poll();
+                if (element != null) taken.add(element);
+            }
+            return null;
+        }));
+        // skip
+        consumers.add(executor.submit(() -> {
+            start.await();
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (producing.get()) {
+                final int[] indexes = {random.nextInt(6), random.nextInt(6), random.nextInt(6)};
+                for (AtomicQueue.Removed<Integer> removed : queue.removeAll(indexes)) {
+                    taken.add(removed.getElement());
+                }
+            }
+            return null;
+        }));
+        // shuffle
+        consumers.add(executor.submit(() -> {
+            start.await();
+            while (producing.get()) {
+                queue.shuffle(ThreadLocalRandom.current());
+                Thread.yield();
+            }
+            return null;
+        }));
+        // readers never see a torn queue
+        consumers.add(executor.submit(() -> {
+            start.await();
+            while (producing.get()) {
+                final List<Integer> snapshot = queue.snapshot();
+                if (new HashSet<>(snapshot).size() != snapshot.size() || snapshot.contains(null)) {
+                    readErrors.incrementAndGet();
+                }
+            }
+            return null;
+        }));
+
+        start.countDown();
+        for (Future<?> producer : producers) {
+            producer.get(60, TimeUnit.SECONDS);
+        }
+        producing.set(false);
+        for (Future<?> consumer : consumers) {
+            consumer.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(0, readErrors.get());
+        assertTrue(queue.isEmpty());
+        final BitSet seen = new BitSet(PRODUCERS * PER_PRODUCER);
+        for (Integer element : taken) {
+            assertFalse("taken twice: " + element, seen.get(element));
+            seen.set(element);
+        }
+        assertEquals(PRODUCERS * PER_PRODUCER, seen.cardinality());
+    }
+
+    @Test
+    public void shuffleKeepsEveryElement() {
+        final AtomicQueue<Integer> queue = new AtomicQueue<>();
+        for (int i = 0; i < 100; i++) {
+            queue.add(i);
+        }
+        assertEquals(100, queue.shuffle(ThreadLocalRandom.current()));
+        final Set<Integer> elements = new HashSet<>(queue.snapshot());
+        assertEquals(100, elements.size());
+        assertEquals(Integer.valueOf(queue.peek()), queue.snapshot().get(0));
+    }
+
+    @Test
+    public void listenerIsToldAboutEveryVersionOnce() throws Exception {
+        final ConcurrentLinkedQueue<Long> versions = new ConcurrentLinkedQueue<>();
+        final AtomicQueue<Integer> queue = new AtomicQueue<>(new AtomicQueue.Listener<Integer>() {
+            @Override
+            public void added(long version, int index, List<Integer> elements) {
+                versions.add(version);
+            }
+
+            @Override
+            public void removed(long version, List<AtomicQueue.Removed<Integer>> removed) {
+                versions.add(version);
+            }
+
+            @Override
+            public void replaced(long version, List<Integer> elements) {
+                versions.add(version);
+            }
+        });
+        assertEquals(0, queue.version().getVersion());
+        final ExecutorService executor = Executors.newFixedThreadPool(PRODUCERS);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            futures.add(executor.submit(() -> {
+                final ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 10_000; i++) {
+                    switch (random.nextInt(4)) {
+                        case 0:
+                            queue.add(i);
+                            break;
+                        case 1:
+                            queue.addAll(1, Arrays.asList(i, i));
+                            break;
+                        case 2:
+                            queue.shuffle(random);
+                            break;
+                        default:
+                            // removing from an empty queue is not a change
+                            if (queue.poll() == null) queue.add(i);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        final long last = queue.version().getVersion();
+        assertEquals(last, versions.size());
+        final BitSet seen = new BitSet();
+        for (long version : versions) {
+            assertFalse("reported twice: " + version, seen.get((int) version));
+            seen.set((int) version);
+        }
+        assertEquals(last, seen.cardinality());
+        assertFalse(seen.get(0));
+    }
+}
@@ -0,0 +1,149 @@
+package com.github.breadmoirai.samurai.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RankTreeTest {
+
+    @Test
+    public void ranksHighestScoreFirstAndBreaksTiesById() {
+        final RankTree tree = new RankTree();
+        tree.put(3, 10);
+        tree.put(1, 20);
+        tree.put(2, 10);
+        tree.put(4, 5);
+
+        assertEquals(0, tree.rank(1));
+        assertEquals(1, tree.rank(2));
+        assertEquals(2, tree.rank(3));
+        assertEquals(3, tree.rank(4));
+        assertEquals(-1, tree.rank(99));
+        assertEquals(4, tree.size());
+    }
+
+    @Test
+    public void putMovesAnExistingId() {
+        final RankTree tree = new RankTree();
+        tree.put(1, 1);
+        tree.put(2, 2);
+        tree.put(3, 3);
+
+        tree.put(1, 4);
+
+        assertEquals(3, tree.size());
+        assertEquals(0, tree.rank(1));
+        assertEquals(1, tree.rank(3));
+        assertEquals(2, tree.rank(2));
+    }
+
+    @Test
+    public void offsetAddsToTheScoreOrInserts() {
+        final RankTree tree = new RankTree();
+        tree.put(1, 5);
+        tree.put(2, 3);
+
+        tree.offset(2, 4);
+        tree.offset(3, 6);
+
+        assertEquals(7, tree.getScore(2), 0);
+        assertEquals(6, tree.getScore(3), 0);
+        assertEquals(0, tree.rank(2));
+        assertEquals(1, tree.rank(3));
+        assertEquals(2, tree.rank(1));
+
+        tree.offset(2, -10);
+        assertEquals(2, tree.rank(2));
+    }
+
+    @Test
+    public void removeDropsTheIdFromEveryQuery() {
+        final RankTree tree = new RankTree();
+        tree.put(1, 3);
+        tree.put(2, 2);
+        tree.put(3, 1);
+
+        assertTrue(tree.remove(2));
+        assertFalse(tree.remove(2));
+
+        assertFalse(tree.contains(2));
+        assertEquals(-1, tree.rank(2));
+        assertEquals(1, tree.rank(3));
+        assertEquals(2, tree.range(0, 10).size());
+    }
+
+    @Test
+    public void rangeIsClampedToTheSize() {
+        final RankTree tree = new RankTree();
+        for (long id = 0; id < 10; id++) {
+            tree.put(id, id);
+        }
+
+        final List<RankTree.Entry> page = tree.range(2, 5);
+        assertEquals(3, page.size());
+        assertEquals(7, page.get(0).getId());
+        assertEquals(6, page.get(1).getId());
+        assertEquals(5, page.get(2).getId());
+
+        assertEquals(2, tree.range(8, 20).size());
+        assertEquals(10, tree.range(-3, 10).size());
+        assertTrue(tree.range(10, 20).isEmpty());
+        assertTrue(tree.range(5, 5).isEmpty());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getOutsideTheSizeThrows() {
+        final RankTree tree = new RankTree();
+        tree.put(1, 1);
+        tree.get(1);
+    }
+
+    @Test
+    public void matchesASortedListUnderRandomOperations() {
+        final Random random = new Random(42);
+        final RankTree tree = new RankTree();
+        final Map<Long, Double> expected = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            final long id = random.nextInt(500);
+            switch (random.nextInt(3)) {
+                case 0: {
+                    final double score = random.nextInt(100);
+                    tree.put(id, score);
+                    expected.put(id, score);
+                    break;
+                }
+                case 1: {
+                    final double delta = random.nextInt(21) - 10;
+                    tree.offset(id, delta);
+                    expected.merge(id, delta, Double::sum);
+                    break;
+                }
+                default: {
+                    assertEquals(expected.remove(id) != null, tree.remove(id));
+                }
+            }
+        }
+
+        final List<Map.Entry<Long, Double>> sorted = new ArrayList<>(expected.entrySet());
+        sorted.sort(Comparator.<Map.Entry<Long, Double>>comparingDouble(Map.Entry::getValue).reversed()
+                .thenComparing(Map.Entry::getKey));
+        assertEquals(sorted.size(), tree.size());
+        final List<RankTree.Entry> all = tree.range(0, sorted.size());
+        for (int rank = 0; rank < sorted.size(); rank++) {
+            final long id = sorted.get(rank).getKey();
+            assertEquals(rank, tree.rank(id));
+            assertEquals(id, tree.get(rank).getId());
+            assertEquals(id, all.get(rank).getId());
+            assertEquals(sorted.get(rank).getValue(), all.get(rank).getScore(), 0);
+        }
+    }
+}